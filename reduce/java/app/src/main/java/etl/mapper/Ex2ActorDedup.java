@@ -0,0 +1,141 @@
+package etl.mapper;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import etl.model.Ex2Actor;
+import etl.util.BloomFilter;
+
+/**
+ * Ex2ActorDedup tells whether an actor is seen for the first time, by
+ * its {@code (name, born)} identity, so that only the first occurrence
+ * of each actor is sorted.
+ * <p>
+ * A BloomFilter sits in front of the exact set of actors. An actor the
+ * filter has definitely not seen is new without consulting the exact
+ * set, and is inserted into it only so that later possible hits can be
+ * confirmed. An actor the filter might have seen is looked up, and one
+ * the set does not hold is a false positive. The filter is keyed by one
+ * 64-bit hash of the name and the born year, so that no key String is
+ * built per actor.
+ */
+public final class Ex2ActorDedup
+{
+    /**
+     * The false positive rate of the filter when not specified.
+     */
+    public static final double DEFAULT_FPP = 0.01;
+
+    /**
+     * Report is a statistics holder of an Ex2ActorDedup.
+     * @param actors          the number of actors added
+     * @param distinct        the number of distinct actors
+     * @param possible_hits   the actors looked up in the exact set
+     * @param false_positives the possible hits that turned out to be new
+     * @param expected_fpp    the false positive rate the filter expects
+     *                        at its current number of actors
+     * @param filter_bytes    the number of bytes of the filter
+     * @param hash_count      the number of hash functions of the filter
+     */
+    public record Report(
+        long actors,
+        long distinct,
+        long possible_hits,
+        long false_positives,
+        double expected_fpp,
+        long filter_bytes,
+        int hash_count
+    ) {
+        /**
+         * Returns the number of actors that were seen before.
+         * @return the number of duplicate actors
+         */
+        public long duplicates() { return actors - distinct; }
+
+        /**
+         * Returns the false positive rate observed, which is the share
+         * of new actors the filter took for possible hits.
+         * @return the observed false positive rate
+         */
+        public double observed_fpp()
+        {
+            return distinct == 0L ? 0.0 : (double) false_positives / distinct;
+        }
+    }
+
+    /**
+     * Instantiates an empty dedup sized for the specified number of
+     * distinct actors.
+     * @param expected the number of distinct actors expected
+     * @param fpp      the false positive rate of the filter, in (0, 1)
+     * @return         an empty dedup
+     * @throws IllegalArgumentException
+     *      if {@code fpp} is not within (0, 1)
+     */
+    public static Ex2ActorDedup with_expected(long expected, double fpp)
+        throws IllegalArgumentException
+    {
+        // the initial capacity of a HashSet that holds them at the
+        // default load factor of 0.75 without rehashing
+        final long capacity = Math.max(expected, 12L) * 4L / 3L + 1L;
+        return new Ex2ActorDedup(
+            BloomFilter.with_expected(expected, fpp),
+            (int) Math.min(capacity, 1L << 30)
+        );
+    }
+
+    /**
+     * Adds the actor argument.
+     * @param actor an Ex2Actor.Model instance
+     * @return      {@code true} if the actor was not added before
+     */
+    public boolean add(final Ex2Actor.Model actor)
+    {
+        actors++;
+        final long hash = BloomFilter.hash(
+            BloomFilter.hash(actor.name()),
+            actor.born().getValue()
+        );
+
+        if (filter.put(hash)) {
+            exact.add(actor);
+            return true;
+        }
+
+        possible_hits++;
+        if (exact.add(actor)) {
+            false_positives++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the statistics of this dedup.
+     * @return a Report
+     */
+    public Report report()
+    {
+        return new Report(
+            actors,
+            exact.size(),
+            possible_hits,
+            false_positives,
+            filter.expected_fpp(),
+            filter.table_bytes(),
+            filter.hash_count()
+        );
+    }
+
+    private Ex2ActorDedup(final BloomFilter filter, int capacity)
+    {
+        this.filter = filter;
+        this.exact = new HashSet<>(capacity);
+    }
+
+    private final BloomFilter filter;
+    private final Set<Ex2Actor.Model> exact;
+    private long actors = 0L;
+    private long possible_hits = 0L;
+    private long false_positives = 0L;
+}
@@ -0,0 +1,220 @@
+package etl.mapper;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import etl.model.Ex2Actor;
+import etl.model.Ex2Cast;
+import etl.model.Ex2Film;
+import etl.util.CloseableSupplier;
+import etl.util.IntHistogram;
+import etl.util.ModelWriter;
+import etl.util.SortedArraySet;
+
+/**
+ * Ex2Aggregates computes statistics of mapped models while they are
+ * still in memory, so that they need not be computed again by reloading
+ * cast.csv:
+ * <ul>
+ * <li>the number of films per actor
+ * <li>the number of casts per film
+ * <li>the distribution of the ages of actors at the release of films
+ * <li>the number of films per release year
+ * </ul>
+ * Films are counted in parallel by accumulators of IntHistograms keyed
+ * by the indexes of films and actors, ages, and years, which are merged
+ * when the accumulators join.
+ */
+public final class Ex2Aggregates
+{
+    /**
+     * The names of the report files {@code write()} writes.
+     */
+    public static final String
+    FILMS_PER_ACTOR_FILE_NAME = "films_per_actor.csv",
+    CASTS_PER_FILM_FILE_NAME  = "casts_per_film.csv",
+    AGE_AT_RELEASE_FILE_NAME  = "age_at_release.csv",
+    FILMS_PER_YEAR_FILE_NAME  = "films_per_year.csv";
+
+    /**
+     * Computes the statistics of a model map.
+     * @param model_map {@code SortedMap<Film, List<Cast>>}, as
+     *                  {@code Ex2Mapper.Mapping.model_map()} returns
+     * @param actors    the actors the casts refer to
+     * @return          the statistics, or null if either argument is null
+     */
+    public static Ex2Aggregates of(
+        final SortedMap<Ex2Film.Model, List<Ex2Cast.Model>> model_map,
+        final SortedSet<Ex2Actor.Model> actors
+    ) {
+        if (model_map == null || actors == null) return null;
+
+        final var films = new ArrayList<>(model_map.keySet());
+        final var casts = new ArrayList<>(model_map.values());
+        final var actor_index = SortedArraySet.of_sorted(
+            actors.toArray(Ex2Actor.Model[]::new)
+        );
+
+        final var accumulator = IntStream.range(0, films.size()).parallel()
+        .collect(
+            Accumulator::new,
+            (accum, film) -> accum.add(film, films.get(film), casts.get(film), actor_index),
+            Accumulator::merge
+        );
+
+        return new Ex2Aggregates(films, actor_index, accumulator);
+    }
+
+    /**
+     * Returns the number of films an actor appears in.
+     * @param actor an Ex2Actor.Model instance
+     * @return      the number of films
+     */
+    public long films_of(final Ex2Actor.Model actor)
+    {
+        final int index = actors.index_of(actor);
+        return index < 0 ? 0L : accumulator.films_per_actor.get(index);
+    }
+
+    /**
+     * Returns the number of casts of a film.
+     * @param film the index of a film in the order of the model map
+     * @return     the number of casts
+     */
+    public long casts_of(int film) { return accumulator.casts_per_film.get(film); }
+
+    /**
+     * Returns the number of casts of actors at an age at release.
+     * @param age an age
+     * @return    the number of casts
+     */
+    public long casts_at_age(int age) { return accumulator.age_at_release.get(age); }
+
+    /**
+     * Returns the number of films released in a year.
+     * @param year a year
+     * @return     the number of films
+     */
+    public long films_in(int year) { return accumulator.films_per_year.get(year); }
+
+    /**
+     * Writes the statistics as CSV files in a directory.
+     * @param dir a directory to which the report files are written
+     * @return    {@code true} if every file was written
+     */
+    public boolean write(final Path dir)
+    {
+        return write(
+            dir.resolve(FILMS_PER_ACTOR_FILE_NAME),
+            accumulator.films_per_actor,
+            index -> actors.get(index).id()
+        )
+        && write(
+            dir.resolve(CASTS_PER_FILM_FILE_NAME),
+            accumulator.casts_per_film,
+            index -> films.get(index).id()
+        )
+        && write(
+            dir.resolve(AGE_AT_RELEASE_FILE_NAME),
+            accumulator.age_at_release,
+            Integer::valueOf
+        )
+        && write(
+            dir.resolve(FILMS_PER_YEAR_FILE_NAME),
+            accumulator.films_per_year,
+            Integer::valueOf
+        );
+    }
+
+    private static boolean write(
+        final Path path,
+        final IntHistogram histogram,
+        final IntFunction<Object> key
+    ) {
+        final CloseableSupplier<Writer> writer
+        = () -> Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+
+        try (
+            final var printer = new ModelWriter(writer)
+        ) {
+            for (final int index : histogram.keys()) {
+                printer.print(new Object[] {key.apply(index), histogram.get(index)});
+            }
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private static final class Accumulator
+    {
+        void add(
+            int film_index,
+            final Ex2Film.Model film,
+            final List<Ex2Cast.Model> casts,
+            final SortedArraySet<Ex2Actor.Model> actors
+        ) {
+            films_per_year.add(film.release().getValue(), 1L);
+
+            // the actors of the film, sorted to count each of them once
+            if (actor_indexes.length < casts.size()) actor_indexes = new int[casts.size()];
+            int cast_count = 0;
+            int actor_count = 0;
+            for (final var cast : casts) {
+                if (cast == null) continue;
+                cast_count++;
+
+                final int actor = actors.index_of(cast.actor());
+                if (actor >= 0) actor_indexes[actor_count++] = actor;
+
+                age_at_release.add(
+                    film.release().getValue() - cast.actor().born().getValue(), 1L
+                );
+            }
+            casts_per_film.add(film_index, cast_count);
+
+            Arrays.sort(actor_indexes, 0, actor_count);
+            for (int index = 0; index < actor_count; index++) {
+                if (index > 0 && actor_indexes[index] == actor_indexes[index - 1]) continue;
+                films_per_actor.add(actor_indexes[index], 1L);
+            }
+        }
+
+        void merge(final Accumulator other)
+        {
+            films_per_actor.merge(other.films_per_actor);
+            casts_per_film.merge(other.casts_per_film);
+            age_at_release.merge(other.age_at_release);
+            films_per_year.merge(other.films_per_year);
+        }
+
+        final IntHistogram films_per_actor = IntHistogram.empty();
+        final IntHistogram casts_per_film = IntHistogram.empty();
+        final IntHistogram age_at_release = IntHistogram.empty();
+        final IntHistogram films_per_year = IntHistogram.empty();
+        private int[] actor_indexes = new int[16];
+    }
+
+    private Ex2Aggregates(
+        final List<Ex2Film.Model> films,
+        final SortedArraySet<Ex2Actor.Model> actors,
+        final Accumulator accumulator
+    ) {
+        this.films = films;
+        this.actors = actors;
+        this.accumulator = accumulator;
+    }
+
+    private final List<Ex2Film.Model> films;
+    private final SortedArraySet<Ex2Actor.Model> actors;
+    private final Accumulator accumulator;
+}
@@ -0,0 +1,59 @@
+package etl.mapper;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import etl.util.CsvMasker;
+import etl.util.IntRange;
+
+/**
+ * {@code mapper.Ex2Anonymizer} produces anonymized copies of actor.csv
+ * and cast.csv for test environments, in which the names of actors and
+ * the names of roles are masked by CsvMasker.
+ * <p>
+ * A name keeps its first codepoint and its length, and the rest of it
+ * is padded with {@code '*'}: {@code Robert De Niro} becomes
+ * {@code R*************}. Ids are kept, so that the copies still join.
+ */
+public interface Ex2Anonymizer
+{
+    /**
+     * Drives anonymizing actor.csv and cast.csv.
+     * @param args  [0]: path to actor.csv, [1]: path to its masked copy
+     *              [2]: path to cast.csv, [3]: path to its masked copy
+     *              [4]: (optional) the maximum number of batches in flight
+     */
+    public static void main(String[] args)
+    {
+        final int concurrency = args.length > 4
+        ? Integer.parseInt(args[4])
+        : Runtime.getRuntime().availableProcessors() * 2;
+
+        // logic
+        final var cpu = Ex2Batch.Driving.cpu_executor();
+        try {
+            final long actors = CsvMasker.of(ACTOR_MASKS)
+            .mask(Path.of(args[0]), Path.of(args[1]), concurrency, cpu);
+            final long casts = CsvMasker.of(CAST_MASKS)
+            .mask(Path.of(args[2]), Path.of(args[3]), concurrency, cpu);
+
+            if (actors < 0 || casts < 0) System.exit(-1);
+        } finally {
+            cpu.shutdown();
+        }
+    }
+
+    /**
+     * The masks of actor.csv: {@code id, name, born}.
+     */
+    static final List<CsvMasker.Mask> ACTOR_MASKS = List.of(
+        new CsvMasker.Mask(1, IntRange.lower(1), "", '*')
+    );
+
+    /**
+     * The masks of cast.csv: {@code film_id, actor_id, role_name}.
+     */
+    static final List<CsvMasker.Mask> CAST_MASKS = List.of(
+        new CsvMasker.Mask(2, IntRange.lower(1), "", '*')
+    );
+}
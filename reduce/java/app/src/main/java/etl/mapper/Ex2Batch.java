@@ -0,0 +1,426 @@
+package etl.mapper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+import etl.model.Ex2Actor;
+import etl.model.Ex2Cast;
+import etl.model.Ex2Film;
+import etl.model.Ex2Movie;
+import etl.util.CloseableSupplier;
+import etl.util.ModelWriter;
+
+/**
+ * {@code mapper.Ex2Batch} runs {@code Ex2Mapper} over many movie files
+ * within one JVM, so that JVM startup and warm-up are paid only once.
+ * <p>
+ * Each movie file is processed by its own task. Reading and writing
+ * files overlap freely on I/O threads, which are virtual threads when
+ * the runtime provides them, while the number of files in flight is
+ * bounded by a concurrency limit. Mapping, which is CPU-heavy, runs on
+ * a pool of platform threads sized to the number of processors.
+ */
+public interface Ex2Batch
+{
+    /**
+     * Drives mapping every movie file of the input.
+     * @param args  [0]: a directory containing movie files, or a glob
+     *              such as {@code /data/in/movie-*.csv}
+     *              [1]: a directory to which outputs are written
+     *              [2]: (optional) the maximum number of files in flight,
+     *              which Ex2Planner sizes to the heap by the largest
+     *              file when not specified
+     */
+    public static void main(String[] args)
+    {
+        final String input = args[0];
+        final Path output_dir = Path.of(args[1]);
+        final int requested = args.length > 2 ? parse_count(args[2]) : 0;
+        if (args.length > 2 && requested < 1) {
+            System.err.printf(
+                "The number of files in flight must be 1 or more, not %s.\n",
+                args[2]
+            );
+            System.exit(-1);
+            return;
+        }
+
+        // logic
+        final List<Path> movies;
+        try {
+            movies = Driving.inputs(input);
+            Files.createDirectories(output_dir);
+        } catch (IOException ex) {
+            System.err.printf("%s: %s\n", input, ex);
+            System.exit(-1);
+            return;
+        }
+
+        final int concurrency;
+        if (requested > 0) {
+            concurrency = requested;
+        } else {
+            final var plan = Ex2Planner.plan(movies);
+            if (plan != null) System.out.println(plan);
+            concurrency = plan == null ? DEFAULT_CONCURRENCY : plan.concurrency();
+        }
+
+        final var reports = Driving.job(movies, output_dir, concurrency);
+        reports.forEach(System.out::println);
+        Driving.write_report(output_dir, reports);
+    }
+
+    // a count given on the command line, or -1 if it is not a number
+    private static int parse_count(final String count)
+    {
+        try {
+            return Integer.parseInt(count);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * The number of files in flight when neither specified nor planned.
+     */
+    static final int DEFAULT_CONCURRENCY = 64;
+
+    /**
+     * The names of the files a batch writes.
+     */
+    static final String
+    FILM_FILE_NAME   = "film.csv",
+    ACTOR_FILE_NAME  = "actor.csv",
+    CAST_FILE_NAME   = "cast.csv",
+    REPORT_FILE_NAME = "batch_report.csv";
+
+    /**
+     * FileReport is a statistics holder of mapping one movie file.
+     * Invalid lines are those the writers counted as invalid.
+     * The {@code error} component is null unless the file failed.
+     */
+    record FileReport(
+        String movie,
+        long films,
+        long actors,
+        long casts,
+        long invalid_lines,
+        long elapsed_millis,
+        String error
+    ) {
+        /**
+         * Returns the components of a FileReport as an array of Object.
+         * @param report a FileReport record
+         * @return       an array of Object instances
+         */
+        static Object[] values(final FileReport report)
+        {
+            return new Object[] {
+                report.movie, report.films, report.actors, report.casts,
+                report.invalid_lines, report.elapsed_millis, report.error
+            };
+        }
+    }
+
+    /**
+     * The place where the logic to drive a batch is implemeted.
+     */
+    interface Driving
+    {
+        /**
+         * Lists the movie files of the input argument.
+         * @param input a directory, in which case every {@code *.csv}
+         *              file is listed, or a glob of which the directory
+         *              part contains no wildcard
+         * @return      the movie files sorted by path
+         * @throws IOException if the directory cannot be listed
+         */
+        static List<Path> inputs(final String input) throws IOException
+        {
+            final var path = Path.of(input);
+            final Path dir;
+            final String glob;
+            if (Files.isDirectory(path)) {
+                dir = path;
+                glob = "*.csv";
+            } else {
+                dir = path.getParent() == null ? Path.of(".") : path.getParent();
+                glob = path.getFileName().toString();
+            }
+
+            final var matcher = FileSystems.getDefault()
+            .getPathMatcher("glob:" + glob);
+
+            try (
+                final var files = Files.list(dir)
+            ) {
+                return files
+                .filter(Files::isRegularFile)
+                .filter(file -> matcher.matches(file.getFileName()))
+                .sorted()
+                .collect(Collectors.toList());
+            }
+        }
+
+        /**
+         * Maps every movie file. The outputs of {@code dir/name.csv} are
+         * written to {@code output_dir/name/}.
+         * @param movies      movie files
+         * @param output_dir  a directory to which outputs are written
+         * @param concurrency the maximum number of files in flight
+         * @return            the reports in the order of movie files
+         * @throws IllegalArgumentException
+         *      if {@code concurrency} is less than 1
+         */
+        static List<FileReport> job(
+            final List<Path> movies,
+            final Path output_dir,
+            int concurrency
+        ) throws IllegalArgumentException {
+            final var cpu = cpu_executor();
+            final var io = io_executor();
+
+            try {
+                return job(movies, output_dir, concurrency, io, cpu);
+            } finally {
+                io.shutdown();
+                cpu.shutdown();
+            }
+        }
+
+        /**
+         * Maps every movie file on executors the caller owns, so that
+         * a long-running process can share them between batches.
+         * @param movies      movie files
+         * @param output_dir  a directory to which outputs are written
+         * @param concurrency the maximum number of files in flight
+         * @param io          an executor that reads and writes files
+         * @param cpu         an executor that runs mapping
+         * @return            the reports in the order of movie files
+         * @throws IllegalArgumentException
+         *      if {@code concurrency} is less than 1
+         */
+        static List<FileReport> job(
+            final List<Path> movies,
+            final Path output_dir,
+            int concurrency,
+            final ExecutorService io,
+            final ExecutorService cpu
+        ) throws IllegalArgumentException {
+            if (concurrency < 1) throw new IllegalArgumentException();
+
+            final var permits = new Semaphore(concurrency);
+
+            final var futures = new ArrayList<Future<FileReport>>();
+            for (final var movie : movies) {
+                // acquiring here rather than in the task also bounds
+                // the threads a pool of platform threads starts
+                permits.acquireUninterruptibly();
+                futures.add(io.submit(() -> {
+                    try {
+                        return file_job(movie, output_dir, cpu);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            final var reports = new ArrayList<FileReport>();
+            for (int index = 0; index < futures.size(); index++) {
+                FileReport report;
+                try {
+                    report = futures.get(index).get();
+                } catch (Exception ex) {
+                    report = failed(movies.get(index), 0L, ex);
+                }
+                reports.add(report);
+            }
+            return reports;
+        }
+
+        /**
+         * Writes reports to {@code REPORT_FILE_NAME} in a directory.
+         * @param output_dir a directory to which the report is written
+         * @param reports    the reports of a batch
+         * @return           the Report of the ModelWriter, or null if
+         *                   the ModelWriter failed
+         */
+        static ModelWriter.Report write_report(
+            final Path output_dir,
+            final List<FileReport> reports
+        ) {
+            return Ex2Mapper.Driving.write(
+                writer(output_dir.resolve(REPORT_FILE_NAME)),
+                reports.stream(),
+                FileReport::values
+            );
+        }
+
+        /**
+         * Maps one movie file.
+         * @param movie      a movie file
+         * @param output_dir a directory under which a directory named
+         *                   after the movie file is created
+         * @param cpu        an executor that runs mapping
+         * @return           the report of the movie file
+         */
+        static FileReport file_job(
+            final Path movie,
+            final Path output_dir,
+            final ExecutorService cpu
+        ) {
+            final long start = System.nanoTime();
+
+            try {
+                final var name = movie.getFileName().toString()
+                .replaceFirst("\\.csv$", "");
+                final var dir = Files.createDirectories(output_dir.resolve(name));
+
+                final var report = job(
+                    CloseableSupplier.of(
+                        movie.toString(),
+                        () -> Files.newBufferedReader(movie, StandardCharsets.UTF_8)
+                    ),
+                    writer(dir.resolve(FILM_FILE_NAME)),
+                    writer(dir.resolve(ACTOR_FILE_NAME)),
+                    writer(dir.resolve(CAST_FILE_NAME)),
+                    cpu
+                );
+
+                return new FileReport(
+                    movie.toString(),
+                    report.films(),
+                    report.actors(),
+                    report.casts(),
+                    report.invalid_lines(),
+                    elapsed_millis(start),
+                    null
+                );
+            } catch (Exception ex) {
+                return failed(movie, elapsed_millis(start), ex);
+            }
+        }
+
+        /**
+         * Does the same job as {@code Ex2Mapper.Driving.job()}, except
+         * that mapping runs on the cpu executor while the calling thread
+         * reads and writes.
+         * @param movie_reader a Reader attached to movie.csv
+         * @param film_writer  a Writer attached to film.csv
+         * @param actor_writer a Writer attached to actor.csv
+         * @param cast_writer  a Writer attached to cast.csv
+         * @param cpu          an executor that runs mapping
+         * @return             a report of which {@code movie} is null
+         * @throws Exception   if reading, mapping or writing failed
+         */
+        static FileReport job(
+            CloseableSupplier<Reader> movie_reader,
+            CloseableSupplier<Writer> film_writer,
+            CloseableSupplier<Writer> actor_writer,
+            CloseableSupplier<Writer> cast_writer,
+            ExecutorService cpu
+        )
+            throws Exception
+        {
+            final var text_map = Ex2Movie.Extracting.text_map(movie_reader);
+            if (text_map == null) throw new IOException("unreadable movie file");
+
+            final var actors = cpu
+            .submit(() -> Ex2Mapper.Mapping.actors(text_map))
+            .get();
+            final var model_map = cpu
+            .submit(() -> Ex2Mapper.Mapping.model_map(text_map, actors))
+            .get();
+
+            final var reports = Arrays.asList(
+                Ex2Mapper.Driving.write(
+                    actor_writer, actors.stream(), Ex2Actor.Loading::values
+                ),
+                Ex2Mapper.Driving.write(
+                    film_writer, model_map.keySet().stream(), Ex2Film.Loading::values
+                ),
+                Ex2Mapper.Driving.write(
+                    cast_writer,
+                    model_map.values().stream().flatMap(List::stream),
+                    Ex2Cast.Loading::values
+                )
+            );
+            if (reports.stream().anyMatch(Objects::isNull)) throw new IOException("unwritable output");
+
+            return new FileReport(
+                null,
+                reports.get(1).total_lines(),
+                reports.get(0).total_lines(),
+                reports.get(2).total_lines(),
+                reports.stream().mapToLong(ModelWriter.Report::invalid_lines).sum(),
+                0L,
+                null
+            );
+        }
+
+        /**
+         * Returns a pool of platform threads sized to the processors.
+         * @return an executor for CPU-bound tasks
+         */
+        static ExecutorService cpu_executor()
+        {
+            return Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors()
+            );
+        }
+
+        /**
+         * Returns an executor that starts a new virtual thread for each
+         * task if the runtime provides virtual threads, or a cached pool
+         * of platform threads otherwise.
+         * @return an executor for I/O-bound tasks
+         */
+        static ExecutorService io_executor()
+        {
+            try {
+                final var factory = Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException ex) {
+                return Executors.newCachedThreadPool();
+            }
+        }
+
+        private static CloseableSupplier<Writer> writer(final Path path)
+        {
+            return CloseableSupplier.of(
+                path.toString(),
+                () -> Files.newBufferedWriter(path, StandardCharsets.UTF_8)
+            );
+        }
+
+        private static FileReport failed(
+            final Path movie,
+            long elapsed_millis,
+            final Exception ex
+        ) {
+            return new FileReport(
+                movie.toString(), 0L, 0L, 0L, 0L, elapsed_millis, ex.toString()
+            );
+        }
+
+        private static long elapsed_millis(long start)
+        {
+            return (System.nanoTime() - start) / 1_000_000L;
+        }
+    }
+}
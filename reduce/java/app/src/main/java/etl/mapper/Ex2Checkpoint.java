@@ -0,0 +1,153 @@
+package etl.mapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import etl.model.Ex2Actor;
+import etl.util.LongHashSet;
+
+/**
+ * Ex2Checkpoint is a snapshot of a checkpointed Ex2Mapper job, taken at
+ * the boundary of a film group of movie.csv.
+ * <p>
+ * It records where to continue reading the input, how long each output
+ * was when the snapshot was taken, and how many actors were already
+ * written. An actor is recorded as a 64-bit key taken from its id, which
+ * the job appends to a keys file beside the checkpoint as the actor is
+ * written, so that a snapshot costs a few dozen bytes however many
+ * actors there are, and resuming reads back the keys of the first
+ * {@code actor_count} actors.
+ *
+ * @param input_offset  the byte offset in movie.csv of the next group
+ * @param record_number the number of records of movie.csv before it
+ * @param film_bytes    the length of film.csv
+ * @param actor_bytes   the length of actor.csv
+ * @param cast_bytes    the length of cast.csv
+ * @param actor_count   the number of actors written so far
+ */
+public record Ex2Checkpoint(
+    long input_offset,
+    long record_number,
+    long film_bytes,
+    long actor_bytes,
+    long cast_bytes,
+    long actor_count
+) {
+    /**
+     * The checkpoint of a job that has not started.
+     */
+    public static final Ex2Checkpoint EMPTY
+    = new Ex2Checkpoint(0L, 0L, 0L, 0L, 0L, 0L);
+
+    /**
+     * Returns the key recorded for an actor, the first 64 bits of its id.
+     * @param actor an Ex2Actor.Model instance
+     * @return      the key of the actor
+     */
+    public static long key(final Ex2Actor.Model actor)
+    {
+        return Long.parseUnsignedLong(actor.id().substring(0, KEY_HEX_DIGITS), 16);
+    }
+
+    /**
+     * Returns the path of the keys file beside a checkpoint file.
+     * @param path path to a checkpoint file
+     * @return     path to its keys file
+     */
+    public static Path keys_path(final Path path)
+    {
+        return path.resolveSibling(path.getFileName() + ".keys");
+    }
+
+    /**
+     * Reads a checkpoint.
+     * @param path path to a checkpoint file
+     * @return     the checkpoint, or null if the file does not exist or
+     *             is not a checkpoint
+     */
+    public static Ex2Checkpoint read(final Path path)
+    {
+        try (
+            final var in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path))
+            )
+        ) {
+            if (in.readLong() != MAGIC) return null;
+
+            return new Ex2Checkpoint(
+                in.readLong(), in.readLong(),
+                in.readLong(), in.readLong(), in.readLong(),
+                in.readLong()
+            );
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the keys of the actors this checkpoint counts from the keys
+     * file, ignoring any key appended after the checkpoint was taken.
+     * @param path path to the checkpoint file
+     * @return     a set of the keys, or null if the keys file is shorter
+     *             than the checkpoint counts
+     */
+    public LongHashSet read_keys(final Path path)
+    {
+        final var actor_keys = LongHashSet.with_capacity((int) actor_count);
+        if (actor_count == 0L) return actor_keys;
+
+        try (
+            final var in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(keys_path(path)))
+            )
+        ) {
+            for (long index = 0L; index < actor_count; index++) {
+                actor_keys.add(in.readLong());
+            }
+            return actor_keys;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes this checkpoint, once the outputs and the keys file it
+     * counts are forced to storage. The file is written aside and then
+     * moved over the previous checkpoint, so that a crash while writing
+     * leaves the previous checkpoint intact.
+     * @param path path to a checkpoint file
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void write(final Path path) throws IOException
+    {
+        final var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (
+            final var out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary))
+            )
+        ) {
+            out.writeLong(MAGIC);
+            out.writeLong(input_offset);
+            out.writeLong(record_number);
+            out.writeLong(film_bytes);
+            out.writeLong(actor_bytes);
+            out.writeLong(cast_bytes);
+            out.writeLong(actor_count);
+        }
+
+        Files.move(
+            temporary, path,
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE
+        );
+    }
+
+    private static final long MAGIC = 0x4558_3243_4b50_0002L;
+    private static final int KEY_HEX_DIGITS = Long.SIZE / 4;
+}
@@ -0,0 +1,271 @@
+package etl.mapper;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SortedMap;
+
+import etl.model.Ex2Actor;
+import etl.model.Ex2Cast;
+import etl.model.Ex2Film;
+import etl.model.Ex2Movie;
+
+/**
+ * Ex2Columns is a columnar, struct-of-arrays form of what
+ * {@code Ex2Mapper.Mapping.model_map()} produces.
+ * <p>
+ * Films and actors are given dense int indexes, and each of their
+ * components is held in its own array. A cast is three ints at the same
+ * index of the {@code film}, {@code actor} and {@code role} arrays,
+ * where {@code role} indexes a dictionary of role names. A cast thus
+ * costs 12 bytes instead of a record, a list slot and two references,
+ * and scanning casts walks three contiguous arrays.
+ */
+public final class Ex2Columns
+{
+    /**
+     * The index representing an unknown actor or role name.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * CastVisitor takes the indexes of a cast.
+     */
+    @FunctionalInterface
+    public interface CastVisitor
+    {
+        /**
+         * Visits a cast.
+         * @param film  the index of the film
+         * @param actor the index of the actor, or {@code NONE}
+         * @param role  the index of the role name, or {@code NONE}
+         */
+        void visit(int film, int actor, int role);
+    }
+
+    /**
+     * Builds columns out of a Text map. Actors are indexed in the order
+     * of {@code Ex2Mapper.Mapping.actors()}, and films and casts in the
+     * order of the Text map, which is the order of
+     * {@code Ex2Mapper.Mapping.model_map()}.
+     * @param text_map {@code SortedMap<Text.Film, List<Text.Cast>>}
+     * @return         columns, or null if {@code text_map} is null
+     */
+    public static Ex2Columns of(
+        final SortedMap<Ex2Movie.Text.Film, List<Ex2Movie.Text.Cast>> text_map
+    ) {
+        if (text_map == null) return null;
+
+        final var actors = Ex2Mapper.Mapping.actors(text_map);
+        final int cast_count = text_map.values().stream()
+        .mapToInt(List::size)
+        .sum();
+
+        final var columns = new Ex2Columns(text_map.size(), actors.size(), cast_count);
+
+        final var actor_by_name = Ex2Mapper.Mapping.actor_indexes(actors, columns::add);
+
+        final var role_by_name = new HashMap<String, Integer>();
+        for (final var entry : text_map.entrySet()) {
+            final var text_film = entry.getKey();
+            final int film = columns.add(Ex2Film.Model.instance(
+                text_film.name(),
+                Year.parse(text_film.release())
+            ));
+
+            for (final var text_cast : entry.getValue()) {
+                final int index = columns.cast_count++;
+                columns.cast_film[index] = film;
+                columns.cast_actor[index] = NONE;
+                columns.cast_role[index] = NONE;
+                if (text_cast == null) continue;
+
+                columns.cast_actor[index] = actor_by_name
+                .getOrDefault(text_cast.actor_name(), NONE);
+
+                final var role_name = text_cast.role_name();
+                if (role_name != null) {
+                    columns.cast_role[index] = role_by_name
+                    .computeIfAbsent(role_name, name -> {
+                        columns.roles.add(name);
+                        return columns.roles.size() - 1;
+                    });
+                }
+            }
+        }
+
+        return columns;
+    }
+
+    /**
+     * Returns the number of films.
+     * @return the number of films
+     */
+    public int film_count() { return film_count; }
+
+    /**
+     * Returns the number of actors.
+     * @return the number of actors
+     */
+    public int actor_count() { return actor_count; }
+
+    /**
+     * Returns the number of casts.
+     * @return the number of casts
+     */
+    public int cast_count() { return cast_count; }
+
+    /**
+     * Returns the number of distinct role names.
+     * @return the number of distinct role names
+     */
+    public int role_count() { return roles.size(); }
+
+    /**
+     * Visits every cast in order.
+     * @param visitor a CastVisitor
+     */
+    public void for_each_cast(final CastVisitor visitor)
+    {
+        for (int index = 0; index < cast_count; index++) {
+            visitor.visit(cast_film[index], cast_actor[index], cast_role[index]);
+        }
+    }
+
+    /**
+     * Returns the id of a film.
+     * @param film the index of a film
+     * @return     the id
+     */
+    public String film_id(int film) { return film_id[film]; }
+
+    /**
+     * Returns the id of an actor.
+     * @param actor the index of an actor
+     * @return      the id, or null if {@code actor} is {@code NONE}
+     */
+    public String actor_id(int actor)
+    {
+        return actor == NONE ? null : actor_id[actor];
+    }
+
+    /**
+     * Returns a role name.
+     * @param role the index of a role name
+     * @return     the role name, or null if {@code role} is {@code NONE}
+     */
+    public String role_name(int role)
+    {
+        return role == NONE ? null : roles.get(role);
+    }
+
+    /**
+     * Returns the values of a film to be printed by ModelWriter,
+     * as {@code Ex2Film.Loading.values()} does.
+     * @param film the index of a film
+     * @return     an array of values
+     */
+    public Object[] film_values(int film)
+    {
+        final var text = new Ex2Film.Text(
+            film_id[film],
+            film_name[film],
+            Integer.toString(film_release[film])
+        );
+        return text.is_valid()
+        ? new Object[] {text.id(), text.name(), text.release()}
+        : new Object[] {};
+    }
+
+    /**
+     * Returns the values of an actor to be printed by ModelWriter,
+     * as {@code Ex2Actor.Loading.values()} does.
+     * @param actor the index of an actor
+     * @return      an array of values
+     */
+    public Object[] actor_values(int actor)
+    {
+        final var text = new Ex2Actor.Text(
+            actor_id[actor],
+            actor_name[actor],
+            Integer.toString(actor_born[actor])
+        );
+        return text.is_valid()
+        ? new Object[] {text.id(), text.name(), text.born()}
+        : new Object[] {};
+    }
+
+    /**
+     * Returns the values of a cast to be printed by ModelWriter,
+     * as {@code Ex2Cast.Loading.values()} does.
+     * @param film  the index of the film
+     * @param actor the index of the actor
+     * @param role  the index of the role name
+     * @return      an array of values, or null if either the actor or
+     *              the role name is unknown
+     */
+    public Object[] cast_values(int film, int actor, int role)
+    {
+        if (actor == NONE || role == NONE) return null;
+
+        final var text = new Ex2Cast.Text(
+            film_id[film],
+            actor_id[actor],
+            roles.get(role)
+        );
+        return text.is_valid()
+        ? new Object[] {text.film_id(), text.actor_id(), text.role_name()}
+        : new Object[] {};
+    }
+
+    private int add(final Ex2Film.Model film)
+    {
+        final int index = film_count++;
+        film_id[index] = film.id();
+        film_name[index] = film.name();
+        film_release[index] = film.release().getValue();
+        return index;
+    }
+
+    private int add(final Ex2Actor.Model actor)
+    {
+        final int index = actor_count++;
+        actor_id[index] = actor.id();
+        actor_name[index] = actor.name();
+        actor_born[index] = actor.born().getValue();
+        return index;
+    }
+
+    private Ex2Columns(int films, int actors, int casts)
+    {
+        film_id = new String[films];
+        film_name = new String[films];
+        film_release = new int[films];
+
+        actor_id = new String[actors];
+        actor_name = new String[actors];
+        actor_born = new int[actors];
+
+        cast_film = new int[casts];
+        cast_actor = new int[casts];
+        cast_role = new int[casts];
+    }
+
+    private final String[] film_id;
+    private final String[] film_name;
+    private final int[] film_release;
+    private int film_count = 0;
+
+    private final String[] actor_id;
+    private final String[] actor_name;
+    private final int[] actor_born;
+    private int actor_count = 0;
+
+    private final int[] cast_film;
+    private final int[] cast_actor;
+    private final int[] cast_role;
+    private int cast_count = 0;
+
+    private final List<String> roles = new ArrayList<>();
+}
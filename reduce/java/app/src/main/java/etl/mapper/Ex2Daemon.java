@@ -0,0 +1,379 @@
+package etl.mapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import etl.util.CloseableSupplier;
+
+/**
+ * {@code mapper.Ex2Daemon} keeps a JVM resident and runs Ex2Mapper jobs
+ * submitted over a Unix-domain socket, so that JVM startup, class
+ * loading, reflective record bindings and the JIT stay warm between jobs.
+ * <p>
+ * A client connects, sends one command as a line of tab-separated
+ * fields, and reads one line of response, which starts with either
+ * {@code RESPONSE_OK} or {@code RESPONSE_ERROR}. The commands are:
+ * <pre>{@code
+ * ping
+ * map      movie.csv  film.csv  actor.csv  cast.csv
+ * batch    input      output_dir  [concurrency]
+ * shutdown
+ * }</pre>
+ * where {@code batch} takes the same arguments as {@code Ex2Batch}.
+ * Every job runs on executors the daemon shares between jobs.
+ * <p>
+ * What stays warm is what lives as long as the JVM: the accessors of
+ * 'text' records that TextBindings caches, and the ids of films and
+ * actors that the cache of {@code Sha1.cached_hex_string()} memoizes,
+ * which is the dictionary an actor seen by an earlier job is looked up
+ * in. The set that dedups the actors of a job is not kept between jobs,
+ * since it decides which actors the outputs of that job hold.
+ */
+public interface Ex2Daemon
+{
+    /**
+     * Serves jobs until a {@code shutdown} command arrives.
+     * @param args  [0]: path to the socket file
+     *              [1]: (optional) the maximum number of files in flight
+     */
+    public static void main(String[] args)
+    {
+        final Path socket_path = Path.of(args[0]);
+        final int concurrency = args.length > 1
+        ? parse_count(args[1])
+        : Ex2Batch.DEFAULT_CONCURRENCY;
+        if (concurrency < 1) {
+            System.err.printf(
+                "The number of files in flight must be 1 or more, not %s.\n",
+                args[1]
+            );
+            System.exit(-1);
+            return;
+        }
+
+        try (
+            final var server = Server.open(socket_path, concurrency)
+        ) {
+            server.serve();
+        } catch (IOException ex) {
+            System.err.printf("%s: %s\n", socket_path, ex);
+            System.exit(-1);
+        }
+    }
+
+    // a count given on the command line, or -1 if it is not a number
+    private static int parse_count(final String count)
+    {
+        try {
+            return Integer.parseInt(count);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * The commands a client sends.
+     */
+    static final String
+    COMMAND_PING     = "ping",
+    COMMAND_MAP      = "map",
+    COMMAND_BATCH    = "batch",
+    COMMAND_SHUTDOWN = "shutdown";
+
+    /**
+     * The first field of a response.
+     */
+    static final String
+    RESPONSE_OK    = "ok",
+    RESPONSE_ERROR = "error";
+
+    /**
+     * The separator of fields in commands and responses.
+     */
+    static final String SEPARATOR = "\t";
+
+    /**
+     * Server accepts connections and runs the commands they send.
+     */
+    final class Server implements AutoCloseable
+    {
+        /**
+         * Binds a server to a socket file, replacing a stale one.
+         * The socket file is then made readable and writable by its
+         * owner only, where the file system has POSIX permissions, so
+         * that other users cannot submit jobs that run as the owner.
+         * @param socket_path path to the socket file
+         * @param concurrency the maximum number of files in flight
+         * @return            a server ready to serve
+         * @throws IOException if the socket cannot be bound
+         * @throws IllegalArgumentException
+         *      if {@code concurrency} is less than 1
+         */
+        public static Server open(final Path socket_path, int concurrency)
+            throws IOException, IllegalArgumentException
+        {
+            if (concurrency < 1) throw new IllegalArgumentException();
+
+            Files.deleteIfExists(socket_path);
+
+            final var channel
+            = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                channel.bind(UnixDomainSocketAddress.of(socket_path));
+                Files.setPosixFilePermissions(socket_path, OWNER_ONLY);
+            } catch (UnsupportedOperationException ex) {
+                // no POSIX permissions to restrict on this file system
+            } catch (IOException ex) {
+                channel.close();
+                Files.deleteIfExists(socket_path);
+                throw ex;
+            }
+
+            return new Server(socket_path, channel, concurrency);
+        }
+
+        /**
+         * Accepts connections until this server is shut down.
+         * @throws IOException if accepting a connection failed
+         */
+        public void serve() throws IOException
+        {
+            while (channel.isOpen()) {
+                final SocketChannel connection;
+                try {
+                    connection = channel.accept();
+                } catch (ClosedChannelException ex) {
+                    // shut down before or while accepting
+                    break;
+                }
+                connections.submit(() -> handle(connection));
+            }
+        }
+
+        /**
+         * Runs one command and returns the response line.
+         * @param command a line of tab-separated fields
+         * @return        a response line
+         */
+        public String run(final String command)
+        {
+            final var fields = command == null
+            ? new String[] {}
+            : command.strip().split(SEPARATOR);
+            final var name = fields.length == 0 ? "" : fields[0];
+
+            try {
+                switch (name) {
+                case COMMAND_PING:
+                    return RESPONSE_OK;
+
+                case COMMAND_MAP: {
+                    if (fields.length != 5) return error("map takes 4 paths");
+                    final var report = Ex2Batch.Driving.job(
+                        CloseableSupplier.of(
+                            fields[1],
+                            () -> Files.newBufferedReader(Path.of(fields[1]), StandardCharsets.UTF_8)
+                        ),
+                        writer(fields[2]),
+                        writer(fields[3]),
+                        writer(fields[4]),
+                        cpu
+                    );
+                    return ok(report);
+                }
+
+                case COMMAND_BATCH: {
+                    if (fields.length < 3) return error("batch takes 2 or 3 arguments");
+                    final var output_dir = Path.of(fields[2]);
+                    final int files_in_flight = fields.length > 3
+                    ? parse_count(fields[3])
+                    : concurrency;
+                    if (files_in_flight < 1) {
+                        return error("batch takes 1 or more files in flight, not " + fields[3]);
+                    }
+
+                    final var movies = Ex2Batch.Driving.inputs(fields[1]);
+                    Files.createDirectories(output_dir);
+                    final var reports = Ex2Batch.Driving.job(
+                        movies, output_dir, files_in_flight, io, cpu
+                    );
+                    Ex2Batch.Driving.write_report(output_dir, reports);
+
+                    final long failed = reports.stream()
+                    .filter(report -> report.error() != null)
+                    .count();
+                    return ok("files=" + reports.size() + SEPARATOR + "failed=" + failed);
+                }
+
+                case COMMAND_SHUTDOWN:
+                    channel.close();
+                    return RESPONSE_OK;
+
+                default:
+                    return error("unknown command: " + name);
+                }
+            } catch (Exception ex) {
+                return error(ex.toString());
+            }
+        }
+
+        /**
+         * Stops accepting connections, waits for running jobs, and
+         * removes the socket file.
+         * @throws IOException if the socket file cannot be removed
+         */
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+
+            try {
+                // connections first, since their jobs submit to io and cpu
+                connections.shutdown();
+                connections.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                io.shutdown();
+                cpu.shutdown();
+                io.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                cpu.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                Files.deleteIfExists(socket_path);
+            }
+        }
+
+        private void handle(final SocketChannel connection)
+        {
+            try (
+                connection;
+                final var reader = new BufferedReader(
+                    Channels.newReader(connection, StandardCharsets.UTF_8)
+                );
+                final Writer writer
+                = Channels.newWriter(connection, StandardCharsets.UTF_8)
+            ) {
+                final var response = run(reader.readLine());
+                writer.write(response);
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException ex) {
+                // the client went away; nothing to respond to
+            }
+        }
+
+        private static CloseableSupplier<Writer> writer(final String path)
+        {
+            return CloseableSupplier.of(
+                path, () -> Files.newBufferedWriter(Path.of(path), StandardCharsets.UTF_8)
+            );
+        }
+
+        private static String ok(final Object result)
+        {
+            return RESPONSE_OK + SEPARATOR + result;
+        }
+
+        private static String error(final String message)
+        {
+            return RESPONSE_ERROR + SEPARATOR + message;
+        }
+
+        private Server(
+            final Path socket_path,
+            final ServerSocketChannel channel,
+            int concurrency
+        ) {
+            this.socket_path = socket_path;
+            this.channel = channel;
+            this.concurrency = concurrency;
+        }
+
+        private static final Set<PosixFilePermission> OWNER_ONLY
+        = PosixFilePermissions.fromString("rw-------");
+
+        private final Path socket_path;
+        private final ServerSocketChannel channel;
+        private final int concurrency;
+        private final ExecutorService connections = Executors.newCachedThreadPool();
+        private final ExecutorService io = Ex2Batch.Driving.io_executor();
+        private final ExecutorService cpu = Ex2Batch.Driving.cpu_executor();
+    }
+
+    /**
+     * Client submits commands to a running daemon.
+     */
+    interface Client
+    {
+        /**
+         * Submits a command and prints the response.
+         * @param args  [0]: path to the socket file
+         *              [1..]: the fields of a command
+         */
+        public static void main(String[] args)
+        {
+            final var command = String.join(
+                SEPARATOR,
+                Arrays.copyOfRange(args, 1, args.length)
+            );
+
+            try {
+                final var response = submit(Path.of(args[0]), command);
+                if (response == null) {
+                    System.err.printf("%s: closed without a response\n", args[0]);
+                    System.exit(-1);
+                    return;
+                }
+                System.out.println(response);
+                if (!response.startsWith(RESPONSE_OK)) System.exit(1);
+            } catch (IOException ex) {
+                System.err.printf("%s: %s\n", args[0], ex);
+                System.exit(-1);
+            }
+        }
+
+        /**
+         * Submits a command and waits for the response.
+         * @param socket_path path to the socket file
+         * @param command     a line of tab-separated fields
+         * @return            the response line, or null if the daemon
+         *                    closed the connection without responding
+         * @throws IOException if the daemon cannot be reached
+         */
+        static String submit(final Path socket_path, final String command)
+            throws IOException
+        {
+            try (
+                final var connection = SocketChannel.open(
+                    UnixDomainSocketAddress.of(socket_path)
+                );
+                final var reader = new BufferedReader(
+                    Channels.newReader(connection, StandardCharsets.UTF_8)
+                );
+                final Writer writer
+                = Channels.newWriter(connection, StandardCharsets.UTF_8)
+            ) {
+                writer.write(command);
+                writer.write('\n');
+                writer.flush();
+                return reader.readLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,663 @@
+package etl.mapper;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import etl.model.Ex2Movie;
+import etl.util.Diagnostics;
+import etl.util.IntRange;
+import etl.util.ModelWriter;
+import etl.util.Zipf;
+
+/**
+ * {@code mapper.Ex2Generator} generates synthetic
+ * <ul>
+ * <li>Ex2Movie, that is movie.csv, or
+ * <li>Ex3Film, Ex3Actor, and Ex3Cast
+ * </ul>
+ * for load tests and benchmarks at production scale.
+ * <p>
+ * Output is deterministic: the rows of a film or an actor are drawn
+ * from a random generator seeded by the seed of the Spec and by the
+ * index of the film or the rank of the actor, so that the same Spec
+ * yields the same files whatever the concurrency. Films are generated
+ * in chunks on an executor, and the chunks are written in order.
+ * <p>
+ * Actors are drawn from a Zipf distribution over their ranks, so that
+ * a few actors appear in many films. Names are unique per film and per
+ * actor: a name starts with the letters of the index it is made for,
+ * and is then padded with words of random letters to a length drawn
+ * from {@code Spec.name_length()}.
+ */
+public interface Ex2Generator
+{
+    /**
+     * Drives generating synthetic movie files.
+     * @param args  [0]: the number of films, [1]: the seed
+     *              [2]: path to movie.csv
+     *              <p>
+     *              or, to generate the Ex3 files,
+     *              [2]: path to film.csv, [3]: path to actor.csv
+     *              [4]: path to cast.csv
+     *              <p>
+     *              The rest of the Spec is taken from the system
+     *              properties that {@code Spec.configured()} reads.
+     */
+    public static void main(String[] args)
+    {
+        final var spec = Spec.configured(Long.parseLong(args[0]), Long.parseLong(args[1]));
+        final int concurrency = Runtime.getRuntime().availableProcessors() * 2;
+
+        // logic
+        final var cpu = Ex2Batch.Driving.cpu_executor();
+        try {
+            final long rows = args.length > 4
+            ? Driving.job_ex3(
+                spec, Path.of(args[2]), Path.of(args[3]), Path.of(args[4]), concurrency, cpu
+            )
+            : Driving.job(spec, Path.of(args[2]), concurrency, cpu);
+
+            if (rows < 0) System.exit(-1);
+        } finally {
+            cpu.shutdown();
+        }
+    }
+
+    /**
+     * Spec specifies what to generate.
+     * @param films       the number of films
+     * @param actors      the number of distinct actors
+     * @param cast_size   the number of casts per film, which is drawn
+     *                    uniformly from the range
+     * @param skew        the exponent of the Zipf distribution of actors
+     * @param name_length the length of names, which is drawn uniformly
+     *                    from the range
+     * @param quoted_rate the rate of names that contain a comma, and thus
+     *                    are quoted in CSV
+     * @param dirty_rate  the rate of dirty rows per valid row
+     * @param seed        the seed of the run
+     */
+    record Spec
+    (
+        long films,
+        long actors,
+        IntRange cast_size,
+        double skew,
+        IntRange name_length,
+        double quoted_rate,
+        double dirty_rate,
+        long seed
+    ) {
+        /**
+         * The lengths of names that every model accepts.
+         */
+        public static final IntRange VALID_NAME_LENGTH
+        = IntRange.lower(1).upper(32);
+
+        /**
+         * The prefix of the system properties that {@code configured()}
+         * reads.
+         */
+        public static final String PROPERTY_PREFIX = "etl.generator.";
+
+        /**
+         * Validates a Spec.
+         * @throws IllegalArgumentException if the counts are out of the
+         *         range of 8-digit ids, the names are out of
+         *         {@code VALID_NAME_LENGTH}, or a rate is not in [0, 1]
+         */
+        public Spec
+        {
+            if (films < 0L || films > MAX_IDS || actors < 1L || actors > MAX_IDS) {
+                throw new IllegalArgumentException("films or actors out of range");
+            }
+            if (cast_size.lower() < 0 || !(skew > 0.0)) {
+                throw new IllegalArgumentException("cast_size or skew out of range");
+            }
+            if (!VALID_NAME_LENGTH.covers(name_length.lower())
+            ||  !VALID_NAME_LENGTH.covers(name_length.upper())) {
+                throw new IllegalArgumentException("name_length out of range");
+            }
+            if (!(0.0 <= quoted_rate && quoted_rate <= 1.0)
+            ||  !(0.0 <= dirty_rate && dirty_rate <= 1.0)) {
+                throw new IllegalArgumentException("rates out of range");
+            }
+        }
+
+        /**
+         * Instantiates a Spec with the default distributions: an actor
+         * per two films, 1 to 12 casts per film, a skew of 1.1, names of
+         * 4 to 24 characters, 5% of them quoted, and 0.1% dirty rows.
+         * @param films the number of films
+         * @param seed  the seed of the run
+         * @return      a Spec
+         */
+        public static Spec of(long films, long seed)
+        {
+            return new Spec(
+                films,
+                Math.max(films / 2L, 1L),
+                IntRange.lower(1).upper(12),
+                1.1,
+                IntRange.lower(4).upper(24),
+                0.05,
+                0.001,
+                seed
+            );
+        }
+
+        /**
+         * Instantiates a Spec of which the defaults of {@code of()} are
+         * overridden by the system properties {@code etl.generator.actors},
+         * {@code .cast_size}, {@code .skew}, {@code .name_length},
+         * {@code .quoted_rate}, and {@code .dirty_rate}, where a range is
+         * written as {@code lower-upper}, such as {@code 1-12}.
+         * @param films the number of films
+         * @param seed  the seed of the run
+         * @return      a Spec
+         */
+        public static Spec configured(long films, long seed)
+        {
+            final var defaults = of(films, seed);
+            return new Spec(
+                films,
+                Long.getLong(PROPERTY_PREFIX + "actors", defaults.actors()),
+                range("cast_size", defaults.cast_size()),
+                rate("skew", defaults.skew()),
+                range("name_length", defaults.name_length()),
+                rate("quoted_rate", defaults.quoted_rate()),
+                rate("dirty_rate", defaults.dirty_rate()),
+                seed
+            );
+        }
+
+        private static IntRange range(final String name, final IntRange otherwise)
+        {
+            final var value = System.getProperty(PROPERTY_PREFIX + name);
+            if (value == null) return otherwise;
+
+            final var bounds = value.split("-", 2);
+            final int lower = Integer.parseInt(bounds[0].trim());
+            return bounds.length > 1
+            ? IntRange.lower(lower).upper(Integer.parseInt(bounds[1].trim()))
+            : IntRange.lower(lower).with_same_upper();
+        }
+
+        private static double rate(final String name, double otherwise)
+        {
+            final var value = System.getProperty(PROPERTY_PREFIX + name);
+            return value == null ? otherwise : Double.parseDouble(value);
+        }
+
+        private static final long MAX_IDS = 1L << Integer.SIZE;
+    }
+
+    interface Driving
+    {
+        /**
+         * Generates movie.csv.
+         * @param spec        what to generate
+         * @param movie_path  path to movie.csv
+         * @param concurrency the maximum number of chunks in flight
+         * @param cpu         an executor that generates chunks
+         * @return            the number of rows written, or -1 if
+         *                    writing failed
+         */
+        static long job(
+            final Spec spec,
+            final Path movie_path,
+            int concurrency,
+            final ExecutorService cpu
+        ) {
+            final var zipf = Zipf.of(spec.actors(), spec.skew());
+
+            return write(
+                new Path[] {movie_path},
+                spec.films(),
+                FILMS_PER_CHUNK,
+                (from, to) -> Generating.movies(spec, zipf, from, to),
+                concurrency,
+                cpu
+            );
+        }
+
+        /**
+         * Generates film.csv, actor.csv, and cast.csv.
+         * @param spec        what to generate
+         * @param film_path   path to film.csv
+         * @param actor_path  path to actor.csv
+         * @param cast_path   path to cast.csv
+         * @param concurrency the maximum number of chunks in flight
+         * @param cpu         an executor that generates chunks
+         * @return            the number of rows written, or -1 if
+         *                    writing failed
+         */
+        static long job_ex3(
+            final Spec spec,
+            final Path film_path,
+            final Path actor_path,
+            final Path cast_path,
+            int concurrency,
+            final ExecutorService cpu
+        ) {
+            final var zipf = Zipf.of(spec.actors(), spec.skew());
+
+            final long actors = write(
+                new Path[] {actor_path},
+                spec.actors(),
+                ACTORS_PER_CHUNK,
+                (from, to) -> Generating.actors(spec, from, to),
+                concurrency,
+                cpu
+            );
+            if (actors < 0L) return -1L;
+
+            final long films = write(
+                new Path[] {film_path, cast_path},
+                spec.films(),
+                FILMS_PER_CHUNK,
+                (from, to) -> Generating.films(spec, zipf, from, to),
+                concurrency,
+                cpu
+            );
+            return films < 0L ? -1L : actors + films;
+        }
+
+        /**
+         * Generates chunks of items on an executor, and writes them to
+         * the outputs in the order of the items.
+         * @param outputs     paths to the files that each chunk has a
+         *                    text for
+         * @param items       the number of items
+         * @param per_chunk   the number of items per chunk
+         * @param chunking    generates the chunk of a range of items
+         * @param concurrency the maximum number of chunks in flight
+         * @param cpu         an executor that generates chunks
+         * @return            the number of rows written, or -1 if
+         *                    writing failed
+         */
+        static long write(
+            final Path[] outputs,
+            long items,
+            int per_chunk,
+            final Generating.Chunking chunking,
+            int concurrency,
+            final ExecutorService cpu
+        ) {
+            final var pending = new ArrayDeque<Future<Generating.Chunk>>();
+            final var writers = new Writer[outputs.length];
+            long rows = 0L;
+
+            try {
+                for (int output = 0; output < outputs.length; output++) {
+                    writers[output] = Files.newBufferedWriter(outputs[output], StandardCharsets.UTF_8);
+                }
+
+                for (long from = 0L; from < items; from += per_chunk) {
+                    final long chunk_from = from;
+                    final long chunk_to = Math.min(items, from + per_chunk);
+                    pending.addLast(cpu.submit(() -> chunking.chunk(chunk_from, chunk_to)));
+
+                    while (pending.size() >= Math.max(concurrency, 1)) {
+                        rows += pending.removeFirst().get().write(writers);
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    rows += pending.removeFirst().get().write(writers);
+                }
+            } catch (Exception ex) {
+                pending.forEach(future -> future.cancel(true));
+                Diagnostics.shared().reject(
+                    outputs[0].toString(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                );
+                rows = -1L;
+            } finally {
+                for (int output = 0; output < writers.length; output++) {
+                    if (writers[output] == null) continue;
+                    try {
+                        writers[output].close();
+                    } catch (IOException ex) {
+                        Diagnostics.shared().reject(
+                            outputs[output].toString(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                        );
+                        rows = -1L;
+                    }
+                }
+            }
+
+            return rows;
+        }
+
+        /**
+         * The number of films per chunk.
+         */
+        static final int FILMS_PER_CHUNK = 1 << 12;
+
+        /**
+         * The number of actors per chunk.
+         */
+        static final int ACTORS_PER_CHUNK = 1 << 14;
+    }
+
+    /**
+     * Generating provides methods that generate rows.
+     */
+    interface Generating
+    {
+        /**
+         * Chunk is the CSV text of a range of items per output.
+         * @param texts the text per output
+         * @param rows  the number of rows in the texts
+         */
+        record Chunk(String[] texts, long rows)
+        {
+            /**
+             * Writes the texts to the writers of the outputs.
+             * @param writers      the writer per output
+             * @return             the number of rows written
+             * @throws IOException if a writer throws
+             */
+            long write(final Writer[] writers) throws IOException
+            {
+                for (int output = 0; output < texts.length; output++) {
+                    writers[output].write(texts[output]);
+                }
+                return rows;
+            }
+        }
+
+        /**
+         * Chunking generates the chunk of a range of items.
+         */
+        @FunctionalInterface
+        interface Chunking
+        {
+            Chunk chunk(long from, long to) throws Exception;
+        }
+
+        /**
+         * Actor is what is generated for the rank of an actor.
+         * @param name the name, which is unique per rank
+         * @param born the date of birth
+         * @param died the year of death, or null
+         */
+        record Actor(String name, LocalDate born, Year died) {}
+
+        /**
+         * The years in which films are released.
+         */
+        static final IntRange RELEASE_YEARS = IntRange.lower(2000).upper(2024);
+
+        /**
+         * The years in which actors are born, all before the first
+         * release, so that every age is positive.
+         */
+        static final IntRange BORN_YEARS = IntRange.lower(1920).upper(1999);
+
+        /**
+         * The id of a cast that refers to no actor, which is not hex.
+         */
+        static final String ORPHAN_ID = "zzzzzzzz";
+
+        /**
+         * Generates the Ex2Movie rows of a range of films: a FILM row
+         * followed by its CAST rows, and then by the dirty rows drawn
+         * for them, if any.
+         * @param spec what to generate
+         * @param zipf the distribution of actors
+         * @param from the index of the first film inclusive
+         * @param to   the index of the last film exclusive
+         * @return     the chunk of movie.csv
+         * @throws Exception if a ModelWriter cannot be instantiated
+         */
+        static Chunk movies(final Spec spec, final Zipf zipf, long from, long to) throws Exception
+        {
+            final var text = new StringWriter((int) (to - from) << 8);
+            long rows = 0L;
+
+            try (
+                final var printer = new ModelWriter(() -> text)
+            ) {
+                for (long film = from; film < to; film++) {
+                    final var random = random(spec.seed(), FILM_STREAM, film);
+                    final var name = name(random, film, spec.name_length(), spec.quoted_rate());
+                    final int release = between(random, RELEASE_YEARS);
+
+                    int dirty = dirty(random, spec);
+                    printer.print(new Object[] {Ex2Movie.RecordKind.CODE_FILM, name, release});
+
+                    final int casts = between(random, spec.cast_size());
+                    for (int cast = 0; cast < casts; cast++) {
+                        final var actor = actor(spec, zipf.sample(random));
+                        printer.print(new Object[] {
+                            Ex2Movie.RecordKind.CODE_CAST,
+                            actor.name(),
+                            role(random, spec),
+                            release - actor.born().getYear()
+                        });
+                        dirty += dirty(random, spec);
+                    }
+
+                    rows += 1 + casts + dirty;
+                    for (; dirty > 0; dirty--) {
+                        printer.print(dirty_movie(random, name, release));
+                    }
+                }
+            }
+
+            return new Chunk(new String[] {text.toString()}, rows);
+        }
+
+        /**
+         * Generates the Ex3Film and Ex3Cast rows of a range of films.
+         * @param spec what to generate
+         * @param zipf the distribution of actors
+         * @param from the index of the first film inclusive
+         * @param to   the index of the last film exclusive
+         * @return     the chunks of film.csv and cast.csv
+         * @throws Exception if a ModelWriter cannot be instantiated
+         */
+        static Chunk films(final Spec spec, final Zipf zipf, long from, long to) throws Exception
+        {
+            final var film_text = new StringWriter((int) (to - from) << 6);
+            final var cast_text = new StringWriter((int) (to - from) << 8);
+            long rows = 0L;
+
+            try (
+                final var film_printer = new ModelWriter(() -> film_text);
+                final var cast_printer = new ModelWriter(() -> cast_text)
+            ) {
+                for (long film = from; film < to; film++) {
+                    final var random = random(spec.seed(), FILM_STREAM, film);
+                    final var id = id(spec.seed(), FILM_STREAM, film);
+                    final var name = name(random, film, spec.name_length(), spec.quoted_rate());
+                    final int release = between(random, RELEASE_YEARS);
+
+                    film_printer.print(new Object[] {id, name, release});
+                    rows++;
+                    if (dirty(random, spec) > 0) {
+                        film_printer.print(new Object[] {"", name, DIRTY_YEAR});
+                        rows++;
+                    }
+
+                    final int casts = between(random, spec.cast_size());
+                    for (int cast = 0; cast < casts; cast++) {
+                        final long rank = zipf.sample(random);
+                        final var role = role(random, spec);
+                        cast_printer.print(new Object[] {id, id(spec.seed(), ACTOR_STREAM, rank), role});
+                        rows++;
+                        if (dirty(random, spec) > 0) {
+                            cast_printer.print(new Object[] {id, ORPHAN_ID, role});
+                            rows++;
+                        }
+                    }
+                }
+            }
+
+            return new Chunk(new String[] {film_text.toString(), cast_text.toString()}, rows);
+        }
+
+        /**
+         * Generates the Ex3Actor rows of a range of ranks.
+         * @param spec what to generate
+         * @param from the first rank inclusive
+         * @param to   the last rank exclusive
+         * @return     the chunk of actor.csv
+         * @throws Exception if a ModelWriter cannot be instantiated
+         */
+        static Chunk actors(final Spec spec, long from, long to) throws Exception
+        {
+            final var text = new StringWriter((int) (to - from) << 6);
+            long rows = 0L;
+
+            try (
+                final var printer = new ModelWriter(() -> text)
+            ) {
+                for (long rank = from; rank < to; rank++) {
+                    final var actor = actor(spec, rank);
+                    final var id = id(spec.seed(), ACTOR_STREAM, rank);
+                    final var died = actor.died() == null ? "" : actor.died().toString();
+
+                    printer.print(new Object[] {id, actor.name(), actor.born(), died});
+                    rows++;
+                    if (dirty(random(spec.seed(), DIRTY_STREAM, rank), spec) > 0) {
+                        printer.print(new Object[] {id, actor.name(), DIRTY_DATE, died});
+                        rows++;
+                    }
+                }
+            }
+
+            return new Chunk(new String[] {text.toString()}, rows);
+        }
+
+        /**
+         * Generates the actor of a rank, which is the same wherever the
+         * rank is drawn.
+         * @param spec what to generate
+         * @param rank the rank of the actor
+         * @return     the actor
+         */
+        static Actor actor(final Spec spec, long rank)
+        {
+            final var random = random(spec.seed(), ACTOR_STREAM, rank);
+            final var name = name(random, rank, spec.name_length(), spec.quoted_rate());
+            final var born = LocalDate.of(
+                between(random, BORN_YEARS), 1 + random.nextInt(12), 1 + random.nextInt(28)
+            );
+            final var died = random.nextInt(4) == 0
+            ? Year.of(Math.min(born.getYear() + 40 + random.nextInt(60), RELEASE_YEARS.upper()))
+            : null;
+            return new Actor(name, born, died);
+        }
+
+        /**
+         * Generates a name that is unique per index: the letters of the
+         * index in base 26, capitalized, followed by a separator and words
+         * of random lowercase letters up to the length drawn. The
+         * separator is {@code ", "} at the quoted rate, and a name is
+         * never shorter than the letters of its index.
+         * @param random      the random generator of the row
+         * @param index       the index the name is unique for
+         * @param length      the range of the length
+         * @param quoted_rate the rate of names that contain a comma
+         * @return            the name
+         */
+        static String name(final SplittableRandom random, long index, final IntRange length, double quoted_rate)
+        {
+            final int target = between(random, length);
+            final var name = new StringBuilder(Math.max(target, Long.BYTES));
+
+            name.append((char) ('A' + (int) (index % 26L)));
+            for (long rest = index / 26L; rest > 0L; rest /= 26L) {
+                name.append((char) ('a' + (int) (rest % 26L)));
+            }
+
+            // a separator ends the letters of the index, so that a name
+            // can't be the prefix of another followed by padding
+            final int remaining = target - name.length();
+            if (remaining >= 2) {
+                if (remaining >= 3 && random.nextDouble() < quoted_rate) name.append(',');
+                name.append(' ');
+
+                int word = 0;
+                while (name.length() < target) {
+                    if (word >= 3 && name.length() < target - 1 && random.nextInt(6) == 0) {
+                        name.append(' ');
+                        word = 0;
+                    } else {
+                        name.append((char) ('a' + random.nextInt(26)));
+                        word++;
+                    }
+                }
+            }
+            return name.toString();
+        }
+
+        private static String role(final SplittableRandom random, final Spec spec)
+        {
+            return name(random, random.nextInt(26), spec.name_length(), spec.quoted_rate());
+        }
+
+        private static Object[] dirty_movie(final SplittableRandom random, final String name, int release)
+        {
+            final Object[] values =
+            switch (random.nextInt(5)) {
+                case 0 -> new Object[] {"3", name, release};
+                case 1 -> new Object[] {Ex2Movie.RecordKind.CODE_FILM, "X".repeat(33), release};
+                case 2 -> new Object[] {Ex2Movie.RecordKind.CODE_FILM, name, DIRTY_YEAR};
+                case 3 -> new Object[] {Ex2Movie.RecordKind.CODE_CAST, name, name, "-"};
+                default -> new Object[] {Ex2Movie.RecordKind.CODE_CAST, name};
+            };
+            return values;
+        }
+
+        private static int dirty(final SplittableRandom random, final Spec spec)
+        {
+            return spec.dirty_rate() > 0.0 && random.nextDouble() < spec.dirty_rate() ? 1 : 0;
+        }
+
+        private static int between(final SplittableRandom random, final IntRange range)
+        {
+            return range.lower() + random.nextInt(range.upper() - range.lower() + 1);
+        }
+
+        // a generator per row, so that rows don't depend on chunking
+        private static SplittableRandom random(long seed, long stream, long index)
+        {
+            long z = seed + stream * 0x9e3779b97f4a7c15L + index * 0xd1b54a32d192ed03L;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return new SplittableRandom(z ^ (z >>> 31));
+        }
+
+        // 8 hex digits, unique per index below 2^32: an odd multiplier
+        // and an xor are both bijections of 32 bits
+        private static String id(long seed, long stream, long index)
+        {
+            int bits = (int) index * 0x9e3779b1 ^ (int) random(seed, stream, -1L).nextLong();
+
+            final var chars = new char[Integer.SIZE / 4];
+            for (int digit = chars.length - 1; digit >= 0; digit--) {
+                chars[digit] = Character.forDigit(bits & 0xf, 16);
+                bits >>>= 4;
+            }
+            return new String(chars);
+        }
+
+        static final long FILM_STREAM = 1L;
+        static final long ACTOR_STREAM = 2L;
+        static final long DIRTY_STREAM = 3L;
+        static final String DIRTY_YEAR = "19x7";
+        static final String DIRTY_DATE = "1970-13-40";
+    }
+}
@@ -1,27 +1,52 @@
 package etl.mapper;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Year;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import etl.model.Ex2Actor;
 import etl.model.Ex2Cast;
 import etl.model.Ex2Film;
 import etl.model.Ex2Movie;
 import etl.util.CloseableSupplier;
+import etl.util.CsvScanner;
+import etl.util.Diagnostics;
+import etl.util.IdHash;
+import etl.util.JsonLinesWriter;
+import etl.util.JsonScanner;
+import etl.util.LongHashSet;
+import etl.util.ModelPrinter;
 import etl.util.ModelWriter;
+import etl.util.OffsetIndex;
+import etl.util.SortedArraySet;
 import etl.util.TextHelper;
+import etl.util.YearBuckets;
 
 /**
  * {@code mapper.Ex2Mapper} reands
@@ -38,6 +63,62 @@ public interface Ex2Mapper
      * Drives producing Ex2Cast from Ex2Movie, Ex2Film, and Ex2Actor.
      * @param args  [0]: path to movie.csv, [1]: path to film.csv
      *              [2]: path to actor.csv, [3]: path to cast.csv
+     *              [4]: (optional) {@code --in-memory} to hold mapped
+     *              models on the Java heap,
+     *              {@code --off-heap} to hold mapped
+     *              models outside of the Java heap,
+     *              {@code --columnar} to hold them in primitive columns,
+     *              {@code --index} to write an OffsetIndex next to each
+     *              output, or
+     *              {@code --dedup} to dedup actors before sorting them
+     *              [5]: (optional) with {@code --dedup}, the false
+     *              positive rate of the filter in front of the dedup,
+     *              {@code Ex2ActorDedup.DEFAULT_FPP} by default
+     *              <p>
+     *              or, to compute statistics in the same run,
+     *              [4]: {@code --aggregates}
+     *              [5]: (optional) a directory to which the statistics
+     *              are written, the directory of cast.csv by default
+     *              <p>
+     *              or, to checkpoint a long job,
+     *              [4]: {@code --checkpoint} to start over, or
+     *              {@code --resume} to continue from the last checkpoint
+     *              [5]: (optional) path to the checkpoint file,
+     *              cast.csv followed by {@code .checkpoint} by default
+     *              [6]: (optional) the number of input bytes between
+     *              checkpoints
+     *              <p>
+     *              or, to split each output into shard files,
+     *              [4]: {@code --shards}
+     *              [5]: (optional) the number of shards of each output,
+     *              1 or more
+     *              <p>
+     *              or, to let Ex2Planner select the job,
+     *              [4]: {@code --plan} to sample movie.csv and select the
+     *              in-memory, off-heap, or checkpointed streaming job by
+     *              the heap it estimates for each; the plan is logged,
+     *              and a run of which no job fits in the heap exits with
+     *              -1
+     *              <p>
+     *              Without an option, the in-memory job runs.
+     *              <p>
+     *              A movie file named {@code .json}, {@code .jsonl}, or
+     *              {@code .ndjson} is read as JSON objects, one per row,
+     *              with every option but {@code --checkpoint} and
+     *              {@code --resume}, whose offsets are those of CSV rows,
+     *              and with {@code --plan} only while the in-memory or
+     *              off-heap job fits.
+     *              <p>
+     *              An output named {@code .jsonl} or {@code .ndjson} is
+     *              written as JSON Lines by the in-memory job, with no
+     *              option, {@code --in-memory}, {@code --aggregates}, or
+     *              {@code --plan} when it selects the in-memory job;
+     *              other jobs write CSV only, and are refused.
+     *              <p>
+     *              Ids are computed by the IdHash that the system property
+     *              {@code etl.id_hash} selects, and with
+     *              {@code etl.id_hash.check=true} a run that finds an id
+     *              collision reports it to Diagnostics and exits with -1.
      */
     public static void main(String[] args)
     {
@@ -45,10 +126,10 @@ public interface Ex2Mapper
         final Path film_path  = Path.of(args[1]);
         final Path actor_path = Path.of(args[2]);
         final Path cast_path  = Path.of(args[3]);
+        final String option = args.length > 4 ? args[4] : "";
 
         // preconditions:
         if (!Files.exists(movie_path)) {
-            // to migrate to the logging subsystem once it is designed
             System.err.printf(
                 "%s does not exist.\n",
                 movie_path.toAbsolutePath().toString()
@@ -56,63 +137,820 @@ public interface Ex2Mapper
             System.exit(-1);
         }
 
+        final boolean json = JsonScanner.is_json(movie_path);
+        if (json && (option.equals(OPTION_CHECKPOINT) || option.equals(OPTION_RESUME))) {
+            System.err.printf(
+                "%s cannot be checkpointed, as it is not CSV.\n",
+                movie_path.toAbsolutePath().toString()
+            );
+            System.exit(-1);
+        }
+
+        final boolean json_lines
+        =  JsonLinesWriter.is_json_lines(film_path)
+        || JsonLinesWriter.is_json_lines(actor_path)
+        || JsonLinesWriter.is_json_lines(cast_path);
+        if (
+            json_lines && !option.isEmpty()
+            && !option.equals(OPTION_IN_MEMORY) && !option.equals(OPTION_AGGREGATES)
+            && !option.equals(OPTION_PLAN)
+        ) {
+            System.err.printf(
+                "%s writes CSV only; JSON Lines outputs need %s or %s.\n",
+                option, OPTION_IN_MEMORY, OPTION_AGGREGATES
+            );
+            System.exit(-1);
+        }
+
+        final int shard_count = option.equals(OPTION_SHARDS) && args.length > 5
+        ? parse_count(args[5])
+        : DEFAULT_SHARD_COUNT;
+        if (shard_count < 1) {
+            System.err.printf(
+                "%s needs a number of shards of 1 or more, not %s.\n",
+                OPTION_SHARDS, args[5]
+            );
+            System.exit(-1);
+        }
+
+        final boolean checkpointed
+        = option.equals(OPTION_CHECKPOINT) || option.equals(OPTION_RESUME);
+        final long checkpoint_interval = checkpointed && args.length > 6
+        ? parse_bytes(args[6])
+        : DEFAULT_CHECKPOINT_INTERVAL;
+        if (checkpoint_interval < 1L) {
+            System.err.printf(
+                "%s needs a number of bytes between checkpoints of 1 or more, not %s.\n",
+                option, args[6]
+            );
+            System.exit(-1);
+        }
+
+        final double dedup_fpp = option.equals(OPTION_DEDUP) && args.length > 5
+        ? parse_rate(args[5])
+        : Ex2ActorDedup.DEFAULT_FPP;
+        if (!(0.0 < dedup_fpp && dedup_fpp < 1.0)) {
+            System.err.printf(
+                "%s needs a false positive rate within (0, 1), not %s.\n",
+                OPTION_DEDUP, args[5]
+            );
+            System.exit(-1);
+        }
+
         // logic
-        final CloseableSupplier<Reader> movie_reader
-        = () -> Files.newBufferedReader(movie_path, StandardCharsets.UTF_8);
+        final CloseableSupplier<Reader> movie_reader = CloseableSupplier.of(
+            movie_path.toString(),
+            json
+            ? () -> JsonScanner.json(Files.newBufferedReader(movie_path, StandardCharsets.UTF_8))
+            : () -> CsvScanner.blocks(Files.newInputStream(movie_path))
+        );
 
-        final CloseableSupplier<Writer> film_writer
-        = () -> Files.newBufferedWriter(film_path, StandardCharsets.UTF_8);
+        final CloseableSupplier<Writer> film_writer = output(film_path);
+        final CloseableSupplier<Writer> actor_writer = output(actor_path);
+        final CloseableSupplier<Writer> cast_writer = output(cast_path);
 
-        final CloseableSupplier<Writer> actor_writer
-        = () -> Files.newBufferedWriter(actor_path, StandardCharsets.UTF_8);
+        switch (option) {
+        case OPTION_AGGREGATES:
+            final var aggregates = new AtomicReference<Ex2Aggregates>();
+            Driving.job(
+                movie_reader, film_writer, actor_writer, cast_writer,
+                (model_map, actors) -> aggregates.set(Ex2Aggregates.of(model_map, actors))
+            );
+            final var aggregate_dir = args.length > 5
+            ? Path.of(args[5])
+            : cast_path.toAbsolutePath().getParent();
+            if (aggregates.get() == null || !aggregates.get().write(aggregate_dir)) {
+                System.exit(-1);
+            }
+            break;
+        case OPTION_CHECKPOINT:
+        case OPTION_RESUME:
+            final var checkpoint = Driving.job_checkpointed(
+                movie_path, film_path, actor_path, cast_path,
+                args.length > 5
+                ? Path.of(args[5])
+                : cast_path.resolveSibling(cast_path.getFileName() + ".checkpoint"),
+                checkpoint_interval,
+                option.equals(OPTION_RESUME)
+            );
+            if (checkpoint == null) System.exit(-1);
+            break;
+        case OPTION_SHARDS:
+            final var shards = Driving.job_sharded(
+                movie_reader, film_path, actor_path, cast_path, shard_count
+            );
+            if (shards == null) System.exit(-1);
+            break;
+        case OPTION_INDEX:
+            if (!Driving.job_indexed(movie_reader, film_path, actor_path, cast_path)) {
+                System.exit(-1);
+            }
+            break;
+        case OPTION_OFF_HEAP:
+            Driving.job_off_heap(
+                movie_reader, film_writer, actor_writer, cast_writer
+            );
+            break;
+        case OPTION_COLUMNAR:
+            Driving.job_columnar(
+                movie_reader, film_writer, actor_writer, cast_writer
+            );
+            break;
+        case OPTION_DEDUP:
+            final var report = Driving.job_deduped(
+                movie_reader, film_writer, actor_writer, cast_writer, dedup_fpp
+            );
+            System.out.println(report);
+            break;
+        case OPTION_PLAN:
+            final var plan = Ex2Planner.plan(movie_path);
+            if (plan == null) System.exit(-1);
+            System.out.println(plan);
 
-        final CloseableSupplier<Writer> cast_writer
-        = () -> Files.newBufferedWriter(cast_path, StandardCharsets.UTF_8);
+            // JSON is not checkpointed, so that STREAMING does not fit it either
+            if (!plan.fits() || json && plan.mode() == Ex2Planner.Mode.STREAMING) {
+                System.err.printf(
+                    "%s fits in the heap in no mode; raise -Xmx or select a job.\n",
+                    movie_path.toAbsolutePath().toString()
+                );
+                System.exit(-1);
+            }
+            if (json_lines && plan.mode() != Ex2Planner.Mode.IN_MEMORY) {
+                System.err.printf(
+                    "%s is planned %s, which writes CSV only; JSON Lines outputs need %s.\n",
+                    movie_path.toAbsolutePath().toString(), plan.mode(), OPTION_IN_MEMORY
+                );
+                System.exit(-1);
+            }
+            switch (plan.mode()) {
+            case OFF_HEAP:
+                Driving.job_off_heap(
+                    movie_reader, film_writer, actor_writer, cast_writer
+                );
+                break;
+            case STREAMING:
+                final var streamed = Driving.job_checkpointed(
+                    movie_path, film_path, actor_path, cast_path,
+                    cast_path.resolveSibling(cast_path.getFileName() + ".checkpoint"),
+                    DEFAULT_CHECKPOINT_INTERVAL,
+                    false
+                );
+                if (streamed == null) System.exit(-1);
+                break;
+            default:
+                Driving.job(movie_reader, film_writer, actor_writer, cast_writer);
+                break;
+            }
+            break;
+        case OPTION_IN_MEMORY:
+        default:
+            Driving.job(movie_reader, film_writer, actor_writer, cast_writer);
+            break;
+        }
 
-        Driving.job(movie_reader, film_writer, actor_writer, cast_writer);
+        final var collisions = IdHash.collisions();
+        if (collisions != null && collisions.collisions() > 0L) {
+            Diagnostics.shared().reject(
+                null, -1L, Diagnostics.RULE_ID_COLLISION,
+                String.format(
+                    "%d of %d ids collided with %s",
+                    collisions.collisions(),
+                    collisions.size(),
+                    IdHash.selected()
+                )
+            );
+            System.exit(-1);
+        }
     }
 
+    // a count given on the command line, or -1 if it is not a number
+    private static int parse_count(final String count)
+    {
+        try {
+            return Integer.parseInt(count);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    // a number of bytes given on the command line, or -1 if it is not
+    // a number
+    private static long parse_bytes(final String bytes)
+    {
+        try {
+            return Long.parseLong(bytes);
+        } catch (NumberFormatException ex) {
+            return -1L;
+        }
+    }
+
+    // a rate given on the command line, or NaN if it is not a number
+    private static double parse_rate(final String rate)
+    {
+        try {
+            return Double.parseDouble(rate);
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    // a Writer of CSV, or one marked as JSON Lines by the extension
+    private static CloseableSupplier<Writer> output(final Path path)
+    {
+        return CloseableSupplier.of(
+            path.toString(),
+            JsonLinesWriter.is_json_lines(path)
+            ? () -> JsonLinesWriter.json_lines(Files.newOutputStream(path))
+            : () -> Files.newBufferedWriter(path, StandardCharsets.UTF_8)
+        );
+    }
+
+    /**
+     * The command line options that select a way to hold mapped models.
+     */
+    static final String
+    OPTION_IN_MEMORY    = "--in-memory",
+    OPTION_OFF_HEAP     = "--off-heap",
+    OPTION_COLUMNAR     = "--columnar",
+    OPTION_DEDUP        = "--dedup",
+    OPTION_AGGREGATES   = "--aggregates",
+    OPTION_CHECKPOINT   = "--checkpoint",
+    OPTION_RESUME       = "--resume",
+    OPTION_SHARDS       = "--shards",
+    OPTION_INDEX        = "--index",
+    OPTION_PLAN         = "--plan";
+
+    /**
+     * The number of shards of each output when not specified.
+     */
+    static final int DEFAULT_SHARD_COUNT = 64;
+
+    /**
+     * The number of input bytes between checkpoints when not specified.
+     */
+    static final long DEFAULT_CHECKPOINT_INTERVAL = 64L << 20;
+
     /**
      * The place where the logic to drive a mapping job is implemeted.
      */
     interface Driving
     {
+        /**
+         * Maps movie.csv to the three outputs, holding Text and Model
+         * records on the heap. Each output is written as CSV, or as
+         * JSON Lines if its Writer is marked by
+         * {@code JsonLinesWriter.json_lines()}.
+         * @param movie_reader a Reader attached to movie.csv
+         * @param film_writer  a Writer attached to film.csv
+         * @param actor_writer a Writer attached to actor.csv
+         * @param cast_writer  a Writer attached to cast.csv
+         */
         static void job(
             CloseableSupplier<Reader> movie_reader,
             CloseableSupplier<Writer> film_writer,
             CloseableSupplier<Writer> actor_writer,
             CloseableSupplier<Writer> cast_writer
+        ) {
+            job(movie_reader, film_writer, actor_writer, cast_writer, null);
+        }
+
+        /**
+         * Does the same job as {@code job()}, and passes the mapped
+         * models to a hook once they are written, before they are
+         * dropped, such as computes Ex2Aggregates of them.
+         * @param movie_reader a Reader attached to movie.csv
+         * @param film_writer  a Writer attached to film.csv
+         * @param actor_writer a Writer attached to actor.csv
+         * @param cast_writer  a Writer attached to cast.csv
+         * @param hook         takes the model map and the actors, unless
+         *                     movie.csv cannot be read, or null
+         */
+        static void job(
+            CloseableSupplier<Reader> movie_reader,
+            CloseableSupplier<Writer> film_writer,
+            CloseableSupplier<Writer> actor_writer,
+            CloseableSupplier<Writer> cast_writer,
+            final BiConsumer<
+                SortedMap<Ex2Film.Model, List<Ex2Cast.Model>>,
+                SortedSet<Ex2Actor.Model>
+            > hook
         ) {
             final var text_map = Ex2Movie.Extracting.text_map(movie_reader);
             final var actors = Mapping.actors(text_map);
 
             try (
-                final var printer = new ModelWriter(actor_writer)
+                final var printer = ModelPrinter.of(actor_writer, Ex2Actor.Text.class)
             ) {
                 actors.stream()
                 .forEach(actor -> printer.accept(actor, Ex2Actor.Loading::values))
                 ;
-            } catch (Exception ex) {}
+            } catch (Exception ex) {
+                Diagnostics.shared().reject(
+                    actor_writer.source(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                );
+            }
 
             final var model_map = Mapping.model_map(text_map, actors);
 
             try (
-                final var printer = new ModelWriter(film_writer)
+                final var printer = ModelPrinter.of(film_writer, Ex2Film.Text.class)
             ) {
                 model_map.entrySet().stream()
                 .map(Map.Entry::getKey)
                 .forEach(film -> printer.accept(film, Ex2Film.Loading::values))
                 ;    
-            } catch (Exception ex) {}
+            } catch (Exception ex) {
+                Diagnostics.shared().reject(
+                    film_writer.source(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                );
+            }
 
             try (
-                final var printer = new ModelWriter(cast_writer)
+                final var printer = ModelPrinter.of(cast_writer, Ex2Cast.Text.class)
             ) {
                 model_map.entrySet().stream()
                 .flatMap(entry -> entry.getValue().stream())
                 .forEach(cast -> printer.accept(cast, Ex2Cast.Loading::values))
                 ;
-            } catch (Exception ex) {}
+            } catch (Exception ex) {
+                Diagnostics.shared().reject(
+                    cast_writer.source(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                );
+            }
+
+            if (hook != null && model_map != null) hook.accept(model_map, actors);
+        }
+
+        /**
+         * Does the same job as {@code job()}, except that mapped models
+         * are held in an Ex2ModelStore outside of the Java heap, which
+         * is filled while the movie file is scanned, and each model is
+         * materialized only when it is written.
+         * @param movie_reader a Reader attached to movie.csv
+         * @param film_writer  a Writer attached to film.csv
+         * @param actor_writer a Writer attached to actor.csv
+         * @param cast_writer  a Writer attached to cast.csv
+         */
+        static void job_off_heap(
+            CloseableSupplier<Reader> movie_reader,
+            CloseableSupplier<Writer> film_writer,
+            CloseableSupplier<Writer> actor_writer,
+            CloseableSupplier<Writer> cast_writer
+        ) {
+            final var store = Ex2ModelStore.of(movie_reader);
+            if (store == null) return;
+
+            try (store) {
+                write(actor_writer, store.actors(), Ex2Actor.Loading::values);
+                write(film_writer, store.films(), Ex2Film.Loading::values);
+                write(cast_writer, store.casts(), Ex2Cast.Loading::values);
+            } catch (Exception ex) {
+                Diagnostics.shared().reject(
+                    movie_reader.source(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                );
+            }
+        }
+
+        /**
+         * Does the same job as {@code job()}, except that mapped models
+         * are held in Ex2Columns, and writers print the columns directly
+         * without materializing model records.
+         * @param movie_reader a Reader attached to movie.csv
+         * @param film_writer  a Writer attached to film.csv
+         * @param actor_writer a Writer attached to actor.csv
+         * @param cast_writer  a Writer attached to cast.csv
+         */
+        static void job_columnar(
+            CloseableSupplier<Reader> movie_reader,
+            CloseableSupplier<Writer> film_writer,
+            CloseableSupplier<Writer> actor_writer,
+            CloseableSupplier<Writer> cast_writer
+        ) {
+            final var text_map = Ex2Movie.Extracting.text_map(movie_reader);
+            final var columns = Ex2Columns.of(text_map);
+            if (columns == null) return;
+
+            try (
+                final var printer = new ModelWriter(actor_writer)
+            ) {
+                for (int actor = 0; actor < columns.actor_count(); actor++) {
+                    printer.print(columns.actor_values(actor));
+                }
+            } catch (Exception ex) {
+                Diagnostics.shared().reject(
+                    actor_writer.source(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                );
+            }
+
+            try (
+                final var printer = new ModelWriter(film_writer)
+            ) {
+                for (int film = 0; film < columns.film_count(); film++) {
+                    printer.print(columns.film_values(film));
+                }
+            } catch (Exception ex) {
+                Diagnostics.shared().reject(
+                    film_writer.source(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                );
+            }
+
+            try (
+                final var printer = new ModelWriter(cast_writer)
+            ) {
+                columns.for_each_cast((film, actor, role) ->
+                    printer.print(columns.cast_values(film, actor, role))
+                );
+            } catch (Exception ex) {
+                Diagnostics.shared().reject(
+                    cast_writer.source(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                );
+            }
+        }
+
+        /**
+         * Does the same job as {@code job()}, except that actors are
+         * deduplicated by an Ex2ActorDedup before they are sorted.
+         * @param movie_reader a Reader attached to movie.csv
+         * @param film_writer  a Writer attached to film.csv
+         * @param actor_writer a Writer attached to actor.csv
+         * @param cast_writer  a Writer attached to cast.csv
+         * @param fpp          the false positive rate of the filter of
+         *                     the Ex2ActorDedup, in (0, 1)
+         * @return             the Report of the Ex2ActorDedup, or null
+         *                     if movie.csv cannot be read
+         */
+        static Ex2ActorDedup.Report job_deduped(
+            CloseableSupplier<Reader> movie_reader,
+            CloseableSupplier<Writer> film_writer,
+            CloseableSupplier<Writer> actor_writer,
+            CloseableSupplier<Writer> cast_writer,
+            double fpp
+        ) {
+            final var text_map = Ex2Movie.Extracting.text_map(movie_reader);
+            if (text_map == null) return null;
+
+            // every cast may be a distinct actor
+            final long expected = text_map.values().stream()
+            .mapToLong(List::size)
+            .sum();
+            final var dedup = Ex2ActorDedup.with_expected(expected, fpp);
+
+            final var actors = Mapping.actors(text_map, dedup);
+            final var model_map = Mapping.model_map(text_map, actors);
+
+            write(actor_writer, actors.stream(), Ex2Actor.Loading::values);
+            write(film_writer, model_map.keySet().stream(), Ex2Film.Loading::values);
+            write(
+                cast_writer,
+                model_map.values().stream().flatMap(List::stream),
+                Ex2Cast.Loading::values
+            );
+
+            return dedup.report();
+        }
+
+        /**
+         * Does the same job as {@code job()}, except that each output is
+         * split into shard files, as Ex2Shards describes, each written by
+         * a writer of its own on the io executor of Ex2Batch.
+         * @param movie_reader a Reader attached to movie.csv
+         * @param film_path    path to film.csv
+         * @param actor_path   path to actor.csv
+         * @param cast_path    path to cast.csv
+         * @param shard_count  the number of shards of each output
+         * @return             the Shard records of actors, films, and
+         *                     casts in this order, or null if movie.csv
+         *                     cannot be read or a shard failed
+         */
+        static List<Ex2Shards.Shard> job_sharded(
+            CloseableSupplier<Reader> movie_reader,
+            final Path film_path,
+            final Path actor_path,
+            final Path cast_path,
+            int shard_count
+        ) {
+            final var text_map = Ex2Movie.Extracting.text_map(movie_reader);
+            if (text_map == null) return null;
+
+            final var actors = Mapping.actors(text_map);
+            final var model_map = Mapping.model_map(text_map, actors);
+            final var casts = model_map.values().stream()
+            .flatMap(List::stream)
+            .collect(Collectors.toList());
+
+            final var io = Ex2Batch.Driving.io_executor();
+            try {
+                final var actor_shards = Ex2Shards.write(
+                    actor_path, shard_count, actors,
+                    Ex2Actor.Model::id, Ex2Actor.Loading::values, io
+                );
+                final var film_shards = Ex2Shards.write(
+                    film_path, shard_count, model_map.keySet(),
+                    Ex2Film.Model::id, Ex2Film.Loading::values, io
+                );
+                final var cast_shards = Ex2Shards.write(
+                    cast_path, shard_count, casts,
+                    cast -> cast.film().id(), Ex2Cast.Loading::values, io
+                );
+                if (actor_shards == null || film_shards == null || cast_shards == null) {
+                    return null;
+                }
+
+                final var shards = new ArrayList<Ex2Shards.Shard>(actor_shards);
+                shards.addAll(film_shards);
+                shards.addAll(cast_shards);
+                return shards;
+            } finally {
+                io.shutdown();
+            }
+        }
+
+        /**
+         * Does the same job as {@code job()}, and writes an OffsetIndex
+         * sidecar next to each output, as {@code OffsetIndex.path_of()}
+         * names: film.csv and actor.csv are indexed by id, and cast.csv
+         * by film id, so that {@code ModelReader.lookup()} reads a film,
+         * an actor, or the casts of a film without scanning the file.
+         * @param movie_reader a Reader attached to movie.csv
+         * @param film_path    path to film.csv
+         * @param actor_path   path to actor.csv
+         * @param cast_path    path to cast.csv
+         * @return             {@code true} if every output and sidecar
+         *                     was written
+         */
+        static boolean job_indexed(
+            CloseableSupplier<Reader> movie_reader,
+            final Path film_path,
+            final Path actor_path,
+            final Path cast_path
+        ) {
+            final var text_map = Ex2Movie.Extracting.text_map(movie_reader);
+            if (text_map == null) return false;
+
+            final var actors = Mapping.actors(text_map);
+            final var model_map = Mapping.model_map(text_map, actors);
+
+            return write_indexed(actor_path, actors.stream(), Ex2Actor.Loading::values)
+            && write_indexed(film_path, model_map.keySet().stream(), Ex2Film.Loading::values)
+            && write_indexed(
+                cast_path,
+                model_map.values().stream().flatMap(List::stream),
+                Ex2Cast.Loading::values
+            );
+        }
+
+        /**
+         * Maps movie.csv group by group, taking a checkpoint every
+         * {@code interval_bytes} of input, so that a job that stopped
+         * halfway can continue from its last checkpoint.
+         * <p>
+         * Unlike {@code job()}, which sorts the whole input before
+         * writing anything, this job writes films and casts in the order
+         * of the input, each actor when it first appears, and each cast
+         * with the actor computed from its own line. The input is read
+         * by blocks through the CsvScanner and the Sink that
+         * {@code Ex2Movie.Extracting.scan()} takes, and a FILM record is
+         * the boundary of a group. The key of each new actor is
+         * appended to the keys file of the checkpoint, so that taking a
+         * checkpoint only flushes what was written since the last one.
+         * The casts of an invalid film are skipped with it, as
+         * {@code scan()} passes none of them.
+         * @param movie_path      path to movie.csv
+         * @param film_path       path to film.csv
+         * @param actor_path      path to actor.csv
+         * @param cast_path       path to cast.csv
+         * @param checkpoint_path path to the checkpoint file
+         * @param interval_bytes  the number of input bytes between
+         *                        checkpoints, which bounds the work
+         *                        lost by a crash against the cost of
+         *                        flushing outputs and the snapshot
+         * @param resume          {@code true} to truncate the outputs to
+         *                        the last checkpoint and continue from
+         *                        it, or to start over if there is none
+         * @return                the checkpoint at the end of the input,
+         *                        or null if the job failed
+         */
+        static Ex2Checkpoint job_checkpointed(
+            final Path movie_path,
+            final Path film_path,
+            final Path actor_path,
+            final Path cast_path,
+            final Path checkpoint_path,
+            long interval_bytes,
+            boolean resume
+        ) {
+            final var restored = resume ? Ex2Checkpoint.read(checkpoint_path) : null;
+            final var restored_keys = restored == null ? null : restored.read_keys(checkpoint_path);
+            final var from = restored_keys == null ? Ex2Checkpoint.EMPTY : restored;
+            final var actor_keys = restored_keys == null ? LongHashSet.with_capacity(0) : restored_keys;
+
+            final FileChannel input;
+            try {
+                input = FileChannel.open(movie_path, StandardOpenOption.READ);
+            } catch (IOException ex) {
+                Diagnostics.shared().reject(
+                    movie_path.toString(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+                );
+                return null;
+            }
+
+            try (
+                input;
+                final var keys_channel = output(
+                    Ex2Checkpoint.keys_path(checkpoint_path), from.actor_count() * Long.BYTES
+                );
+                final var film_channel = output(film_path, from.film_bytes());
+                final var actor_channel = output(actor_path, from.actor_bytes());
+                final var cast_channel = output(cast_path, from.cast_bytes());
+                final var keys = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(keys_channel), 1 << 16)
+                );
+                final var film_printer = new ModelWriter(() -> writer(film_channel));
+                final var actor_printer = new ModelWriter(() -> writer(actor_channel));
+                final var cast_printer = new ModelWriter(() -> writer(cast_channel))
+            ) {
+                try (
+                    final var scanner = CsvScanner.of(
+                        CsvScanner.blocks(Channels.newInputStream(input.position(from.input_offset()))),
+                        from.input_offset(),
+                        from.record_number()
+                    )
+                ) {
+                    final var streaming = new Ex2Movie.Extracting.Sink() {
+                        @Override
+                        public void film(final Ex2Movie.Text.Film text_film)
+                        {
+                            // a film group boundary, where the job can resume
+                            final long boundary = scanner.byte_offset();
+                            if (boundary - checkpointed >= interval_bytes) {
+                                checkpoint(boundary, scanner.record_number() - 1L);
+                            }
+
+                            if (text_film == null) {
+                                film = null;
+                                return;
+                            }
+                            release = Year.parse(text_film.release());
+                            film = Ex2Film.Model.instance(text_film.name(), release);
+                            film_printer.accept(film, Ex2Film.Loading::values);
+                        }
+
+                        @Override
+                        public void cast(final Ex2Movie.Text.Cast text_cast)
+                        {
+                            final var actor = text_cast == null
+                            ? null
+                            : TextHelper.<Long>parse(text_cast.actor_age(), Long::parseLong)
+                            .map(age -> Ex2Actor.Model.instance(
+                                text_cast.actor_name(),
+                                release.minusYears(age)
+                            ))
+                            .orElse(null);
+
+                            if (actor != null) {
+                                final long key = Ex2Checkpoint.key(actor);
+                                if (actor_keys.add(key)) {
+                                    actor_printer.accept(actor, Ex2Actor.Loading::values);
+                                    try {
+                                        keys.writeLong(key);
+                                    } catch (IOException ex) {
+                                        throw new UncheckedIOException(ex);
+                                    }
+                                }
+                            }
+
+                            cast_printer.accept(
+                                Ex2Cast.Model.instance(
+                                    film, actor, text_cast == null ? null : text_cast.role_name()
+                                ),
+                                Ex2Cast.Loading::values
+                            );
+                        }
+
+                        void checkpoint(long boundary, long record_number)
+                        {
+                            try {
+                                film_printer.flush();
+                                actor_printer.flush();
+                                cast_printer.flush();
+                                keys.flush();
+                                film_channel.force(false);
+                                actor_channel.force(false);
+                                cast_channel.force(false);
+                                keys_channel.force(false);
+
+                                last = new Ex2Checkpoint(
+                                    boundary,
+                                    record_number,
+                                    film_channel.size(),
+                                    actor_channel.size(),
+                                    cast_channel.size(),
+                                    actor_keys.size()
+                                );
+                                last.write(checkpoint_path);
+                                checkpointed = boundary;
+                            } catch (IOException ex) {
+                                throw new UncheckedIOException(ex);
+                            }
+                        }
+
+                        Ex2Film.Model film = null;
+                        Year release = null;
+                        long checkpointed = from.input_offset();
+                        Ex2Checkpoint last = from;
+                    };
+
+                    Ex2Movie.Extracting.scan(scanner, movie_path.toString(), streaming);
+                    streaming.checkpoint(scanner.byte_offset(), scanner.record_number());
+                    return streaming.last;
+                } catch (IOException ex) {
+                    Diagnostics.shared().reject(
+                        movie_path.toString(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+                    );
+                    return null;
+                }
+            } catch (Exception ex) {
+                // a value of movie.csv that the scanner let through but a
+                // model cannot take fails unchecked; any other failure is
+                // writing the outputs or the checkpoint, which are flushed
+                // together and so reported against the checkpoint
+                final boolean reading = ex instanceof RuntimeException
+                && !(ex instanceof UncheckedIOException);
+                Diagnostics.shared().reject(
+                    reading ? movie_path.toString() : checkpoint_path.toString(),
+                    -1L,
+                    reading ? Diagnostics.RULE_READ_FAILED : Diagnostics.RULE_WRITE_FAILED,
+                    ex.toString()
+                );
+                return null;
+            }
+        }
+
+        /**
+         * Prints every model of a Stream through a ModelWriter.
+         * @param <T>    the type of the 'model' record
+         * @param writer a Writer attached to a CSV file
+         * @param models a Stream of 'model' records
+         * @param mapper a function that transforms each component to String
+         * @return       the Report of the ModelWriter, or null if
+         *               the ModelWriter failed
+         */
+        static <T extends Record> ModelWriter.Report write(
+            final CloseableSupplier<Writer> writer,
+            final Stream<T> models,
+            final Function<T, Object[]> mapper
+        ) {
+            try (
+                final var printer = new ModelWriter(writer)
+            ) {
+                models.forEachOrdered(model -> printer.accept(model, mapper));
+                return printer.report();
+            } catch (Exception ex) {
+                Diagnostics.shared().reject(
+                    writer.source(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                );
+                return null;
+            }
+        }
+
+        // every output is keyed by its first value: the id of a film or
+        // an actor, or the film id of a cast
+        private static <T extends Record> boolean write_indexed(
+            final Path path,
+            final Stream<T> models,
+            final Function<T, Object[]> mapper
+        ) {
+            try (
+                final var printer = new ModelWriter(
+                    () -> Files.newBufferedWriter(path, StandardCharsets.UTF_8),
+                    0,
+                    OffsetIndex.path_of(path)
+                )
+            ) {
+                models.forEachOrdered(model -> printer.accept(model, mapper));
+                return true;
+            } catch (Exception ex) {
+                Diagnostics.shared().reject(
+                    path.toString(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                );
+                return false;
+            }
+        }
+
+        private static FileChannel output(final Path path, long bytes)
+            throws IOException
+        {
+            final var channel = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.WRITE
+            );
+            channel.truncate(bytes);
+            channel.position(bytes);
+            return channel;
+        }
+
+        private static Writer writer(final FileChannel channel)
+        {
+            return Channels.newWriter(channel, StandardCharsets.UTF_8);
         }
     }
 
@@ -141,8 +979,9 @@ public interface Ex2Mapper
                         Year.parse(text_film.release())
                     );
 
+                    // an invalid cast stays null, which counts as invalid
                     final var model_casts = entry.getValue().stream()
-                    .map(text_cast -> Ex2Cast.Model.instance(
+                    .map(text_cast -> text_cast == null ? null : Ex2Cast.Model.instance(
                         model_film,
                         actor_by_name(text_cast.actor_name(), actors).orElse(null),
                         text_cast.role_name()
@@ -178,9 +1017,32 @@ public interface Ex2Mapper
             return match;
         }
 
+        /**
+         * Stores actors in order and indexes them by name, keeping the
+         * first actor of a name as {@code actor_by_name()} takes it, so
+         * that a cast finds its actor in constant time.
+         * @param actors a sorted set of actors
+         * @param add    a function that stores an actor and returns its
+         *               index
+         * @return       a map of actor names to the indexes of the first
+         *               actors of the names
+         */
+        static Map<String, Integer> actor_indexes(
+            final SortedSet<Ex2Actor.Model> actors,
+            final ToIntFunction<Ex2Actor.Model> add
+        ) {
+            final var actor_by_name = new HashMap<String, Integer>();
+            for (final var actor : actors) {
+                final int index = add.applyAsInt(actor);
+                actor_by_name.putIfAbsent(actor.name(), index);
+            }
+            return actor_by_name;
+        }
+
         /**
          * Collects Ex2Actor.Model instances from
-         * {@code SortedMap<Text.Film, List<Text.Cast>>}.
+         * {@code SortedMap<Text.Film, List<Text.Cast>>}, skipping the
+         * casts that are null, as invalid casts are.
          * @param text_map {@code SortedMap<Text.Film, List<Text.Cast>>}
          * @return a sorted set of Ex2Actor.Model instances
          */
@@ -189,6 +1051,7 @@ public interface Ex2Mapper
         ) {
             final var actors = text_map.entrySet().stream()
             .flatMap(entry -> entry.getValue().stream()
+                .filter(Objects::nonNull)
                 .map(cast ->
                     TextHelper.<Long>parse(
                         cast.actor_age(),
@@ -201,9 +1064,59 @@ public interface Ex2Mapper
                     .orElse(null)
                 )
             )
-            .collect(Collectors.toCollection(TreeSet::new))
+            .toArray(Ex2Actor.Model[]::new)
             ;
-            return actors;
+            return sorted(actors);
+        }
+
+        /**
+         * Does the same as {@code actors()}, except that each actor is
+         * passed through the dedup argument, so that only the first
+         * occurrence of an actor is sorted.
+         * @param text_map {@code SortedMap<Text.Film, List<Text.Cast>>}
+         * @param dedup    an Ex2ActorDedup
+         * @return a sorted set of Ex2Actor.Model instances
+         */
+        static SortedSet<Ex2Actor.Model> actors(
+            final SortedMap<Ex2Movie.Text.Film, List<Ex2Movie.Text.Cast>> text_map,
+            final Ex2ActorDedup dedup
+        ) {
+            final var actors = new ArrayList<Ex2Actor.Model>();
+            for (final var entry : text_map.entrySet()) {
+                final var release = Year.parse(entry.getKey().release());
+                for (final var cast : entry.getValue()) {
+                    if (cast == null) continue;
+
+                    final var actor = TextHelper.<Long>parse(
+                        cast.actor_age(),
+                        Long::parseLong
+                    )
+                    .map(age -> Ex2Actor.Model.instance(
+                        cast.actor_name(),
+                        release.minusYears(age)
+                    ))
+                    .orElse(null);
+
+                    if (actor != null && dedup.add(actor)) actors.add(actor);
+                }
+            }
+            return sorted(actors.toArray(Ex2Actor.Model[]::new));
+        }
+
+        /**
+         * Orders actors by {@code (born, name)} with YearBuckets, keeping
+         * the first of equal actors as a TreeSet does.
+         * @param actors Ex2Actor.Model instances in any order
+         * @return a sorted set of distinct Ex2Actor.Model instances
+         */
+        private static SortedSet<Ex2Actor.Model> sorted(final Ex2Actor.Model[] actors)
+        {
+            return SortedArraySet.of_sorted(YearBuckets.sort_distinct(
+                actors,
+                actor -> actor.born().getValue(),
+                Comparator.comparing(Ex2Actor.Model::name),
+                false
+            ));
         }
     }
 }
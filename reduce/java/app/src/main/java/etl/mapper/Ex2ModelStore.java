@@ -0,0 +1,389 @@
+package etl.mapper;
+
+import java.io.Reader;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import etl.model.Ex2Actor;
+import etl.model.Ex2Cast;
+import etl.model.Ex2Film;
+import etl.model.Ex2Movie;
+import etl.util.CloseableSupplier;
+import etl.util.OffHeapRecords;
+import etl.util.OffHeapStrings;
+import etl.util.TextHelper;
+import etl.util.YearBuckets;
+
+/**
+ * Ex2ModelStore holds the films, actors and casts that
+ * {@code Ex2Mapper.Mapping} produces as fixed-width records outside of
+ * the Java heap, with their Strings in an off-heap arena.
+ * <p>
+ * Model records are materialized only when they are read, typically
+ * right before ModelWriter prints them, so that the live heap stays small
+ * however large the catalogue is.
+ * <pre>{@code
+ * film : id (8) | name (8) | release (4) | first cast (4)
+ * actor: id (8) | name (8) | born (4)
+ * cast : film (4) | actor (4) | role_name (8)
+ * }</pre>
+ * where ids, names and role names are OffHeapStrings handles, and
+ * films and actors of a cast are indexes of this store.
+ */
+public final class Ex2ModelStore implements AutoCloseable
+{
+    /**
+     * The index representing a cast of which actor is unknown.
+     */
+    public static final int NO_ACTOR = -1;
+
+    /**
+     * Builds a store by scanning a CSV data with
+     * {@code Ex2Movie.Extracting.scan()}. Actors are stored in the order
+     * of {@code Ex2Mapper.Mapping.actors()}, and films and casts in the
+     * order of {@code Ex2Movie.Extracting.text_map()}, which is the
+     * order of {@code Ex2Mapper.Mapping.model_map()}.
+     * <p>
+     * Records are appended off-heap as they are scanned, and no Text map
+     * is built. They are then ordered by sorting their indexes, of which
+     * names are compared in the string arena, so that the heap holds an
+     * int per record rather than the records. An invalid film is
+     * skipped with its casts, as in {@code text_map()}.
+     * @param reader a Reader to read the CSV data
+     * @return       a store, or null if reading failed
+     */
+    public static Ex2ModelStore of(CloseableSupplier<Reader> reader)
+    {
+        final var store = new Ex2ModelStore();
+        final var raw_films = OffHeapRecords.of_width(RAW_FILM_BYTES);
+        final var raw_casts = OffHeapRecords.of_width(RAW_CAST_BYTES);
+        try (raw_films; raw_casts) {
+            final long count = Ex2Movie.Extracting.scan(reader, new Ex2Movie.Extracting.Sink() {
+                @Override
+                public void film(final Ex2Movie.Text.Film text_film)
+                {
+                    if (text_film == null) return;
+                    final int release = Year.parse(text_film.release()).getValue();
+
+                    final int index = raw_films.append();
+                    raw_films.put_long(index, RAW_FILM_NAME, store.strings.put(text_film.name()));
+                    raw_films.put_int(index, RAW_FILM_RELEASE, release);
+                    raw_films.put_int(index, RAW_FILM_CASTS, raw_casts.size());
+                }
+
+                @Override
+                public void cast(final Ex2Movie.Text.Cast text_cast)
+                {
+                    final int index = raw_casts.append();
+                    raw_casts.put_long(index, RAW_CAST_ROLE_NAME, OffHeapStrings.NULL);
+                    raw_casts.put_long(index, RAW_CAST_ACTOR_NAME, OffHeapStrings.NULL);
+                    raw_casts.put_int(index, RAW_CAST_BORN, NO_BORN);
+                    if (text_cast == null) return;
+
+                    final var release = raw_films.get_int(raw_films.size() - 1, RAW_FILM_RELEASE);
+                    final int born = TextHelper.<Long>parse(text_cast.actor_age(), Long::parseLong)
+                    .map(age -> Year.of(release).minusYears(age).getValue())
+                    .orElse(NO_BORN);
+
+                    raw_casts.put_long(index, RAW_CAST_ROLE_NAME, store.strings.put(text_cast.role_name()));
+                    raw_casts.put_long(index, RAW_CAST_ACTOR_NAME, store.strings.put(text_cast.actor_name()));
+                    raw_casts.put_int(index, RAW_CAST_BORN, born);
+                }
+            });
+            if (count < 0) {
+                store.close();
+                return null;
+            }
+
+            store.fill(raw_films, raw_casts);
+            return store;
+        }
+    }
+
+    /**
+     * Returns the number of films in this store.
+     * @return the number of films
+     */
+    public int film_count() { return films.size(); }
+
+    /**
+     * Returns the number of actors in this store.
+     * @return the number of actors
+     */
+    public int actor_count() { return actors.size(); }
+
+    /**
+     * Returns the number of casts in this store.
+     * @return the number of casts
+     */
+    public int cast_count() { return casts.size(); }
+
+    /**
+     * Materializes a film.
+     * @param index the index of a film
+     * @return      an Ex2Film.Model
+     */
+    public Ex2Film.Model film(int index)
+    {
+        final var film = new Ex2Film.Model(
+            strings.get(films.get_long(index, FILM_ID)),
+            strings.get(films.get_long(index, FILM_NAME)),
+            Year.of(films.get_int(index, FILM_RELEASE))
+        );
+        return film;
+    }
+
+    /**
+     * Materializes an actor.
+     * @param index the index of an actor
+     * @return      an Ex2Actor.Model
+     */
+    public Ex2Actor.Model actor(int index)
+    {
+        final var actor = new Ex2Actor.Model(
+            strings.get(actors.get_long(index, ACTOR_ID)),
+            strings.get(actors.get_long(index, ACTOR_NAME)),
+            Year.of(actors.get_int(index, ACTOR_BORN))
+        );
+        return actor;
+    }
+
+    /**
+     * Materializes a cast.
+     * @param index the index of a cast
+     * @return      an Ex2Cast.Model, or null if either the actor or
+     *              the role name of the cast is unknown
+     */
+    public Ex2Cast.Model cast(int index)
+    {
+        return cast(index, film(casts.get_int(index, CAST_FILM)));
+    }
+
+    /**
+     * Returns a Stream that materializes films one by one.
+     * @return a Stream of Ex2Film.Model
+     */
+    public Stream<Ex2Film.Model> films()
+    {
+        return IntStream.range(0, film_count()).mapToObj(this::film);
+    }
+
+    /**
+     * Returns a Stream that materializes actors one by one.
+     * @return a Stream of Ex2Actor.Model
+     */
+    public Stream<Ex2Actor.Model> actors()
+    {
+        return IntStream.range(0, actor_count()).mapToObj(this::actor);
+    }
+
+    /**
+     * Returns a Stream that materializes casts one by one.
+     * The casts of a film share one materialized film.
+     * @return a Stream of Ex2Cast.Model, in which unknown casts are null
+     */
+    public Stream<Ex2Cast.Model> casts()
+    {
+        final var casts = IntStream.range(0, film_count())
+        .boxed()
+        .flatMap(index -> {
+            final var film = film(index);
+            final int lower = films.get_int(index, FILM_CASTS);
+            final int upper = index + 1 < film_count()
+            ? films.get_int(index + 1, FILM_CASTS)
+            : cast_count();
+
+            return IntStream.range(lower, upper)
+            .mapToObj(cast -> cast(cast, film));
+        });
+        return casts;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory this store allocated.
+     * @return the number of bytes allocated
+     */
+    public long allocated_bytes()
+    {
+        final long bytes
+        = films.allocated_bytes()
+        + actors.allocated_bytes()
+        + casts.allocated_bytes()
+        + strings.allocated_bytes()
+        ;
+        return bytes;
+    }
+
+    /**
+     * Releases the direct memory this store holds.
+     */
+    @Override
+    public void close()
+    {
+        films.close();
+        actors.close();
+        casts.close();
+        strings.close();
+    }
+
+    // logic: films are ordered as text_map() orders them, keeping the
+    // last of equal films; actors as actors() orders them, keeping the
+    // first of equal actors; and the actor of a cast is the first actor
+    // of its name, as Mapping.actor_by_name() takes it
+    private void fill(final OffHeapRecords raw_films, final OffHeapRecords raw_casts)
+    {
+        final var sorted_films = YearBuckets.sort_distinct(
+            IntStream.range(0, raw_films.size()).boxed().toArray(Integer[]::new),
+            film -> raw_films.get_int(film, RAW_FILM_RELEASE),
+            (left, right) -> strings.compare(
+                raw_films.get_long(left, RAW_FILM_NAME),
+                raw_films.get_long(right, RAW_FILM_NAME)
+            ),
+            true
+        );
+
+        final var candidates = new ArrayList<Integer>();
+        for (final int film : sorted_films) {
+            final int upper = first_cast(raw_films, raw_casts, film + 1);
+            for (int cast = first_cast(raw_films, raw_casts, film); cast < upper; cast++) {
+                if (raw_casts.get_int(cast, RAW_CAST_BORN) != NO_BORN) candidates.add(cast);
+            }
+        }
+
+        final var sorted_actors = YearBuckets.sort_distinct(
+            candidates.toArray(Integer[]::new),
+            cast -> raw_casts.get_int(cast, RAW_CAST_BORN),
+            (left, right) -> strings.compare(
+                raw_casts.get_long(left, RAW_CAST_ACTOR_NAME),
+                raw_casts.get_long(right, RAW_CAST_ACTOR_NAME)
+            ),
+            false
+        );
+        candidates.clear();
+
+        final var actor_by_name = new int[Integer.highestOneBit(sorted_actors.length * 2 + 1) << 1];
+        Arrays.fill(actor_by_name, NO_ACTOR);
+        for (final int cast : sorted_actors) {
+            final long name = raw_casts.get_long(cast, RAW_CAST_ACTOR_NAME);
+            final int born = raw_casts.get_int(cast, RAW_CAST_BORN);
+
+            final int index = actors.append();
+            actors.put_long(index, ACTOR_ID, strings.put(
+                Ex2Actor.Model.instance(strings.get(name), Year.of(born)).id()
+            ));
+            actors.put_long(index, ACTOR_NAME, name);
+            actors.put_int(index, ACTOR_BORN, born);
+
+            final int slot = slot(actor_by_name, name);
+            if (actor_by_name[slot] == NO_ACTOR) actor_by_name[slot] = index;
+        }
+
+        for (final int raw_film : sorted_films) {
+            final long name = raw_films.get_long(raw_film, RAW_FILM_NAME);
+            final int release = raw_films.get_int(raw_film, RAW_FILM_RELEASE);
+
+            final int film = films.append();
+            films.put_long(film, FILM_ID, strings.put(
+                Ex2Film.Model.instance(strings.get(name), Year.of(release)).id()
+            ));
+            films.put_long(film, FILM_NAME, name);
+            films.put_int(film, FILM_RELEASE, release);
+            films.put_int(film, FILM_CASTS, casts.size());
+
+            final int upper = first_cast(raw_films, raw_casts, raw_film + 1);
+            for (int raw_cast = first_cast(raw_films, raw_casts, raw_film); raw_cast < upper; raw_cast++) {
+                final long actor_name = raw_casts.get_long(raw_cast, RAW_CAST_ACTOR_NAME);
+
+                final int cast = casts.append();
+                casts.put_int(cast, CAST_FILM, film);
+                casts.put_int(cast, CAST_ACTOR, actor_name == OffHeapStrings.NULL
+                    ? NO_ACTOR
+                    : actor_by_name[slot(actor_by_name, actor_name)]
+                );
+                casts.put_long(cast, CAST_ROLE_NAME, raw_casts.get_long(raw_cast, RAW_CAST_ROLE_NAME));
+            }
+        }
+    }
+
+    private static int first_cast(
+        final OffHeapRecords raw_films,
+        final OffHeapRecords raw_casts,
+        int film
+    ) {
+        return film < raw_films.size()
+        ? raw_films.get_int(film, RAW_FILM_CASTS)
+        : raw_casts.size();
+    }
+
+    // logic: open addressing by linear probing over actor indexes, of
+    // which names are compared in the string arena
+    private int slot(final int[] actor_by_name, long name)
+    {
+        final int mask = actor_by_name.length - 1;
+        int slot = strings.hash(name) & mask;
+        while (actor_by_name[slot] != NO_ACTOR
+            && strings.compare(actors.get_long(actor_by_name[slot], ACTOR_NAME), name) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private Ex2Cast.Model cast(int index, final Ex2Film.Model film)
+    {
+        final int actor = casts.get_int(index, CAST_ACTOR);
+
+        final var cast = Ex2Cast.Model.instance(
+            film,
+            actor == NO_ACTOR ? null : actor(actor),
+            strings.get(casts.get_long(index, CAST_ROLE_NAME))
+        );
+        return cast;
+    }
+
+    private Ex2ModelStore() {}
+
+    private static final int
+    FILM_ID        = 0,
+    FILM_NAME      = 8,
+    FILM_RELEASE   = 16,
+    FILM_CASTS     = 20,
+    FILM_BYTES     = 24;
+
+    private static final int
+    ACTOR_ID       = 0,
+    ACTOR_NAME     = 8,
+    ACTOR_BORN     = 16,
+    ACTOR_BYTES    = 20;
+
+    private static final int
+    CAST_FILM      = 0,
+    CAST_ACTOR     = 4,
+    CAST_ROLE_NAME = 8,
+    CAST_BYTES     = 16;
+
+    private static final int
+    RAW_FILM_NAME       = 0,
+    RAW_FILM_RELEASE    = 8,
+    RAW_FILM_CASTS      = 12,
+    RAW_FILM_BYTES      = 16;
+
+    private static final int
+    RAW_CAST_ROLE_NAME  = 0,
+    RAW_CAST_ACTOR_NAME = 8,
+    RAW_CAST_BORN       = 16,
+    RAW_CAST_BYTES      = 20;
+
+    // the born year of a cast of which actor age is unparsable
+    private static final int NO_BORN = Integer.MIN_VALUE;
+
+    private static final int STRING_CHUNK_BYTES = 1 << 24;
+
+    private final OffHeapRecords films = OffHeapRecords.of_width(FILM_BYTES);
+    private final OffHeapRecords actors = OffHeapRecords.of_width(ACTOR_BYTES);
+    private final OffHeapRecords casts = OffHeapRecords.of_width(CAST_BYTES);
+    private final OffHeapStrings strings
+    = OffHeapStrings.with_chunk_size(STRING_CHUNK_BYTES);
+}
@@ -0,0 +1,403 @@
+package etl.mapper;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+
+import etl.model.Ex2Movie;
+import etl.util.CsvScanner;
+import etl.util.Diagnostics;
+import etl.util.JsonScanner;
+
+/**
+ * Ex2Planner chooses how {@code Ex2Mapper} maps a movie file before it
+ * reads the whole file, so that a job that would not fit in the heap
+ * runs in a mode that does, rather than failing with an
+ * OutOfMemoryError.
+ * <p>
+ * A Sample is taken from the head of the file: the numbers of films and
+ * casts, the distinct actor names, and the largest group, which are
+ * extrapolated to the size of the file. The heap footprint of each Mode
+ * is then estimated from per-row costs, and the first Mode, in the order
+ * of speed, whose estimate is within {@code HEADROOM} of
+ * {@code Runtime.maxMemory()} is selected, or none if even the estimate
+ * of {@code STREAMING} is not. The number of files that fit
+ * in the heap at once bounds the concurrency of {@code Ex2Batch}.
+ * <p>
+ * Estimates are deliberately pessimistic: distinct actors are
+ * extrapolated linearly, which overestimates them once names repeat
+ * across the file, and per-row costs assume every String is a copy.
+ */
+public final class Ex2Planner
+{
+    /**
+     * Mode is a way to map a movie file, in the order of speed.
+     */
+    public enum Mode
+    {
+        /**
+         * {@code Ex2Mapper.Driving.job()}: Text and Model records on
+         * the heap, with sorted outputs.
+         */
+        IN_MEMORY,
+
+        /**
+         * {@code Ex2Mapper.Driving.job_off_heap()}: Model records in an
+         * Ex2ModelStore outside of the heap, which holds an index per
+         * record while the store is ordered.
+         */
+        OFF_HEAP,
+
+        /**
+         * {@code Ex2Mapper.Driving.job_checkpointed()}: a group at a
+         * time, writing outputs in the order of the input, with only
+         * the keys of the actors written on the heap.
+         */
+        STREAMING
+    }
+
+    /**
+     * Sample is what is counted in the head of a movie file.
+     * @param file_bytes      the size of the file
+     * @param sampled_bytes   the number of bytes sampled, up to the end
+     *                        of the last whole line
+     * @param films           the number of FILM rows sampled
+     * @param casts           the number of CAST rows sampled
+     * @param distinct_actors the number of distinct actor names sampled
+     * @param max_group       the number of CAST rows of the largest
+     *                        group sampled
+     */
+    public record Sample(
+        long file_bytes,
+        long sampled_bytes,
+        long films,
+        long casts,
+        long distinct_actors,
+        int max_group
+    ) {
+        /**
+         * Tells if the whole file was sampled.
+         * @return {@code true} if the counts are exact
+         */
+        public boolean complete() { return sampled_bytes >= file_bytes; }
+
+        /**
+         * Estimates the number of FILM rows of the file.
+         * @return the number of FILM rows
+         */
+        public long estimated_films() { return scaled(films); }
+
+        /**
+         * Estimates the number of CAST rows of the file.
+         * @return the number of CAST rows
+         */
+        public long estimated_casts() { return scaled(casts); }
+
+        /**
+         * Estimates the number of distinct actors of the file, which is
+         * an upper bound unless the whole file was sampled.
+         * @return the number of distinct actors
+         */
+        public long estimated_actors()
+        {
+            return Math.min(scaled(distinct_actors), estimated_casts());
+        }
+
+        private long scaled(long count)
+        {
+            if (complete() || sampled_bytes == 0L) return count;
+            return (long) Math.ceil((double) count * file_bytes / sampled_bytes);
+        }
+    }
+
+    /**
+     * Plan is the decision of the planner, along with its estimates.
+     * @param mode            the selected Mode, or null if no Mode is
+     *                        expected to fit
+     * @param concurrency     the number of files of this size that fit in
+     *                        the heap at once in {@code IN_MEMORY} mode,
+     *                        up to the number of processors
+     * @param budget_bytes    the heap the estimates were compared with
+     * @param in_memory_bytes the estimated heap of {@code IN_MEMORY}
+     * @param off_heap_bytes  the estimated heap of {@code OFF_HEAP}
+     * @param streaming_bytes the estimated heap of {@code STREAMING}
+     * @param sample          the Sample the estimates are made from
+     */
+    public record Plan(
+        Mode mode,
+        int concurrency,
+        long budget_bytes,
+        long in_memory_bytes,
+        long off_heap_bytes,
+        long streaming_bytes,
+        Sample sample
+    ) {
+        /**
+         * Tells if a Mode was selected, of which the estimate is within
+         * budget.
+         * @return {@code true} if the selected Mode is expected to fit
+         */
+        public boolean fits()
+        {
+            if (mode == null) return false;
+
+            final long estimate = switch (mode) {
+                case IN_MEMORY -> in_memory_bytes;
+                case OFF_HEAP -> off_heap_bytes;
+                case STREAMING -> streaming_bytes;
+            };
+            return estimate <= budget_bytes;
+        }
+    }
+
+    /**
+     * The share of {@code Runtime.maxMemory()} a plan may fill, leaving
+     * the rest to garbage collection and to the transient objects of
+     * sorting and writing.
+     */
+    public static final double HEADROOM = 0.6;
+
+    /**
+     * The number of chars sampled from the head of a file.
+     */
+    public static final int SAMPLE_CHARS = 1 << 22;
+
+    /**
+     * Plans mapping a movie file in this JVM.
+     * @param movie_path path to movie.csv
+     * @return           a Plan, or null if the file cannot be read
+     */
+    public static Plan plan(final Path movie_path)
+    {
+        final var sample = sample(movie_path);
+        if (sample == null) return null;
+
+        return plan(
+            sample,
+            Runtime.getRuntime().maxMemory(),
+            Runtime.getRuntime().availableProcessors()
+        );
+    }
+
+    /**
+     * Plans mapping a sampled movie file.
+     * @param sample     a Sample of the file
+     * @param max_memory the maximum heap, as {@code Runtime.maxMemory()}
+     * @param processors the number of processors
+     * @return           a Plan, of which the Mode is null if no Mode
+     *                   fits in the heap
+     */
+    public static Plan plan(final Sample sample, long max_memory, int processors)
+    {
+        final long films = sample.estimated_films();
+        final long casts = sample.estimated_casts();
+        final long actors = sample.estimated_actors();
+
+        // the Text map, which IN_MEMORY holds whole
+        final long text_bytes
+        = films * TEXT_FILM_BYTES
+        + casts * TEXT_CAST_BYTES
+        + sample.file_bytes();
+
+        final long in_memory_bytes = text_bytes
+        + films * MODEL_FILM_BYTES
+        + casts * MODEL_CAST_BYTES
+        + actors * MODEL_ACTOR_BYTES;
+
+        final long off_heap_bytes
+        = films * OFF_HEAP_FILM_BYTES
+        + casts * OFF_HEAP_CAST_BYTES
+        + actors * OFF_HEAP_ACTOR_BYTES;
+
+        final long streaming_bytes = STREAMING_BUFFER_BYTES
+        + actors * STREAMING_ACTOR_BYTES
+        + (long) sample.max_group() * STREAMING_GROUP_ROW_BYTES;
+
+        final long budget = (long) (max_memory * HEADROOM);
+
+        final Mode mode
+        = in_memory_bytes <= budget ? Mode.IN_MEMORY
+        : off_heap_bytes <= budget ? Mode.OFF_HEAP
+        : streaming_bytes <= budget ? Mode.STREAMING
+        : null;
+
+        final long fitting = budget / Math.max(in_memory_bytes, 1L);
+        final int concurrency = (int) Math.max(1L, Math.min(fitting, Math.max(processors, 1)));
+
+        return new Plan(
+            mode, concurrency, budget,
+            in_memory_bytes, off_heap_bytes, streaming_bytes,
+            sample
+        );
+    }
+
+    /**
+     * Plans the concurrency of a batch by the largest of its files, all
+     * of which {@code Ex2Batch} maps in {@code IN_MEMORY} mode.
+     * @param movies paths to movie files
+     * @return       the Plan of the largest file, or null if there are
+     *               no files or the largest cannot be read
+     */
+    public static Plan plan(final List<Path> movies)
+    {
+        Path largest = null;
+        long largest_bytes = -1L;
+        for (final var movie : movies) {
+            try {
+                final long bytes = Files.size(movie);
+                if (bytes > largest_bytes) {
+                    largest = movie;
+                    largest_bytes = bytes;
+                }
+            } catch (IOException ex) {
+                Diagnostics.shared().reject(
+                    movie.toString(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+                );
+            }
+        }
+        return largest == null ? null : plan(largest);
+    }
+
+    /**
+     * Samples the head of a movie file, without reporting its invalid
+     * rows, which the job itself reports.
+     * @param movie_path path to movie.csv
+     * @return           a Sample, or null if the file cannot be read
+     */
+    public static Sample sample(final Path movie_path)
+    {
+        try (
+            final var reader = Files.newBufferedReader(movie_path, StandardCharsets.UTF_8)
+        ) {
+            final long file_bytes = Files.size(movie_path);
+
+            final var chars = new char[SAMPLE_CHARS];
+            int length = 0;
+            for (int read; length < chars.length
+                && (read = reader.read(chars, length, chars.length - length)) != -1; ) {
+                length += read;
+            }
+
+            // a partial sample ends at the end of its last whole line
+            final boolean partial = length == chars.length && reader.read() != -1;
+            if (partial) {
+                while (length > 0 && chars[length - 1] != '\n') length--;
+            }
+
+            final long sampled_bytes = partial
+            ? new String(chars, 0, length).getBytes(StandardCharsets.UTF_8).length
+            : file_bytes;
+
+            final Reader sampled = new CharArrayReader(chars, 0, length);
+            return sample(
+                JsonScanner.is_json(movie_path) ? JsonScanner.json(sampled) : sampled,
+                file_bytes,
+                sampled_bytes
+            );
+        } catch (IOException ex) {
+            Diagnostics.shared().reject(
+                movie_path.toString(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+            );
+            return null;
+        }
+    }
+
+    /**
+     * Counts the rows of a sampled text, or the objects of a sampled
+     * JSON text if the Reader is marked by {@code JsonScanner.json()}.
+     * @param reader        a Reader of the sampled text
+     * @param file_bytes    the size of the file
+     * @param sampled_bytes the size of the sampled text
+     * @return              a Sample
+     * @throws IOException  if the Reader throws
+     */
+    static Sample sample(final Reader reader, long file_bytes, long sampled_bytes)
+        throws IOException
+    {
+        final var actor_names = new HashSet<String>();
+        long films = 0L;
+        long casts = 0L;
+        int group = 0;
+        int max_group = 0;
+
+        if (JsonScanner.is_json(reader)) {
+            return sample_json(reader, file_bytes, sampled_bytes);
+        }
+
+        try (
+            final var scanner = CsvScanner.of(reader)
+        ) {
+            while (scanner.next()) {
+                if (scanner.equals_to(Ex2Movie.RecordKind.INDEX, Ex2Movie.RecordKind.CODE_FILM)) {
+                    films++;
+                    group = 0;
+                } else if (
+                    scanner.equals_to(Ex2Movie.RecordKind.INDEX, Ex2Movie.RecordKind.CODE_CAST)
+                    && scanner.field_count() > 1
+                ) {
+                    casts++;
+                    max_group = Math.max(max_group, ++group);
+                    actor_names.add(scanner.string(1));
+                }
+            }
+        }
+
+        return new Sample(file_bytes, sampled_bytes, films, casts, actor_names.size(), max_group);
+    }
+
+    private static Sample sample_json(final Reader reader, long file_bytes, long sampled_bytes)
+        throws IOException
+    {
+        final var actor_names = new HashSet<String>();
+        long films = 0L;
+        long casts = 0L;
+        int group = 0;
+        int max_group = 0;
+
+        try (
+            final var scanner = JsonScanner.of(reader)
+        ) {
+            while (scanner.next()) {
+                final int kind = scanner.index_of(Ex2Movie.Extracting.RECORD_KIND_NAME);
+                if (scanner.equals_to(kind, Ex2Movie.RecordKind.CODE_FILM)) {
+                    films++;
+                    group = 0;
+                } else if (scanner.equals_to(kind, Ex2Movie.RecordKind.CODE_CAST)) {
+                    final var actor_name = scanner.string(Ex2Movie.Extracting.CAST_NAMES[1]);
+                    if (actor_name == null) continue;
+                    casts++;
+                    max_group = Math.max(max_group, ++group);
+                    actor_names.add(actor_name);
+                }
+            }
+        } catch (IOException ex) {
+            // a partial sample of a JSON array ends inside the array,
+            // and possibly inside an object, which is not counted
+            if (sampled_bytes >= file_bytes) throw ex;
+        }
+
+        return new Sample(file_bytes, sampled_bytes, films, casts, actor_names.size(), max_group);
+    }
+
+    private Ex2Planner() {}
+
+    // per-row heap costs with compressed oops: a record of 16 to 24
+    // bytes, 40 bytes plus the chars of each String it holds, and the
+    // entries and nodes of the collections that hold the record
+    private static final long TEXT_FILM_BYTES = 208L;
+    private static final long TEXT_CAST_BYTES = 200L;
+    private static final long MODEL_FILM_BYTES = 200L;
+    private static final long MODEL_CAST_BYTES = 48L;
+    private static final long MODEL_ACTOR_BYTES = 200L;
+    private static final long OFF_HEAP_FILM_BYTES = 32L;
+    private static final long OFF_HEAP_CAST_BYTES = 40L;
+    private static final long OFF_HEAP_ACTOR_BYTES = 16L;
+    private static final long STREAMING_ACTOR_BYTES = 32L;
+    private static final long STREAMING_GROUP_ROW_BYTES = 512L;
+    private static final long STREAMING_BUFFER_BYTES = 1L << 20;
+}
@@ -0,0 +1,1046 @@
+package etl.mapper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import etl.model.Ex2Actor;
+import etl.model.Ex2Movie;
+import etl.util.CloseableSupplier;
+import etl.util.CsvScanner;
+import etl.util.Diagnostics;
+import etl.util.LongIntHashMap;
+import etl.util.ModelWriter;
+import etl.util.TextHelper;
+
+/**
+ * {@code mapper.Ex2Reverser} is the inverse of {@code Ex2Mapper}: it
+ * rebuilds movie.csv from
+ * <ul>
+ * <li>Ex2Film
+ * <li>Ex2Actor
+ * <li>Ex2Cast
+ * </ul>
+ * so that a movie file is regenerated after the normalized files are
+ * corrected, such as the born years of actor.csv.
+ * <p>
+ * Casts are hash-joined to actors by actor id, and grouped by film id.
+ * Each film is written as a FILM row followed by its CAST rows, of which
+ * the {@code actor_age} is the release year of the film minus the born
+ * year of the actor. Films are in the order of the keys of
+ * {@code Ex2Movie.Extracting.text_map()}, the release year then the
+ * name, and the casts of a film in the order of cast.csv, so that
+ * mapping the output again yields the same files.
+ * <p>
+ * Ids are keyed by their first 64 bits in LongIntHashMaps, which map
+ * them to indexes of primitive and String arrays, as IdCollisions keys
+ * them. Casts of unknown films or actors are counted as orphans and
+ * dropped, as are casts whose age is not a valid {@code actor_age}.
+ * <p>
+ * A job that would not fit in the heap spills: a grace hash join
+ * partitions actors and casts by actor id into files, joins a partition
+ * at a time, and writes the joined casts into partitions of ranges of
+ * release years, which are then grouped and written in the order of
+ * their years. Only a map of film ids to release years is held for the
+ * whole job.
+ */
+public interface Ex2Reverser
+{
+    /**
+     * Drives rebuilding movie.csv.
+     * @param args  [0]: path to film.csv, [1]: path to actor.csv
+     *              [2]: path to cast.csv, [3]: path to movie.csv
+     *              [4]: (optional) {@code --spill} to join through
+     *              partition files
+     *              [5]: (optional) the number of partitions
+     *              [6]: (optional) a directory for the partition files,
+     *              the directory of movie.csv by default
+     */
+    public static void main(String[] args)
+    {
+        final Path film_path  = Path.of(args[0]);
+        final Path actor_path = Path.of(args[1]);
+        final Path cast_path  = Path.of(args[2]);
+        final Path movie_path = Path.of(args[3]);
+        final String option = args.length > 4 ? args[4] : "";
+
+        // preconditions:
+        for (final var path : List.of(film_path, actor_path, cast_path)) {
+            if (!Files.exists(path)) {
+                System.err.printf(
+                    "%s does not exist.\n",
+                    path.toAbsolutePath().toString()
+                );
+                System.exit(-1);
+            }
+        }
+
+        // logic
+        final CloseableSupplier<Reader> film_reader = CloseableSupplier.of(
+            film_path.toString(), () -> CsvScanner.blocks(Files.newInputStream(film_path))
+        );
+
+        final CloseableSupplier<Reader> actor_reader = CloseableSupplier.of(
+            actor_path.toString(), () -> CsvScanner.blocks(Files.newInputStream(actor_path))
+        );
+
+        final CloseableSupplier<Reader> cast_reader = CloseableSupplier.of(
+            cast_path.toString(), () -> CsvScanner.blocks(Files.newInputStream(cast_path))
+        );
+
+        final CloseableSupplier<Writer> movie_writer = CloseableSupplier.of(
+            movie_path.toString(),
+            () -> Files.newBufferedWriter(movie_path, StandardCharsets.UTF_8)
+        );
+
+        final var report = option.equals(OPTION_SPILL)
+        ? Driving.job_spilled(
+            film_reader, actor_reader, cast_reader, movie_writer,
+            args.length > 5
+            ? Integer.parseInt(args[5])
+            : DEFAULT_PARTITION_COUNT,
+            args.length > 6
+            ? Path.of(args[6])
+            : movie_path.toAbsolutePath().getParent()
+        )
+        : Driving.job(film_reader, actor_reader, cast_reader, movie_writer);
+
+        System.out.println(report);
+        if (report == null) System.exit(-1);
+    }
+
+    /**
+     * The command line option that selects the spilling job.
+     */
+    static final String OPTION_SPILL = "--spill";
+
+    /**
+     * The number of partitions of the spilling job when not specified.
+     */
+    static final int DEFAULT_PARTITION_COUNT = 64;
+
+    /**
+     * Report is a statistics holder that the jobs return.
+     * A cast of which the film or the actor is not known, or of which
+     * the age is not valid, is an orphan.
+     */
+    record Report(
+        long films,
+        long actors,
+        long casts,
+        long invalid_films,
+        long invalid_actors,
+        long invalid_casts,
+        long duplicate_films,
+        long duplicate_actors,
+        long orphan_casts,
+        int partitions
+    ) {}
+
+    /**
+     * The place where the logic to drive a reverse mapping job is
+     * implemeted.
+     */
+    interface Driving
+    {
+        /**
+         * Rebuilds movie.csv holding films, actors, and casts on the
+         * heap, in primitive-keyed tables.
+         * @param film_reader  a Reader attached to film.csv
+         * @param actor_reader a Reader attached to actor.csv
+         * @param cast_reader  a Reader attached to cast.csv
+         * @param movie_writer a Writer attached to movie.csv
+         * @return             the statistics of the job, or null if
+         *                     reading or writing failed
+         */
+        static Report job(
+            CloseableSupplier<Reader> film_reader,
+            CloseableSupplier<Reader> actor_reader,
+            CloseableSupplier<Reader> cast_reader,
+            CloseableSupplier<Writer> movie_writer
+        ) {
+            final var counts = new Joining.Counts();
+            // the file being read or written, which a failure is reported with
+            String file = movie_writer.source();
+
+            try (
+                final var printer = new ModelWriter(movie_writer)
+            ) {
+                file = film_reader.source();
+                final var films = Joining.films(film_reader, counts);
+                file = actor_reader.source();
+                final var actors = Joining.actors(actor_reader, counts);
+
+                file = cast_reader.source();
+                try (
+                    final var scanner = CsvScanner.of(cast_reader.get())
+                ) {
+                    while (scanner.next()) {
+                        final var cast = Joining.Cast.of(scanner, counts);
+                        if (cast == null) continue;
+
+                        final int film = films.index(cast.film_key());
+                        final int actor = actors.index.get(cast.actor_key());
+                        if (film == LongIntHashMap.MISSING || actor == LongIntHashMap.MISSING) {
+                            counts.orphan_casts++;
+                            continue;
+                        }
+
+                        films.add_cast(
+                            film, scanner.record_number(),
+                            actors.names.get(actor), cast.role_name(), actors.born[actor],
+                            counts
+                        );
+                    }
+                }
+
+                file = movie_writer.source();
+                films.write(printer);
+                return counts.report(1);
+            } catch (Exception ex) {
+                Diagnostics.shared().reject(
+                    file, -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+                );
+                return null;
+            }
+        }
+
+        /**
+         * Does the same job as {@code job()}, except that actors and
+         * casts are joined through partition files in a temporary
+         * directory, which is deleted at the end of the job.
+         * @param film_reader  a Reader attached to film.csv, which is
+         *                     read twice
+         * @param actor_reader a Reader attached to actor.csv
+         * @param cast_reader  a Reader attached to cast.csv
+         * @param movie_writer a Writer attached to movie.csv
+         * @param partitions   the number of partitions of each phase
+         * @param spill_dir    a directory for the partition files
+         * @return             the statistics of the job, or null if
+         *                     reading or writing failed
+         */
+        static Report job_spilled(
+            CloseableSupplier<Reader> film_reader,
+            CloseableSupplier<Reader> actor_reader,
+            CloseableSupplier<Reader> cast_reader,
+            CloseableSupplier<Writer> movie_writer,
+            int partitions,
+            final Path spill_dir
+        ) {
+            final var counts = new Joining.Counts();
+            Path dir = null;
+            // the file being read or written, which a failure is reported with
+            String file = spill_dir.toString();
+
+            try (
+                final var printer = new ModelWriter(movie_writer)
+            ) {
+                dir = Files.createTempDirectory(spill_dir, "ex2reverser");
+                final var spill = new Spilling.Partitions(dir, Math.max(partitions, 1));
+
+                // the release year of every film, and the year ranges
+                file = film_reader.source();
+                final var years = Spilling.years(film_reader, counts);
+                final var ranges = Spilling.Ranges.of(years.films_by_year(), spill.count());
+                Spilling.films(film_reader, years, ranges, spill);
+
+                // the grace hash join of casts to actors
+                file = cast_reader.source();
+                Spilling.partition(actor_reader, cast_reader, counts, spill);
+                file = dir.toString();
+                for (int partition = 0; partition < spill.count(); partition++) {
+                    Spilling.join(partition, years, ranges, counts, spill);
+                }
+
+                // the groups of each year range in the order of the years
+                file = movie_writer.source();
+                for (int range = 0; range < ranges.count(); range++) {
+                    Spilling.group(range, counts, spill).write(printer);
+                }
+                return counts.report(spill.count());
+            } catch (Exception ex) {
+                Diagnostics.shared().reject(
+                    file, -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+                );
+                return null;
+            } finally {
+                Spilling.delete(dir);
+            }
+        }
+    }
+
+    /**
+     * Joining provides the tables of the hash join and the rows read
+     * into them.
+     */
+    interface Joining
+    {
+        /**
+         * The number of hex digits of an id that make its key.
+         */
+        static final int KEY_HEX_DIGITS = Long.BYTES * 2;
+
+        /**
+         * Tells if a field is an id, of which the first
+         * {@code KEY_HEX_DIGITS} chars are hex digits.
+         * @param scanner a CsvScanner positioned at a record
+         * @param field   the index of a field
+         * @return        {@code true} if the field has a key
+         */
+        static boolean is_key(final CsvScanner scanner, int field)
+        {
+            if (scanner.length(field) < KEY_HEX_DIGITS) return false;
+            for (int index = 0; index < KEY_HEX_DIGITS; index++) {
+                if (Character.digit(scanner.char_at(field, index), 16) < 0) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the key of an id, its first 64 bits, without creating
+         * a String.
+         * @param scanner a CsvScanner positioned at a record
+         * @param field   the index of a field that {@code is_key()}
+         * @return        the key
+         */
+        static long key(final CsvScanner scanner, int field)
+        {
+            long key = 0L;
+            for (int index = 0; index < KEY_HEX_DIGITS; index++) {
+                key = (key << 4) | Character.digit(scanner.char_at(field, index), 16);
+            }
+            return key;
+        }
+
+        /**
+         * Cast is a row of cast.csv, with the ids as keys.
+         */
+        record Cast(long film_key, long actor_key, String role_name)
+        {
+            /**
+             * Reads the current row of a scanner of cast.csv.
+             * @param scanner a CsvScanner positioned at a row
+             * @param counts  the Counts of the job
+             * @return        a Cast, or null if the row is invalid
+             */
+            static Cast of(final CsvScanner scanner, final Counts counts)
+            {
+                counts.casts++;
+                if (scanner.field_count() != CAST_FIELDS
+                    || !is_key(scanner, 0) || !is_key(scanner, 1) || scanner.length(2) == 0) {
+                    counts.invalid_casts++;
+                    return null;
+                }
+                return new Cast(key(scanner, 0), key(scanner, 1), scanner.string(2));
+            }
+        }
+
+        /**
+         * Films is the table of films, of which each has a list of
+         * joined casts in the order of cast.csv.
+         */
+        final class Films
+        {
+            /**
+             * Adds a film unless its key is already known.
+             * @param key  the key of the film id
+             * @param text the film as a FILM row
+             * @return     {@code false} if the key is already known
+             */
+            boolean add(long key, final Ex2Movie.Text.Film text)
+            {
+                final int film = texts.size();
+                if (index.put_if_absent(key, film) != LongIntHashMap.MISSING) return false;
+
+                texts.add(text);
+                release_years = grown(release_years, film);
+                release_years[film] = Integer.parseInt(text.release());
+                first = grown(first, film);
+                last = grown(last, film);
+                first[film] = last[film] = NONE;
+                return true;
+            }
+
+            /**
+             * Returns the index of a film.
+             * @param key the key of the film id
+             * @return    the index, or {@code LongIntHashMap.MISSING}
+             */
+            int index(long key) { return index.get(key); }
+
+            /**
+             * Appends a joined cast to the list of a film, unless the age
+             * it yields is not a valid {@code actor_age}.
+             * @param film       the index of a film
+             * @param seq        the number of the row in cast.csv
+             * @param actor_name the name of the actor
+             * @param role_name  the name of the role
+             * @param born       the born year of the actor
+             * @param counts     the Counts of the job
+             */
+            void add_cast(
+                int film, long seq,
+                final String actor_name, final String role_name, int born,
+                final Counts counts
+            ) {
+                final var text = new Ex2Movie.Text.Cast(
+                    Ex2Movie.RecordKind.CODE_CAST,
+                    actor_name,
+                    role_name,
+                    Integer.toString(release_years[film] - born)
+                );
+                if (!text.is_valid()) {
+                    counts.orphan_casts++;
+                    return;
+                }
+
+                final int cast = casts.size();
+                casts.add(text);
+                seqs = grown(seqs, cast);
+                next = grown(next, cast);
+                seqs[cast] = seq;
+                next[cast] = NONE;
+
+                if (first[film] == NONE) {
+                    first[film] = cast;
+                } else {
+                    next[last[film]] = cast;
+                }
+                last[film] = cast;
+            }
+
+            /**
+             * Writes each film followed by its casts, the films in the
+             * order of Text.Film, and the casts in the order of cast.csv.
+             * @param printer a ModelWriter attached to movie.csv
+             */
+            void write(final ModelWriter printer)
+            {
+                final var order = IntStream.range(0, texts.size()).boxed()
+                .sorted(Comparator.comparing(texts::get))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+                var group = new int[16];
+                for (final int film : order) {
+                    final var text = texts.get(film);
+                    printer.print(new Object[] {text.record_kind(), text.name(), text.release()});
+
+                    int size = 0;
+                    for (int cast = first[film]; cast != NONE; cast = next[cast]) {
+                        group = grown(group, size);
+                        group[size++] = cast;
+                    }
+                    sort_by_seq(group, size);
+
+                    for (int member = 0; member < size; member++) {
+                        final var cast = casts.get(group[member]);
+                        printer.print(new Object[] {
+                            cast.record_kind(), cast.actor_name(), cast.role_name(), cast.actor_age()
+                        });
+                    }
+                }
+            }
+
+            // a stable merge sort, which returns at once for a group
+            // already in order, as every group of job() is
+            private void sort_by_seq(final int[] group, int size)
+            {
+                boolean sorted = true;
+                for (int member = 1; member < size && sorted; member++) {
+                    sorted = seqs[group[member - 1]] <= seqs[group[member]];
+                }
+                if (sorted) return;
+
+                var from = group;
+                var to = new int[size];
+                for (int width = 1; width < size; width <<= 1) {
+                    for (int low = 0; low < size; low += width << 1) {
+                        final int middle = Math.min(low + width, size);
+                        final int high = Math.min(low + (width << 1), size);
+                        int left = low;
+                        int right = middle;
+                        for (int out = low; out < high; out++) {
+                            to[out] = right == high || (left < middle && seqs[from[left]] <= seqs[from[right]])
+                            ? from[left++]
+                            : from[right++];
+                        }
+                    }
+                    final var swap = from;
+                    from = to;
+                    to = swap;
+                }
+                if (from != group) System.arraycopy(from, 0, group, 0, size);
+            }
+
+            private final LongIntHashMap index = LongIntHashMap.with_capacity(1 << 12);
+            private final List<Ex2Movie.Text.Film> texts = new ArrayList<>();
+            private final List<Ex2Movie.Text.Cast> casts = new ArrayList<>();
+            private int[] release_years = new int[16];
+            private int[] first = new int[16];
+            private int[] last = new int[16];
+            private long[] seqs = new long[16];
+            private int[] next = new int[16];
+        }
+
+        /**
+         * Actors is the table of actors: the names and born years of
+         * actors, indexed by the keys of their ids.
+         */
+        final class Actors
+        {
+            /**
+             * Adds an actor unless its key is already known.
+             * @param key  the key of the actor id
+             * @param name the name of the actor
+             * @param year the born year of the actor
+             * @return     {@code false} if the key is already known
+             */
+            boolean add(long key, final String name, int year)
+            {
+                final int actor = names.size();
+                if (index.put_if_absent(key, actor) != LongIntHashMap.MISSING) return false;
+
+                names.add(name);
+                born = grown(born, actor);
+                born[actor] = year;
+                return true;
+            }
+
+            final LongIntHashMap index = LongIntHashMap.with_capacity(1 << 12);
+            final List<String> names = new ArrayList<>();
+            int[] born = new int[16];
+        }
+
+        /**
+         * Counts is what the jobs count while they read.
+         */
+        final class Counts
+        {
+            long films = 0L;
+            long actors = 0L;
+            long casts = 0L;
+            long invalid_films = 0L;
+            long invalid_actors = 0L;
+            long invalid_casts = 0L;
+            long duplicate_films = 0L;
+            long duplicate_actors = 0L;
+            long orphan_casts = 0L;
+
+            Report report(int partitions)
+            {
+                return new Report(
+                    films, actors, casts,
+                    invalid_films, invalid_actors, invalid_casts,
+                    duplicate_films, duplicate_actors, orphan_casts,
+                    partitions
+                );
+            }
+        }
+
+        /**
+         * Reads film.csv into a Films table.
+         * @param reader a Reader attached to film.csv
+         * @param counts the Counts of the job
+         * @return       the Films table
+         * @throws Exception if the Reader throws
+         */
+        static Films films(final CloseableSupplier<Reader> reader, final Counts counts)
+            throws Exception
+        {
+            final var films = new Films();
+            try (
+                final var scanner = CsvScanner.of(reader.get())
+            ) {
+                while (scanner.next()) {
+                    final var text = film(scanner, counts);
+                    if (text != null && !films.add(key(scanner, 0), text)) {
+                        counts.duplicate_films++;
+                    }
+                }
+            }
+            return films;
+        }
+
+        /**
+         * Reads the current row of a scanner of film.csv as a FILM row.
+         * @param scanner a CsvScanner positioned at a row
+         * @param counts  the Counts of the job
+         * @return        the FILM row, or null if the row is invalid
+         */
+        static Ex2Movie.Text.Film film(final CsvScanner scanner, final Counts counts)
+        {
+            counts.films++;
+            if (scanner.field_count() != FILM_FIELDS || !is_key(scanner, 0)) {
+                counts.invalid_films++;
+                return null;
+            }
+
+            final var text = new Ex2Movie.Text.Film(
+                Ex2Movie.RecordKind.CODE_FILM,
+                TextHelper.null_if_empty(scanner.string(1)),
+                TextHelper.null_if_empty(scanner.string(2))
+            );
+            if (!text.is_valid()) {
+                counts.invalid_films++;
+                return null;
+            }
+            return text;
+        }
+
+        /**
+         * Reads actor.csv into an Actors table.
+         * @param reader a Reader attached to actor.csv
+         * @param counts the Counts of the job
+         * @return       the Actors table
+         * @throws Exception if the Reader throws
+         */
+        static Actors actors(final CloseableSupplier<Reader> reader, final Counts counts)
+            throws Exception
+        {
+            final var actors = new Actors();
+            try (
+                final var scanner = CsvScanner.of(reader.get())
+            ) {
+                while (scanner.next()) {
+                    if (!is_actor(scanner, counts)) continue;
+                    if (!actors.add(key(scanner, 0), scanner.string(1), (int) scanner.long_value(2, 0L))) {
+                        counts.duplicate_actors++;
+                    }
+                }
+            }
+            return actors;
+        }
+
+        /**
+         * Tells if the current row of a scanner of actor.csv is valid.
+         * @param scanner a CsvScanner positioned at a row
+         * @param counts  the Counts of the job
+         * @return        {@code true} if the row is a valid actor
+         */
+        static boolean is_actor(final CsvScanner scanner, final Counts counts)
+        {
+            counts.actors++;
+            final boolean valid
+            =  scanner.field_count() == ACTOR_FIELDS
+            && is_key(scanner, 0)
+            && scanner.is_digits(2)
+            && new Ex2Actor.Text(
+                null,
+                TextHelper.null_if_empty(scanner.string(1)),
+                TextHelper.null_if_empty(scanner.string(2))
+            )
+            .is_valid();
+
+            if (!valid) counts.invalid_actors++;
+            return valid;
+        }
+
+        /**
+         * The numbers of fields of film.csv, actor.csv, and cast.csv.
+         */
+        static final int
+        FILM_FIELDS  = 3,
+        ACTOR_FIELDS = 3,
+        CAST_FIELDS  = 3;
+
+        /**
+         * The index of the end of a list.
+         */
+        static final int NONE = -1;
+
+        // an array that holds the index argument, grown by half
+        private static int[] grown(final int[] array, int index)
+        {
+            if (index < array.length) return array;
+            return Arrays.copyOf(array, Math.max(index + 1, array.length + (array.length >> 1)));
+        }
+
+        private static long[] grown(final long[] array, int index)
+        {
+            if (index < array.length) return array;
+            return Arrays.copyOf(array, Math.max(index + 1, array.length + (array.length >> 1)));
+        }
+    }
+
+    /**
+     * Spilling provides the phases of {@code Driving.job_spilled()}.
+     */
+    interface Spilling
+    {
+        /**
+         * Partitions names the partition files in the spill directory:
+         * {@code actor-N.csv} and {@code cast-N.csv} partitioned by
+         * actor id, and {@code film-N.csv} and {@code joined-N.csv}
+         * partitioned by ranges of release years.
+         */
+        record Partitions(Path dir, int count)
+        {
+            Path actor(int partition)  { return dir.resolve("actor-" + partition + ".csv"); }
+            Path cast(int partition)   { return dir.resolve("cast-" + partition + ".csv"); }
+            Path film(int range)       { return dir.resolve("film-" + range + ".csv"); }
+            Path joined(int range)     { return dir.resolve("joined-" + range + ".csv"); }
+
+            Writer writer(final Path path) throws IOException
+            {
+                return Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            }
+
+            CsvScanner scanner(final Path path) throws IOException
+            {
+                return CsvScanner.of(CsvScanner.blocks(Files.newInputStream(path)));
+            }
+        }
+
+        /**
+         * Years maps the keys of film ids to release years.
+         */
+        record Years(LongIntHashMap by_key, SortedMap<Integer, Long> films_by_year) {}
+
+        /**
+         * Ranges are consecutive ranges of release years, each of which
+         * holds about as many films as the others, in the order of the
+         * years. A year is never split across ranges.
+         */
+        record Ranges(int[] upper_years)
+        {
+            /**
+             * Splits years into ranges.
+             * @param films_by_year the number of films by release year
+             * @param count         the number of ranges wanted
+             * @return              at most {@code count} Ranges
+             */
+            static Ranges of(final SortedMap<Integer, Long> films_by_year, int count)
+            {
+                final long total = films_by_year.values().stream().mapToLong(Long::longValue).sum();
+                final long share = Math.max(1L, (total + count - 1) / count);
+
+                final var uppers = new ArrayList<Integer>();
+                long filled = 0L;
+                for (final var entry : films_by_year.entrySet()) {
+                    filled += entry.getValue();
+                    if (filled >= share && uppers.size() < count - 1) {
+                        uppers.add(entry.getKey());
+                        filled = 0L;
+                    }
+                }
+                uppers.add(Integer.MAX_VALUE);
+                return new Ranges(uppers.stream().mapToInt(Integer::intValue).toArray());
+            }
+
+            int count() { return upper_years.length; }
+
+            int of(int year)
+            {
+                final int found = Arrays.binarySearch(upper_years, year);
+                return found >= 0 ? found : -found - 1;
+            }
+        }
+
+        /**
+         * Reads the release year of every film.
+         * @param reader a Reader attached to film.csv
+         * @param counts the Counts of the job
+         * @return       the Years of the films
+         * @throws Exception if the Reader throws
+         */
+        static Years years(final CloseableSupplier<Reader> reader, final Joining.Counts counts)
+            throws Exception
+        {
+            final var by_key = LongIntHashMap.with_capacity(1 << 12);
+            final var films_by_year = new TreeMap<Integer, Long>();
+            try (
+                final var scanner = CsvScanner.of(reader.get())
+            ) {
+                while (scanner.next()) {
+                    final var text = Joining.film(scanner, counts);
+                    if (text == null) continue;
+
+                    final int year = Integer.parseInt(text.release());
+                    if (by_key.put_if_absent(Joining.key(scanner, 0), year) != LongIntHashMap.MISSING) {
+                        counts.duplicate_films++;
+                    } else {
+                        films_by_year.merge(year, 1L, Long::sum);
+                    }
+                }
+            }
+            return new Years(by_key, films_by_year);
+        }
+
+        /**
+         * Writes films into the partitions of their year ranges.
+         * @param reader a Reader attached to film.csv
+         * @param years  the Years of the films
+         * @param ranges the Ranges of the years
+         * @param spill  the partition files
+         * @throws Exception if the Reader or a Writer throws
+         */
+        static void films(
+            final CloseableSupplier<Reader> reader,
+            final Years years,
+            final Ranges ranges,
+            final Partitions spill
+        )
+            throws Exception
+        {
+            final var printers = printers(ranges.count(), spill::film, spill);
+            try (
+                final var scanner = CsvScanner.of(reader.get())
+            ) {
+                final var ignored = new Joining.Counts();
+                while (scanner.next()) {
+                    final var text = Joining.film(scanner, ignored);
+                    if (text == null) continue;
+
+                    // of films of the same id, the one whose year was kept
+                    final int year = Integer.parseInt(text.release());
+                    if (years.by_key().get(Joining.key(scanner, 0)) != year) continue;
+                    printers[ranges.of(year)].print(
+                        new Object[] {scanner.string(0), text.name(), text.release()}
+                    );
+                }
+            } finally {
+                close(printers);
+            }
+        }
+
+        /**
+         * Partitions actors and casts by the keys of actor ids, numbering
+         * casts by their rows in cast.csv.
+         * @param actor_reader a Reader attached to actor.csv
+         * @param cast_reader  a Reader attached to cast.csv
+         * @param counts       the Counts of the job
+         * @param spill        the partition files
+         * @throws Exception if a Reader or a Writer throws
+         */
+        static void partition(
+            final CloseableSupplier<Reader> actor_reader,
+            final CloseableSupplier<Reader> cast_reader,
+            final Joining.Counts counts,
+            final Partitions spill
+        )
+            throws Exception
+        {
+            final var actor_printers = printers(spill.count(), spill::actor, spill);
+            try (
+                final var scanner = CsvScanner.of(actor_reader.get())
+            ) {
+                while (scanner.next()) {
+                    if (!Joining.is_actor(scanner, counts)) continue;
+                    actor_printers[partition_of(Joining.key(scanner, 0), spill.count())].print(
+                        new Object[] {scanner.string(0), scanner.string(1), scanner.string(2)}
+                    );
+                }
+            } finally {
+                close(actor_printers);
+            }
+
+            final var cast_printers = printers(spill.count(), spill::cast, spill);
+            try (
+                final var scanner = CsvScanner.of(cast_reader.get())
+            ) {
+                while (scanner.next()) {
+                    final var cast = Joining.Cast.of(scanner, counts);
+                    if (cast == null) continue;
+                    cast_printers[partition_of(cast.actor_key(), spill.count())].print(
+                        new Object[] {
+                            scanner.record_number(), scanner.string(0), scanner.string(1), cast.role_name()
+                        }
+                    );
+                }
+            } finally {
+                close(cast_printers);
+            }
+        }
+
+        /**
+         * Joins the casts of a partition to its actors, and writes the
+         * joined casts into the partitions of the year ranges of their
+         * films, as {@code seq,film_id,actor_name,role_name,born}.
+         * @param partition the number of a partition
+         * @param years     the Years of the films
+         * @param ranges    the Ranges of the years
+         * @param counts    the Counts of the job
+         * @param spill     the partition files
+         * @throws Exception if a file cannot be read or written
+         */
+        static void join(
+            int partition,
+            final Years years,
+            final Ranges ranges,
+            final Joining.Counts counts,
+            final Partitions spill
+        )
+            throws Exception
+        {
+            final var actors = new Joining.Actors();
+            try (
+                final var scanner = spill.scanner(spill.actor(partition))
+            ) {
+                while (scanner.next()) {
+                    if (!actors.add(Joining.key(scanner, 0), scanner.string(1), (int) scanner.long_value(2, 0L))) {
+                        counts.duplicate_actors++;
+                    }
+                }
+            }
+
+            final var printers = new ModelWriter[ranges.count()];
+            try (
+                final var scanner = spill.scanner(spill.cast(partition))
+            ) {
+                while (scanner.next()) {
+                    final int year = years.by_key().get(Joining.key(scanner, 1));
+                    final int actor = actors.index.get(Joining.key(scanner, 2));
+                    if (year == LongIntHashMap.MISSING || actor == LongIntHashMap.MISSING) {
+                        counts.orphan_casts++;
+                        continue;
+                    }
+
+                    final int range = ranges.of(year);
+                    if (printers[range] == null) {
+                        printers[range] = appender(spill.joined(range));
+                    }
+                    printers[range].print(new Object[] {
+                        scanner.string(0), scanner.string(1),
+                        actors.names.get(actor), scanner.string(3), actors.born[actor]
+                    });
+                }
+            } finally {
+                close(printers);
+            }
+        }
+
+        /**
+         * Reads the films and the joined casts of a year range into a
+         * Films table.
+         * @param range  the number of a year range
+         * @param counts the Counts of the job
+         * @param spill  the partition files
+         * @return       the Films table of the range
+         * @throws Exception if a file cannot be read
+         */
+        static Joining.Films group(int range, final Joining.Counts counts, final Partitions spill)
+            throws Exception
+        {
+            final var films = new Joining.Films();
+            try (
+                final var scanner = spill.scanner(spill.film(range))
+            ) {
+                while (scanner.next()) {
+                    films.add(Joining.key(scanner, 0), new Ex2Movie.Text.Film(
+                        Ex2Movie.RecordKind.CODE_FILM,
+                        TextHelper.null_if_empty(scanner.string(1)),
+                        TextHelper.null_if_empty(scanner.string(2))
+                    ));
+                }
+            }
+
+            final var joined = spill.joined(range);
+            if (!Files.exists(joined)) return films;
+
+            try (
+                final var scanner = spill.scanner(joined)
+            ) {
+                while (scanner.next()) {
+                    films.add_cast(
+                        films.index(Joining.key(scanner, 1)),
+                        scanner.long_value(0, 0L),
+                        scanner.string(2),
+                        scanner.string(3),
+                        (int) scanner.long_value(4, 0L),
+                        counts
+                    );
+                }
+            }
+            return films;
+        }
+
+        /**
+         * Deletes a spill directory and the partition files in it.
+         * @param dir the directory, or null
+         */
+        static void delete(final Path dir)
+        {
+            if (dir == null) return;
+            try (
+                final Stream<Path> paths = Files.list(dir)
+            ) {
+                for (final var path : paths.toList()) Files.deleteIfExists(path);
+                Files.deleteIfExists(dir);
+            } catch (IOException ex) {
+                Diagnostics.shared().reject(
+                    dir.toString(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+                );
+            }
+        }
+
+        /**
+         * Returns the partition a key goes to.
+         * @param key   the key of an id
+         * @param count the number of partitions
+         * @return      the number of the partition
+         */
+        static int partition_of(long key, int count)
+        {
+            // the first 32 bits of an id, as Ex2Shards shards it
+            return Integer.remainderUnsigned((int) (key >>> 32), count);
+        }
+
+        private static ModelWriter[] printers(
+            int count,
+            final IntFunction<Path> path,
+            final Partitions spill
+        )
+            throws Exception
+        {
+            final var printers = new ModelWriter[count];
+            try {
+                for (int index = 0; index < count; index++) {
+                    final var file = path.apply(index);
+                    printers[index] = new ModelWriter(() -> spill.writer(file));
+                }
+            } catch (Exception ex) {
+                close(printers);
+                throw ex;
+            }
+            return printers;
+        }
+
+        // joined casts of a range come from every actor partition
+        private static ModelWriter appender(final Path path) throws Exception
+        {
+            return new ModelWriter(() -> Files.newBufferedWriter(
+                path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND
+            ));
+        }
+
+        private static void close(final ModelWriter[] printers) throws Exception
+        {
+            Exception failure = null;
+            for (final var printer : printers) {
+                if (printer == null) continue;
+                try {
+                    printer.close();
+                } catch (Exception ex) {
+                    if (failure == null) failure = ex;
+                }
+            }
+            if (failure != null) throw failure;
+        }
+    }
+}
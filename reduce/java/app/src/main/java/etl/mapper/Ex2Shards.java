@@ -0,0 +1,231 @@
+package etl.mapper;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import etl.util.CloseableSupplier;
+import etl.util.CsvScanner;
+import etl.util.ModelWriter;
+
+/**
+ * Ex2Shards writes the models of an entity into a number of shard files
+ * instead of one file, so that a warehouse loads the shards in parallel
+ * without splitting the file in another pass.
+ * <p>
+ * A model goes to the shard its key hashes to: the first 32 bits of a
+ * SHA-1 id, modulo the number of shards. Films and actors are keyed by
+ * their ids, and casts by the ids of their films, so that a film and
+ * its casts share a shard number. Within a shard, models keep the order
+ * of the whole file.
+ * <p>
+ * Each shard {@code film.csv} is split into is named like
+ * {@code film-00003-of-00064.csv}, and is written by a writer of its
+ * own, concurrently with the others. Next to it a manifest such as
+ * {@code film-00003-of-00064.csv.manifest} holds the Shard record of
+ * the file as one CSV line.
+ */
+public final class Ex2Shards
+{
+    /**
+     * The suffix of the manifest of a shard file.
+     */
+    public static final String MANIFEST_SUFFIX = ".manifest";
+
+    /**
+     * Shard is the manifest of a shard file.
+     * @param file         the name of the shard file
+     * @param shard        the number of the shard, starting at 0
+     * @param shard_count  the number of shards of the entity
+     * @param rows         the number of rows written
+     * @param invalid_rows the number of models that failed to be written
+     */
+    public record Shard(
+        String file,
+        int shard,
+        int shard_count,
+        long rows,
+        long invalid_rows
+    ) {
+        /**
+         * Returns the components of a Shard as an array of Object.
+         * @param shard a Shard record
+         * @return      an array of Object instances
+         */
+        public static Object[] values(final Shard shard)
+        {
+            return new Object[] {
+                shard.file, shard.shard, shard.shard_count, shard.rows, shard.invalid_rows
+            };
+        }
+    }
+
+    /**
+     * Returns the shard a key goes to.
+     * @param key         a SHA-1 id in hex
+     * @param shard_count the number of shards
+     * @return            the number of the shard, from 0 to shard_count - 1
+     */
+    public static int shard_of(final String key, int shard_count)
+    {
+        final int hash = key.length() >= HASH_HEX_DIGITS
+        ? parse_hex(key)
+        : key.hashCode();
+        return Integer.remainderUnsigned(hash, shard_count);
+    }
+
+    /**
+     * Returns the path of a shard file of an entity file.
+     * @param path        path to the entity file, such as film.csv
+     * @param shard       the number of the shard
+     * @param shard_count the number of shards
+     * @return            path to the shard file
+     */
+    public static Path shard_path(final Path path, int shard, int shard_count)
+    {
+        final var name = path.getFileName().toString();
+        final int dot = name.lastIndexOf('.');
+        final var stem = dot < 0 ? name : name.substring(0, dot);
+        final var extension = dot < 0 ? "" : name.substring(dot);
+
+        return path.resolveSibling(
+            String.format("%s-%05d-of-%05d%s", stem, shard, shard_count, extension)
+        );
+    }
+
+    /**
+     * Writes models into shard files and their manifests, one writer per
+     * shard, on the executor.
+     * @param <T>         the type of the models
+     * @param path        path to the entity file, such as film.csv
+     * @param shard_count the number of shards
+     * @param models      the models in the order of the entity file
+     * @param key         a Function that returns the key of a model
+     * @param values      a Function that maps a model to its values
+     * @param io          an executor that writes files
+     * @return            the Shard records in shard order, or null if a
+     *                    shard or a manifest failed to be written
+     */
+    public static <T extends Record> List<Shard> write(
+        final Path path,
+        int shard_count,
+        final Collection<T> models,
+        final Function<T, String> key,
+        final Function<T, Object[]> values,
+        final ExecutorService io
+    ) {
+        final var partitions = new ArrayList<List<T>>(shard_count);
+        for (int shard = 0; shard < shard_count; shard++) partitions.add(new ArrayList<>());
+        for (final var model : models) {
+            partitions.get(shard_of(key.apply(model), shard_count)).add(model);
+        }
+
+        final var futures = new ArrayList<Future<Shard>>(shard_count);
+        for (int shard = 0; shard < shard_count; shard++) {
+            final int number = shard;
+            futures.add(io.submit(() -> write_shard(
+                shard_path(path, number, shard_count),
+                number, shard_count, partitions.get(number), values
+            )));
+        }
+
+        final var shards = new ArrayList<Shard>(shard_count);
+        for (final var future : futures) {
+            try {
+                final var shard = future.get();
+                if (shard == null) return null;
+                shards.add(shard);
+            } catch (Exception ex) {
+                return null;
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Reads the manifest of a shard file.
+     * @param shard_path path to a shard file
+     * @return           the Shard record, or null if the manifest does
+     *                   not exist or is not a manifest
+     */
+    public static Shard manifest(final Path shard_path)
+    {
+        // the file name is quoted by ModelWriter if it needs to be
+        try (
+            final var scanner = CsvScanner.of(
+                Files.newBufferedReader(manifest_path(shard_path), StandardCharsets.UTF_8)
+            )
+        ) {
+            if (!scanner.next() || scanner.field_count() < MANIFEST_FIELDS) return null;
+
+            return new Shard(
+                scanner.string(0),
+                Integer.parseInt(scanner.string(1)),
+                Integer.parseInt(scanner.string(2)),
+                Long.parseLong(scanner.string(3)),
+                Long.parseLong(scanner.string(4))
+            );
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private static <T extends Record> Shard write_shard(
+        final Path path,
+        int shard,
+        int shard_count,
+        final List<T> models,
+        final Function<T, Object[]> values
+    ) {
+        final var report = Ex2Mapper.Driving.write(writer(path), models.stream(), values);
+        if (report == null) return null;
+
+        final var manifest = new Shard(
+            path.getFileName().toString(),
+            shard,
+            shard_count,
+            report.total_lines() - report.invalid_lines(),
+            report.invalid_lines()
+        );
+
+        try (
+            final var printer = new ModelWriter(writer(manifest_path(path)))
+        ) {
+            printer.print(Shard.values(manifest));
+        } catch (Exception ex) {
+            return null;
+        }
+        return manifest;
+    }
+
+    private static Path manifest_path(final Path shard_path)
+    {
+        return shard_path.resolveSibling(shard_path.getFileName() + MANIFEST_SUFFIX);
+    }
+
+    private static CloseableSupplier<Writer> writer(final Path path)
+    {
+        return () -> Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+    }
+
+    private static int parse_hex(final String key)
+    {
+        try {
+            return Integer.parseUnsignedInt(key, 0, HASH_HEX_DIGITS, 16);
+        } catch (NumberFormatException ex) {
+            return key.hashCode();
+        }
+    }
+
+    private Ex2Shards() {}
+
+    private static final int HASH_HEX_DIGITS = Integer.SIZE / 4;
+    private static final int MANIFEST_FIELDS = 5;
+}
@@ -0,0 +1,382 @@
+package etl.mapper;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import etl.model.Ex3Actor;
+import etl.model.Ex3Cast;
+import etl.model.Ex3Film;
+import etl.util.AsciiKey;
+import etl.util.CloseableSupplier;
+import etl.util.LongHashSet;
+import etl.util.ModelReader;
+import etl.util.ModelWriter;
+
+/**
+ * {@code mapper.Ex3Joiner} checks the referential integrity of
+ * <ul>
+ * <li>Ex3Film
+ * <li>Ex3Actor
+ * <li>Ex3Cast
+ * </ul>
+ * and reports casts that refer to unknown films or actors, as well as
+ * films and actors whose ids are not unique.
+ * <p>
+ * Only the ids of films and actors are retained, each packed into a
+ * {@code long} by {@code AsciiKey}, so that the memory footprint is
+ * proportional to the number of ids rather than to the size of rows.
+ */
+public interface Ex3Joiner
+{
+    /**
+     * Drives checking Ex3Cast against Ex3Film and Ex3Actor.
+     * @param args  [0]: path to film.csv, [1]: path to actor.csv
+     *              [2]: path to cast.csv, [3]: path to orphan.csv
+     *              [4]: path to duplicate.csv
+     */
+    public static void main(String[] args)
+    {
+        final Path film_path      = Path.of(args[0]);
+        final Path actor_path     = Path.of(args[1]);
+        final Path cast_path      = Path.of(args[2]);
+        final Path orphan_path    = Path.of(args[3]);
+        final Path duplicate_path = Path.of(args[4]);
+
+        // preconditions:
+        for (final var path : List.of(film_path, actor_path, cast_path)) {
+            if (!Files.exists(path)) {
+                System.err.printf(
+                    "%s does not exist.\n",
+                    path.toAbsolutePath().toString()
+                );
+                System.exit(-1);
+            }
+        }
+
+        // logic
+        final CloseableSupplier<Reader> film_reader = CloseableSupplier.of(
+            film_path.toString(), () -> Files.newBufferedReader(film_path, StandardCharsets.UTF_8)
+        );
+
+        final CloseableSupplier<Reader> actor_reader = CloseableSupplier.of(
+            actor_path.toString(), () -> Files.newBufferedReader(actor_path, StandardCharsets.UTF_8)
+        );
+
+        final CloseableSupplier<Reader> cast_reader = CloseableSupplier.of(
+            cast_path.toString(), () -> Files.newBufferedReader(cast_path, StandardCharsets.UTF_8)
+        );
+
+        final CloseableSupplier<Writer> orphan_writer = CloseableSupplier.of(
+            orphan_path.toString(), () -> Files.newBufferedWriter(orphan_path, StandardCharsets.UTF_8)
+        );
+
+        final CloseableSupplier<Writer> duplicate_writer = CloseableSupplier.of(
+            duplicate_path.toString(), () -> Files.newBufferedWriter(duplicate_path, StandardCharsets.UTF_8)
+        );
+
+        final var report = Driving.job(
+            film_reader, actor_reader, cast_reader,
+            orphan_writer, duplicate_writer
+        );
+        System.out.println(report);
+        if (report == null) System.exit(-1);
+    }
+
+    /**
+     * Report is a statistics holder that {@code Driving.job()} returns.
+     * A cast of which neither the film nor the actor is known counts
+     * toward both {@code missing_films} and {@code missing_actors}.
+     */
+    record Report(
+        long films,
+        long actors,
+        long casts,
+        long invalid_films,
+        long invalid_actors,
+        long invalid_casts,
+        long duplicate_films,
+        long duplicate_actors,
+        long orphan_casts,
+        long missing_films,
+        long missing_actors
+    ) {}
+
+    /**
+     * Duplicate is an id that appeared more than once in an entity file.
+     */
+    record Duplicate(
+        String entity,
+        String id
+    ) {
+        /**
+         * The values of the entity field.
+         */
+        static final String
+        ENTITY_FILM  = "film",
+        ENTITY_ACTOR = "actor";
+
+        /**
+         * Returns the components of a Duplicate as an array of Object.
+         * @param duplicate a Duplicate record
+         * @return          an array of Object instances
+         */
+        static Object[] values(final Duplicate duplicate)
+        {
+            return new Object[] {duplicate.entity, duplicate.id};
+        }
+    }
+
+    /**
+     * The place where the logic to drive a joining job is implemeted.
+     */
+    interface Driving
+    {
+        /**
+         * The number of cast rows probed together in parallel.
+         */
+        static final int BATCH_SIZE = 8192;
+
+        /**
+         * Reads film and actor ids, then probes every cast against them.
+         * Orphaned casts are written in the Ex3Cast CSV format so that
+         * they can be fed again once their films or actors are fixed.
+         * Duplicate ids are written as {@code entity,id} lines.
+         * @param film_reader      a Reader attached to film.csv
+         * @param actor_reader     a Reader attached to actor.csv
+         * @param cast_reader      a Reader attached to cast.csv
+         * @param orphan_writer    a Writer attached to orphan.csv
+         * @param duplicate_writer a Writer attached to duplicate.csv
+         * @return                 the statistics of the job, or null
+         *                         if a file cannot be read or written
+         */
+        static Report job(
+            CloseableSupplier<Reader> film_reader,
+            CloseableSupplier<Reader> actor_reader,
+            CloseableSupplier<Reader> cast_reader,
+            CloseableSupplier<Writer> orphan_writer,
+            CloseableSupplier<Writer> duplicate_writer
+        ) {
+            try (
+                final var orphans = new ModelWriter(orphan_writer);
+                final var duplicates = new ModelWriter(duplicate_writer)
+            ) {
+                final var films = Joining.film_ids(film_reader, duplicates);
+                if (films == null) return null;
+                final var actors = Joining.actor_ids(actor_reader, duplicates);
+                if (actors == null) return null;
+
+                final var casts = new Joining.CastProbe(
+                    films.ids(), actors.ids(), orphans
+                );
+                final var cast_count = ModelReader.for_each(
+                    cast_reader,
+                    Ex3Cast.Text.class,
+                    Ex3Cast.Extracting::text,
+                    Ex3Cast.Extracting::model,
+                    casts
+                );
+                if (cast_count < 0) return null;
+                casts.flush();
+
+                return new Report(
+                    films.rows(),
+                    actors.rows(),
+                    cast_count,
+                    films.invalid(),
+                    actors.invalid(),
+                    casts.invalid(),
+                    films.duplicates(),
+                    actors.duplicates(),
+                    casts.orphans(),
+                    casts.missing_films(),
+                    casts.missing_actors()
+                );
+            } catch (Exception ex) {
+                return null;
+            }
+        }
+    }
+
+    interface Joining
+    {
+        /**
+         * Ids is the result of reading the ids of an entity file.
+         */
+        record Ids(
+            LongHashSet ids,
+            long rows,
+            long invalid,
+            long duplicates
+        ) {}
+
+        /**
+         * Collects the ids of films.
+         * @param reader     a Reader attached to film.csv
+         * @param duplicates a ModelWriter that takes duplicate ids
+         * @return           the ids and the statistics, or null if
+         *                   the file cannot be read
+         */
+        static Ids film_ids(
+            final CloseableSupplier<Reader> reader,
+            final ModelWriter duplicates
+        ) {
+            final var collector = new IdCollector(
+                Duplicate.ENTITY_FILM, duplicates
+            );
+            final var rows = ModelReader.for_each(
+                reader,
+                Ex3Film.Text.class,
+                Ex3Film.Extracting::text,
+                Ex3Film.Extracting::model,
+                (Ex3Film.Model film) -> collector.accept(
+                    film == null ? null : film.id()
+                )
+            );
+            return rows < 0 ? null : collector.ids(rows);
+        }
+
+        /**
+         * Collects the ids of actors.
+         * @param reader     a Reader attached to actor.csv
+         * @param duplicates a ModelWriter that takes duplicate ids
+         * @return           the ids and the statistics, or null if
+         *                   the file cannot be read
+         */
+        static Ids actor_ids(
+            final CloseableSupplier<Reader> reader,
+            final ModelWriter duplicates
+        ) {
+            final var collector = new IdCollector(
+                Duplicate.ENTITY_ACTOR, duplicates
+            );
+            final var rows = ModelReader.for_each(
+                reader,
+                Ex3Actor.Text.class,
+                Ex3Actor.Extracting::text,
+                Ex3Actor.Extracting::model,
+                (Ex3Actor.Model actor) -> collector.accept(
+                    actor == null ? null : actor.id()
+                )
+            );
+            return rows < 0 ? null : collector.ids(rows);
+        }
+
+        /**
+         * IdCollector adds ids to a LongHashSet, counting invalid ones
+         * and writing duplicate ones.
+         */
+        class IdCollector
+        {
+            void accept(final String id)
+            {
+                final var key = AsciiKey.pack(id);
+                if (key == AsciiKey.INVALID) {
+                    invalid++;
+                } else if (!ids.add(key)) {
+                    duplicates++;
+                    writer.accept(new Duplicate(entity, id), Duplicate::values);
+                }
+            }
+
+            Ids ids(long rows)
+            {
+                return new Ids(ids, rows, invalid, duplicates);
+            }
+
+            IdCollector(final String entity, final ModelWriter writer)
+            {
+                this.entity = entity;
+                this.writer = writer;
+            }
+
+            private final String entity;
+            private final ModelWriter writer;
+            private final LongHashSet ids = LongHashSet.with_capacity(1 << 16);
+            private long invalid = 0L;
+            private long duplicates = 0L;
+        }
+
+        /**
+         * CastProbe gathers casts into batches of {@code BATCH_SIZE},
+         * probes each batch in parallel, and writes the orphans in the
+         * order they were read.
+         */
+        class CastProbe implements Consumer<Ex3Cast.Model>
+        {
+            @Override
+            public void accept(final Ex3Cast.Model cast)
+            {
+                if (cast == null) {
+                    invalid++;
+                    return;
+                }
+
+                batch.add(cast);
+                if (batch.size() == Driving.BATCH_SIZE) flush();
+            }
+
+            /**
+             * Probes the casts that are not probed yet.
+             */
+            void flush()
+            {
+                final var found = batch.parallelStream()
+                .filter(cast -> !is_joined(cast))
+                .toList();
+
+                for (final var orphan : found) {
+                    if (!films.contains(AsciiKey.pack(orphan.film_id()))) {
+                        missing_films++;
+                    }
+                    if (!actors.contains(AsciiKey.pack(orphan.actor_id()))) {
+                        missing_actors++;
+                    }
+                    writer.accept(orphan, Ex3Cast.Loading::values);
+                }
+
+                orphans += found.size();
+                batch.clear();
+            }
+
+            private boolean is_joined(final Ex3Cast.Model cast)
+            {
+                final boolean joined
+                =  films.contains(AsciiKey.pack(cast.film_id()))
+                && actors.contains(AsciiKey.pack(cast.actor_id()))
+                ;
+                return joined;
+            }
+
+            long invalid()        { return invalid; }
+            long orphans()        { return orphans; }
+            long missing_films()  { return missing_films; }
+            long missing_actors() { return missing_actors; }
+
+            CastProbe(
+                final LongHashSet films,
+                final LongHashSet actors,
+                final ModelWriter writer
+            ) {
+                this.films = films;
+                this.actors = actors;
+                this.writer = writer;
+            }
+
+            private final LongHashSet films;
+            private final LongHashSet actors;
+            private final ModelWriter writer;
+            private final List<Ex3Cast.Model> batch
+            = new ArrayList<>(Driving.BATCH_SIZE);
+            private long invalid = 0L;
+            private long orphans = 0L;
+            private long missing_films = 0L;
+            private long missing_actors = 0L;
+        }
+    }
+}
@@ -3,7 +3,6 @@ package etl.model;
 import java.util.Objects;
 
 import etl.util.IntRange;
-import etl.util.TextHelper;
 
 /**
  * Ex2Cast represents the Cast relationship.
@@ -169,17 +168,19 @@ public interface Ex2Cast
 
         /**
          * Returns an array of Object instances. The objects are generated
-         * from the Model record's coponents.
+         * from the Model record's coponents, in the order of the Text
+         * record's components, through its accessors rather than
+         * reflection, as this is called for every record written.
          * @param model a Model record
-         * @return      an array of Object instances
+         * @return      an array of Object instances, which is empty if
+         *              the Model yields no valid Text
          */
         static Object[] values(final Model model)
         {
             final var text = text(model);
-            final var values = TextHelper.values(
-                text,
-                TextHelper.getters(Text.class)
-            );
+            if (text == null) return new Object[] {};
+
+            final var values = new Object[] { text.film_id(), text.actor_id(), text.role_name() };
             return values;
         }
     }
@@ -2,9 +2,8 @@ package etl.model;
 
 import java.time.Year;
 
+import etl.util.IdHash;
 import etl.util.IntRange;
-import etl.util.Sha1;
-import etl.util.TextHelper;
 
 /**
  * Ex2Film represents the Film entity.
@@ -41,7 +40,7 @@ public interface Ex2Film
 
             // the id field
             final var id
-            = Sha1.hex_string(name.concat(release.toString()));
+            = IdHash.selected().id(name.concat(release.toString()));
 
             // create a Model instance
             final var model = new Model(id, name, release);
@@ -175,17 +174,19 @@ public interface Ex2Film
 
         /**
          * Returns an array of Object instances. The objects are generated
-         * from the Model record's coponents.
+         * from the Model record's coponents, in the order of the Text
+         * record's components, through its accessors rather than
+         * reflection, as this is called for every record written.
          * @param model a Model record
-         * @return      an array of Object instances
+         * @return      an array of Object instances, which is empty if
+         *              the Model yields no valid Text
          */
         static Object[] values(final Model model)
         {
             final var text = text(model);
-            final var values = TextHelper.values(
-                text,
-                TextHelper.getters(Text.class)
-            );
+            if (text == null) return new Object[] {};
+
+            final var values = new Object[] { text.id(), text.name(), text.release() };
             return values;
         }
     }
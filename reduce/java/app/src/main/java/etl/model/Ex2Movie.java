@@ -1,20 +1,27 @@
 package etl.model;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.lang.reflect.Constructor;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.SortedMap;
-import java.util.TreeMap;
 
-import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
 import etl.util.CloseableSupplier;
+import etl.util.CsvScanner;
+import etl.util.Diagnostics;
 import etl.util.IntRange;
+import etl.util.JsonScanner;
 import etl.util.ModelReader;
+import etl.util.SortedArrayMap;
 import etl.util.TextHelper;
+import etl.util.YearBuckets;
 
 /**
  * Ex2Movie represents a view of Film-Cast relationship.
@@ -119,7 +126,7 @@ public interface Ex2Movie
                 && VALID_LENGTH_RANGE_name.covers(name.length())
                 && release != null
                 && VALID_LENGTH_RANGE_release.covers(release.length())
-                && release.matches("^[0-9]+$")
+                && TextHelper.is_digits(release)
                 ;
                 return validity;
             }
@@ -246,7 +253,7 @@ public interface Ex2Movie
                 && VALID_LENGTH_RANGE_role_name.covers(role_name.length())
                 && actor_age != null
                 && VALID_LENGTH_RANGE_actor_age.covers(actor_age.length())
-                && actor_age.matches("^[0-9]+$")
+                && TextHelper.is_digits(actor_age)
                 ;
                 return validity;
             }
@@ -281,54 +288,309 @@ public interface Ex2Movie
     {
         /**
          * Builds a Text map instance by reading a CSV data.
+         * Films are ordered by YearBuckets rather than by a TreeMap, and
+         * the casts of a film are those that follow it in the data.
+         * An invalid film is skipped with its casts, as {@code scan()}
+         * passes none of them.
          * @param reader a Reader to read the CSV data
-         * @return       a map of {@code <Film, List<Cast>>}
+         * @return       a map of {@code <Film, List<Cast>>}, or null if
+         *               reading failed
          */
         static SortedMap<Text.Film, List<Text.Cast>> text_map(
             CloseableSupplier<Reader> reader
         ) {
-            final var format = ModelReader.default_format();
+            final var entries = new ArrayList<Map.Entry<Text.Film, List<Text.Cast>>>();
+
+            final long count = scan(reader, new Sink() {
+                @Override
+                public void film(final Text.Film text_film)
+                {
+                    if (text_film == null) return;
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(
+                        text_film, new ArrayList<>()
+                    ));
+                }
+
+                @Override
+                public void cast(final Text.Cast text_cast)
+                {
+                    entries.get(entries.size() - 1).getValue().add(text_cast);
+                }
+            });
+            if (count < 0) return null;
+
+            // a film read twice keeps the casts of its last occurrence
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            final Map.Entry<Text.Film, List<Text.Cast>>[] sorted = YearBuckets.sort_distinct(
+                (Map.Entry<Text.Film, List<Text.Cast>>[]) entries.toArray(new Map.Entry[0]),
+                entry -> Integer.parseInt(entry.getKey().release()),
+                Comparator.comparing(entry -> entry.getKey().name()),
+                true
+            );
+
+            final var films = new Text.Film[sorted.length];
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            final List<Text.Cast>[] casts = new List[sorted.length];
+            for (int index = 0; index < sorted.length; index++) {
+                films[index] = sorted[index].getKey();
+                casts[index] = sorted[index].getValue();
+            }
+            return SortedArrayMap.of_sorted(films, casts);
+        }
+
+        /**
+         * Sink takes the Text records {@code scan()} extracts, in the
+         * order of the data.
+         */
+        interface Sink
+        {
+            /**
+             * Takes a film.
+             * @param text_film a Text.Film record, or null if invalid
+             */
+            void film(Text.Film text_film);
+
+            /**
+             * Takes a cast of the last film, which is valid.
+             * @param text_cast a Text.Cast record, or null if invalid
+             */
+            void cast(Text.Cast text_cast);
+        }
+
+        /**
+         * Reads a CSV data and passes each FILM and CAST record to the
+         * sink argument.
+         * <p>
+         * This is the hot loop of extraction. Records are tokenized in
+         * place by a CsvScanner, the record kind is dispatched by
+         * comparing chars, and Text records are built by their canonical
+         * constructors, so that the only objects allocated per row are
+         * the Text record and its Strings, which the sink retains.
+         * A film or a cast of which the digit-only field is not digits
+         * is rejected before any String is copied. Every record that is
+         * passed as null, or not passed, is reported to Diagnostics with
+         * the name of the file the supplier tells of. The casts of an
+         * invalid film, and those that precede every film, are not
+         * passed, so that the film is skipped with its group; a valid
+         * one is reported as an invalid record. A Reader that
+         * {@code CsvScanner.blocks()} returns is scanned by blocks, and
+         * a Reader {@code JsonScanner.json()} returns is scanned as JSON
+         * by {@code scan_json()}.
+         * @param reader a Reader to read the CSV data
+         * @param sink   a Sink that takes each record
+         * @return       the number of records read, or -1 if reading
+         *               failed or the sink threw
+         */
+        static long scan(CloseableSupplier<Reader> reader, final Sink sink)
+        {
+            final Reader source;
+            try {
+                source = reader.get();
+            } catch (Exception ex) {
+                return -1L;
+            }
+            if (JsonScanner.is_json(source)) return scan_json(source, reader.source(), sink);
 
             try (
-                final var parser = CSVParser.parse(reader.get(), format)
+                final var scanner = CsvScanner.of(source)
             ) {
-                final SortedMap<Text.Film, List<Text.Cast>>
-                map = parser.stream()
-                .reduce(
-                    new TreeMap<Text.Film, List<Text.Cast>>(),
-                    (accum, csv) -> {
-                        Ex2Movie.RecordKind.of(
-                            csv.get(RecordKind.INDEX)
-                        )
-                        .ifPresentOrElse(constant -> {
-                            switch (constant) {
-                            case FILM:
-                                var text_film = Text.Film.instance(csv);
-                                accum.put(text_film, new ArrayList<>());
-                                break;
-                            case CAST:
-                                var text_cast = Text.Cast.instance(csv);
-                                accum.get(accum.lastKey()).add(text_cast);
-                                break;
-                            }
-                        }, () -> {
-                            // ToDo: call the logging subsystem rather than System.err.
-                            System.err.printf(
-                                "%d: an invalid constant or an empty line\n",
-                                csv.getRecordNumber()
-                            );
-                        });
-                        return accum;
-                    },
-                    (accum, other) -> {
-                        accum.putAll(other);
-                        return accum;
+                return scan(scanner, reader.source(), sink);
+            } catch (Exception ex) {
+                return -1L;
+            }
+        }
+
+        /**
+         * Passes each FILM and CAST record a CsvScanner reads to the
+         * sink argument, as {@code scan()} does, so that a job streaming
+         * the data, which takes the byte offsets of the records from the
+         * scanner, shares the hot loop.
+         * @param scanner a CsvScanner over the CSV data, which the
+         *                caller closes
+         * @param file    the name of the file of the data, which rejects
+         *                are reported with, or null
+         * @param sink    a Sink that takes each record
+         * @return        the number of records read
+         * @throws IOException if the data cannot be read
+         */
+        static long scan(final CsvScanner scanner, final String file, final Sink sink)
+            throws IOException
+        {
+            final var diagnostics = Diagnostics.shared();
+            long count = 0L;
+            boolean grouped = false;
+
+            while (scanner.next()) {
+                count++;
+
+                final String rule;
+                if (scanner.equals_to(RecordKind.INDEX, RecordKind.CODE_FILM)) {
+                    final var text = film(scanner);
+                    sink.film(text);
+                    grouped = text != null;
+                    if (grouped) continue;
+                    rule = rule_of(scanner, FILM_FIELDS, FILM_RELEASE);
+                } else if (scanner.equals_to(RecordKind.INDEX, RecordKind.CODE_CAST)) {
+                    final var text = cast(scanner);
+                    if (grouped) sink.cast(text);
+                    if (grouped && text != null) continue;
+                    rule = text != null
+                    ? Diagnostics.RULE_INVALID_RECORD
+                    : rule_of(scanner, CAST_FIELDS, CAST_ACTOR_AGE);
+                } else {
+                    rule = Diagnostics.RULE_INVALID_RECORD_KIND;
+                }
+
+                if (diagnostics.admits(rule)) {
+                    diagnostics.emit(new Diagnostics.Reject(
+                        file, scanner.record_number(), rule, scanner.line()
+                    ));
+                }
+            }
+
+            return count;
+        }
+
+        /**
+         * Reads JSON data, an array of objects or JSON Lines, and passes
+         * each FILM and CAST object to the sink argument, as
+         * {@code scan()} passes CSV records. An object holds the
+         * components of a Text record by name, such as
+         * <pre>{@code
+         * {"record_kind": "1", "name": "The Deer Hunter", "release": 1978}
+         * {"record_kind": "2", "actor_name": "Robert De Niro",
+         *  "role_name": "Mike", "actor_age": 35}
+         * }</pre>
+         * and is read by a JsonScanner one object at a time. The casts
+         * of an invalid film are not passed, as {@code scan()} does.
+         * @param reader a Reader attached to JSON data
+         * @param file   the name of the file of the data, which rejects
+         *               are reported with, or null
+         * @param sink   a Sink that takes each record
+         * @return       the number of objects read, or -1 if reading
+         *               failed, the data is not JSON, or the sink threw
+         */
+        static long scan_json(final Reader reader, final String file, final Sink sink)
+        {
+            final var diagnostics = Diagnostics.shared();
+            long count = 0L;
+            boolean grouped = false;
+
+            try (
+                final var scanner = JsonScanner.of(reader)
+            ) {
+                while (scanner.next()) {
+                    count++;
+
+                    if (scanner.has_nested()) {
+                        diagnostics.reject(
+                            file, scanner.record_number(),
+                            Diagnostics.RULE_UNPARSABLE_VALUE, scanner.line()
+                        );
                     }
-                );
-                return map;
+
+                    final int kind = scanner.index_of(RECORD_KIND_NAME);
+                    final String rule;
+                    if (scanner.equals_to(kind, RecordKind.CODE_FILM)) {
+                        final var text = ModelReader.text(scanner, film_ctor, FILM_NAMES);
+                        grouped = text != null && text.is_valid();
+                        sink.film(grouped ? text : null);
+                        if (grouped) continue;
+                        rule = Diagnostics.RULE_INVALID_RECORD;
+                    } else if (scanner.equals_to(kind, RecordKind.CODE_CAST)) {
+                        final var text = ModelReader.text(scanner, cast_ctor, CAST_NAMES);
+                        final boolean valid = text != null && text.is_valid();
+                        if (grouped) sink.cast(valid ? text : null);
+                        if (grouped && valid) continue;
+                        rule = Diagnostics.RULE_INVALID_RECORD;
+                    } else {
+                        rule = Diagnostics.RULE_INVALID_RECORD_KIND;
+                    }
+
+                    if (diagnostics.admits(rule)) {
+                        diagnostics.emit(new Diagnostics.Reject(
+                            file, scanner.record_number(), rule, scanner.line()
+                        ));
+                    }
+                }
             } catch (Exception ex) {
-                return null;
+                diagnostics.reject(
+                    file, count + 1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+                );
+                count = -1L;
             }
+
+            return count;
+        }
+
+        private static Text.Film film(final CsvScanner scanner)
+        {
+            if (scanner.field_count() != FILM_FIELDS) return null;
+            if (!scanner.is_digits(FILM_RELEASE)) return null;
+
+            final var text = new Text.Film(
+                RecordKind.CODE_FILM,
+                TextHelper.null_if_empty(scanner.string(1)),
+                TextHelper.null_if_empty(scanner.string(2))
+            );
+            return text.is_valid() ? text : null;
+        }
+
+        private static Text.Cast cast(final CsvScanner scanner)
+        {
+            if (scanner.field_count() != CAST_FIELDS) return null;
+            if (!scanner.is_digits(CAST_ACTOR_AGE)) return null;
+
+            final var text = new Text.Cast(
+                RecordKind.CODE_CAST,
+                TextHelper.null_if_empty(scanner.string(1)),
+                TextHelper.null_if_empty(scanner.string(2)),
+                TextHelper.null_if_empty(scanner.string(3))
+            );
+            return text.is_valid() ? text : null;
         }
+
+        // a record of the right arity was rejected for its digit-only
+        // field, or for another field is_valid() refused
+        private static String rule_of(final CsvScanner scanner, int fields, int digits)
+        {
+            return scanner.field_count() == fields && !scanner.is_digits(digits)
+            ? Diagnostics.RULE_UNPARSABLE_VALUE
+            : Diagnostics.RULE_INVALID_RECORD;
+        }
+
+        /**
+         * The number of fields of a FILM and a CAST record.
+         */
+        static final int
+        FILM_FIELDS = Text.Film.class.getRecordComponents().length,
+        CAST_FIELDS = Text.Cast.class.getRecordComponents().length;
+
+        /**
+         * The names of the fields of FILM and CAST objects, which are
+         * the names of the components of their Text records.
+         */
+        static final String[]
+        FILM_NAMES = ModelReader.component_names(Text.Film.class),
+        CAST_NAMES = ModelReader.component_names(Text.Cast.class);
+
+        /**
+         * The name of the record kind field of an object.
+         */
+        static final String RECORD_KIND_NAME = FILM_NAMES[RecordKind.INDEX];
+
+        /**
+         * The canonical constructors of the Text records.
+         */
+        static final Constructor<Text.Film> film_ctor = TextHelper.ctor(Text.Film.class);
+        static final Constructor<Text.Cast> cast_ctor = TextHelper.ctor(Text.Cast.class);
+
+        /**
+         * The indexes of the digit-only fields, which {@code scan()}
+         * checks before building a Text record.
+         */
+        static final int
+        FILM_RELEASE   = ModelReader.Where.index_of(Text.Film.class, "release"),
+        CAST_ACTOR_AGE = ModelReader.Where.index_of(Text.Cast.class, "actor_age");
     }
 }
@@ -2,10 +2,13 @@ package etl.model;
 
 import java.io.Reader;
 import java.lang.reflect.Constructor;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.Year;
 import java.time.format.DateTimeFormatter;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.stream.Stream;
 
 import org.apache.commons.csv.CSVRecord;
@@ -179,5 +182,69 @@ public interface Ex3Actor
             );
             return models;
         }
+
+        /**
+         * Returns a Publisher of Model records extracted out of the CSV
+         * file the supplier argument is attached to, which reads the file
+         * only as its subscribers request records.
+         * @param supplier a Reader attached to a CSV file
+         * @param executor an Executor on which records are emitted
+         * @return         a Publisher of Model records
+         * @see            ModelReader#publisher
+         */
+        static Flow.Publisher<Model> publisher(
+            final CloseableSupplier<Reader> supplier,
+            final Executor executor
+        ){
+            final var publisher = ModelReader.publisher(
+                supplier,
+                Ex3Actor.Text.class,
+                Ex3Actor.Extracting::text,
+                Ex3Actor.Extracting::model,
+                executor
+            );
+            return publisher;
+        }
+
+        /**
+         * Returns a Stream containing Model records extracted out of the
+         * JSON file the supplier argument is attached to, an array of
+         * objects or JSON Lines, of which each object holds the fields
+         * of a Text record by name. Objects are read one at a time as
+         * the Stream is consumed.
+         * @param supplier a Reader attached to a JSON file
+         * @return         a Stream containing Model records
+         * @see            ModelReader#json_stream
+         */
+        static Stream<Model> json_models(
+            final CloseableSupplier<Reader> supplier
+        ){
+            final var models = ModelReader.json_stream(
+                supplier,
+                Ex3Actor.Text.class,
+                Ex3Actor.Extracting::model
+            );
+            return models;
+        }
+
+        /**
+         * Returns a parallel Stream containing Model records extracted
+         * out of a JSON Lines file, of which chunks of lines are read
+         * concurrently.
+         * @param path   path to a JSON Lines file
+         * @param chunks the number of chunks read concurrently
+         * @return       a parallel Stream containing Model records
+         * @see          ModelReader#json_lines
+         */
+        static Stream<Model> json_lines(final Path path, int chunks)
+        {
+            final var models = ModelReader.json_lines(
+                path,
+                Ex3Actor.Text.class,
+                Ex3Actor.Extracting::model,
+                chunks
+            );
+            return models;
+        }
     }
 }
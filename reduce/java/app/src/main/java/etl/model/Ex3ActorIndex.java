@@ -0,0 +1,242 @@
+package etl.model;
+
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import etl.util.CloseableSupplier;
+
+/**
+ * Ex3ActorIndex is an immutable in-memory index of Ex3Actor.Model
+ * records that answers temporal queries over {@code born} and
+ * {@code died} without scanning every actor.
+ * <p>
+ * Actors are sorted by the epoch day they were born, and the epoch
+ * days are kept in an {@code int[]} so that a range of birth dates
+ * is found by two binary searches. Lifespans are answered through a
+ * segment tree that holds, for each range of the sorted actors, the
+ * latest year any of them died; subtrees in which everyone died before
+ * the year in question are skipped as a whole.
+ */
+public final class Ex3ActorIndex
+{
+    /**
+     * Builds an index from Model records. The stream may be parallel,
+     * in which case both collecting and sorting run in parallel.
+     * Null records, which represent invalid rows, are skipped.
+     * @param models a Stream of Model records
+     * @return       an index of the records
+     */
+    public static Ex3ActorIndex of(final Stream<Ex3Actor.Model> models)
+    {
+        final var actors = models
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+
+        return new Ex3ActorIndex(actors);
+    }
+
+    /**
+     * Builds an index from the CSV file the supplier argument is
+     * attached to.
+     * @param supplier a Reader attached to a CSV file
+     * @return         an index of the actors in the file
+     * @see            Ex3Actor.Extracting#models
+     */
+    public static Ex3ActorIndex of(final CloseableSupplier<Reader> supplier)
+    {
+        return of(Ex3Actor.Extracting.models(supplier).parallel());
+    }
+
+    /**
+     * Returns the number of actors in this index.
+     * @return the number of actors in this index
+     */
+    public int size() { return actors.length; }
+
+    /**
+     * Returns the actors born between two dates inclusive,
+     * in the order of birth.
+     * @param from the earliest date of birth
+     * @param to   the latest date of birth
+     * @return     a list of actors, which is empty if {@code to}
+     *             precedes {@code from}
+     */
+    public List<Ex3Actor.Model> born_between(
+        final LocalDate from,
+        final LocalDate to
+    ) {
+        final int lower = lower_bound(epoch_day(from));
+        final int upper = lower_bound(epoch_day(to) + 1);
+
+        return lower < upper
+        ? sorted.subList(lower, upper)
+        : List.of();
+    }
+
+    /**
+     * Returns the actors born between two years inclusive,
+     * in the order of birth.
+     * @param from the earliest year of birth
+     * @param to   the latest year of birth
+     * @return     a list of actors
+     */
+    public List<Ex3Actor.Model> born_between(final Year from, final Year to)
+    {
+        return born_between(from.atDay(1), to.atMonth(12).atEndOfMonth());
+    }
+
+    /**
+     * Returns the number of actors born between two dates inclusive.
+     * @param from the earliest date of birth
+     * @param to   the latest date of birth
+     * @return     the number of actors
+     */
+    public int count_born_between(final LocalDate from, final LocalDate to)
+    {
+        final int lower = lower_bound(epoch_day(from));
+        final int upper = lower_bound(epoch_day(to) + 1);
+        return Math.max(upper - lower, 0);
+    }
+
+    /**
+     * Returns the actors alive at some point in the year argument,
+     * that is, born in or before the year, and either not dead or
+     * died in or after the year. The actors are in the order of birth.
+     * @param year a year
+     * @return     a list of actors
+     */
+    public List<Ex3Actor.Model> alive_in(final Year year)
+    {
+        final int born_upper = lower_bound(
+            epoch_day(year.atMonth(12).atEndOfMonth()) + 1
+        );
+
+        final var alive = new ArrayList<Ex3Actor.Model>();
+        if (born_upper > 0) {
+            collect(1, 0, leaves, born_upper, year.getValue(), alive);
+        }
+        return alive;
+    }
+
+    /**
+     * Returns the actors alive on the date argument. Since {@code died}
+     * only holds a year, an actor who died in the year of the date
+     * counts as alive.
+     * @param date a date
+     * @return     a list of actors
+     */
+    public List<Ex3Actor.Model> alive_on(final LocalDate date)
+    {
+        final int born_upper = lower_bound(epoch_day(date) + 1);
+
+        final var alive = new ArrayList<Ex3Actor.Model>();
+        if (born_upper > 0) {
+            collect(1, 0, leaves, born_upper, date.getYear(), alive);
+        }
+        return alive;
+    }
+
+    /*
+     * Appends the actors at positions [0, upper) of which died year is
+     * equal to or greater than the year argument. The node covers
+     * positions [node_lower, node_lower + node_size).
+     */
+    private void collect(
+        int node,
+        int node_lower,
+        int node_size,
+        int upper,
+        int year,
+        List<Ex3Actor.Model> alive
+    ) {
+        if (node_lower >= upper || max_died[node] < year) return;
+
+        if (node_size == 1) {
+            alive.add(actors[node_lower]);
+            return;
+        }
+
+        final int half = node_size >> 1;
+        collect(node << 1,       node_lower,        half, upper, year, alive);
+        collect((node << 1) + 1, node_lower + half, half, upper, year, alive);
+    }
+
+    /*
+     * Returns the first position of which born day is equal to or
+     * greater than the day argument.
+     */
+    private int lower_bound(long day)
+    {
+        int lower = 0;
+        int upper = born_days.length;
+        while (lower < upper) {
+            final int middle = (lower + upper) >>> 1;
+            if (born_days[middle] < day) {
+                lower = middle + 1;
+            } else {
+                upper = middle;
+            }
+        }
+        return lower;
+    }
+
+    private static long epoch_day(final LocalDate date)
+    {
+        return date.toEpochDay();
+    }
+
+    private Ex3ActorIndex(final List<Ex3Actor.Model> models)
+    {
+        final int size = models.size();
+
+        // sort keys: the born epoch day in the upper half,
+        // the position in the list in the lower half.
+        // four-digit ISO years keep epoch days well within an int.
+        final long[] keys = new long[size];
+        Arrays.parallelSetAll(keys, index ->
+            (models.get(index).born().toEpochDay() << Integer.SIZE)
+            | index
+        );
+        Arrays.parallelSort(keys);
+
+        actors = new Ex3Actor.Model[size];
+        born_days = new int[size];
+        Arrays.parallelSetAll(actors, index ->
+            models.get((int) keys[index])
+        );
+        Arrays.parallelSetAll(born_days, index ->
+            (int) (keys[index] >> Integer.SIZE)
+        );
+        sorted = Collections.unmodifiableList(Arrays.asList(actors));
+
+        // the segment tree of max died years over the sorted actors
+        leaves = Math.max(Integer.highestOneBit(Math.max(size, 1) - 1) << 1, 1);
+        max_died = new int[leaves << 1];
+        Arrays.fill(max_died, Integer.MIN_VALUE);
+        for (int index = 0; index < size; index++) {
+            final var died = actors[index].died();
+            max_died[leaves + index] = died == null
+            ? STILL_ALIVE
+            : died.getValue();
+        }
+        for (int node = leaves - 1; node > 0; node--) {
+            max_died[node] = Math.max(max_died[node << 1], max_died[(node << 1) + 1]);
+        }
+    }
+
+    private static final int STILL_ALIVE = Integer.MAX_VALUE;
+
+    private final Ex3Actor.Model[] actors;
+    private final List<Ex3Actor.Model> sorted;
+    private final int[] born_days;
+    private final int leaves;
+    private final int[] max_died;
+}
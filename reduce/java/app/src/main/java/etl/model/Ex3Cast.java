@@ -1,6 +1,15 @@
 package etl.model;
 
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.apache.commons.csv.CSVRecord;
+
+import etl.util.CloseableSupplier;
 import etl.util.IntRange;
+import etl.util.ModelReader;
 import etl.util.TextHelper;
 
 /**
@@ -65,6 +74,143 @@ public interface Ex3Cast
         }
     }
 
+    /**
+     * Extracting provides methods for reading Text and
+     * Model reocrds from CSV files.
+     */
+    interface Extracting
+    {
+        /**
+         * Transforms a Text record to a Model record.
+         * @param text a Text record
+         * @return     a Model record
+         */
+        static Ex3Cast.Model model(final Ex3Cast.Text text)
+        {
+            // An invalid Text yeilds an invalid Model
+            if (text == null) return null;
+
+            // the film_id field
+            final var film_id_length_exclusive
+            = Model.VALID_LENGTH_RANGE_film_id.upper() + 1;
+
+            final var film_id
+            = text.film_id == null ? null
+            : text.film_id.length() < film_id_length_exclusive
+            ? text.film_id
+            : text.film_id.substring(0, film_id_length_exclusive)
+            ;
+
+            // the actor_id field
+            final var actor_id_length_exclusive
+            = Model.VALID_LENGTH_RANGE_actor_id.upper() + 1;
+
+            final var actor_id
+            = text.actor_id == null ? null
+            : text.actor_id.length() < actor_id_length_exclusive
+            ? text.actor_id
+            : text.actor_id.substring(0, actor_id_length_exclusive)
+            ;
+
+            // the role_name field
+            final var role_name_length_exclusive
+            = Model.VALID_LENGTH_RANGE_role_name.upper() + 1;
+
+            final var role_name
+            = text.role_name == null ? null
+            : text.role_name.length() < role_name_length_exclusive
+            ? text.role_name
+            : text.role_name.substring(0, role_name_length_exclusive)
+            ;
+
+            // mapping Text to Model
+            final Model model = new Model(
+                film_id,
+                actor_id,
+                role_name
+            );
+
+            // a null represents an invalid Model
+            return model.isValid() ? model : null;
+        }
+
+        /**
+         * Transforms the CSVRecord to the Text record.
+         * @param csv a CSVRecord instance
+         * @return    a Text record
+         */
+        static Ex3Cast.Text text(final CSVRecord csv)
+        {
+            final var text = ModelReader.text(csv, text_ctor);
+            return text;
+        }
+
+        /**
+         * The canonical constrctor of this Text record type.
+         */
+        static final Constructor<Ex3Cast.Text> text_ctor
+        = TextHelper.ctor(Ex3Cast.Text.class);
+
+        /**
+         * Returns a Stream containing Model records extracted out of the
+         * CSV file the supplier argument is attached to.
+         * @param supplier a Reader attached to a CSV file
+         * @return         a Stream containing Model records
+         */
+        static Stream<Model> models(
+            final CloseableSupplier<Reader> supplier
+        ) {
+            final var models = ModelReader.stream(
+                supplier,
+                Ex3Cast.Text.class,
+                Ex3Cast.Extracting::text,
+                Ex3Cast.Extracting::model
+            );
+            return models;
+        }
+
+        /**
+         * Returns a Stream containing Model records extracted out of the
+         * JSON file the supplier argument is attached to, an array of
+         * objects or JSON Lines, of which each object holds the fields
+         * of a Text record by name. Objects are read one at a time as
+         * the Stream is consumed.
+         * @param supplier a Reader attached to a JSON file
+         * @return         a Stream containing Model records
+         * @see            ModelReader#json_stream
+         */
+        static Stream<Model> json_models(
+            final CloseableSupplier<Reader> supplier
+        ){
+            final var models = ModelReader.json_stream(
+                supplier,
+                Ex3Cast.Text.class,
+                Ex3Cast.Extracting::model
+            );
+            return models;
+        }
+
+        /**
+         * Returns a parallel Stream containing Model records extracted
+         * out of a JSON Lines file, of which chunks of lines are read
+         * concurrently.
+         * @param path   path to a JSON Lines file
+         * @param chunks the number of chunks read concurrently
+         * @return       a parallel Stream containing Model records
+         * @see          ModelReader#json_lines
+         */
+        static Stream<Model> json_lines(final Path path, int chunks)
+        {
+            final var models = ModelReader.json_lines(
+                path,
+                Ex3Cast.Text.class,
+                Ex3Cast.Extracting::model,
+                chunks
+            );
+            return models;
+        }
+    }
+
     /**
      * Loading provides methods for writing Model records
      * to CSV files.
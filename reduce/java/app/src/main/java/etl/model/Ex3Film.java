@@ -2,7 +2,10 @@ package etl.model;
 
 import java.io.Reader;
 import java.lang.reflect.Constructor;
+import java.nio.file.Path;
 import java.time.Year;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.stream.Stream;
 
 import org.apache.commons.csv.CSVRecord;
@@ -155,5 +158,69 @@ public interface Ex3Film
             );
             return models;
         }
+
+        /**
+         * Returns a Publisher of Model records extracted out of the CSV
+         * file the supplier argument is attached to, which reads the file
+         * only as its subscribers request records.
+         * @param supplier a Reader attached to a CSV file
+         * @param executor an Executor on which records are emitted
+         * @return         a Publisher of Model records
+         * @see            ModelReader#publisher
+         */
+        static Flow.Publisher<Model> publisher(
+            final CloseableSupplier<Reader> supplier,
+            final Executor executor
+        ){
+            final var publisher = ModelReader.publisher(
+                supplier,
+                Ex3Film.Text.class,
+                Ex3Film.Extracting::text,
+                Ex3Film.Extracting::model,
+                executor
+            );
+            return publisher;
+        }
+
+        /**
+         * Returns a Stream containing Model records extracted out of the
+         * JSON file the supplier argument is attached to, an array of
+         * objects or JSON Lines, of which each object holds the fields
+         * of a Text record by name. Objects are read one at a time as
+         * the Stream is consumed.
+         * @param supplier a Reader attached to a JSON file
+         * @return         a Stream containing Model records
+         * @see            ModelReader#json_stream
+         */
+        static Stream<Model> json_models(
+            final CloseableSupplier<Reader> supplier
+        ){
+            final var models = ModelReader.json_stream(
+                supplier,
+                Ex3Film.Text.class,
+                Ex3Film.Extracting::model
+            );
+            return models;
+        }
+
+        /**
+         * Returns a parallel Stream containing Model records extracted
+         * out of a JSON Lines file, of which chunks of lines are read
+         * concurrently.
+         * @param path   path to a JSON Lines file
+         * @param chunks the number of chunks read concurrently
+         * @return       a parallel Stream containing Model records
+         * @see          ModelReader#json_lines
+         */
+        static Stream<Model> json_lines(final Path path, int chunks)
+        {
+            final var models = ModelReader.json_lines(
+                path,
+                Ex3Film.Text.class,
+                Ex3Film.Extracting::model,
+                chunks
+            );
+            return models;
+        }
     }
 }
@@ -0,0 +1,65 @@
+package etl.util;
+
+/**
+ * AsciiKey packs a short ASCII text, such as an 8-character id,
+ * into a {@code long} so that the text can be kept in primitive
+ * collections rather than as a String.
+ * <p>
+ * Each character occupies one byte, the first character being the most
+ * significant one. Since ASCII characters never set the eighth bit,
+ * a packed key is never negative, which leaves {@code INVALID} free
+ * to represent texts that cannot be packed.
+ */
+public interface AsciiKey
+{
+    /**
+     * The maximum number of characters a key can hold.
+     */
+    static final int MAX_LENGTH = Long.BYTES;
+
+    /**
+     * The key representing a text that cannot be packed.
+     */
+    static final long INVALID = -1L;
+
+    /**
+     * Packs the text argument into a key.
+     * @param text a sequence of ASCII characters
+     * @return  a non-negative key, or {@code INVALID} if
+     *          the {@code text} argument is null or empty,
+     *          longer than {@code MAX_LENGTH}, or
+     *          contains a non-ASCII character
+     */
+    static long pack(final CharSequence text)
+    {
+        // preconditions:
+        if (text == null) return INVALID;
+        final int length = text.length();
+        if (length == 0 || MAX_LENGTH < length) return INVALID;
+
+        // logic:
+        long key = 0L;
+        for (int index = 0; index < length; index++) {
+            final char c = text.charAt(index);
+            if (c > 0x7F) return INVALID;
+            key = (key << Byte.SIZE) | c;
+        }
+        return key;
+    }
+
+    /**
+     * Unpacks a key into the text it was packed from.
+     * @param key a key returned by {@code pack()}
+     * @return    the text, or null if the key is {@code INVALID}
+     */
+    static String unpack(long key)
+    {
+        if (key < 0L) return null;
+
+        final var builder = new StringBuilder(MAX_LENGTH);
+        for (; key != 0L; key >>>= Byte.SIZE) {
+            builder.append((char) (key & 0x7F));
+        }
+        return builder.reverse().toString();
+    }
+}
@@ -0,0 +1,169 @@
+package etl.util;
+
+/**
+ * BloomFilter is a probabilistic set of 64-bit hashes backed by a single
+ * {@code long[]} of bits. {@code might_contain()} never answers false
+ * for a hash that was put, and answers true for a hash that was not put
+ * with about the false positive rate the filter was sized for.
+ * <p>
+ * Callers hash their keys once, with {@code hash()} or a hash of their
+ * own, so that no key object is built per lookup. The k bit positions
+ * are derived from that one hash by double hashing.
+ * <p>
+ * Its footprint is fixed when it is instantiated, about
+ * {@code -n ln(p) / (ln 2)^2} bits for {@code n} expected hashes and
+ * a false positive rate of {@code p}, which is about 10 bits per key
+ * at 1%, whatever the size of the keys.
+ * <p>
+ * The filter is not thread-safe while hashes are put.
+ */
+public class BloomFilter
+{
+    /**
+     * Instantiates an empty filter sized for the specified number of
+     * hashes and false positive rate.
+     * @param expected the number of hashes expected
+     * @param fpp      the false positive rate wanted, in (0, 1)
+     * @return         an empty filter
+     * @throws IllegalArgumentException
+     *      if {@code fpp} is not within (0, 1)
+     */
+    public static BloomFilter with_expected(long expected, double fpp)
+        throws IllegalArgumentException
+    {
+        if (!(0.0 < fpp && fpp < 1.0)) throw new IllegalArgumentException();
+
+        final long n = Math.max(expected, 1L);
+        final double ln2 = Math.log(2.0);
+        final long bits = Math.min(
+            MAX_BITS,
+            Math.max(Long.SIZE, (long) Math.ceil(-n * Math.log(fpp) / (ln2 * ln2)))
+        );
+        final int hashes = (int) Math.max(1L, Math.round((double) bits / n * ln2));
+
+        return new BloomFilter(bits, hashes);
+    }
+
+    /**
+     * Hashes the chars of a string, FNV-1a followed by the finalizer of
+     * MurmurHash3, so that the bits of the result are well mixed.
+     * @param string a string to be hashed
+     * @return       a 64-bit hash
+     */
+    public static long hash(final CharSequence string)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (int index = 0; index < string.length(); index++) {
+            hash ^= string.charAt(index);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Combines a hash with an int component of the same key, such as
+     * a year, so that keys differing in either part hash apart.
+     * @param hash  a 64-bit hash
+     * @param value an int component
+     * @return      a 64-bit hash of both
+     */
+    public static long hash(long hash, int value)
+    {
+        return mix(hash ^ (value * SEED));
+    }
+
+    /**
+     * Puts a hash into this filter.
+     * @param hash a 64-bit hash of a key
+     * @return     {@code true} if the bits of the hash changed, which
+     *             means the key was definitely not put before
+     */
+    public boolean put(long hash)
+    {
+        final long hash2 = mix(hash ^ SEED);
+
+        boolean changed = false;
+        long combined = hash;
+        for (int index = 0; index < hashes; index++, combined += hash2) {
+            final long bit = (combined & Long.MAX_VALUE) % bits;
+            final int word = (int) (bit >>> 6);
+            final long mask = 1L << bit;
+            if ((words[word] & mask) == 0) {
+                words[word] |= mask;
+                changed = true;
+            }
+        }
+        if (changed) count++;
+        return changed;
+    }
+
+    /**
+     * Tells if a hash might have been put into this filter.
+     * @param hash a 64-bit hash of a key
+     * @return     {@code false} if the key was definitely not put
+     */
+    public boolean might_contain(long hash)
+    {
+        final long hash2 = mix(hash ^ SEED);
+
+        long combined = hash;
+        for (int index = 0; index < hashes; index++, combined += hash2) {
+            final long bit = (combined & Long.MAX_VALUE) % bits;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of bits of this filter.
+     * @return the number of bits
+     */
+    public long bit_size() { return bits; }
+
+    /**
+     * Returns the number of hash functions of this filter.
+     * @return the number of hash functions
+     */
+    public int hash_count() { return hashes; }
+
+    /**
+     * Returns the number of bytes the bits of this filter occupy.
+     * @return the number of bytes the bits occupy
+     */
+    public long table_bytes() { return (long) words.length * Long.BYTES; }
+
+    /**
+     * Returns the false positive rate expected at the current number of
+     * hashes put, {@code (1 - e^(-kn/m))^k}.
+     * @return the expected false positive rate
+     */
+    public double expected_fpp()
+    {
+        return Math.pow(1.0 - Math.exp(-(double) hashes * count / bits), hashes);
+    }
+
+    private static long mix(long hash)
+    {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private BloomFilter(long bits, int hashes)
+    {
+        this.words = new long[(int) ((bits + Long.SIZE - 1) >>> 6)];
+        this.bits = bits;
+        this.hashes = hashes;
+    }
+
+    private static final long SEED = 0x9e3779b97f4a7c15L;
+    private static final long MAX_BITS = (long) (Integer.MAX_VALUE - 8) * Long.SIZE;
+
+    private final long[] words;
+    private final long bits;
+    private final int hashes;
+    private long count = 0L;
+}
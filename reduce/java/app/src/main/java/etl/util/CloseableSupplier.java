@@ -15,5 +15,32 @@ public interface CloseableSupplier<T extends AutoCloseable>
      * @throws Exception if the resource get() returns throws
      */
     T get() throws Exception;
-}
 
+    /**
+     * Returns the name of the file the resource is attached to, which
+     * Diagnostics reports a reject of the resource with.
+     * @return the name of the file, or null if it is unknown
+     */
+    default String source() { return null; }
+
+    /**
+     * Names the file the resource of a supplier is attached to.
+     * @param <T>      the type of the resource
+     * @param source   the name of the file, such as its path
+     * @param supplier a supplier of the resource
+     * @return         a supplier of the same resource of which
+     *                 {@code source()} returns the name
+     */
+    static <T extends AutoCloseable> CloseableSupplier<T> of(
+        final String source,
+        final CloseableSupplier<T> supplier
+    ) {
+        return new CloseableSupplier<T>() {
+            @Override
+            public T get() throws Exception { return supplier.get(); }
+
+            @Override
+            public String source() { return source; }
+        };
+    }
+}
@@ -0,0 +1,174 @@
+package etl.util;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * CsvMasker copies a CSV file with some of its columns masked by
+ * {@code StringView.apply_into()}, such as the names of actors in an
+ * anonymized copy of actor.csv.
+ * <p>
+ * A masked file is produced in one pass. Records are read in batches
+ * by a CsvScanner, each batch is masked and printed into a chunk of CSV
+ * text on the executor, and the chunks are written in the order of the
+ * input. A worker reuses one StringBuilder for every field it masks,
+ * and the codepoints of each replacement are computed once per Mask,
+ * so that masking allocates little more than the copy itself.
+ */
+public final class CsvMasker
+{
+    /**
+     * Mask is a masking rule of a column.
+     * @param field       the index of the column
+     * @param range       the codepoints to be replaced, of which the upper
+     *                    bound is exclusive as {@code StringView.apply()}
+     *                    takes it
+     * @param replacement the sequence with which the range is replaced
+     * @param padding     the codepoint that fills out the shortfall
+     */
+    public record Mask(
+        int field,
+        IntRange range,
+        String replacement,
+        int padding
+    ) {}
+
+    /**
+     * The number of records masked by a task.
+     */
+    public static final int BATCH_RECORDS = 1 << 12;
+
+    /**
+     * Instantiates a masker.
+     * @param masks the masks, at most one per column
+     * @return      a masker
+     */
+    public static CsvMasker of(final List<Mask> masks)
+    {
+        return new CsvMasker(masks);
+    }
+
+    /**
+     * Masks a field.
+     * @param field  the index of the column of the field
+     * @param text   the value of the field, which may be null
+     * @param buffer a StringBuilder reused across fields
+     * @return       the masked value, or the text if the column is not
+     *               masked or the text is null
+     */
+    public String mask(int field, final String text, final StringBuilder buffer)
+    {
+        if (text == null || field >= masks.length || masks[field] == null) return text;
+
+        buffer.setLength(0);
+        return StringView.apply_into(
+            buffer, text, masks[field].range(), replacements[field], masks[field].padding()
+        )
+        .toString();
+    }
+
+    /**
+     * Copies a CSV file with its columns masked.
+     * @param input       path to the CSV file
+     * @param output      path to the masked copy
+     * @param concurrency the maximum number of batches in flight
+     * @param cpu         an executor that masks batches
+     * @return            the number of records copied, or -1 if reading,
+     *                    masking, or writing failed
+     */
+    public long mask(
+        final Path input,
+        final Path output,
+        int concurrency,
+        final ExecutorService cpu
+    ) {
+        final var pending = new ArrayDeque<Future<String>>();
+        long count = 0L;
+
+        try (
+            final var scanner = CsvScanner.of(CsvScanner.blocks(Files.newInputStream(input)));
+            final var writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)
+        ) {
+            var batch = new String[BATCH_RECORDS][];
+            int size = 0;
+            while (scanner.next()) {
+                final var fields = new String[scanner.field_count()];
+                for (int field = 0; field < fields.length; field++) {
+                    fields[field] = scanner.string(field);
+                }
+                batch[size++] = fields;
+                count++;
+
+                if (size == BATCH_RECORDS) {
+                    submit(batch, size, pending, cpu);
+                    batch = new String[BATCH_RECORDS][];
+                    size = 0;
+                    while (pending.size() >= Math.max(concurrency, 1)) {
+                        writer.write(pending.removeFirst().get());
+                    }
+                }
+            }
+            if (size > 0) submit(batch, size, pending, cpu);
+            while (!pending.isEmpty()) {
+                writer.write(pending.removeFirst().get());
+            }
+        } catch (Exception ex) {
+            pending.forEach(future -> future.cancel(true));
+            Diagnostics.shared().reject(
+                input.toString(), -1L, Diagnostics.RULE_WRITE_FAILED, ex.toString()
+            );
+            count = -1L;
+        }
+
+        return count;
+    }
+
+    private void submit(
+        final String[][] batch,
+        int size,
+        final ArrayDeque<Future<String>> pending,
+        final ExecutorService cpu
+    ) {
+        pending.addLast(cpu.submit(() -> print(batch, size)));
+    }
+
+    private String print(final String[][] batch, int size) throws Exception
+    {
+        final var text = new StringWriter(size * 64);
+        final var buffer = new StringBuilder(64);
+
+        try (
+            final var printer = new ModelWriter(() -> text)
+        ) {
+            for (int record = 0; record < size; record++) {
+                // a record is masked in place, as no one else holds it
+                final var fields = batch[record];
+                for (int field = 0; field < fields.length; field++) {
+                    fields[field] = mask(field, fields[field], buffer);
+                }
+                printer.print(fields);
+            }
+        }
+        return text.toString();
+    }
+
+    private CsvMasker(final List<Mask> masks)
+    {
+        final int columns = masks.stream().mapToInt(Mask::field).max().orElse(-1) + 1;
+        this.masks = new Mask[columns];
+        this.replacements = new int[columns][];
+        for (final var mask : masks) {
+            this.masks[mask.field()] = mask;
+            this.replacements[mask.field()] = mask.replacement().codePoints().toArray();
+        }
+    }
+
+    private final Mask[] masks;
+    private final int[][] replacements;
+}
@@ -0,0 +1,527 @@
+package etl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CsvScanner tokenizes CSV records in place, into one reused char
+ * buffer, without creating a String per field. Fields can be examined
+ * through their chars, compared, and parsed as numbers, and only the
+ * fields a caller asks for are copied into Strings.
+ * <p>
+ * It reads the dialect {@code ModelReader.format_builder()} defines:
+ * comma-separated fields, optionally enclosed in double quotes with
+ * doubled quotes as escapes, surrounding spaces ignored, records ended
+ * by {@code \n}, {@code \r} or {@code \r\n}, and an empty line read as
+ * a record of one empty field.
+ * <p>
+ * A Reader {@code blocks()} returns selects the block backend, which
+ * reads the UTF-8 bytes under the Reader and finds the structural bytes
+ * eight at a time with Swar, copying a field in bulk instead of char by
+ * char. It also tells which fields are digits while copying them. Any
+ * other Reader is scanned char by char.
+ */
+public final class CsvScanner implements AutoCloseable
+{
+    /**
+     * Instantiates a scanner over the reader argument.
+     * @param reader a Reader attached to CSV data
+     * @return       a scanner positioned before the first record
+     */
+    public static CsvScanner of(final Reader reader)
+    {
+        return reader instanceof Blocks blocks
+        ? new CsvScanner(blocks, blocks.input)
+        : new CsvScanner(reader, null);
+    }
+
+    /**
+     * Instantiates a scanner over a reader positioned at the start of a
+     * record in the middle of CSV data, such as a job resumed from a
+     * checkpoint reads, so that byte offsets and record numbers count
+     * from the start of the data.
+     * @param reader        a Reader attached to CSV data
+     * @param byte_offset   the offset in bytes of the position of the reader
+     * @param record_number the number of records before the position
+     * @return              a scanner positioned before the next record
+     */
+    public static CsvScanner of(final Reader reader, long byte_offset, long record_number)
+    {
+        final var scanner = of(reader);
+        scanner.consumed = byte_offset;
+        scanner.record_number = record_number;
+        return scanner;
+    }
+
+    /**
+     * Returns a Reader of UTF-8 data, which any Reader consumer can read,
+     * and of which a CsvScanner scans the bytes with the block backend.
+     * @param input an InputStream of UTF-8 data
+     * @return      a Reader attached to the input
+     */
+    public static Reader blocks(final InputStream input)
+    {
+        return new Blocks(input);
+    }
+
+    /**
+     * Advances to the next record.
+     * @return {@code false} if there is no more record
+     * @throws IOException if the reader failed
+     */
+    public boolean next() throws IOException
+    {
+        if (input != null) return next_block();
+
+        field_count = 0;
+        length = 0;
+
+        int c = read();
+        if (c == EOF) return false;
+
+        while (true) {
+            while (c == ' ' || c == '\t') c = read();
+
+            final int start = length;
+            int end;
+            if (c == QUOTE) {
+                while ((c = read()) != EOF) {
+                    if (c == QUOTE && (c = read()) != QUOTE) break;
+                    append((char) c);
+                }
+                end = length;
+                while (c != DELIMITER && c != '\n' && c != '\r' && c != EOF) c = read();
+            } else {
+                while (c != DELIMITER && c != '\n' && c != '\r' && c != EOF) {
+                    append((char) c);
+                    c = read();
+                }
+                end = length;
+                while (end > start && (chars[end - 1] == ' ' || chars[end - 1] == '\t')) end--;
+            }
+            add_field(start, end);
+
+            if (c != DELIMITER) break;
+            c = read();
+        }
+
+        if (c == '\r' && peek() == '\n') read();
+        record_number++;
+        return true;
+    }
+
+    /**
+     * Returns the number of the current record, starting at 1.
+     * @return the record number
+     */
+    public long record_number() { return record_number; }
+
+    /**
+     * Returns the offset in bytes of the current record from the start
+     * of the data, or of the end of the data once {@code next()} has
+     * returned {@code false}, such as a checkpoint records to continue
+     * reading from. Offsets are counted by the block backend only.
+     * @return the byte offset, or -1 if the Reader was not returned by
+     *         {@code blocks()}
+     */
+    public long byte_offset()
+    {
+        return input == null ? -1L : record_offset;
+    }
+
+    /**
+     * Returns the number of fields of the current record.
+     * @return the number of fields
+     */
+    public int field_count() { return field_count; }
+
+    /**
+     * Returns the length of a field.
+     * @param field the index of a field
+     * @return      the number of chars of the field
+     */
+    public int length(int field)
+    {
+        return ends[check(field)] - starts[field];
+    }
+
+    /**
+     * Returns a char of a field.
+     * @param field the index of a field
+     * @param index the index of a char within the field
+     * @return      the char
+     */
+    public char char_at(int field, int index)
+    {
+        if (index < 0 || length(field) <= index) throw new IndexOutOfBoundsException(index);
+        return chars[starts[field] + index];
+    }
+
+    /**
+     * Tells if a field starts with the prefix argument.
+     * @param field  the index of a field
+     * @param prefix a sequence of chars
+     * @return       {@code true} if the field starts with the prefix
+     */
+    public boolean starts_with(int field, final CharSequence prefix)
+    {
+        if (length(field) < prefix.length()) return false;
+
+        final int start = starts[field];
+        for (int index = 0; index < prefix.length(); index++) {
+            if (chars[start + index] != prefix.charAt(index)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tells if a field equals the text argument.
+     * @param field the index of a field
+     * @param text  a sequence of chars
+     * @return      {@code true} if the field equals the text
+     */
+    public boolean equals_to(int field, final CharSequence text)
+    {
+        return length(field) == text.length() && starts_with(field, text);
+    }
+
+    /**
+     * Parses a field as a decimal integer, without creating a String.
+     * @param field    the index of a field
+     * @param fallback the value returned if the field is not an integer
+     * @return         the value of the field, or the fallback
+     */
+    public long long_value(int field, long fallback)
+    {
+        int index = starts[check(field)];
+        final int end = ends[field];
+        if (index == end) return fallback;
+
+        final boolean negative = chars[index] == '-';
+        if (negative || chars[index] == '+') index++;
+        if (index == end || end - index > MAX_DIGITS) return fallback;
+
+        long value = 0L;
+        for (; index < end; index++) {
+            final int digit = chars[index] - '0';
+            if (digit < 0 || 9 < digit) return fallback;
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Copies a field into a String, as {@code CSVRecord.get()} returns
+     * it. A caller that builds a 'text' record maps an empty field to
+     * null by {@code TextHelper.null_if_empty()}, as
+     * {@code ModelReader.text()} does.
+     * @param field the index of a field
+     * @return      the String, which is empty if the field is empty
+     */
+    public String string(int field)
+    {
+        final int length = length(field);
+        return length == 0 ? "" : new String(chars, starts[field], length);
+    }
+
+    /**
+     * Tells if a field is a non-empty run of ASCII digits, as
+     * {@code TextHelper.is_digits()} tells of its String.
+     * @param field the index of a field
+     * @return      {@code true} if the field is digits
+     */
+    public boolean is_digits(int field)
+    {
+        check(field);
+        if (field < Long.SIZE && (known_digits & (1L << field)) != 0L) {
+            return (digits & (1L << field)) != 0L;
+        }
+
+        if (starts[field] == ends[field]) return false;
+        for (int index = starts[field]; index < ends[field]; index++) {
+            if (chars[index] < '0' || '9' < chars[index]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the current record as a line of CSV, such as a diagnostic
+     * message quotes as the raw line. A field that holds a delimiter, a
+     * quote, a line break, or surrounding blanks is quoted, so that the
+     * line reads back as the same fields.
+     * @return the fields of the record as a line of CSV
+     */
+    public String line()
+    {
+        final var builder = new StringBuilder(length + field_count * 3);
+        for (int field = 0; field < field_count; field++) {
+            if (field > 0) builder.append(DELIMITER);
+            append_field(builder, CharBuffer.wrap(chars, starts[field], ends[field] - starts[field]));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns fields as a line of CSV, quoted as {@code line()} quotes
+     * them, such as the values of a CSVRecord.
+     * @param fields the fields of a record
+     * @return       the fields as a line of CSV
+     */
+    public static String line(final Iterable<? extends CharSequence> fields)
+    {
+        final var builder = new StringBuilder();
+        boolean first = true;
+        for (final var field : fields) {
+            if (!first) builder.append(DELIMITER);
+            append_field(builder, field);
+            first = false;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Closes the reader.
+     * @throws IOException if the reader failed to close
+     */
+    @Override
+    public void close() throws IOException
+    {
+        reader.close();
+    }
+
+    private static void append_field(final StringBuilder builder, final CharSequence field)
+    {
+        final int length = field.length();
+        boolean quoted = length > 0 && (
+            field.charAt(0) == ' ' || field.charAt(0) == '\t'
+            || field.charAt(length - 1) == ' ' || field.charAt(length - 1) == '\t'
+        );
+        for (int index = 0; !quoted && index < length; index++) {
+            final char c = field.charAt(index);
+            quoted = c == DELIMITER || c == QUOTE || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            builder.append(field);
+            return;
+        }
+
+        builder.append(QUOTE);
+        for (int index = 0; index < length; index++) {
+            final char c = field.charAt(index);
+            if (c == QUOTE) builder.append(QUOTE);
+            builder.append(c);
+        }
+        builder.append(QUOTE);
+    }
+
+    private boolean next_block() throws IOException
+    {
+        field_count = 0;
+        length = 0;
+        known_digits = 0L;
+        digits = 0L;
+
+        final boolean at_end = peek_byte() == EOF;
+        record_offset = consumed + byte_position;
+        if (at_end) return false;
+
+        int c;
+        while (true) {
+            while ((c = peek_byte()) == ' ' || c == '\t') byte_position++;
+
+            final int start = length;
+            if (c == QUOTE) {
+                byte_position++;
+                while (true) {
+                    append_bytes(distance_to(true));
+                    if (peek_byte() == EOF) break;
+                    byte_position++;
+                    if (peek_byte() != QUOTE) break;
+                    append(QUOTE);
+                    byte_position++;
+                }
+                while ((c = peek_byte()) != DELIMITER && c != '\n' && c != '\r' && c != EOF) {
+                    byte_position++;
+                }
+                add_field(start, length);
+            } else {
+                final int count = distance_to(false);
+                final boolean is_digits = Swar.is_digits(bytes, byte_position, byte_position + count);
+                append_bytes(count);
+                int end = length;
+                while (end > start && (chars[end - 1] == ' ' || chars[end - 1] == '\t')) end--;
+                if (field_count < Long.SIZE && end == length) {
+                    known_digits |= 1L << field_count;
+                    if (is_digits) digits |= 1L << field_count;
+                }
+                add_field(start, end);
+                c = peek_byte();
+            }
+
+            if (c != DELIMITER) break;
+            byte_position++;
+        }
+
+        if (c != EOF) byte_position++;
+        if (c == '\r' && peek_byte() == '\n') byte_position++;
+        record_number++;
+        return true;
+    }
+
+    // the distance from the position to the first quote, or to the first
+    // byte that ends an unquoted field, or to the end of the input; both
+    // are ASCII, so that the bytes before one never end within a UTF-8 char
+    private int distance_to(boolean quote) throws IOException
+    {
+        int scanned = 0;
+        while (true) {
+            final int from = byte_position + scanned;
+            final int found = quote
+            ? Swar.index_of(bytes, from, byte_limit, (byte) QUOTE)
+            : Swar.index_of_terminator(bytes, from, byte_limit);
+            if (found < byte_limit) return found - byte_position;
+
+            scanned = byte_limit - byte_position;
+            if (!fill_bytes()) return scanned;
+        }
+    }
+
+    private void append_bytes(int count)
+    {
+        if (length + count > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length << 1, length + count));
+        }
+
+        if (Swar.is_ascii(bytes, byte_position, byte_position + count)) {
+            for (int index = 0; index < count; index++) {
+                chars[length++] = (char) bytes[byte_position + index];
+            }
+        } else {
+            final var text = new String(bytes, byte_position, count, StandardCharsets.UTF_8);
+            if (length + text.length() > chars.length) {
+                chars = Arrays.copyOf(chars, length + text.length());
+            }
+            text.getChars(0, text.length(), chars, length);
+            length += text.length();
+        }
+        byte_position += count;
+    }
+
+    private int peek_byte() throws IOException
+    {
+        if (byte_position == byte_limit && !fill_bytes()) return EOF;
+        return bytes[byte_position] & 0xff;
+    }
+
+    // keeps the bytes from the position, moving them to the head of
+    // the buffer, which grows if they fill it
+    private boolean fill_bytes() throws IOException
+    {
+        final int kept = byte_limit - byte_position;
+        if (byte_position > 0) {
+            consumed += byte_position;
+            System.arraycopy(bytes, byte_position, bytes, 0, kept);
+            byte_position = 0;
+            byte_limit = kept;
+        }
+        if (byte_limit == bytes.length) bytes = Arrays.copyOf(bytes, bytes.length << 1);
+
+        final int count = input.read(bytes, byte_limit, bytes.length - byte_limit);
+        if (count <= 0) return false;
+        byte_limit += count;
+        return true;
+    }
+
+    private int check(int field)
+    {
+        if (field < 0 || field_count <= field) throw new IndexOutOfBoundsException(field);
+        return field;
+    }
+
+    private void append(char c)
+    {
+        if (length == chars.length) chars = Arrays.copyOf(chars, length << 1);
+        chars[length++] = c;
+    }
+
+    private void add_field(int start, int end)
+    {
+        if (field_count == starts.length) {
+            starts = Arrays.copyOf(starts, field_count << 1);
+            ends = Arrays.copyOf(ends, field_count << 1);
+        }
+        starts[field_count] = start;
+        ends[field_count] = end;
+        field_count++;
+    }
+
+    private int read() throws IOException
+    {
+        if (position == limit && !fill()) return EOF;
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException
+    {
+        if (position == limit && !fill()) return EOF;
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException
+    {
+        final int count = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(count, 0);
+        return count > 0;
+    }
+
+    private static final class Blocks extends InputStreamReader
+    {
+        Blocks(final InputStream input)
+        {
+            super(input, StandardCharsets.UTF_8);
+            this.input = input;
+        }
+
+        final InputStream input;
+    }
+
+    private CsvScanner(final Reader reader, final InputStream input)
+    {
+        this.reader = reader;
+        this.input = input;
+        this.buffer = input == null ? new char[1 << 14] : null;
+        this.bytes = input == null ? null : new byte[1 << 16];
+    }
+
+    private static final int EOF = -1;
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+    private static final int MAX_DIGITS = 18;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+
+    private final InputStream input;
+    private byte[] bytes;
+    private int byte_position = 0;
+    private int byte_limit = 0;
+    private long consumed = 0L;
+    private long record_offset = 0L;
+    private long known_digits = 0L;
+    private long digits = 0L;
+
+    private char[] chars = new char[256];
+    private int length = 0;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int field_count = 0;
+    private long record_number = 0L;
+}
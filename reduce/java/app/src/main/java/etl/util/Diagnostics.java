@@ -0,0 +1,383 @@
+package etl.util;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Diagnostics is the logging subsystem of rejected input and swallowed
+ * failures. Code that finds a bad row reports a Reject event and moves
+ * on. It does not print anything itself.
+ * <p>
+ * Events are filtered by rule, which is the reason of a reject. Only
+ * the rules of {@code Policy.sampled_rules}, which are those of bad
+ * rows, are sampled: the first {@code Policy.always_first} events of
+ * such a rule are kept, and after that one in
+ * {@code Policy.sample_every} events, within
+ * {@code Policy.max_per_second} events of the rule per second. Events
+ * of any other rule, such as a failure to read or write, are all kept
+ * while the queue has room. Every event is counted. A kept event is handed to a background thread
+ * through a lock-free queue, and the thread writes it as a CSV line:
+ * {@code file,record_number,rule,raw_line}.
+ * That reject file can be read back by {@code replay()}.
+ * <p>
+ * Most events of a dirty input are thus only counted, by a LongAdder
+ * that does not contend between threads. The fast path never waits for
+ * the console or the disk.
+ * <p>
+ * {@code shared()} is the instance library code reports to. It writes
+ * to the file the system property {@code etl.rejects} names, or to
+ * System.err if the property is not set.
+ */
+public final class Diagnostics implements AutoCloseable
+{
+    /**
+     * The rules the library reports.
+     */
+    public static final String
+    RULE_INVALID_RECORD_KIND = "invalid_record_kind",
+    RULE_INVALID_RECORD      = "invalid_record",
+    RULE_UNPARSABLE_VALUE    = "unparsable_value",
+    RULE_READ_FAILED         = "read_failed",
+    RULE_WRITE_FAILED        = "write_failed",
+    RULE_ID_COLLISION        = "id_collision";
+
+    /**
+     * The system property that names the reject file of {@code shared()}.
+     */
+    public static final String REJECTS_PROPERTY = "etl.rejects";
+
+    /**
+     * Reject is a structured event of a rejected row or a failure.
+     * @param file          the input file, or null if unknown
+     * @param record_number the number of the record in the file, or -1
+     *                      if the event is not about a record
+     * @param rule          the reason of the reject
+     * @param raw_line      the raw text of the row or the failure, or
+     *                      null if unavailable
+     */
+    public record Reject(
+        String file,
+        long record_number,
+        String rule,
+        String raw_line
+    ) {
+        /**
+         * Returns the components of a Reject as an array of Object.
+         * @param reject a Reject record
+         * @return       an array of Object instances
+         */
+        public static Object[] values(final Reject reject)
+        {
+            return new Object[] {
+                reject.file, reject.record_number, reject.rule, reject.raw_line
+            };
+        }
+    }
+
+    /**
+     * Policy tells which events of a rule are kept.
+     * @param always_first   the number of first events always kept
+     * @param sample_every   keeps one in this number of the rest
+     * @param max_per_second the maximum number of events kept per second
+     * @param queue_capacity the maximum number of events waiting for the
+     *                       background thread, beyond which events drop
+     * @param sampled_rules  the rules of which events are sampled, while
+     *                       the events of other rules are all kept
+     */
+    public record Policy(
+        long always_first,
+        long sample_every,
+        double max_per_second,
+        int queue_capacity,
+        Set<String> sampled_rules
+    ) {
+        /**
+         * The policy of {@code shared()}, which samples the rules of bad
+         * rows only.
+         */
+        public static final Policy DEFAULT = new Policy(
+            100L, 100L, 100.0, 1 << 14,
+            Set.of(RULE_INVALID_RECORD_KIND, RULE_INVALID_RECORD, RULE_UNPARSABLE_VALUE)
+        );
+    }
+
+    /**
+     * Counts is a statistics holder of a rule.
+     * @param seen    the number of events reported
+     * @param emitted the number of events written
+     */
+    public record Counts(long seen, long emitted)
+    {
+        /**
+         * Returns the number of events only counted.
+         * @return the number of dropped events
+         */
+        public long dropped() { return seen - emitted; }
+    }
+
+    /**
+     * Returns the instance library code reports to, which is started on
+     * first use and drained when the JVM shuts down.
+     * @return the shared instance
+     */
+    public static Diagnostics shared()
+    {
+        var instance = shared;
+        if (instance != null) return instance;
+
+        synchronized (Diagnostics.class) {
+            if (shared == null) {
+                final var path = System.getProperty(REJECTS_PROPERTY);
+                final CloseableSupplier<Writer> writer = path == null
+                ? () -> new FilterWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8)) {
+                    // System.err outlives this instance
+                    @Override
+                    public void close() throws IOException { flush(); }
+                }
+                : () -> Files.newBufferedWriter(Path.of(path), StandardCharsets.UTF_8);
+
+                shared = to(writer, Policy.DEFAULT);
+                Runtime.getRuntime().addShutdownHook(new Thread(shared::close));
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Starts an instance writing to a reject file.
+     * @param writer provides a java.io.Writer to the reject file
+     * @param policy the policy of every rule
+     * @return       a started instance, which must be closed
+     */
+    public static Diagnostics to(
+        final CloseableSupplier<Writer> writer,
+        final Policy policy
+    ) {
+        final var diagnostics = new Diagnostics(writer, policy);
+        diagnostics.thread.start();
+        return diagnostics;
+    }
+
+    /**
+     * Reads a reject file back.
+     * @param supplier provides a java.io.Reader attached to a reject file
+     * @param consumer a Consumer that takes each Reject event
+     * @return         the number of events read, or -1 if the reader failed
+     */
+    public static long replay(
+        CloseableSupplier<Reader> supplier,
+        final Consumer<? super Reject> consumer
+    ) {
+        long count = 0L;
+
+        try (
+            final var scanner = CsvScanner.of(supplier.get())
+        ) {
+            while (scanner.next()) {
+                if (scanner.field_count() != REJECT_FIELDS) continue;
+                consumer.accept(new Reject(
+                    TextHelper.null_if_empty(scanner.string(0)),
+                    scanner.long_value(1, -1L),
+                    scanner.string(2),
+                    TextHelper.null_if_empty(scanner.string(3))
+                ));
+                count++;
+            }
+        } catch (Exception ex) {
+            count = -1L;
+        }
+
+        return count;
+    }
+
+    /**
+     * Counts an event of a rule and tells if the event should be kept,
+     * so that a caller builds an expensive raw line only when it is.
+     * @param rule the reason of the reject
+     * @return     {@code true} if the event should be reported
+     */
+    public boolean admits(final String rule)
+    {
+        final var state = state(rule);
+        state.seen.increment();
+
+        if (!policy.sampled_rules().contains(rule)) return true;
+        if (state.first_remaining.get() > 0L && state.first_remaining.getAndDecrement() > 0L) {
+            return true;
+        }
+        if (policy.sample_every() > 1L
+            && ThreadLocalRandom.current().nextLong(policy.sample_every()) != 0L
+        ) {
+            return false;
+        }
+        return state.acquire(interval_nanos);
+    }
+
+    /**
+     * Reports an event that {@code admits()} kept, without counting it
+     * again.
+     * @param reject a Reject event
+     */
+    public void emit(final Reject reject)
+    {
+        if (queued.incrementAndGet() > policy.queue_capacity()) {
+            queued.decrementAndGet();
+            return;
+        }
+        queue.offer(reject);
+        state(reject.rule()).emitted.increment();
+    }
+
+    /**
+     * Reports an event.
+     * @param file          the input file, or null if unknown
+     * @param record_number the number of the record, or -1
+     * @param rule          the reason of the reject
+     * @param raw_line      the raw text, or null if unavailable
+     */
+    public void reject(
+        final String file,
+        long record_number,
+        final String rule,
+        final String raw_line
+    ) {
+        if (admits(rule)) emit(new Reject(file, record_number, rule, raw_line));
+    }
+
+    /**
+     * Returns the counts of a rule.
+     * @param rule the reason of a reject
+     * @return     the counts
+     */
+    public Counts counts(final String rule)
+    {
+        final var state = states.get(rule);
+        return state == null
+        ? new Counts(0L, 0L)
+        : new Counts(state.seen.sum(), state.emitted.sum());
+    }
+
+    /**
+     * Returns the rules reported so far.
+     * @return the rules in alphabetical order
+     */
+    public List<String> rules()
+    {
+        return states.keySet().stream().sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Stops the background thread once it has written every event
+     * kept so far, and closes the reject file.
+     */
+    @Override
+    public void close()
+    {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(thread);
+
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain()
+    {
+        try (
+            final var printer = new ModelWriter(writer)
+        ) {
+            while (running || !queue.isEmpty()) {
+                final var reject = queue.poll();
+                if (reject == null) {
+                    printer.flush();
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                    continue;
+                }
+                queued.decrementAndGet();
+                printer.print(Reject.values(reject));
+            }
+        } catch (Exception ex) {
+            // nowhere is left to report to; events are still counted
+            running = false;
+        }
+    }
+
+    private RuleState state(final String rule)
+    {
+        final var state = states.get(rule);
+        return state != null
+        ? state
+        : states.computeIfAbsent(rule, key -> new RuleState(policy.always_first()));
+    }
+
+    private static final class RuleState
+    {
+        RuleState(long always_first)
+        {
+            first_remaining = new AtomicLong(always_first);
+        }
+
+        // the generic cell rate algorithm: an event is admitted unless
+        // the theoretical arrival time runs ahead by more than a second
+        boolean acquire(long interval_nanos)
+        {
+            while (true) {
+                final long now = System.nanoTime();
+                final long arrival = next_arrival.get();
+                final long start = Math.max(arrival, now);
+                if (start - now > BURST_NANOS) return false;
+                if (next_arrival.compareAndSet(arrival, start + interval_nanos)) return true;
+            }
+        }
+
+        final LongAdder seen = new LongAdder();
+        final LongAdder emitted = new LongAdder();
+        final AtomicLong first_remaining;
+        final AtomicLong next_arrival = new AtomicLong(Long.MIN_VALUE / 2);
+    }
+
+    private Diagnostics(final CloseableSupplier<Writer> writer, final Policy policy)
+    {
+        this.writer = writer;
+        this.policy = policy;
+        this.interval_nanos = (long) (TimeUnit.SECONDS.toNanos(1) / policy.max_per_second());
+        this.thread = new Thread(this::drain, "diagnostics");
+        this.thread.setDaemon(true);
+    }
+
+    private static final int REJECT_FIELDS = Reject.class.getRecordComponents().length;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static volatile Diagnostics shared;
+
+    private final CloseableSupplier<Writer> writer;
+    private final Policy policy;
+    private final long interval_nanos;
+    private final Thread thread;
+    private final ConcurrentHashMap<String, RuleState> states = new ConcurrentHashMap<>();
+    private final Queue<Reject> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile boolean running = true;
+}
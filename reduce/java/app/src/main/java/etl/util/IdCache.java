@@ -0,0 +1,154 @@
+package etl.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * IdCache is a bounded, thread-safe memo of a String function, meant to
+ * sit in front of {@code Sha1.hex_string()} so that an identity seen
+ * again is not hashed again.
+ * <p>
+ * The entries are spread over segments by the hash of the key. Each
+ * segment is a LinkedHashMap in access order under its own lock, and
+ * evicts its least recently used entry once it holds its share of the
+ * capacity. Hits and misses are counted.
+ */
+public final class IdCache
+{
+    /**
+     * Instantiates an empty cache.
+     * @param capacity the maximum number of entries
+     * @param function the function whose results are memoized
+     * @return         an empty cache
+     * @throws IllegalArgumentException
+     *      if {@code capacity} is not positive
+     */
+    public static IdCache of(int capacity, final UnaryOperator<String> function)
+        throws IllegalArgumentException
+    {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        return new IdCache(capacity, function);
+    }
+
+    /**
+     * Returns the result of the function for the key argument, applying
+     * the function only if the key is not cached.
+     * @param key a String, which must not be null
+     * @return    the result of the function
+     */
+    public String get(final String key)
+    {
+        final var segment = segments[(spread(key.hashCode()) >>> 1) % segments.length];
+
+        synchronized (segment) {
+            final var value = segment.get(key);
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+        }
+
+        // the function runs outside of the lock; a race only costs
+        // computing the same value twice
+        misses.increment();
+        final var value = function.apply(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of lookups that found the key cached.
+     * @return the number of hits
+     */
+    public long hits() { return hits.sum(); }
+
+    /**
+     * Returns the number of lookups that applied the function.
+     * @return the number of misses
+     */
+    public long misses() { return misses.sum(); }
+
+    /**
+     * Returns the number of cached entries.
+     * @return the number of entries
+     */
+    public int size()
+    {
+        int size = 0;
+        for (final var segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     * @return the capacity
+     */
+    public int capacity() { return capacity; }
+
+    /**
+     * Drops every entry and resets the counters.
+     */
+    public void clear()
+    {
+        for (final var segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Segment extends LinkedHashMap<String, String>
+    {
+        Segment(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, String> eldest)
+        {
+            return size() > capacity;
+        }
+
+        private final int capacity;
+        private static final long serialVersionUID = 1L;
+    }
+
+    private IdCache(int capacity, final UnaryOperator<String> function)
+    {
+        this.capacity = capacity;
+        this.function = function;
+
+        final int count = Math.min(SEGMENTS, capacity);
+        segments = new Segment[count];
+        for (int index = 0; index < count; index++) {
+            // the first segments take the remainder of the capacity
+            final int share = capacity / count + (index < capacity % count ? 1 : 0);
+            segments[index] = new Segment(share);
+        }
+    }
+
+    private static final int SEGMENTS = 16;
+
+    private final int capacity;
+    private final UnaryOperator<String> function;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+}
@@ -0,0 +1,116 @@
+package etl.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * IdCollisions verifies that distinct texts get distinct ids within a
+ * run. It maps the first 64 bits of each id to a 64-bit fingerprint of
+ * the text the id was computed from, in a pair of primitive arrays
+ * with open addressing and linear probing. An id seen again with a
+ * different fingerprint is a collision.
+ * <p>
+ * The fingerprint is a MurmurHash3 with a seed of its own, so that a
+ * collision of the id hash is not a collision of the fingerprint too,
+ * unless both collide, which is as likely as a 128-bit collision.
+ * Recording is synchronized, since ids are computed by parallel
+ * streams.
+ */
+public final class IdCollisions
+{
+    /**
+     * Instantiates an empty detector.
+     * @param expected the number of distinct ids expected
+     * @return         an empty detector
+     */
+    public static IdCollisions with_expected(int expected)
+    {
+        return new IdCollisions(Integer.highestOneBit(Math.max(expected, 8) * 2 - 1) << 1);
+    }
+
+    /**
+     * Records the id of a text.
+     * @param text the text the id was computed from
+     * @param id   the id in hex, of at least 16 digits
+     * @return     {@code false} if another text already got the id
+     */
+    public synchronized boolean record(final String text, final String id)
+    {
+        final long key = Long.parseUnsignedLong(id, 0, KEY_HEX_DIGITS, 16);
+        final long fingerprint = Murmur3.hash128(
+            text.getBytes(StandardCharsets.UTF_8), FINGERPRINT_SEED
+        )[0];
+
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                if (fingerprints[slot] == fingerprint) return true;
+                collisions++;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        used[slot] = true;
+        keys[slot] = key;
+        fingerprints[slot] = fingerprint;
+        if (++size > (keys.length >> 1)) grow();
+        return true;
+    }
+
+    /**
+     * Returns the number of collisions found.
+     * @return the number of collisions
+     */
+    public synchronized long collisions() { return collisions; }
+
+    /**
+     * Returns the number of distinct ids recorded.
+     * @return the number of distinct ids
+     */
+    public synchronized int size() { return size; }
+
+    private int slot(long key)
+    {
+        final long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void grow()
+    {
+        final var old_used = used;
+        final var old_keys = keys;
+        final var old_fingerprints = fingerprints;
+
+        used = new boolean[old_keys.length << 1];
+        keys = new long[old_keys.length << 1];
+        fingerprints = new long[old_keys.length << 1];
+        mask = keys.length - 1;
+
+        for (int old = 0; old < old_keys.length; old++) {
+            if (!old_used[old]) continue;
+            int slot = slot(old_keys[old]);
+            while (used[slot]) slot = (slot + 1) & mask;
+            used[slot] = true;
+            keys[slot] = old_keys[old];
+            fingerprints[slot] = old_fingerprints[old];
+        }
+    }
+
+    private IdCollisions(int capacity)
+    {
+        used = new boolean[capacity];
+        keys = new long[capacity];
+        fingerprints = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private static final int KEY_HEX_DIGITS = Long.SIZE / 4;
+    private static final long FINGERPRINT_SEED = 0x5eed_f00dL;
+
+    private boolean[] used;
+    private long[] keys;
+    private long[] fingerprints;
+    private int mask;
+    private int size = 0;
+    private long collisions = 0L;
+}
@@ -0,0 +1,89 @@
+package etl.util;
+
+/**
+ * IdHash is the strategy that computes the surrogate ids of films and
+ * actors out of their natural keys.
+ * <ul>
+ * <li>{@code SHA1}: 40 hex digits of SHA-1, through the cache of
+ *     {@code Sha1.cached_hex_string()}, which is the default so that
+ *     ids stay those of earlier outputs
+ * <li>{@code MURMUR3_128}: 32 hex digits of MurmurHash3 x64_128,
+ *     which is computed in a few nanoseconds and needs no cache
+ * </ul>
+ * The strategy of a run is selected by the system property
+ * {@code etl.id_hash}, and the property {@code etl.id_hash.check} set
+ * to {@code true} records every id in an IdCollisions detector, which
+ * {@code collisions()} returns.
+ */
+public enum IdHash
+{
+    SHA1
+    {
+        @Override
+        String hash(final String text) { return Sha1.cached_hex_string(text); }
+    },
+
+    MURMUR3_128
+    {
+        @Override
+        String hash(final String text) { return Murmur3.hex_string(text); }
+    };
+
+    /**
+     * The system property that selects the strategy of a run.
+     */
+    public static final String PROPERTY = "etl.id_hash";
+
+    /**
+     * The system property that enables the collision detector.
+     */
+    public static final String CHECK_PROPERTY = "etl.id_hash.check";
+
+    /**
+     * Computes the id of a text, and records it in the collision
+     * detector of the run if there is one.
+     * @param text a natural key, such as a name followed by a year
+     * @return     the id in hex
+     */
+    public String id(final String text)
+    {
+        final var id = hash(text);
+        final var detector = Selection.collisions;
+        if (detector != null) detector.record(text, id);
+        return id;
+    }
+
+    /**
+     * Returns the strategy selected by {@code etl.id_hash}, which is
+     * {@code SHA1} if the property is not set or names no strategy.
+     * @return the strategy of the run
+     */
+    public static IdHash selected() { return Selection.selected; }
+
+    /**
+     * Returns the collision detector of the run.
+     * @return the detector, or null if {@code etl.id_hash.check} is not
+     *         {@code true}
+     */
+    public static IdCollisions collisions() { return Selection.collisions; }
+
+    abstract String hash(String text);
+
+    // initialized on first use, after the enum constants
+    private static final class Selection
+    {
+        static final IdHash selected = select(System.getProperty(PROPERTY));
+        static final IdCollisions collisions
+        = Boolean.getBoolean(CHECK_PROPERTY) ? IdCollisions.with_expected(1 << 16) : null;
+
+        private static IdHash select(final String name)
+        {
+            if (name == null) return SHA1;
+            try {
+                return IdHash.valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                return SHA1;
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package etl.util;
+
+import java.util.Arrays;
+
+/**
+ * IntHistogram counts occurrences of {@code int} keys in a pair of
+ * primitive arrays with open addressing and linear probing, so that
+ * counting needs neither a boxed key nor an entry object per key.
+ * <p>
+ * A histogram is not thread-safe. Threads count into histograms of
+ * their own, which are then combined by {@code merge()}.
+ */
+public final class IntHistogram
+{
+    /**
+     * Instantiates an empty histogram.
+     * @return an empty histogram
+     */
+    public static IntHistogram empty()
+    {
+        return new IntHistogram(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds the delta argument to the count of a key.
+     * @param key   a key
+     * @param delta the amount to be added
+     */
+    public void add(int key, long delta)
+    {
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                counts[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        used[slot] = true;
+        keys[slot] = key;
+        counts[slot] = delta;
+        if (++size > (keys.length >> 1)) grow();
+    }
+
+    /**
+     * Returns the count of a key.
+     * @param key a key
+     * @return    the count, or zero if the key was never added
+     */
+    public long get(int key)
+    {
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) return counts[slot];
+            slot = (slot + 1) & mask;
+        }
+        return 0L;
+    }
+
+    /**
+     * Adds every count of the other histogram to this histogram.
+     * @param other a histogram
+     * @return      this histogram
+     */
+    public IntHistogram merge(final IntHistogram other)
+    {
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.used[slot]) add(other.keys[slot], other.counts[slot]);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of distinct keys.
+     * @return the number of distinct keys
+     */
+    public int size() { return size; }
+
+    /**
+     * Returns the keys in ascending order.
+     * @return an array of keys
+     */
+    public int[] keys()
+    {
+        final var sorted = new int[size];
+        int index = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) sorted[index++] = keys[slot];
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private int slot(int key)
+    {
+        int hash = key * 0x9e3779b9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void grow()
+    {
+        final var old_used = used;
+        final var old_keys = keys;
+        final var old_counts = counts;
+
+        used = new boolean[old_keys.length << 1];
+        keys = new int[old_keys.length << 1];
+        counts = new long[old_keys.length << 1];
+        mask = keys.length - 1;
+        size = 0;
+
+        for (int slot = 0; slot < old_keys.length; slot++) {
+            if (old_used[slot]) add(old_keys[slot], old_counts[slot]);
+        }
+    }
+
+    private IntHistogram(int capacity)
+    {
+        used = new boolean[capacity];
+        keys = new int[capacity];
+        counts = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private boolean[] used;
+    private int[] keys;
+    private long[] counts;
+    private int mask;
+    private int size = 0;
+}
@@ -0,0 +1,291 @@
+package etl.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * JsonLinesWriter prints records as JSON Lines, one object per line, of
+ * which the fields are named after the components of a 'text' record,
+ * as JsonScanner reads them back. It is the JSON counterpart of
+ * ModelWriter and reports the same statistics.
+ * <p>
+ * No reflection and no per-record allocation are involved: the bytes of
+ * each field name, along with the punctuation around it, are encoded
+ * once at construction, and values are encoded straight into one
+ * reused byte buffer that is written to the OutputStream when full.
+ * Printable ASCII, which most values are made of, is copied a char at a
+ * time without escaping, and the rest is escaped or encoded to UTF-8.
+ * <p>
+ * Values are trimmed, as ModelWriter trims them, and printed as JSON
+ * strings, or as null when they are null. A record without values
+ * prints an empty object, as ModelWriter prints a blank line, so that
+ * both outputs keep one line per record.
+ */
+public final class JsonLinesWriter implements ModelPrinter
+{
+    /**
+     * Marks an OutputStream as the output of JSON Lines.
+     * @param stream an OutputStream attached to a JSON Lines file
+     * @return       a Writer encoding UTF-8 into the stream, which
+     *               {@code is_json_lines()} tells of
+     */
+    public static Writer json_lines(final OutputStream stream)
+    {
+        return new Lines(stream);
+    }
+
+    /**
+     * Tells if a Writer was marked by {@code json_lines()}.
+     * @param writer a Writer
+     * @return       {@code true} if the Writer is of JSON Lines
+     */
+    public static boolean is_json_lines(final Writer writer)
+    {
+        return writer instanceof Lines;
+    }
+
+    /**
+     * Tells if a file is JSON Lines by the extension of its name:
+     * {@code .jsonl} or {@code .ndjson}.
+     * @param path path to a file
+     * @return     {@code true} if the file is named as JSON Lines
+     */
+    public static boolean is_json_lines(final Path path)
+    {
+        final var name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".jsonl") || name.endsWith(".ndjson");
+    }
+
+    /**
+     * Instantiates a writer over a Writer {@code json_lines()} marked,
+     * which bypasses the Writer to encode into its OutputStream.
+     * @param writer     a Writer marked by {@code json_lines()}
+     * @param text_class the class instance of the 'text' record type
+     * @return           a JsonLinesWriter
+     * @throws IllegalArgumentException if the Writer is not marked
+     */
+    public static JsonLinesWriter of(
+        final Writer writer,
+        final Class<? extends Record> text_class
+    ) {
+        if (!(writer instanceof Lines lines)) {
+            throw new IllegalArgumentException("not a Writer of JSON Lines");
+        }
+        return new JsonLinesWriter(lines.stream, ModelReader.component_names(text_class));
+    }
+
+    /**
+     * Creates a JsonLinesWriter that prints objects of the field names.
+     * @param stream an OutputStream to print, which this writer closes
+     * @param names  the names of the fields in the order of the values
+     */
+    public JsonLinesWriter(final OutputStream stream, final String[] names)
+    {
+        this.stream = stream;
+        this.prefixes = new byte[names.length][];
+        for (int field = 0; field < names.length; field++) {
+            final var prefix = new StringBuilder(names[field].length() + 4);
+            prefix.append(field == 0 ? '{' : ',');
+            prefix.append('"');
+            for (int index = 0; index < names[field].length(); index++) {
+                final char c = names[field].charAt(index);
+                if (c == '"' || c == '\\' || c < 0x20) {
+                    throw new IllegalArgumentException("name to escape: " + names[field]);
+                }
+                prefix.append(c);
+            }
+            prefix.append("\":");
+            this.prefixes[field] = prefix.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Takes the values of a record and prints them as one object followed
+     * by a new line character. Null, or no values, prints an empty
+     * object, of which null counts as invalid, as does a failure to
+     * write. Values beyond the field names are ignored, and missing
+     * values are null.
+     * @param values the values of a record, or null
+     */
+    @Override
+    public void print(final Object[] values)
+    {
+        total_lines++;
+
+        record_start = position;
+        try {
+            if (values == null || values.length == 0) {
+                if (values == null) invalid_lines++;
+                put(EMPTY_OBJECT);
+            } else {
+                for (int field = 0; field < prefixes.length; field++) {
+                    put(prefixes[field]);
+                    final Object value = field < values.length ? values[field] : null;
+                    if (value == null) {
+                        put(NULL);
+                    } else {
+                        put_string(value.toString());
+                    }
+                }
+                put(END_OF_OBJECT);
+            }
+        } catch (IOException ex) {
+            // drops what is still buffered of the record
+            position = record_start;
+            invalid_lines++;
+        }
+    }
+
+    /**
+     * Writes the buffer to the OutputStream and flushes the stream.
+     * @throws IOException if the stream cannot be written
+     */
+    public void flush() throws IOException
+    {
+        drain();
+        stream.flush();
+    }
+
+    @Override
+    public ModelWriter.Report report()
+    {
+        return new ModelWriter.Report(total_lines, invalid_lines);
+    }
+
+    /**
+     * Writes the buffer to the OutputStream and closes the stream.
+     * @throws IOException if the stream cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try (stream) {
+            drain();
+        }
+    }
+
+    // a trimmed, quoted, and escaped String
+    private void put_string(final String value) throws IOException
+    {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') start++;
+        while (start < end && value.charAt(end - 1) <= ' ') end--;
+
+        reserve(1);
+        buffer[position++] = '"';
+        for (int index = start; index < end; index++) {
+            final char c = value.charAt(index);
+
+            // the fast path: printable ASCII but the quote and backslash
+            if (c >= 0x20 && c < 0x7f && c != '"' && c != '\\') {
+                if (position == buffer.length) drain();
+                buffer[position++] = (byte) c;
+                continue;
+            }
+
+            reserve(MAX_CHAR_BYTES);
+            if (c < 0x80) {
+                put_escaped(c);
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c)
+                && index + 1 < end && Character.isLowSurrogate(value.charAt(index + 1))) {
+                final int code = Character.toCodePoint(c, value.charAt(++index));
+                buffer[position++] = (byte) (0xf0 | (code >> 18));
+                buffer[position++] = (byte) (0x80 | ((code >> 12) & 0x3f));
+                buffer[position++] = (byte) (0x80 | ((code >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (code & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // a lone surrogate, which UTF-8 cannot encode
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xe0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        reserve(1);
+        buffer[position++] = '"';
+    }
+
+    // an ASCII char to escape: a quote, a backslash, DEL, or a control char
+    private void put_escaped(char c)
+    {
+        buffer[position++] = '\\';
+        switch (c) {
+        case '"':  buffer[position++] = '"';  return;
+        case '\\': buffer[position++] = '\\'; return;
+        case '\b': buffer[position++] = 'b';  return;
+        case '\f': buffer[position++] = 'f';  return;
+        case '\n': buffer[position++] = 'n';  return;
+        case '\r': buffer[position++] = 'r';  return;
+        case '\t': buffer[position++] = 't';  return;
+        default:
+            buffer[position++] = 'u';
+            buffer[position++] = '0';
+            buffer[position++] = '0';
+            buffer[position++] = HEX_DIGITS[c >> 4];
+            buffer[position++] = HEX_DIGITS[c & 0xf];
+        }
+    }
+
+    private void put(final byte[] bytes) throws IOException
+    {
+        if (bytes.length > buffer.length - position) {
+            drain();
+            if (bytes.length > buffer.length) {
+                stream.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void reserve(int bytes) throws IOException
+    {
+        if (bytes > buffer.length - position) drain();
+    }
+
+    private void drain() throws IOException
+    {
+        if (position > 0) {
+            stream.write(buffer, 0, position);
+            position = 0;
+            record_start = 0;
+        }
+    }
+
+    // a Writer marked as JSON Lines, which keeps its OutputStream
+    private static final class Lines extends OutputStreamWriter
+    {
+        Lines(final OutputStream stream)
+        {
+            super(stream, StandardCharsets.UTF_8);
+            this.stream = stream;
+        }
+
+        final OutputStream stream;
+    }
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int MAX_CHAR_BYTES = 6;
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END_OF_OBJECT = "}\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EMPTY_OBJECT = "{}\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private long total_lines = 0L;
+    private long invalid_lines = 0L;
+    private final OutputStream stream;
+    private final byte[][] prefixes;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private int position = 0;
+    private int record_start = 0;
+}
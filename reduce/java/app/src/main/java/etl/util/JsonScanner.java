@@ -0,0 +1,580 @@
+package etl.util;
+
+import java.io.BufferedReader;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JsonScanner reads a stream of flat JSON objects one object at a time,
+ * into one reused char buffer, as CsvScanner reads CSV records: the
+ * memory it takes is that of the largest object, however large the
+ * input is. An object is a record whose fields are found by name, such
+ * as the names of the record components of a 'text' record.
+ * <p>
+ * It reads either a JSON array of objects or JSON Lines, that is
+ * objects separated by whitespace, typically one per line. Strings are
+ * unescaped, numbers and booleans are read as their literal text, so
+ * that {@code 1978} and {@code "1978"} are the same field, and null,
+ * nested objects, and nested arrays are read as null. An empty string
+ * is read as null too, as an empty CSV field is. A nested value is
+ * dropped, which {@code has_nested()} tells of, so that a reader of
+ * the objects reports it.
+ * <p>
+ * A Reader {@code json()} returns is marked as JSON, so that readers
+ * that accept both CSV and JSON, such as {@code Ex2Movie.Extracting},
+ * tell them apart without peeking into the data.
+ */
+public final class JsonScanner implements AutoCloseable
+{
+    /**
+     * Instantiates a scanner over the reader argument.
+     * @param reader a Reader attached to JSON data
+     * @return       a scanner positioned before the first object
+     */
+    public static JsonScanner of(final Reader reader)
+    {
+        return new JsonScanner(reader);
+    }
+
+    /**
+     * Marks a Reader as a Reader of JSON data.
+     * @param reader a Reader attached to JSON data
+     * @return       a Reader that {@code is_json()} tells of
+     */
+    public static Reader json(final Reader reader)
+    {
+        return new Json(reader);
+    }
+
+    /**
+     * Tells if a Reader was marked by {@code json()}.
+     * @param reader a Reader
+     * @return       {@code true} if the Reader is of JSON data
+     */
+    public static boolean is_json(final Reader reader)
+    {
+        return reader instanceof Json;
+    }
+
+    /**
+     * Tells if a file is JSON by the extension of its name:
+     * {@code .json}, {@code .jsonl}, or {@code .ndjson}.
+     * @param path path to a file
+     * @return     {@code true} if the file is named as JSON
+     */
+    public static boolean is_json(final Path path)
+    {
+        final var name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson");
+    }
+
+    /**
+     * Splits a JSON Lines file into chunks of whole lines, so that the
+     * chunks are scanned in parallel, each by a scanner of its own.
+     * A chunk ends at the first line feed after its share of the file,
+     * which is never inside a multi-byte UTF-8 sequence.
+     * @param path   path to a JSON Lines file
+     * @param chunks the number of chunks wanted
+     * @return       the suppliers of a Reader per non-empty chunk, which
+     *               {@code json()} marks, in the order of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static List<CloseableSupplier<Reader>> lines(final Path path, int chunks)
+        throws IOException
+    {
+        final var bounds = new ArrayList<Long>();
+        try (
+            final var channel = FileChannel.open(path, StandardOpenOption.READ)
+        ) {
+            final long size = channel.size();
+            final int count = Math.max(chunks, 1);
+
+            bounds.add(0L);
+            for (int chunk = 1; chunk < count; chunk++) {
+                final long previous = bounds.get(bounds.size() - 1);
+                final long target = Math.max(size * chunk / count, previous);
+                bounds.add(target == 0L ? 0L : line_end(channel, target - 1L));
+            }
+            bounds.add(size);
+        }
+
+        final var suppliers = new ArrayList<CloseableSupplier<Reader>>();
+        for (int chunk = 0; chunk + 1 < bounds.size(); chunk++) {
+            final long start = bounds.get(chunk);
+            final long end = bounds.get(chunk + 1);
+            if (start >= end) continue;
+
+            suppliers.add(() -> json(new BufferedReader(
+                new InputStreamReader(new Range(path, start, end), StandardCharsets.UTF_8),
+                BUFFER_CHARS
+            )));
+        }
+        return suppliers;
+    }
+
+    /**
+     * Advances to the next object.
+     * @return {@code false} if there is no more object
+     * @throws IOException if the reader failed, or the data is not an
+     *         array of objects or a sequence of objects
+     */
+    public boolean next() throws IOException
+    {
+        field_count = 0;
+        length = 0;
+        nested = false;
+        if (ended) return false;
+
+        int c = skip_whitespace();
+        if (record_number == 0L && !in_array && c == '[') {
+            in_array = true;
+            c = skip_whitespace();
+            if (c == ']') return end();
+        } else if (in_array) {
+            if (c == ']') return end();
+            if (c != ',') throw malformed("',' or ']' expected");
+            c = skip_whitespace();
+        }
+
+        if (c == -1) {
+            if (in_array) throw malformed("unterminated array");
+            ended = true;
+            return false;
+        }
+        if (c != '{') throw malformed("'{' expected");
+
+        read_object();
+        record_number++;
+        return true;
+    }
+
+    /**
+     * Returns the number of the current object, starting at 1.
+     * @return the object number
+     */
+    public long record_number() { return record_number; }
+
+    /**
+     * Tells if a value of the current object was a nested object or
+     * array, which was dropped and is read as null.
+     * @return {@code true} if a nested value was dropped
+     */
+    public boolean has_nested() { return nested; }
+
+    /**
+     * Returns the number of fields of the current object.
+     * @return the number of fields
+     */
+    public int field_count() { return field_count; }
+
+    /**
+     * Returns the index of a field by its name.
+     * @param name the name of a field
+     * @return     the index of the first field of the name, or -1 if the
+     *             object has no such field
+     */
+    public int index_of(final CharSequence name)
+    {
+        for (int field = 0; field < field_count; field++) {
+            if (equals(name_starts[field], name_ends[field], name)) return field;
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the name of a field into a String.
+     * @param field the index of a field
+     * @return      the name
+     */
+    public String name(int field)
+    {
+        check(field);
+        return new String(chars, name_starts[field], name_ends[field] - name_starts[field]);
+    }
+
+    /**
+     * Copies the value of a field into a String.
+     * @param field the index of a field, or -1
+     * @return      the value, or null if the field is -1, null, nested,
+     *              or empty
+     */
+    public String string(int field)
+    {
+        if (field < 0 || nulls[check(field)]) return null;
+
+        final int length = value_ends[field] - value_starts[field];
+        return length == 0 ? null : new String(chars, value_starts[field], length);
+    }
+
+    /**
+     * Copies the value of a field into a String by the name of the field.
+     * @param name the name of a field
+     * @return     the value, or null if the object has no such field, or
+     *             its value is null, nested, or empty
+     */
+    public String string(final CharSequence name)
+    {
+        return string(index_of(name));
+    }
+
+    /**
+     * Copies the values of fields into Strings by their names, such as
+     * the components of a 'text' record in the order of its canonical
+     * constructor.
+     * @param names the names of fields
+     * @return      the value per name, as {@code string()} returns it
+     */
+    public Object[] strings(final String[] names)
+    {
+        final var values = new Object[names.length];
+        for (int index = 0; index < names.length; index++) {
+            values[index] = string(index_of(names[index]));
+        }
+        return values;
+    }
+
+    /**
+     * Tells if the value of a field equals the text argument.
+     * @param field the index of a field, or -1
+     * @param text  a sequence of chars
+     * @return      {@code true} if the field is not null and equals the text
+     */
+    public boolean equals_to(int field, final CharSequence text)
+    {
+        if (field < 0 || nulls[check(field)]) return false;
+        return equals(value_starts[field], value_ends[field], text);
+    }
+
+    /**
+     * Returns the current object as one line of JSON, such as a
+     * diagnostic message quotes as the raw record. Values are printed as
+     * strings, or as null, as JsonLinesWriter prints them.
+     * @return the object as a line of JSON
+     */
+    public String line()
+    {
+        final var builder = new StringBuilder(length + field_count * 6 + 2);
+        builder.append('{');
+        for (int field = 0; field < field_count; field++) {
+            if (field > 0) builder.append(',');
+            append_string(builder, name_starts[field], name_ends[field]);
+            builder.append(':');
+            if (nulls[field]) {
+                builder.append("null");
+            } else {
+                append_string(builder, value_starts[field], value_ends[field]);
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Closes the reader.
+     * @throws IOException if the reader failed to close
+     */
+    @Override
+    public void close() throws IOException
+    {
+        reader.close();
+    }
+
+    // a quoted and escaped string of the chars between start and end
+    private void append_string(final StringBuilder builder, int start, int end)
+    {
+        builder.append('"');
+        for (int index = start; index < end; index++) {
+            final char c = chars[index];
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    private void read_object() throws IOException
+    {
+        int c = skip_whitespace();
+        if (c == '}') return;
+
+        while (true) {
+            if (c != '"') throw malformed("a name expected");
+            final int field = add_field();
+            name_starts[field] = length;
+            read_string();
+            name_ends[field] = length;
+
+            if (skip_whitespace() != ':') throw malformed("':' expected");
+            read_value(field, skip_whitespace());
+
+            c = skip_whitespace();
+            if (c == '}') return;
+            if (c != ',') throw malformed("',' or '}' expected");
+            c = skip_whitespace();
+        }
+    }
+
+    private void read_value(int field, int c) throws IOException
+    {
+        value_starts[field] = length;
+        nulls[field] = false;
+
+        if (c == '"') {
+            read_string();
+        } else if (c == '{' || c == '[') {
+            skip_nested();
+            length = value_starts[field];
+            nulls[field] = true;
+            nested = true;
+        } else if (c == '-' || c == '+' || c == '.' || is_letter_or_digit(c)) {
+            while (c == '-' || c == '+' || c == '.' || is_letter_or_digit(c)) {
+                append((char) c);
+                c = read();
+            }
+            pushback = c;
+            if (equals(value_starts[field], length, "null")) {
+                length = value_starts[field];
+                nulls[field] = true;
+            }
+        } else {
+            throw malformed("a value expected");
+        }
+
+        value_ends[field] = length;
+    }
+
+    // reads the rest of a string of which the opening quote was read
+    private void read_string() throws IOException
+    {
+        while (true) {
+            int c = read();
+            if (c == '"') return;
+            if (c == -1) throw malformed("unterminated string");
+            if (c == '\\') {
+                c = read();
+                c = switch (c) {
+                    case '"', '\\', '/' -> c;
+                    case 'b' -> '\b';
+                    case 'f' -> '\f';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    case 't' -> '\t';
+                    case 'u' -> read_hex4();
+                    default -> throw malformed("invalid escape");
+                };
+            }
+            append((char) c);
+        }
+    }
+
+    private int read_hex4() throws IOException
+    {
+        int code = 0;
+        for (int digit = 0; digit < 4; digit++) {
+            final int value = Character.digit(read(), 16);
+            if (value < 0) throw malformed("invalid \\u escape");
+            code = (code << 4) | value;
+        }
+        return code;
+    }
+
+    // skips a nested object or array of which the opening bracket was read
+    private void skip_nested() throws IOException
+    {
+        final int mark = length;
+        for (int depth = 1; depth > 0; ) {
+            final int c = read();
+            if (c == -1) throw malformed("unterminated value");
+            if (c == '"') {
+                read_string();
+                length = mark;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+    }
+
+    private boolean end() throws IOException
+    {
+        ended = true;
+        if (skip_whitespace() != -1) throw malformed("data after the array");
+        return false;
+    }
+
+    private int skip_whitespace() throws IOException
+    {
+        int c = read();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == BYTE_ORDER_MARK) c = read();
+        return c;
+    }
+
+    private int read() throws IOException
+    {
+        if (pushback != NONE) {
+            final int c = pushback;
+            pushback = NONE;
+            return c;
+        }
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    private void append(char c)
+    {
+        if (length == chars.length) chars = Arrays.copyOf(chars, chars.length << 1);
+        chars[length++] = c;
+    }
+
+    private int add_field()
+    {
+        if (field_count == name_starts.length) {
+            final int capacity = name_starts.length << 1;
+            name_starts = Arrays.copyOf(name_starts, capacity);
+            name_ends = Arrays.copyOf(name_ends, capacity);
+            value_starts = Arrays.copyOf(value_starts, capacity);
+            value_ends = Arrays.copyOf(value_ends, capacity);
+            nulls = Arrays.copyOf(nulls, capacity);
+        }
+        return field_count++;
+    }
+
+    private boolean equals(int start, int end, final CharSequence text)
+    {
+        if (end - start != text.length()) return false;
+        for (int index = 0; index < text.length(); index++) {
+            if (chars[start + index] != text.charAt(index)) return false;
+        }
+        return true;
+    }
+
+    private int check(int field)
+    {
+        if (field < 0 || field_count <= field) throw new IndexOutOfBoundsException(field);
+        return field;
+    }
+
+    private IOException malformed(final String what)
+    {
+        return new IOException(String.format(
+            "malformed JSON in object %d: %s", record_number + 1, what
+        ));
+    }
+
+    private static boolean is_letter_or_digit(int c)
+    {
+        return ('0' <= c && c <= '9') || ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z');
+    }
+
+    // the offset after the first line feed at or after the position
+    private static long line_end(final FileChannel channel, long position) throws IOException
+    {
+        final var bytes = ByteBuffer.allocate(BUFFER_CHARS);
+        final long size = channel.size();
+        while (position < size) {
+            bytes.clear();
+            final int count = channel.read(bytes, position);
+            if (count <= 0) break;
+            for (int index = 0; index < count; index++) {
+                if (bytes.get(index) == '\n') return position + index + 1;
+            }
+            position += count;
+        }
+        return size;
+    }
+
+    private JsonScanner(final Reader reader)
+    {
+        this.reader = reader;
+    }
+
+    // a Reader marked as JSON
+    private static final class Json extends FilterReader
+    {
+        Json(final Reader reader) { super(reader); }
+    }
+
+    // the bytes of a file in [start, end)
+    private static final class Range extends InputStream
+    {
+        Range(final Path path, long start, long end) throws IOException
+        {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            final var one = new byte[1];
+            return read(one, 0, 1) == 1 ? one[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, int offset, int length) throws IOException
+        {
+            if (position >= end) return -1;
+            final int wanted = (int) Math.min(length, end - position);
+            final int count = channel.read(ByteBuffer.wrap(bytes, offset, wanted), position);
+            if (count > 0) position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+    }
+
+    private static final int BUFFER_CHARS = 1 << 16;
+    private static final int NONE = -2;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_CHARS];
+    private int position = 0;
+    private int limit = 0;
+    private int pushback = NONE;
+
+    private char[] chars = new char[1 << 10];
+    private int length = 0;
+    private int[] name_starts = new int[8];
+    private int[] name_ends = new int[8];
+    private int[] value_starts = new int[8];
+    private int[] value_ends = new int[8];
+    private boolean[] nulls = new boolean[8];
+    private int field_count = 0;
+    private boolean nested = false;
+
+    private long record_number = 0L;
+    private boolean in_array = false;
+    private boolean ended = false;
+}
@@ -0,0 +1,150 @@
+package etl.util;
+
+import java.util.Arrays;
+
+/**
+ * LongHashSet is a set of {@code long} values backed by a single
+ * {@code long[]} table with open addressing and linear probing.
+ * Unlike {@code HashSet<Long>}, it needs neither a boxed Long nor an
+ * entry object per element, so its footprint is about 8 to 16 bytes
+ * per element.
+ * <p>
+ * The set is not thread-safe while elements are added.
+ * Once built, it can be probed by any number of threads.
+ */
+public class LongHashSet
+{
+    /**
+     * Instantiates an empty set that holds the specified number
+     * of elements without growing its table.
+     * @param expected the number of elements expected
+     * @return         an empty set
+     */
+    public static LongHashSet with_capacity(int expected)
+    {
+        final int capacity = capacity_for(Math.max(expected, 1));
+        return new LongHashSet(capacity);
+    }
+
+    /**
+     * Adds the value argument to this set.
+     * @param value a value to be added
+     * @return  {@code true} if this set did not already contain the value
+     */
+    public boolean add(long value)
+    {
+        if (value == FREE) {
+            if (has_free) return false;
+            has_free = true;
+            size++;
+            return true;
+        }
+
+        int slot = slot(value);
+        for (long probe; (probe = table[slot]) != FREE; slot = (slot + 1) & mask) {
+            if (probe == value) return false;
+        }
+
+        table[slot] = value;
+        if (++size > threshold) grow();
+        return true;
+    }
+
+    /**
+     * Tells if this set contains the value argument.
+     * @param value a value to be looked for
+     * @return      {@code true} if this set contains the value
+     */
+    public boolean contains(long value)
+    {
+        if (value == FREE) return has_free;
+
+        int slot = slot(value);
+        for (long probe; (probe = table[slot]) != FREE; slot = (slot + 1) & mask) {
+            if (probe == value) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of elements in this set.
+     * @return the number of elements in this set
+     */
+    public int size() { return size; }
+
+    /**
+     * Returns the number of bytes the table of this set occupies.
+     * @return the number of bytes the table occupies
+     */
+    public long table_bytes() { return (long) table.length * Long.BYTES; }
+
+    /**
+     * Returns the elements of this set in no particular order.
+     * @return an array containing all elements of this set
+     */
+    public long[] values()
+    {
+        final var values = Arrays.stream(table)
+        .filter(value -> value != FREE)
+        .toArray();
+
+        if (!has_free) return values;
+
+        final var with_free = Arrays.copyOf(values, values.length + 1);
+        with_free[values.length] = FREE;
+        return with_free;
+    }
+
+    private int slot(long value)
+    {
+        // the finalizer of MurmurHash3 spreads clustered keys over the table
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+
+    private void grow()
+    {
+        if (table.length == MAX_CAPACITY) {
+            throw new IllegalStateException("LongHashSet is full");
+        }
+
+        final var old_table = table;
+        table = new long[old_table.length << 1];
+        mask = table.length - 1;
+        threshold = table.length >> 1;
+
+        for (final long value : old_table) {
+            if (value == FREE) continue;
+            int slot = slot(value);
+            while (table[slot] != FREE) slot = (slot + 1) & mask;
+            table[slot] = value;
+        }
+    }
+
+    private static int capacity_for(int expected)
+    {
+        // keeps the load factor at or below 1/2
+        final long wanted = Math.max(16L, (long) expected << 1);
+        if (wanted > MAX_CAPACITY) return MAX_CAPACITY;
+        return Integer.highestOneBit((int) wanted - 1) << 1;
+    }
+
+    private LongHashSet(int capacity)
+    {
+        table = new long[capacity];
+        mask = capacity - 1;
+        threshold = capacity >> 1;
+    }
+
+    private static final long FREE = 0L;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] table;
+    private int mask;
+    private int threshold;
+    private int size = 0;
+    private boolean has_free = false;
+}
@@ -0,0 +1,154 @@
+package etl.util;
+
+/**
+ * LongIntHashMap is a map of {@code long} keys to {@code int} values
+ * backed by a pair of primitive arrays with open addressing and linear
+ * probing, as LongHashSet is a set. Unlike {@code HashMap<Long, Integer>},
+ * it needs neither boxes nor an entry object per mapping, so its
+ * footprint is about 24 to 48 bytes per mapping.
+ * <p>
+ * A typical value is the index of a row in primitive or String arrays,
+ * which makes the map the table of a hash join keyed by ids.
+ * <p>
+ * The map is not thread-safe while mappings are put.
+ * Once built, it can be probed by any number of threads.
+ */
+public class LongIntHashMap
+{
+    /**
+     * The value {@code get()} returns for a key that is not mapped.
+     */
+    public static final int MISSING = -1;
+
+    /**
+     * Instantiates an empty map that holds the specified number
+     * of mappings without growing its table.
+     * @param expected the number of mappings expected
+     * @return         an empty map
+     */
+    public static LongIntHashMap with_capacity(int expected)
+    {
+        final int capacity = capacity_for(Math.max(expected, 1));
+        return new LongIntHashMap(capacity);
+    }
+
+    /**
+     * Maps the key argument to the value argument, unless the key is
+     * already mapped.
+     * @param key   a key
+     * @param value a value, other than {@code MISSING}
+     * @return      the value the key was already mapped to, or
+     *              {@code MISSING} if the value was put
+     */
+    public int put_if_absent(long key, int value)
+    {
+        if (key == FREE) {
+            if (has_free) return free_value;
+            has_free = true;
+            free_value = value;
+            size++;
+            return MISSING;
+        }
+
+        int slot = slot(key);
+        for (long probe; (probe = keys[slot]) != FREE; slot = (slot + 1) & mask) {
+            if (probe == key) return values[slot];
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > threshold) grow();
+        return MISSING;
+    }
+
+    /**
+     * Returns the value the key argument is mapped to.
+     * @param key a key to be looked for
+     * @return    the value, or {@code MISSING} if the key is not mapped
+     */
+    public int get(long key)
+    {
+        if (key == FREE) return has_free ? free_value : MISSING;
+
+        int slot = slot(key);
+        for (long probe; (probe = keys[slot]) != FREE; slot = (slot + 1) & mask) {
+            if (probe == key) return values[slot];
+        }
+        return MISSING;
+    }
+
+    /**
+     * Returns the number of mappings in this map.
+     * @return the number of mappings in this map
+     */
+    public int size() { return size; }
+
+    /**
+     * Returns the number of bytes the tables of this map occupy.
+     * @return the number of bytes the tables occupy
+     */
+    public long table_bytes()
+    {
+        return (long) keys.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    private int slot(long key)
+    {
+        // the finalizer of MurmurHash3 spreads clustered keys over the table
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+
+    private void grow()
+    {
+        if (keys.length == MAX_CAPACITY) {
+            throw new IllegalStateException("LongIntHashMap is full");
+        }
+
+        final var old_keys = keys;
+        final var old_values = values;
+        keys = new long[old_keys.length << 1];
+        values = new int[old_keys.length << 1];
+        mask = keys.length - 1;
+        threshold = keys.length >> 1;
+
+        for (int old_slot = 0; old_slot < old_keys.length; old_slot++) {
+            final long key = old_keys[old_slot];
+            if (key == FREE) continue;
+            int slot = slot(key);
+            while (keys[slot] != FREE) slot = (slot + 1) & mask;
+            keys[slot] = key;
+            values[slot] = old_values[old_slot];
+        }
+    }
+
+    private static int capacity_for(int expected)
+    {
+        // keeps the load factor at or below 1/2
+        final long wanted = Math.max(16L, (long) expected << 1);
+        if (wanted > MAX_CAPACITY) return MAX_CAPACITY;
+        return Integer.highestOneBit((int) wanted - 1) << 1;
+    }
+
+    private LongIntHashMap(int capacity)
+    {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        threshold = capacity >> 1;
+    }
+
+    private static final long FREE = 0L;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int threshold;
+    private int size = 0;
+    private boolean has_free = false;
+    private int free_value = MISSING;
+}
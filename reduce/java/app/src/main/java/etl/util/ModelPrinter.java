@@ -0,0 +1,73 @@
+package etl.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.Function;
+
+/**
+ * ModelPrinter prints 'model' records to an output, one line per record,
+ * in the format the output is selected by: CSV through a ModelWriter,
+ * or JSON Lines through a JsonLinesWriter when the Writer is marked by
+ * {@code JsonLinesWriter.json_lines()}. Both report the same statistics.
+ */
+public interface ModelPrinter extends AutoCloseable
+{
+    /**
+     * Takes a 'model' record and prints it as one line. The mapper
+     * argument is to transform each component of the 'model' record to
+     * a value, in the order of the components of its 'text' record.
+     * A 'model' record that is null counts as invalid.
+     * @param <T>    the type of the 'model' record
+     * @param model  an instance of the 'model' record
+     * @param mapper a function that transforms each component to String
+     */
+    default <T extends Record> void accept(
+        final T model,
+        final Function<T, Object[]> mapper
+    ) {
+        print(model == null ? null : mapper.apply(model));
+    }
+
+    /**
+     * Takes the values of a record and prints them as one line, while
+     * null counts as invalid.
+     * @param values the values of a record, or null
+     */
+    void print(Object[] values);
+
+    /**
+     * Returns the statistics of the lines printed so far.
+     * @return the Report structure
+     */
+    ModelWriter.Report report();
+
+    /**
+     * Flushes the lines printed and closes the output.
+     * @throws IOException if the output cannot be written or closed
+     */
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Selects a ModelPrinter by the Writer a supplier provides.
+     * @param supplier   provides a java.io.Writer to print, which
+     *                   {@code JsonLinesWriter.json_lines()} may mark
+     * @param text_class the class instance of the 'text' record type,
+     *                   of which the component names are the names of
+     *                   the fields of JSON objects
+     * @return           a JsonLinesWriter if the Writer is marked,
+     *                   otherwise a ModelWriter
+     * @throws Exception if the supplier or the constructor throws
+     */
+    static ModelPrinter of(
+        final CloseableSupplier<Writer> supplier,
+        final Class<? extends Record> text_class
+    )
+        throws Exception
+    {
+        final var writer = supplier.get();
+        return JsonLinesWriter.is_json_lines(writer)
+        ? JsonLinesWriter.of(writer, text_class)
+        : new ModelWriter(() -> writer);
+    }
+}
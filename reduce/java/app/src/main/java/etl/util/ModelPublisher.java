@@ -0,0 +1,211 @@
+package etl.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * ModelPublisher publishes the 'model' records of a CSV file to each
+ * subscriber, reading and parsing only as many records as subscribers
+ * request, as {@code ModelReader.publisher()} describes.
+ * <p>
+ * Each subscription opens the file on its first request, and emits on
+ * the executor in batches of the demand outstanding when a batch
+ * starts. Signals of a subscription are serialized by a work counter,
+ * so that a request from within {@code onNext()} extends the running
+ * batch rather than recursing. The file is closed when the records run
+ * out, when reading fails, or when the subscription is cancelled.
+ * @param <T> a 'text' record type corresponding the CSV file
+ * @param <I> an 'model' record type corresponding the CSV file
+ */
+final class ModelPublisher<T extends Record, I extends Record>
+implements Flow.Publisher<I>
+{
+    ModelPublisher(
+        final CloseableSupplier<Reader> supplier,
+        final Class<T> text_class,
+        final Function<CSVRecord, T> text_mapper,
+        final Function<T, I> model_mapper,
+        final Executor executor
+    ) {
+        this.supplier = supplier;
+        this.text_class = text_class;
+        this.text_mapper = text_mapper;
+        this.model_mapper = model_mapper;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super I> subscriber)
+    {
+        Objects.requireNonNull(subscriber);
+        subscriber.onSubscribe(new Emission(subscriber));
+    }
+
+    private final class Emission implements Flow.Subscription, Runnable
+    {
+        Emission(final Flow.Subscriber<? super I> subscriber)
+        {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0L) {
+                invalid = new IllegalArgumentException("non-positive request: " + n);
+            } else {
+                demand.accumulateAndGet(n, (outstanding, added) -> {
+                    final long sum = outstanding + added;
+                    return sum < 0L ? Long.MAX_VALUE : sum;
+                });
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+            schedule();
+        }
+
+        @Override
+        public void run()
+        {
+            int missed = 1;
+            do {
+                drain();
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void schedule()
+        {
+            if (work.getAndIncrement() != 0) return;
+
+            try {
+                executor.execute(this);
+            } catch (Exception ex) {
+                work.set(0);
+                finish(ex, true);
+            }
+        }
+
+        private void drain()
+        {
+            if (done) return;
+            if (cancelled) {
+                finish(null, false);
+                return;
+            }
+            if (invalid != null) {
+                finish(invalid, true);
+                return;
+            }
+
+            try {
+                if (records == null) {
+                    reader = supplier.get();
+                    parser = CSVParser.parse(reader, ModelReader.format(text_class));
+                    records = parser.iterator();
+                }
+
+                long requested = demand.get();
+                while (requested > 0L) {
+                    long emitted = 0L;
+                    while (emitted < requested) {
+                        if (cancelled) {
+                            finish(null, false);
+                            return;
+                        }
+                        if (!records.hasNext()) {
+                            finish(null, true);
+                            return;
+                        }
+
+                        final var csv = records.next();
+                        final var text = text_mapper.apply(csv);
+                        final var model = text == null ? null : model_mapper.apply(text);
+                        // a subscriber never takes a null; invalid records are
+                        // skipped and reported
+                        if (model == null) {
+                            Diagnostics.shared().reject(
+                                supplier.source(), csv.getRecordNumber(),
+                                Diagnostics.RULE_INVALID_RECORD, CsvScanner.line(csv)
+                            );
+                            continue;
+                        }
+
+                        subscriber.onNext(model);
+                        emitted++;
+                    }
+                    requested = requested == Long.MAX_VALUE
+                    ? Long.MAX_VALUE
+                    : demand.addAndGet(-emitted);
+                }
+            } catch (Exception ex) {
+                finish(ex, true);
+            }
+        }
+
+        private void finish(final Throwable error, boolean signal)
+        {
+            if (done) return;
+            done = true;
+
+            // the parser first, as try-with-resources would close them
+            records = null;
+            close(parser);
+            close(reader);
+
+            if (!signal) return;
+            if (error == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(error);
+            }
+        }
+
+        private void close(final Closeable closeable)
+        {
+            if (closeable == null) return;
+
+            try {
+                closeable.close();
+            } catch (IOException ex) {
+                Diagnostics.shared().reject(
+                    supplier.source(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+                );
+            }
+        }
+
+        private final Flow.Subscriber<? super I> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile Throwable invalid = null;
+
+        // owned by the thread that runs the drain loop
+        private Reader reader = null;
+        private CSVParser parser = null;
+        private Iterator<CSVRecord> records = null;
+        private boolean done = false;
+    }
+
+    private final CloseableSupplier<Reader> supplier;
+    private final Class<T> text_class;
+    private final Function<CSVRecord, T> text_mapper;
+    private final Function<T, I> model_mapper;
+    private final Executor executor;
+}
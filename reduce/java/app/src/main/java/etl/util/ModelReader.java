@@ -1,11 +1,29 @@
 package etl.util;
 
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.RecordComponent;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -15,6 +33,7 @@ import org.apache.commons.csv.CSVRecord;
 /**
  * ModelReader wraps the CSVParser of Apache Commons CSV library
  * so that application code does not depend on it as much as possible.
+ * It reads JSON files of the same records through JsonScanner.
  */
 public interface ModelReader
 {
@@ -41,10 +60,15 @@ public interface ModelReader
             final var reader = supplier.get();
             final var parser = CSVParser.parse(reader, format(text_class))
         ) {
+            final var file = supplier.source();
             info_stream = parser.getRecords().stream()
-            .map(text_mapper::apply)
-            .map(model_mapper::apply);
+            .map(csv -> invalid_if_null(
+                model_mapper.apply(text_mapper.apply(csv)), file, csv
+            ));
         } catch (Exception ex) {
+            Diagnostics.shared().reject(
+                supplier.source(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+            );
         }
 
         return info_stream;
@@ -70,14 +94,470 @@ public interface ModelReader
             final var reader = supplier.get();
             final var parser = CSVParser.parse(reader, format(text_class))
         ) {
+            final var file = supplier.source();
             text_stream = parser.getRecords().stream()
-            .map(text_mapper::apply);
+            .map(csv -> invalid_if_null(text_mapper.apply(csv), file, csv));
         } catch (Exception ex) {
+            Diagnostics.shared().reject(
+                supplier.source(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+            );
         }
 
         return text_stream;
     }
 
+    /**
+     * Reads a CSV file one record at a time and passes each 'model' record
+     * to the consumer argument. Unlike {@code stream()}, this method never
+     * holds more than one CSV record in memory, so that callers only retain
+     * what they pick out of each 'model' record.
+     * A 'model' record the mappers failed to produce is passed as null,
+     * and reported to Diagnostics with the line of its CSV record.
+     * @param <T>          a 'text' record type corresponding the CSV file
+     * @param <I>          an 'model' record type corresponding the CSV file
+     * @param supplier     provides a java.io.Reader attached to the CSV file
+     * @param text_class   the class instance of the 'text' record type
+     * @param text_mapper  a Function that maps a CSVRecord to a 'text' record
+     * @param model_mapper a Function that maps a 'text' to an 'model' record
+     * @param consumer     a Consumer that takes each 'model' record
+     * @return             the number of CSV records read, or -1 if
+     *                     the reader or the parser failed
+     */
+    static <T extends Record, I extends Record> long for_each(
+        CloseableSupplier<Reader> supplier,
+        final Class<T> text_class,
+        final Function<CSVRecord, T> text_mapper,
+        final Function<T, I> model_mapper,
+        final Consumer<? super I> consumer
+    ) {
+        long count = 0L;
+
+        try (
+            final var reader = supplier.get();
+            final var parser = CSVParser.parse(reader, format(text_class))
+        ) {
+            for (final var csv : parser) {
+                final var text = text_mapper.apply(csv);
+                consumer.accept(invalid_if_null(
+                    text == null ? null : model_mapper.apply(text), supplier.source(), csv
+                ));
+                count++;
+            }
+        } catch (Exception ex) {
+            Diagnostics.shared().reject(
+                supplier.source(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+            );
+            count = -1L;
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns a Publisher of the 'model' records of a CSV file, which
+     * reads and parses records only as its subscribers request them.
+     * Unlike {@code stream()}, the file is not read into memory, so that
+     * a subscriber writing to a slow sink throttles the reading.
+     * <p>
+     * Each subscriber reads the file through a Reader of its own, which
+     * is opened on the first request and closed on completion, on error,
+     * or on cancellation. Records are emitted on the executor. Records
+     * the mappers fail to produce are skipped, since a subscriber never
+     * takes a null, and reported to Diagnostics.
+     * @param <T>          a 'text' record type corresponding the CSV file
+     * @param <I>          an 'model' record type corresponding the CSV file
+     * @param supplier     provides a java.io.Reader attached to the CSV file
+     * @param text_class   the class instance of the 'text' record type
+     * @param text_mapper  a Function that maps a CSVRecord to a 'text' record
+     * @param model_mapper a Function that maps a 'text' to an 'model' record
+     * @param executor     an Executor on which records are read and emitted
+     * @return             a Publisher of 'model' records
+     */
+    static <T extends Record, I extends Record> Flow.Publisher<I> publisher(
+        CloseableSupplier<Reader> supplier,
+        final Class<T> text_class,
+        final Function<CSVRecord, T> text_mapper,
+        final Function<T, I> model_mapper,
+        final Executor executor
+    ) {
+        return new ModelPublisher<>(
+            supplier, text_class, text_mapper, model_mapper, executor
+        );
+    }
+
+    /**
+     * Returns a Stream of the 'model' records of a JSON file, an array of
+     * objects or JSON Lines, of which each object holds the components of
+     * a 'text' record by name. Unlike {@code stream()}, objects are read
+     * lazily by a JsonScanner as the Stream is consumed, so that only one
+     * object is held in memory at a time; the Stream closes the Reader
+     * when it is closed.
+     * @param <T>          a 'text' record type corresponding the objects
+     * @param <I>          an 'model' record type corresponding the objects
+     * @param supplier     provides a java.io.Reader attached to the file
+     * @param text_class   the class instance of the 'text' record type
+     * @param model_mapper a Function that maps a 'text' to an 'model'
+     *                     record, which takes null for an object that
+     *                     cannot be a 'text' record
+     * @return             a Stream containing 'model' records
+     */
+    static <T extends Record, I extends Record> Stream<I> json_stream(
+        CloseableSupplier<Reader> supplier,
+        final Class<T> text_class,
+        final Function<T, I> model_mapper
+    ) {
+        final var ctor = TextHelper.ctor(text_class);
+        final var names = component_names(text_class);
+
+        final JsonScanner scanner;
+        try {
+            scanner = JsonScanner.of(supplier.get());
+        } catch (Exception ex) {
+            Diagnostics.shared().reject(
+                supplier.source(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+            );
+            return Stream.empty();
+        }
+
+        final var objects = new Spliterators.AbstractSpliterator<I>(
+            Long.MAX_VALUE, Spliterator.ORDERED
+        ) {
+            @Override
+            public boolean tryAdvance(final Consumer<? super I> action)
+            {
+                try {
+                    if (!scanner.next()) return false;
+                } catch (IOException ex) {
+                    Diagnostics.shared().reject(
+                        supplier.source(), scanner.record_number() + 1L,
+                        Diagnostics.RULE_READ_FAILED, ex.toString()
+                    );
+                    return false;
+                }
+                if (scanner.has_nested()) {
+                    Diagnostics.shared().reject(
+                        supplier.source(), scanner.record_number(),
+                        Diagnostics.RULE_UNPARSABLE_VALUE, scanner.line()
+                    );
+                }
+                final var model = model_mapper.apply(text(scanner, ctor, names));
+                if (model == null) {
+                    Diagnostics.shared().reject(
+                        supplier.source(), scanner.record_number(),
+                        Diagnostics.RULE_INVALID_RECORD, scanner.line()
+                    );
+                }
+                action.accept(model);
+                return true;
+            }
+        };
+
+        return StreamSupport.stream(objects, false)
+        .onClose(() -> {
+            try {
+                scanner.close();
+            } catch (IOException ex) {
+                Diagnostics.shared().reject(
+                    supplier.source(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+                );
+            }
+        });
+    }
+
+    /**
+     * Returns a parallel Stream of the 'model' records of a JSON Lines
+     * file, which is split into chunks of whole lines by
+     * {@code JsonScanner.lines()}, each read lazily as
+     * {@code json_stream()} reads a file, by the worker that takes it.
+     * The records of a chunk keep their order, and chunks keep theirs
+     * to an ordered terminal operation.
+     * @param <T>          a 'text' record type corresponding the objects
+     * @param <I>          an 'model' record type corresponding the objects
+     * @param path         path to the JSON Lines file
+     * @param text_class   the class instance of the 'text' record type
+     * @param model_mapper a Function that maps a 'text' to an 'model' record
+     * @param chunks       the number of chunks, such as the number of
+     *                     processors
+     * @return             a parallel Stream containing 'model' records
+     */
+    static <T extends Record, I extends Record> Stream<I> json_lines(
+        final Path path,
+        final Class<T> text_class,
+        final Function<T, I> model_mapper,
+        int chunks
+    ) {
+        final List<CloseableSupplier<Reader>> suppliers;
+        try {
+            suppliers = JsonScanner.lines(path, chunks);
+        } catch (IOException ex) {
+            Diagnostics.shared().reject(
+                path.toString(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+            );
+            return Stream.empty();
+        }
+
+        return suppliers.parallelStream()
+        .flatMap(supplier -> json_stream(
+            CloseableSupplier.of(path.toString(), supplier), text_class, model_mapper
+        ));
+    }
+
+    /**
+     * Reads a CSV file as a query: only the records the predicate
+     * accepts are materialized, and only their projected components
+     * are copied into Strings, while the others are left null.
+     * The predicate looks at the raw fields of each record through a
+     * CsvScanner, before any String or record is allocated, so that
+     * a selective query runs at the speed of tokenizing.
+     * @param <T>        a 'text' record type corresponding the CSV file
+     * @param supplier   provides a java.io.Reader attached to the CSV file
+     * @param text_class the class instance of the 'text' record type
+     * @param projection the names of the components to be materialized
+     * @param predicate  a Predicate over the raw fields of a record,
+     *                   such as those {@code Where} provides
+     * @param consumer   a Consumer that takes each 'text' record selected,
+     *                   or null if the record cannot be instantiated
+     * @return           the number of CSV records selected, or -1 if
+     *                   the reader failed
+     * @throws IllegalArgumentException
+     *      if the projection names a component the class doesn't have
+     */
+    static <T extends Record> long select(
+        CloseableSupplier<Reader> supplier,
+        final Class<T> text_class,
+        final Set<String> projection,
+        final Predicate<? super CsvScanner> predicate,
+        final Consumer<? super T> consumer
+    )
+        throws IllegalArgumentException
+    {
+        final var fields = projection.stream()
+        .mapToInt(name -> Where.index_of(text_class, name))
+        .sorted()
+        .toArray();
+        final int arity = text_class.getRecordComponents().length;
+        final var ctor = TextHelper.ctor(text_class);
+
+        long count = 0L;
+
+        try (
+            final var scanner = CsvScanner.of(supplier.get())
+        ) {
+            while (scanner.next()) {
+                if (!predicate.test(scanner)) continue;
+                count++;
+
+                // a record of the wrong arity fails as ModelReader.text() does
+                final var components = new Object[
+                    scanner.field_count() == arity ? arity : scanner.field_count()
+                ];
+                for (final int field : fields) {
+                    if (field < components.length) {
+                        components[field] = TextHelper.null_if_empty(scanner.string(field));
+                    }
+                }
+
+                T instance;
+                try {
+                    instance = ctor.newInstance(components);
+                } catch (Exception ex) {
+                    instance = null;
+                    Diagnostics.shared().reject(
+                        supplier.source(), scanner.record_number(),
+                        Diagnostics.RULE_INVALID_RECORD, scanner.line()
+                    );
+                }
+                consumer.accept(instance);
+            }
+        } catch (Exception ex) {
+            Diagnostics.shared().reject(
+                supplier.source(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+            );
+            count = -1L;
+        }
+
+        return count;
+    }
+
+    /**
+     * Looks the 'text' records of a key up in a CSV file through its
+     * OffsetIndex, reading and parsing only the byte ranges of the key,
+     * such as the film of an id from film.csv or the casts of a film
+     * from cast.csv.
+     * @param <T>        a 'text' record type corresponding the CSV file
+     * @param index      the OffsetIndex of the CSV file
+     * @param csv_path   path to the CSV file
+     * @param text_class the class instance of the 'text' record type
+     * @param key        a key, such as an id
+     * @return           the 'text' records of the key in the order of the
+     *                   file, which are empty if the key is not indexed,
+     *                   or null if the file cannot be read; a record
+     *                   that cannot be instantiated is null
+     */
+    static <T extends Record> List<T> lookup(
+        final OffsetIndex index,
+        final Path csv_path,
+        final Class<T> text_class,
+        final String key
+    ) {
+        final var ranges = index.find(key);
+        if (ranges.isEmpty()) return List.of();
+
+        final int arity = text_class.getRecordComponents().length;
+        final var ctor = TextHelper.ctor(text_class);
+        final var texts = new ArrayList<T>();
+
+        try (
+            final var channel = FileChannel.open(csv_path, StandardOpenOption.READ)
+        ) {
+            for (final var range : ranges) {
+                final var bytes = ByteBuffer.allocate(Math.toIntExact(range.length()));
+                while (bytes.hasRemaining()) {
+                    final int count = channel.read(bytes, range.offset() + bytes.position());
+                    if (count < 0) throw new EOFException(csv_path.toString());
+                }
+
+                final var lines = new String(bytes.array(), StandardCharsets.UTF_8);
+                try (
+                    final var scanner = CsvScanner.of(new StringReader(lines))
+                ) {
+                    while (scanner.next()) {
+                        // a record of the wrong arity fails as ModelReader.text() does
+                        final var components = new Object[scanner.field_count()];
+                        for (int field = 0; field < components.length; field++) {
+                            components[field] = TextHelper.null_if_empty(scanner.string(field));
+                        }
+
+                        T instance;
+                        try {
+                            instance = components.length == arity
+                            ? ctor.newInstance(components)
+                            : null;
+                        } catch (Exception ex) {
+                            instance = null;
+                        }
+                        texts.add(instance);
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            Diagnostics.shared().reject(
+                csv_path.toString(), -1L, Diagnostics.RULE_READ_FAILED, ex.toString()
+            );
+            return null;
+        }
+
+        return texts;
+    }
+
+    /**
+     * Where provides predicates over the raw fields of a CSV record,
+     * which {@code select()} evaluates before materializing a record.
+     * Fields are designated by the names of the record components of
+     * a 'text' record type.
+     */
+    interface Where
+    {
+        /**
+         * Accepts every record.
+         * @return a Predicate
+         */
+        static Predicate<CsvScanner> all()
+        {
+            return scanner -> true;
+        }
+
+        /**
+         * Accepts the records of which a field is an integer in a range,
+         * such as films released in a range of years.
+         * @param text_class the class instance of the 'text' record type
+         * @param component  the name of a record component
+         * @param range      a range of integers
+         * @return           a Predicate
+         * @throws IllegalArgumentException
+         *      if the class doesn't have the component
+         */
+        static Predicate<CsvScanner> int_in(
+            final Class<? extends Record> text_class,
+            final String component,
+            final IntRange range
+        )
+            throws IllegalArgumentException
+        {
+            final int field = index_of(text_class, component);
+            return scanner -> {
+                if (scanner.field_count() <= field) return false;
+                final long value = scanner.long_value(field, Long.MIN_VALUE);
+                return range.lower() <= value && value <= range.upper();
+            };
+        }
+
+        /**
+         * Accepts the records of which a field starts with a prefix,
+         * such as ids with a given prefix.
+         * @param text_class the class instance of the 'text' record type
+         * @param component  the name of a record component
+         * @param prefix     a prefix
+         * @return           a Predicate
+         * @throws IllegalArgumentException
+         *      if the class doesn't have the component
+         */
+        static Predicate<CsvScanner> starts_with(
+            final Class<? extends Record> text_class,
+            final String component,
+            final String prefix
+        )
+            throws IllegalArgumentException
+        {
+            final int field = index_of(text_class, component);
+            return scanner -> field < scanner.field_count()
+            && scanner.starts_with(field, prefix);
+        }
+
+        /**
+         * Accepts the records of which a field equals a text.
+         * @param text_class the class instance of the 'text' record type
+         * @param component  the name of a record component
+         * @param text       a text
+         * @return           a Predicate
+         * @throws IllegalArgumentException
+         *      if the class doesn't have the component
+         */
+        static Predicate<CsvScanner> equals_to(
+            final Class<? extends Record> text_class,
+            final String component,
+            final String text
+        )
+            throws IllegalArgumentException
+        {
+            final int field = index_of(text_class, component);
+            return scanner -> field < scanner.field_count()
+            && scanner.equals_to(field, text);
+        }
+
+        /**
+         * Returns the index of a record component, which is the index of
+         * the corresponding CSV field.
+         * @param text_class the class instance of the 'text' record type
+         * @param component  the name of a record component
+         * @return           the index of the component
+         * @throws IllegalArgumentException
+         *      if the class doesn't have the component
+         */
+        static int index_of(
+            final Class<? extends Record> text_class,
+            final String component
+        )
+            throws IllegalArgumentException
+        {
+            final var components = text_class.getRecordComponents();
+            for (int index = 0; index < components.length; index++) {
+                if (components[index].getName().equals(component)) return index;
+            }
+            throw new IllegalArgumentException(component);
+        }
+    }
+
     /**
      * Transforms a CSVRecord to a 'text' record.
      * @param <T>  the type of the 'text' record
@@ -90,7 +570,7 @@ public interface ModelReader
         final Constructor<T> ctor
     ) {
         var components = csv.stream()
-        .<String>map(value -> value.length() == 0 ? null : value)
+        .<String>map(TextHelper::null_if_empty)
         .toArray(Object[]::new);
 
         T instance;
@@ -103,6 +583,57 @@ public interface ModelReader
         return instance;
     }
 
+    /**
+     * Transforms the current object of a JsonScanner to a 'text' record.
+     * @param <T>     the type of the 'text' record
+     * @param scanner a JsonScanner positioned at an object
+     * @param ctor    the canincal constructor of the 'text' record type
+     * @param names   the names of the record components in order
+     * @return        an instance of 'text' record with the values of the
+     *                fields of the same names, which are null if missing
+     */
+    static <T extends Record> T text(
+        final JsonScanner scanner,
+        final Constructor<T> ctor,
+        final String[] names
+    ) {
+        T instance;
+        try {
+            instance = ctor.newInstance(scanner.strings(names));
+        } catch (Exception ex) {
+            instance = null;
+        }
+
+        return instance;
+    }
+
+    // a record the mappers failed to produce is reported with its line
+    private static <R> R invalid_if_null(final R result, final String file, final CSVRecord csv)
+    {
+        if (result == null) {
+            Diagnostics.shared().reject(
+                file, csv.getRecordNumber(),
+                Diagnostics.RULE_INVALID_RECORD, CsvScanner.line(csv)
+            );
+        }
+        return result;
+    }
+
+    /**
+     * Returns the names of the record components of a 'text' record type,
+     * which are the names of the header of a CSV file and of the fields
+     * of a JSON object.
+     * @param text_class the class instance of the 'text' record type
+     * @return           the names in the order of the canonical constructor
+     */
+    static String[] component_names(final Class<? extends Record> text_class)
+    {
+        return Arrays
+        .stream(text_class.getRecordComponents())
+        .map(RecordComponent::getName)
+        .toArray(String[]::new);
+    }
+
     /**
      * Returns a CSVFormat for reading CSV files.
      * The format has not only the features defined by {@code format_builder()}
@@ -113,13 +644,8 @@ public interface ModelReader
      */
     static CSVFormat format(final Class<? extends Record> text_class)
     {
-        final var componentNames = Arrays
-        .stream(text_class.getRecordComponents())
-        .map(RecordComponent::getName)
-        .toArray(String[]::new);
-
         final var format = format_builder()
-        .setHeader(componentNames)
+        .setHeader(component_names(text_class))
         .build();
 
         return format;
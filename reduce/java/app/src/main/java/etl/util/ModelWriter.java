@@ -1,7 +1,9 @@
 package etl.util;
 
+import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.file.Path;
 import java.util.function.Function;
 
 import org.apache.commons.csv.CSVFormat;
@@ -11,8 +13,9 @@ import org.apache.commons.csv.QuoteMode;
 /**
  * ModelWriter wraps the CSVPrinter of Apache Commons CSV library
  * so that application code does not depend on it as much as possible.
+ * It is the CSV ModelPrinter.
  */
-public class ModelWriter implements AutoCloseable
+public class ModelWriter implements ModelPrinter
 {
     /**
      * Takes a 'model' record and prints it to java.io.Writer this
@@ -31,13 +34,26 @@ public class ModelWriter implements AutoCloseable
         final T model,
         final Function<T, Object[]> mapper
     ) {
+        print(model == null ? null : mapper.apply(model));
+    }
+
+    /**
+     * Takes the values of a record and prints them to java.io.Writer this
+     * ModelWriter wraps, for callers that hold records in a form other
+     * than a 'model' record, such as columns of primitive arrays.
+     * Non-null values result in one CSV line followed by a new line
+     * character, while null yields one blank line and counts as invalid.
+     * @param values the values of a record, or null
+     */
+    public void print(final Object[] values)
+    {
         total_lines++;
 
         try {
-            if (model == null) {
+            if (values == null) {
                 invalid_lines++;
             } else {
-                for (var value : mapper.apply(model)) {
+                for (var value : values) {
                     printer.print(value);
                 }
             }
@@ -45,6 +61,25 @@ public class ModelWriter implements AutoCloseable
         } catch (IOException ex) {
             invalid_lines++;
         }
+
+        if (index != null) {
+            final long end = counter.bytes;
+            if (values != null && key_field < values.length && values[key_field] != null) {
+                index.add(values[key_field].toString(), line_start, end - line_start);
+            }
+            line_start = end;
+        }
+    }
+
+    /**
+     * Flushes what this ModelWriter printed to the java.io.Writer it
+     * wraps, so that the position of the underlying file reflects
+     * every line printed so far.
+     * @throws IOException if the Writer cannot be flushed
+     */
+    public void flush() throws IOException
+    {
+        printer.flush();
     }
 
     /**
@@ -85,17 +120,108 @@ public class ModelWriter implements AutoCloseable
         .build();
 
         printer = new CSVPrinter(supplier.get(), format);
+        counter = null;
+        index = null;
+        key_field = -1;
+        index_path = null;
+    }
+
+    /**
+     * Creates an ModelWriter that also builds an OffsetIndex of the lines
+     * it prints, keyed by one of the values of each line, and writes the
+     * index to a sidecar when it is closed. The Writer must encode UTF-8
+     * into a file that starts empty, so that the offsets counted from
+     * the chars printed are those of the file.
+     * @param supplier   privdes a java.io.Writer to pint
+     * @param key_field  the index of the value that keys a line, such as
+     *                   0 for the id of a film
+     * @param index_path path to the sidecar, such as
+     *                   {@code OffsetIndex.path_of()} returns
+     * @throws Exception if this CSVPrinter constructor or the Writer throws
+     */
+    public ModelWriter(
+        final CloseableSupplier<Writer> supplier,
+        int key_field,
+        final Path index_path
+    )
+        throws Exception
+    {
+        final var format = CSVFormat.Builder
+        .create()
+        .setTrim(true)
+        .setRecordSeparator('\n')
+        .setQuoteMode(QuoteMode.MINIMAL)
+        .setAutoFlush(true)
+        .build();
+
+        counter = new Utf8Counter(supplier.get());
+        printer = new CSVPrinter(counter, format);
+        index = OffsetIndex.builder();
+        this.key_field = key_field;
+        this.index_path = index_path;
     }
 
     /**
-     * Closes the CSVPrinter this ModelWriter wrapps.
+     * Closes the CSVPrinter this ModelWriter wrapps, and writes the
+     * sidecar if this ModelWriter builds an index.
+     * @throws IOException if the sidecar cannot be written
      */
     @Override
-    public void close() throws Exception {
+    public void close() throws IOException {
         printer.close();
+        if (index != null && !index.write(index_path)) {
+            throw new IOException("cannot write " + index_path);
+        }
+    }
+
+    // counts the UTF-8 bytes of the chars written through it
+    private static final class Utf8Counter extends FilterWriter
+    {
+        Utf8Counter(final Writer writer)
+        {
+            super(writer);
+        }
+
+        @Override
+        public void write(int c) throws IOException
+        {
+            bytes += utf8_length((char) c);
+            super.write(c);
+        }
+
+        @Override
+        public void write(final char[] chars, int offset, int length) throws IOException
+        {
+            for (int index = offset; index < offset + length; index++) {
+                bytes += utf8_length(chars[index]);
+            }
+            super.write(chars, offset, length);
+        }
+
+        @Override
+        public void write(final String string, int offset, int length) throws IOException
+        {
+            for (int index = offset; index < offset + length; index++) {
+                bytes += utf8_length(string.charAt(index));
+            }
+            super.write(string, offset, length);
+        }
+
+        // a surrogate pair takes 4 bytes, 2 for each half
+        private static int utf8_length(char c)
+        {
+            return c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+
+        long bytes = 0L;
     }
-    
+
     private long total_lines = 0L;
     private long invalid_lines = 0L;
+    private long line_start = 0L;
     private final CSVPrinter printer;
+    private final Utf8Counter counter;
+    private final OffsetIndex.Builder index;
+    private final int key_field;
+    private final Path index_path;
 }
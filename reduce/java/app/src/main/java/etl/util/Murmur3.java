@@ -0,0 +1,126 @@
+package etl.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Murmur3 provides MurmurHash3 x64_128, a fast non-cryptographic hash
+ * of 128 bits, which is enough for surrogate ids of films and actors
+ * at a fraction of the cost of SHA-1.
+ */
+public final class Murmur3
+{
+    /**
+     * Specifies the length of the hexadecimal {@code String}
+     * computed by {@code hex_string()}.
+     */
+    public static final int HEX_TEXT_LENGTH = 32;
+
+    /**
+     * Computes the 128-bit hash of the UTF-8 bytes of the {@code string}
+     * argument, and returns a 32-character hexadecimal {@code String},
+     * the first half of the hash followed by the second.
+     * @param string a String to be hashed
+     * @return       a String representing the hash in hex
+     */
+    public static String hex_string(final String string)
+    {
+        final var hash = hash128(string.getBytes(StandardCharsets.UTF_8), 0L);
+
+        final var chars = new char[HEX_TEXT_LENGTH];
+        hex(hash[0], chars, 0);
+        hex(hash[1], chars, HEX_TEXT_LENGTH / 2);
+        return new String(chars);
+    }
+
+    /**
+     * Computes the 128-bit hash of bytes.
+     * @param bytes an array of bytes
+     * @param seed  a seed, which yields an independent hash per value
+     * @return      the first and the second half of the hash
+     */
+    public static long[] hash128(final byte[] bytes, long seed)
+    {
+        final int length = bytes.length;
+        final int blocks = length / BLOCK;
+
+        long h1 = seed;
+        long h2 = seed;
+
+        for (int block = 0; block < blocks; block++) {
+            final long k1 = Swar.word(bytes, block * BLOCK);
+            final long k2 = Swar.word(bytes, block * BLOCK + Long.BYTES);
+
+            h1 ^= mix_k1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mix_k2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        // the tail of up to 15 bytes, little-endian into k1 then k2
+        final int tail = blocks * BLOCK;
+        long k1 = 0L;
+        long k2 = 0L;
+        for (int index = length - 1; index >= tail; index--) {
+            final long b = bytes[index] & 0xffL;
+            final int shift = ((index - tail) & (Long.BYTES - 1)) * Byte.SIZE;
+            if (index - tail >= Long.BYTES) {
+                k2 |= b << shift;
+            } else {
+                k1 |= b << shift;
+            }
+        }
+        if (length - tail > Long.BYTES) h2 ^= mix_k2(k2);
+        if (length - tail > 0) h1 ^= mix_k1(k1);
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        return new long[] {h1, h2};
+    }
+
+    private static long mix_k1(long k1)
+    {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mix_k2(long k2)
+    {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix(long k)
+    {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static void hex(long value, final char[] chars, int offset)
+    {
+        for (int digit = 15; digit >= 0; digit--) {
+            chars[offset + digit] = HEX_DIGITS[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+
+    private Murmur3() {}
+
+    private static final int BLOCK = 2 * Long.BYTES;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+}
@@ -0,0 +1,183 @@
+package etl.util;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OffHeapRecords is an append-only table of fixed-width records kept in
+ * direct ByteBuffers, outside of the Java heap. A record is addressed by
+ * its index, and a field by its byte offset within the record.
+ * <p>
+ * Records are allocated in chunks of {@code RECORDS_PER_CHUNK}, so that
+ * the table grows without copying what it already holds.
+ */
+public final class OffHeapRecords implements AutoCloseable
+{
+    /**
+     * The number of records a chunk of direct memory holds.
+     */
+    public static final int RECORDS_PER_CHUNK = 1 << 16;
+
+    /**
+     * Instantiates an empty table of records of the specified width.
+     * @param record_bytes the number of bytes of a record
+     * @return             an empty table
+     * @throws IllegalArgumentException
+     *      if {@code record_bytes} is not positive
+     */
+    public static OffHeapRecords of_width(int record_bytes)
+        throws IllegalArgumentException
+    {
+        if (record_bytes <= 0) throw new IllegalArgumentException();
+        return new OffHeapRecords(record_bytes);
+    }
+
+    /**
+     * Appends a record of which every byte is zero.
+     * @return the index of the appended record
+     */
+    public int append()
+    {
+        if ((size & CHUNK_MASK) == 0) {
+            chunks.add(ByteBuffer.allocateDirect(record_bytes << CHUNK_SHIFT));
+        }
+        return size++;
+    }
+
+    /**
+     * Returns the number of records in this table.
+     * @return the number of records
+     */
+    public int size() { return size; }
+
+    /**
+     * Returns the number of bytes of direct memory this table allocated.
+     * @return the number of bytes allocated
+     */
+    public long allocated_bytes()
+    {
+        return (long) chunks.size() * (record_bytes << CHUNK_SHIFT);
+    }
+
+    /**
+     * Reads an int field.
+     * @param index  the index of a record
+     * @param offset the byte offset of the field in the record
+     * @return       the value of the field
+     */
+    public int get_int(int index, int offset)
+    {
+        return chunk(index).getInt(position(index, offset));
+    }
+
+    /**
+     * Writes an int field.
+     * @param index  the index of a record
+     * @param offset the byte offset of the field in the record
+     * @param value  the value of the field
+     */
+    public void put_int(int index, int offset, int value)
+    {
+        chunk(index).putInt(position(index, offset), value);
+    }
+
+    /**
+     * Reads a long field.
+     * @param index  the index of a record
+     * @param offset the byte offset of the field in the record
+     * @return       the value of the field
+     */
+    public long get_long(int index, int offset)
+    {
+        return chunk(index).getLong(position(index, offset));
+    }
+
+    /**
+     * Writes a long field.
+     * @param index  the index of a record
+     * @param offset the byte offset of the field in the record
+     * @param value  the value of the field
+     */
+    public void put_long(int index, int offset, long value)
+    {
+        chunk(index).putLong(position(index, offset), value);
+    }
+
+    /**
+     * Releases the direct memory of every chunk.
+     * Indexes must not be used once this table is closed.
+     */
+    @Override
+    public void close()
+    {
+        chunks.forEach(OffHeapRecords::free);
+        chunks.clear();
+        size = 0;
+    }
+
+    /**
+     * Releases the direct memory of a buffer right away, rather than
+     * when the garbage collector finds the buffer unreachable, which a
+     * small heap may not do before direct memory runs out. The buffer
+     * must not be used afterwards.
+     * <p>
+     * This calls {@code sun.misc.Unsafe.invokeCleaner()}, which the
+     * jdk.unsupported module exports; if it is not available, the
+     * buffer is left to the garbage collector.
+     * @param buffer a direct ByteBuffer this package allocated
+     */
+    static void free(final ByteBuffer buffer)
+    {
+        if (INVOKE_CLEANER == null) return;
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException ex) {
+            // logic: the buffer is left to the garbage collector
+        }
+    }
+
+    private ByteBuffer chunk(int index)
+    {
+        if (index < 0 || size <= index) throw new IndexOutOfBoundsException(index);
+        return chunks.get(index >>> CHUNK_SHIFT);
+    }
+
+    private int position(int index, int offset)
+    {
+        return (index & CHUNK_MASK) * record_bytes + offset;
+    }
+
+    private OffHeapRecords(int record_bytes)
+    {
+        this.record_bytes = record_bytes;
+    }
+
+    private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(RECORDS_PER_CHUNK);
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    static {
+        Object unsafe = null;
+        Method invoke_cleaner = null;
+        try {
+            final var type = Class.forName("sun.misc.Unsafe");
+            final var field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invoke_cleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            unsafe = null;
+            invoke_cleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invoke_cleaner;
+    }
+
+    private final int record_bytes;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private int size = 0;
+}
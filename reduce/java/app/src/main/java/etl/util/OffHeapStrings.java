@@ -0,0 +1,201 @@
+package etl.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OffHeapStrings is an append-only arena that keeps Strings as UTF-8
+ * bytes in direct ByteBuffers, outside of the Java heap.
+ * <p>
+ * {@code put()} returns a handle, a {@code long} that encodes where the
+ * bytes are, so that callers keep a primitive rather than a String.
+ * The garbage collector only sees a few ByteBuffer objects, however
+ * many Strings the arena holds.
+ */
+public final class OffHeapStrings implements AutoCloseable
+{
+    /**
+     * The handle representing a null String.
+     */
+    public static final long NULL = -1L;
+
+    /**
+     * The maximum number of UTF-8 bytes of a String.
+     */
+    public static final int MAX_BYTES = (1 << 16) - 1;
+
+    /**
+     * Instantiates an empty arena that allocates direct memory
+     * in chunks of the specified size.
+     * @param chunk_bytes the number of bytes of a chunk
+     * @return            an empty arena
+     * @throws IllegalArgumentException
+     *      if {@code chunk_bytes} is less than {@code MAX_BYTES}
+     */
+    public static OffHeapStrings with_chunk_size(int chunk_bytes)
+        throws IllegalArgumentException
+    {
+        if (chunk_bytes < MAX_BYTES) throw new IllegalArgumentException();
+        return new OffHeapStrings(chunk_bytes);
+    }
+
+    /**
+     * Copies the string argument into this arena.
+     * @param string a String to be copied, which may be null
+     * @return       the handle to the copy
+     * @throws IllegalArgumentException
+     *      if the UTF-8 bytes of {@code string} exceed {@code MAX_BYTES}
+     */
+    public long put(final String string) throws IllegalArgumentException
+    {
+        if (string == null) return NULL;
+
+        final var bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_BYTES) throw new IllegalArgumentException();
+
+        if (chunks.isEmpty() || current().remaining() < bytes.length) {
+            chunks.add(ByteBuffer.allocateDirect(chunk_bytes));
+        }
+
+        final var chunk = current();
+        final long position = chunk.position();
+        chunk.put(bytes);
+        used_bytes += bytes.length;
+
+        final long handle
+        = ((long) (chunks.size() - 1) << (POSITION_BITS + LENGTH_BITS))
+        | (position << LENGTH_BITS)
+        | bytes.length
+        ;
+        return handle;
+    }
+
+    /**
+     * Copies a String out of this arena.
+     * @param handle the handle {@code put()} returned
+     * @return       the String, or null if the handle is {@code NULL}
+     */
+    public String get(long handle)
+    {
+        if (handle == NULL) return null;
+
+        final var bytes = new byte[length(handle)];
+        chunks.get(chunk(handle)).get(position(handle), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares two Strings of this arena without copying them out, in
+     * the order of {@code String.compareTo()}.
+     * <p>
+     * UTF-8 bytes compare in code point order, which is the order of
+     * UTF-16 chars except that U+E000 to U+FFFF come after supplementary
+     * code points in UTF-16. Their lead bytes, 0xEE and 0xEF, are
+     * therefore ranked above the lead bytes of supplementary code points.
+     * @param left  the handle of a String, which must not be {@code NULL}
+     * @param right the handle of a String, which must not be {@code NULL}
+     * @return      a negative int, zero, or a positive int as
+     *              {@code left} is less than, equal to, or greater than
+     *              {@code right}
+     */
+    public int compare(long left, long right)
+    {
+        if (left == right) return 0;
+
+        final var left_chunk = chunks.get(chunk(left));
+        final var right_chunk = chunks.get(chunk(right));
+        final int left_position = position(left);
+        final int right_position = position(right);
+        final int left_length = length(left);
+        final int right_length = length(right);
+
+        final int length = Math.min(left_length, right_length);
+        for (int index = 0; index < length; index++) {
+            final int left_byte = rank(left_chunk.get(left_position + index));
+            final int right_byte = rank(right_chunk.get(right_position + index));
+            if (left_byte != right_byte) return left_byte - right_byte;
+        }
+        return left_length - right_length;
+    }
+
+    /**
+     * Hashes a String of this arena without copying it out, so that
+     * equal Strings have equal hashes.
+     * @param handle the handle of a String, which must not be {@code NULL}
+     * @return       the hash of the String
+     */
+    public int hash(long handle)
+    {
+        final var chunk = chunks.get(chunk(handle));
+        final int position = position(handle);
+        final int length = length(handle);
+
+        int hash = 1;
+        for (int index = 0; index < length; index++) {
+            hash = 31 * hash + chunk.get(position + index);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the number of bytes the Strings in this arena occupy.
+     * @return the number of bytes used
+     */
+    public long used_bytes() { return used_bytes; }
+
+    /**
+     * Returns the number of bytes of direct memory this arena allocated.
+     * @return the number of bytes allocated
+     */
+    public long allocated_bytes() { return (long) chunks.size() * chunk_bytes; }
+
+    /**
+     * Releases the direct memory of every chunk.
+     * Handles must not be used once this arena is closed.
+     */
+    @Override
+    public void close()
+    {
+        chunks.forEach(OffHeapRecords::free);
+        chunks.clear();
+        used_bytes = 0L;
+    }
+
+    private ByteBuffer current() { return chunks.get(chunks.size() - 1); }
+
+    private static int chunk(long handle)
+    {
+        return (int) (handle >>> (POSITION_BITS + LENGTH_BITS));
+    }
+
+    private static int position(long handle)
+    {
+        return (int) ((handle >>> LENGTH_BITS) & POSITION_MASK);
+    }
+
+    private static int length(long handle) { return (int) (handle & LENGTH_MASK); }
+
+    // logic: lead bytes of U+E000 to U+FFFF are moved above 0xF4, the
+    // greatest lead byte of supplementary code points
+    private static int rank(byte value)
+    {
+        final int unsigned = value & 0xFF;
+        return unsigned == 0xEE || unsigned == 0xEF ? unsigned + 0x10 : unsigned;
+    }
+
+    private OffHeapStrings(int chunk_bytes)
+    {
+        this.chunk_bytes = chunk_bytes;
+    }
+
+    private static final int LENGTH_BITS = Integer.bitCount(MAX_BYTES);
+    private static final int POSITION_BITS = 32;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+
+    private final int chunk_bytes;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long used_bytes = 0L;
+}
@@ -0,0 +1,303 @@
+package etl.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * OffsetIndex is a sorted sidecar index of a CSV file, which maps a key
+ * to the byte ranges of the lines that have the key, so that a lookup
+ * reads only those lines rather than scanning the file.
+ * <p>
+ * A Builder collects the entries while a ModelWriter prints the file,
+ * merging consecutive lines of the same key into one range, such as
+ * the casts of a film. An index is then opened by memory-mapping it,
+ * and {@code find()} binary-searches the mapped entries.
+ * <p>
+ * The sidecar consists of a header and fixed-width entries sorted by
+ * key:
+ * <pre>
+ * int  MAGIC
+ * int  key width in bytes
+ * byte 1 if keys are stored as hex digits decoded into bytes, else 0
+ * long the number of entries
+ * entries: key (padded with zeros), long offset, long length
+ * </pre>
+ * If every key is hex digits of the same length, such as a SHA-1 id,
+ * keys are stored decoded: a SHA-1 id takes 20 bytes, so that an entry
+ * takes 36 bytes. Otherwise keys are stored as UTF-8.
+ */
+public final class OffsetIndex implements AutoCloseable
+{
+    /**
+     * The suffix of the sidecar of a CSV file.
+     */
+    public static final String SUFFIX = ".idx";
+
+    /**
+     * Range is a byte range of a CSV file.
+     * @param offset the byte offset of the first line
+     * @param length the number of bytes up to the end of the last line
+     */
+    public record Range(long offset, long length) {}
+
+    /**
+     * Returns the path of the sidecar of a CSV file.
+     * @param csv_path path to a CSV file
+     * @return         path to the sidecar, the CSV file followed by
+     *                 {@code SUFFIX}
+     */
+    public static Path path_of(final Path csv_path)
+    {
+        return csv_path.resolveSibling(csv_path.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Instantiates an empty Builder.
+     * @return a Builder
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Builder collects the entries of an index in the order of lines.
+     */
+    public static final class Builder
+    {
+        /**
+         * Adds the range of a line. A line that follows a line of the
+         * same key extends the range of the previous line.
+         * @param key    the key of the line
+         * @param offset the byte offset of the line
+         * @param length the number of bytes of the line
+         */
+        public void add(final String key, long offset, long length)
+        {
+            final int last = keys.size() - 1;
+            if (last >= 0
+                && keys.get(last).equals(key)
+                && offsets[last] + lengths[last] == offset
+            ) {
+                lengths[last] += length;
+                return;
+            }
+
+            if (keys.size() == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length << 1);
+                lengths = Arrays.copyOf(lengths, lengths.length << 1);
+            }
+            offsets[keys.size()] = offset;
+            lengths[keys.size()] = length;
+            keys.add(key);
+        }
+
+        /**
+         * Returns the number of entries.
+         * @return the number of entries
+         */
+        public int size() { return keys.size(); }
+
+        /**
+         * Sorts the entries by key, and writes them to a sidecar, which
+         * replaces the file at the path only once it is complete.
+         * @param path path to the sidecar
+         * @return     {@code true} if the sidecar was written
+         */
+        public boolean write(final Path path)
+        {
+            final boolean hex = keys.stream().allMatch(Builder::is_hex)
+            && keys.stream().mapToInt(String::length).distinct().count() <= 1L;
+            final var encoded = keys.stream()
+            .map(key -> encode(key, hex))
+            .toArray(byte[][]::new);
+            final int width = Arrays.stream(encoded).mapToInt(key -> key.length).max().orElse(0);
+
+            // sorted by the stored keys, then by offset
+            final var order = new Integer[encoded.length];
+            for (int index = 0; index < order.length; index++) order[index] = index;
+            Arrays.sort(order, (left, right) -> {
+                final int compared = compare(encoded[left], encoded[right], width);
+                return compared != 0 ? compared : Long.compare(offsets[left], offsets[right]);
+            });
+
+            final var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (
+                final var output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp))
+                )
+            ) {
+                output.writeInt(MAGIC);
+                output.writeInt(width);
+                output.writeByte(hex ? 1 : 0);
+                output.writeLong(order.length);
+                for (final int index : order) {
+                    output.write(encoded[index]);
+                    output.write(new byte[width - encoded[index].length]);
+                    output.writeLong(offsets[index]);
+                    output.writeLong(lengths[index]);
+                }
+            } catch (Exception ex) {
+                return false;
+            }
+
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            } catch (Exception ex) {
+                return false;
+            }
+        }
+
+        private static boolean is_hex(final String key)
+        {
+            if (key.isEmpty() || (key.length() & 1) != 0) return false;
+            for (int index = 0; index < key.length(); index++) {
+                if (Character.digit(key.charAt(index), 16) < 0) return false;
+            }
+            return true;
+        }
+
+        private Builder() {}
+
+        private final List<String> keys = new ArrayList<>();
+        private long[] offsets = new long[1 << 10];
+        private long[] lengths = new long[1 << 10];
+    }
+
+    /**
+     * Opens a sidecar by memory-mapping it.
+     * @param path path to a sidecar
+     * @return     the index, or null if the file does not exist, is not
+     *             a sidecar, or is too large to be mapped at once
+     */
+    public static OffsetIndex open(final Path path)
+    {
+        try (
+            final var channel = FileChannel.open(path, StandardOpenOption.READ)
+        ) {
+            final var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            if (mapped.getInt(0) != MAGIC) return null;
+
+            final int width = mapped.getInt(4);
+            final boolean hex = mapped.get(8) != 0;
+            final long count = mapped.getLong(9);
+            if (HEADER_BYTES + count * (width + ENTRY_TAIL_BYTES) != channel.size()) return null;
+
+            return new OffsetIndex(mapped, width, hex, (int) count);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the ranges of the lines of a key, in the order of the file.
+     * @param key a key
+     * @return    the ranges, which are empty if the key is not indexed
+     */
+    public List<Range> find(final String key)
+    {
+        if (hex && !Builder.is_hex(key)) return List.of();
+        final var encoded = encode(key, hex);
+        if (encoded.length > width || (hex && encoded.length != width)) return List.of();
+
+        // the first entry not less than the key
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (compare_at(middle, encoded) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        final var ranges = new ArrayList<Range>();
+        for (int entry = low; entry < count && compare_at(entry, encoded) == 0; entry++) {
+            final int at = position(entry) + width;
+            ranges.add(new Range(mapped.getLong(at), mapped.getLong(at + Long.BYTES)));
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return the number of entries
+     */
+    public int size() { return count; }
+
+    /**
+     * Releases the index. The mapping itself is released when the index
+     * is garbage-collected.
+     */
+    @Override
+    public void close() {}
+
+    private int compare_at(int entry, final byte[] key)
+    {
+        final int start = position(entry);
+        for (int index = 0; index < width; index++) {
+            final int stored = mapped.get(start + index) & 0xff;
+            final int given = index < key.length ? key[index] & 0xff : 0;
+            if (stored != given) return Integer.compare(stored, given);
+        }
+        return 0;
+    }
+
+    private int position(int entry)
+    {
+        return HEADER_BYTES + entry * (width + ENTRY_TAIL_BYTES);
+    }
+
+    private static int compare(final byte[] left, final byte[] right, int width)
+    {
+        for (int index = 0; index < width; index++) {
+            final int l = index < left.length ? left[index] & 0xff : 0;
+            final int r = index < right.length ? right[index] & 0xff : 0;
+            if (l != r) return Integer.compare(l, r);
+        }
+        return 0;
+    }
+
+    private static byte[] encode(final String key, boolean hex)
+    {
+        if (!hex) return key.getBytes(StandardCharsets.UTF_8);
+
+        final var bytes = new byte[key.length() / 2];
+        for (int index = 0; index < bytes.length; index++) {
+            bytes[index] = (byte) (
+                Character.digit(key.charAt(2 * index), 16) << 4
+                | Character.digit(key.charAt(2 * index + 1), 16)
+            );
+        }
+        return bytes;
+    }
+
+    private OffsetIndex(final ByteBuffer mapped, int width, boolean hex, int count)
+    {
+        this.mapped = mapped;
+        this.width = width;
+        this.hex = hex;
+        this.count = count;
+    }
+
+    private static final int MAGIC = 0x4f49_5831; // "OIX1"
+    private static final int HEADER_BYTES = Integer.BYTES * 2 + 1 + Long.BYTES;
+    private static final int ENTRY_TAIL_BYTES = Long.BYTES * 2;
+
+    private final ByteBuffer mapped;
+    private final int width;
+    private final boolean hex;
+    private final int count;
+}
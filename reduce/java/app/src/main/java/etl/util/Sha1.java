@@ -25,13 +25,42 @@ public class Sha1
     public static String hex_string(final String string)
     {
         var bytes = string.getBytes();
-        var digest = instance.digest(bytes);
+        var digest = instance.get().digest(bytes);
         var hex_string = hex_formatter.formatHex(digest);
         return hex_string;
     }
 
-    private static final MessageDigest instance = instance();
+    /**
+     * Specifies the maximum number of digests {@code cached_hex_string()}
+     * keeps.
+     */
+    public static final int CACHE_CAPACITY = 1 << 16;
+
+    /**
+     * Does the same as {@code hex_string()}, except that the digest of
+     * a String digested recently is taken from a bounded cache instead
+     * of being computed again.
+     * @param string a String to be digested
+     * @return       a String representing the digest in hex
+     */
+    public static String cached_hex_string(final String string)
+    {
+        return cache.get(string);
+    }
+
+    /**
+     * Returns the cache of {@code cached_hex_string()}, of which the
+     * hit and miss counters tell how often hashing was skipped.
+     * @return the cache
+     */
+    public static IdCache cache() { return cache; }
+
+    // MessageDigest is not thread-safe, so each thread has its own.
+    private static final ThreadLocal<MessageDigest> instance
+    = ThreadLocal.withInitial(Sha1::instance);
     private static final HexFormat hex_formatter = HexFormat.of();
+    private static final IdCache cache
+    = IdCache.of(CACHE_CAPACITY, Sha1::hex_string);
 
     private static MessageDigest instance()
     {
@@ -0,0 +1,182 @@
+package etl.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * SortedArrayMap is a SortedMap in natural ordering over a pair of
+ * arrays, of which the keys are already sorted and distinct. It can
+ * replace values but cannot add or remove keys.
+ * <p>
+ * Unlike a TreeMap, it needs no entry object per key until entries are
+ * iterated, and lookups are binary searches over contiguous memory.
+ * Submaps are views that share the arrays.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public final class SortedArrayMap<K extends Comparable<? super K>, V>
+    extends AbstractMap<K, V>
+    implements SortedMap<K, V>
+{
+    /**
+     * Wraps a pair of arrays without copying them.
+     * @param <K>    the type of keys
+     * @param <V>    the type of values
+     * @param keys   keys sorted in natural ordering without duplicates,
+     *               which must not be modified afterwards
+     * @param values the value of each key at the same position
+     * @return       a map backed by the arrays
+     * @throws IllegalArgumentException
+     *      if the arrays differ in length
+     */
+    public static <K extends Comparable<? super K>, V> SortedArrayMap<K, V> of_sorted(
+        final K[] keys,
+        final V[] values
+    )
+        throws IllegalArgumentException
+    {
+        if (keys.length != values.length) throw new IllegalArgumentException();
+        return new SortedArrayMap<>(keys, values, 0, keys.length);
+    }
+
+    @Override
+    public int size() { return to - from; }
+
+    @Override
+    public boolean containsKey(final Object key) { return index_of(key) >= 0; }
+
+    @Override
+    public V get(final Object key)
+    {
+        final int index = index_of(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public V put(final K key, final V value)
+    {
+        final int index = index_of(key);
+        if (index < 0) throw new UnsupportedOperationException();
+
+        final var previous = values[index];
+        values[index] = value;
+        return previous;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public int size() { return to - from; }
+
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator()
+            {
+                return new Iterator<Map.Entry<K, V>>() {
+                    @Override
+                    public boolean hasNext() { return index < to; }
+
+                    @Override
+                    public Map.Entry<K, V> next()
+                    {
+                        if (index >= to) throw new NoSuchElementException();
+                        final int at = index++;
+                        return new AbstractMap.SimpleEntry<K, V>(keys[at], values[at]) {
+                            @Override
+                            public V setValue(final V value)
+                            {
+                                values[at] = value;
+                                return super.setValue(value);
+                            }
+
+                            private static final long serialVersionUID = 1L;
+                        };
+                    }
+
+                    private int index = from;
+                };
+            }
+        };
+    }
+
+    @Override
+    public Set<K> keySet()
+    {
+        return new SortedArraySet<>(keys, from, to);
+    }
+
+    @Override
+    public Comparator<? super K> comparator() { return null; }
+
+    @Override
+    public SortedMap<K, V> subMap(final K from_key, final K to_key)
+    {
+        if (from_key.compareTo(to_key) > 0) throw new IllegalArgumentException();
+        return new SortedArrayMap<>(keys, values, bound(from_key), bound(to_key));
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(final K to_key)
+    {
+        return new SortedArrayMap<>(keys, values, from, bound(to_key));
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(final K from_key)
+    {
+        return new SortedArrayMap<>(keys, values, bound(from_key), to);
+    }
+
+    @Override
+    public K firstKey()
+    {
+        if (isEmpty()) throw new NoSuchElementException();
+        return keys[from];
+    }
+
+    @Override
+    public K lastKey()
+    {
+        if (isEmpty()) throw new NoSuchElementException();
+        return keys[to - 1];
+    }
+
+    private int index_of(final Object key)
+    {
+        try {
+            final int index = Arrays.binarySearch(keys, from, to, key);
+            return index < 0 ? -1 : index;
+        } catch (ClassCastException | NullPointerException ex) {
+            return -1;
+        }
+    }
+
+    // the position of the first key that is not less than the argument
+    private int bound(final K key)
+    {
+        final int index = Arrays.binarySearch(keys, from, to, key);
+        return index < 0 ? -(index + 1) : index;
+    }
+
+    private SortedArrayMap(final K[] keys, final V[] values, int from, int to)
+    {
+        this.keys = keys;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    private final K[] keys;
+    private final V[] values;
+    private final int from;
+    private final int to;
+}
@@ -0,0 +1,141 @@
+package etl.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * SortedArraySet is an unmodifiable SortedSet in natural ordering over
+ * an array that is already sorted and distinct, such as the one
+ * {@code YearBuckets.sort_distinct()} returns.
+ * <p>
+ * Unlike a TreeSet, it costs one array slot per element, and lookups
+ * are binary searches over contiguous memory. Subsets are views that
+ * share the array.
+ *
+ * @param <E> the type of elements
+ */
+public final class SortedArraySet<E extends Comparable<? super E>>
+    extends AbstractSet<E>
+    implements SortedSet<E>
+{
+    /**
+     * Wraps an array without copying it.
+     * @param <E>    the type of elements
+     * @param sorted an array sorted in natural ordering without
+     *               duplicates, which must not be modified afterwards
+     * @return       a set backed by the array
+     */
+    public static <E extends Comparable<? super E>> SortedArraySet<E> of_sorted(
+        final E[] sorted
+    ) {
+        return new SortedArraySet<>(sorted, 0, sorted.length);
+    }
+
+    /**
+     * Returns the element at the position argument.
+     * @param index a position in this set
+     * @return      the element at the position
+     */
+    public E get(int index)
+    {
+        if (index < 0 || size() <= index) throw new IndexOutOfBoundsException(index);
+        return elements[from + index];
+    }
+
+    /**
+     * Returns the position of the element argument in this set.
+     * @param element an element to be looked for
+     * @return        the position, or a negative value if not found
+     */
+    public int index_of(final Object element)
+    {
+        try {
+            final int index = Arrays.binarySearch(elements, from, to, element);
+            return index < 0 ? -1 : index - from;
+        } catch (ClassCastException | NullPointerException ex) {
+            return -1;
+        }
+    }
+
+    @Override
+    public boolean contains(final Object element) { return index_of(element) >= 0; }
+
+    @Override
+    public int size() { return to - from; }
+
+    @Override
+    public Iterator<E> iterator()
+    {
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() { return index < to; }
+
+            @Override
+            public E next()
+            {
+                if (index >= to) throw new NoSuchElementException();
+                return elements[index++];
+            }
+
+            private int index = from;
+        };
+    }
+
+    @Override
+    public Comparator<? super E> comparator() { return null; }
+
+    @Override
+    public SortedSet<E> subSet(final E from_element, final E to_element)
+    {
+        if (from_element.compareTo(to_element) > 0) throw new IllegalArgumentException();
+        return new SortedArraySet<>(elements, bound(from_element), bound(to_element));
+    }
+
+    @Override
+    public SortedSet<E> headSet(final E to_element)
+    {
+        return new SortedArraySet<>(elements, from, bound(to_element));
+    }
+
+    @Override
+    public SortedSet<E> tailSet(final E from_element)
+    {
+        return new SortedArraySet<>(elements, bound(from_element), to);
+    }
+
+    @Override
+    public E first()
+    {
+        if (isEmpty()) throw new NoSuchElementException();
+        return elements[from];
+    }
+
+    @Override
+    public E last()
+    {
+        if (isEmpty()) throw new NoSuchElementException();
+        return elements[to - 1];
+    }
+
+    // the position of the first element that is not less than the argument
+    private int bound(final E element)
+    {
+        final int index = Arrays.binarySearch(elements, from, to, element);
+        return index < 0 ? -(index + 1) : index;
+    }
+
+    SortedArraySet(final E[] elements, int from, int to)
+    {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+    }
+
+    private final E[] elements;
+    private final int from;
+    private final int to;
+}
@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.IntUnaryOperator;
 import java.util.stream.IntStream;
 
 /**
@@ -36,51 +35,61 @@ public interface StringView
         final CharSequence replacement,
         int padding
     ) {
-        final var text_array = text.codePoints().toArray();
-        final var replacement_array = replacement.codePoints().toArray();
-
-        final var left_lower = 0;
-        final var left_upper = range.lower();
-        final var left_range = IntRange.lower(left_lower).upper(left_upper);
-        final var left_stream = stream(text_array, left_range);
-
-        final var right_lower = range.upper();
-        final var right_upper = text_array.length;
-        final var right_range = IntRange.lower(right_lower).upper(right_upper);
-        final var right_stream = stream(text_array, right_range);
-
-        final IntStream middle_stream = stream(text_array, range)
-        .map(new IntUnaryOperator()
-            {
-                private int index = 0;
-
-                @Override public int applyAsInt(int ignored)
-                {
-                    int val
-                    = index < replacement_array.length
-                    ? replacement_array[index]
-                    : padding;
-
-                    index++;
-                    return val;
-                }            
-            }
-        );
-
-        final var whole = IntStream.concat(
-            left_stream,
-            IntStream.concat(middle_stream, right_stream)
-        )
-        .collect(
-            StringBuilder::new,
-            StringBuilder::appendCodePoint,
-            StringBuilder::append
+        final var whole = apply_into(
+            new StringBuilder(text.length()),
+            text,
+            range,
+            replacement.codePoints().toArray(),
+            padding
         )
         .toString();
 
         return whole;
     }
 
+    /**
+     * Does the same as {@code apply()}, except that the result is appended
+     * to the out argument, and the replacement is given as codepoints, so
+     * that a caller masking many texts reuses both the StringBuilder and
+     * the codepoints instead of allocating them per text.
+     * The text is walked once, codepoint by codepoint, without copying it
+     * into an array.
+     * @param out         a StringBuilder to which the result is appended
+     * @param text        the character sequence supposed to be covered by
+     *                    the range
+     * @param range       covers the sequnce to be transformed
+     * @param replacement the codepoints with which the range is replaced
+     * @param padding     specifies the codepoint to fill out the shortfall
+     * @return            the out argument
+     */
+    static StringBuilder apply_into(
+        final StringBuilder out,
+        final CharSequence  text,
+        final IntRange      range,
+        final int[]         replacement,
+        int padding
+    ) {
+        final int lower = range.lower();
+        final int upper = range.upper();
+
+        int codepoint_index = 0;
+        for (int index = 0; index < text.length(); codepoint_index++) {
+            final int codepoint = Character.codePointAt(text, index);
+            index += Character.charCount(codepoint);
+
+            if (codepoint_index < lower || upper <= codepoint_index) {
+                out.appendCodePoint(codepoint);
+            } else {
+                final int offset = codepoint_index - lower;
+                out.appendCodePoint(
+                    offset < replacement.length ? replacement[offset] : padding
+                );
+            }
+        }
+
+        return out;
+    }
+
     /**
      * Returns a list of Range instances.
      * All instance has the same size; the block_size argument.
@@ -187,19 +196,6 @@ public interface StringView
         return string;
     }
 
-    private static IntStream stream(final int[] array, final IntRange range)
-    {
-        final var adapted_range = adapted(array, range);
-        final var lower = adapted_range.lower();
-        final var length = adapted_range.upper() - lower;
-
-        final var stream = IntStream.of(array)
-        .skip(lower)
-        .limit(length);
-
-        return stream;
-    }
-
     private static IntRange adapted(final int[] array, final IntRange range)
     {
         final int lower = range.lower();
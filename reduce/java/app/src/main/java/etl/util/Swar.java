@@ -0,0 +1,241 @@
+package etl.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Swar examines byte arrays eight bytes at a time, as SIMD within a
+ * register: a block of bytes is loaded into a {@code long}, and each
+ * comparison yields a mask of which the high bit of a byte is set if
+ * the byte matches. The lowest set bit of a mask is the first match.
+ * <p>
+ * The masks are exact, so that a mask of several bytes can be read as
+ * the positions of every match in the block, such as the boundaries of
+ * the fields of a CSV line.
+ */
+public final class Swar
+{
+    /**
+     * The number of bytes examined at a time.
+     */
+    public static final int BLOCK = Long.BYTES;
+
+    /**
+     * Returns a word of which every byte is the byte argument.
+     * @param b a byte
+     * @return  the byte broadcast to a word
+     */
+    public static long broadcast(int b)
+    {
+        return ONES * (b & 0xff);
+    }
+
+    /**
+     * Returns the mask of the zero bytes of a word.
+     * @param word a word
+     * @return     a mask of which the high bit of each zero byte is set
+     */
+    public static long zeros(long word)
+    {
+        return ~(((word & LOWS) + LOWS) | word | LOWS);
+    }
+
+    /**
+     * Returns the mask of the bytes of a word equal to the bytes of a
+     * pattern, such as {@code broadcast()} returns.
+     * @param word    a word
+     * @param pattern a broadcast byte
+     * @return        a mask of which the high bit of each match is set
+     */
+    public static long matches(long word, long pattern)
+    {
+        return zeros(word ^ pattern);
+    }
+
+    /**
+     * Returns the mask of the ASCII digits of a word.
+     * @param word a word
+     * @return     a mask of which the high bit of each digit is set
+     */
+    public static long digits(long word)
+    {
+        // (b | 0x80) - 0x30 keeps its high bit iff b >= '0', and
+        // (b & 0x7f) + 0x46 sets its high bit iff b > '9', neither
+        // borrowing from nor carrying into a neighbouring byte
+        final long at_least_zero = (word | HIGHS) - ZERO;
+        final long above_nine = (word & LOWS) + ABOVE_NINE;
+        return at_least_zero & ~above_nine & ~word & HIGHS;
+    }
+
+    /**
+     * Returns the mask of the structural bytes of CSV in a word:
+     * the delimiter, the quote, CR and LF.
+     * @param word a word
+     * @return     a mask of which the high bit of each match is set
+     */
+    public static long structurals(long word)
+    {
+        return matches(word, COMMAS)
+        | matches(word, QUOTES)
+        | matches(word, CRS)
+        | matches(word, LFS);
+    }
+
+    /**
+     * Returns the mask of the bytes of a word that end an unquoted field
+     * of CSV: the delimiter, CR and LF. A quote within an unquoted field
+     * is an ordinary char, as Commons CSV reads it.
+     * @param word a word
+     * @return     a mask of which the high bit of each match is set
+     */
+    public static long terminators(long word)
+    {
+        return matches(word, COMMAS)
+        | matches(word, CRS)
+        | matches(word, LFS);
+    }
+
+    /**
+     * Returns the index of the first byte that ends an unquoted field of
+     * CSV in a range, as {@code terminators()} tells of.
+     * @param bytes an array of bytes
+     * @param from  the start index, inclusive
+     * @param to    the end index, exclusive
+     * @return      the index, or {@code to} if there is none
+     */
+    public static int index_of_terminator(final byte[] bytes, int from, int to)
+    {
+        int index = from;
+        for (; index + BLOCK <= to; index += BLOCK) {
+            final long mask = terminators(word(bytes, index));
+            if (mask != 0L) return index + first(mask);
+        }
+        for (; index < to; index++) {
+            final byte b = bytes[index];
+            if (b == ',' || b == '\r' || b == '\n') return index;
+        }
+        return to;
+    }
+
+    /**
+     * Returns the index of the first structural byte of CSV in a range.
+     * @param bytes an array of bytes
+     * @param from  the start index, inclusive
+     * @param to    the end index, exclusive
+     * @return      the index, or {@code to} if there is none
+     */
+    public static int index_of_structural(final byte[] bytes, int from, int to)
+    {
+        int index = from;
+        for (; index + BLOCK <= to; index += BLOCK) {
+            final long mask = structurals(word(bytes, index));
+            if (mask != 0L) return index + first(mask);
+        }
+        for (; index < to; index++) {
+            final byte b = bytes[index];
+            if (b == ',' || b == '"' || b == '\r' || b == '\n') return index;
+        }
+        return to;
+    }
+
+    /**
+     * Returns the index of the first occurrence of a byte in a range.
+     * @param bytes an array of bytes
+     * @param from  the start index, inclusive
+     * @param to    the end index, exclusive
+     * @param b     the byte to be found
+     * @return      the index, or {@code to} if there is none
+     */
+    public static int index_of(final byte[] bytes, int from, int to, byte b)
+    {
+        final long pattern = broadcast(b);
+        int index = from;
+        for (; index + BLOCK <= to; index += BLOCK) {
+            final long mask = matches(word(bytes, index), pattern);
+            if (mask != 0L) return index + first(mask);
+        }
+        for (; index < to; index++) {
+            if (bytes[index] == b) return index;
+        }
+        return to;
+    }
+
+    /**
+     * Tells if every byte in a range is ASCII.
+     * @param bytes an array of bytes
+     * @param from  the start index, inclusive
+     * @param to    the end index, exclusive
+     * @return      {@code true} if no byte has its high bit set
+     */
+    public static boolean is_ascii(final byte[] bytes, int from, int to)
+    {
+        int index = from;
+        for (; index + BLOCK <= to; index += BLOCK) {
+            if ((word(bytes, index) & HIGHS) != 0L) return false;
+        }
+        for (; index < to; index++) {
+            if (bytes[index] < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tells if a range is a non-empty run of ASCII digits, as
+     * {@code TextHelper.is_digits()} tells of a String.
+     * @param bytes an array of bytes
+     * @param from  the start index, inclusive
+     * @param to    the end index, exclusive
+     * @return      {@code true} if every byte is a digit
+     */
+    public static boolean is_digits(final byte[] bytes, int from, int to)
+    {
+        if (from >= to) return false;
+
+        int index = from;
+        for (; index + BLOCK <= to; index += BLOCK) {
+            if (digits(word(bytes, index)) != HIGHS) return false;
+        }
+        for (; index < to; index++) {
+            if (bytes[index] < '0' || '9' < bytes[index]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Loads eight bytes as a little-endian word, so that the byte at
+     * the index is the lowest byte.
+     * @param bytes an array of bytes
+     * @param index the index of the first byte
+     * @return      the word
+     */
+    public static long word(final byte[] bytes, int index)
+    {
+        return (long) WORDS.get(bytes, index);
+    }
+
+    /**
+     * Returns the offset of the first match of a mask.
+     * @param mask a non-zero mask
+     * @return     the offset of the lowest byte of which the high bit is set
+     */
+    public static int first(long mask)
+    {
+        return Long.numberOfTrailingZeros(mask) >>> 3;
+    }
+
+    private Swar() {}
+
+    private static final VarHandle WORDS
+    = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long ONES = 0x0101_0101_0101_0101L;
+    private static final long LOWS = 0x7f7f_7f7f_7f7f_7f7fL;
+    private static final long HIGHS = 0x8080_8080_8080_8080L;
+    private static final long ZERO = ONES * '0';
+    private static final long ABOVE_NINE = ONES * (0x80 - ('9' + 1));
+    private static final long COMMAS = ONES * ',';
+    private static final long QUOTES = ONES * '"';
+    private static final long CRS = ONES * '\r';
+    private static final long LFS = ONES * '\n';
+}
@@ -0,0 +1,28 @@
+package etl.util;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TextBindings caches the reflective bindings of 'text' record types.
+ */
+final class TextBindings
+{
+    static final ClassValue<List<Method>> getters = new ClassValue<>()
+    {
+        @Override
+        protected List<Method> computeValue(Class<?> clazz)
+        {
+            final var getters = Arrays
+            .stream(clazz.getRecordComponents())
+            .map(RecordComponent::getAccessor)
+            .toList();
+
+            return getters;
+        }
+    };
+
+    private TextBindings() {}
+}
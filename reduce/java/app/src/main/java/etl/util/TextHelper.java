@@ -45,8 +45,37 @@ public interface TextHelper
         return values;
     }
 
+    /**
+     * Tells if a String consists only of ASCII digits, as the regular
+     * expression {@code ^[0-9]+$} does, without allocating a Matcher.
+     * @param text a String, which may be null
+     * @return     {@code true} if the text is a non-empty run of digits
+     */
+    static boolean is_digits(final String text)
+    {
+        if (text == null || text.isEmpty()) return false;
+        for (int index = 0; index < text.length(); index++) {
+            final char c = text.charAt(index);
+            if (c < '0' || '9' < c) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns null for an empty String, as a 'text' record holds an
+     * empty field of CSV data as null.
+     * @param text a String, which may be null
+     * @return     the text, or null if it is empty
+     */
+    static String null_if_empty(final String text)
+    {
+        return text == null || text.isEmpty() ? null : text;
+    }
+
     /**
      * Returns all getters of the 'text' record type has.
+     * The getters are looked up once per type and cached for the life of
+     * the class, so that callers may call this method for every record.
      * @param <T>   the type of the 'text' record
      * @param clazz a class instance of the type
      * @return      a list of all getters of the type
@@ -57,12 +86,7 @@ public interface TextHelper
         assert(clazz != null);
 
         // logic:
-        final var getters = Arrays
-        .stream(clazz.getRecordComponents())
-        .map(RecordComponent::getAccessor)
-        .toList();
-
-        return getters;
+        return TextBindings.getters.get(clazz);
     }
 
     /**
@@ -97,7 +121,8 @@ public interface TextHelper
      * If the provided mapper succeeds to parse the string argument,
      * this method returns an Optional that holds the mapping result.
      * Blank string (""), null string, or a string value of the format
-     * that the mapper cannot parse results in an empty Optional.
+     * that the mapper cannot parse results in an empty Optional, and
+     * the latter is reported to Diagnostics.
      * @param <T>    a type the string argument represents
      * @param string a string to be parsed
      * @param mapper a Function to map the string to the type object
@@ -118,6 +143,9 @@ public interface TextHelper
         try {
             result = Optional.ofNullable(mapper.apply(string));
         } catch (Exception ex) {
+            Diagnostics.shared().reject(
+                null, -1L, Diagnostics.RULE_UNPARSABLE_VALUE, string
+            );
             result = Optional.empty();
         }
 
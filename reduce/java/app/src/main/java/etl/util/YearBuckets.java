@@ -0,0 +1,112 @@
+package etl.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * YearBuckets sorts and deduplicates elements ordered firstly by a year
+ * and then by some other key, such as films by {@code (release, name)}
+ * or actors by {@code (born, name)}.
+ * <p>
+ * Years fall within a domain of a few hundred values, so elements are
+ * first distributed into one bucket per year by a counting pass, which
+ * is linear and stable. Only the elements within a bucket are compared,
+ * and the buckets are sorted in parallel. Equal neighbours are then
+ * dropped while the buckets are compacted.
+ */
+public interface YearBuckets
+{
+    /**
+     * The widest range of years that is bucketed. Elements spread over
+     * a wider range are sorted by a single comparison sort instead.
+     */
+    static final int MAX_YEAR_RANGE = 1 << 16;
+
+    /**
+     * Sorts the elements argument and drops duplicates.
+     * @param <T>       the type of elements
+     * @param elements  the elements to be sorted, which are left unchanged
+     * @param year      a function that returns the year of an element
+     * @param within    a comparator of elements of the same year
+     * @param keep_last {@code true} to keep the last of equal elements,
+     *                  as {@code Map.put()} keeps the last value, or
+     *                  {@code false} to keep the first, as
+     *                  {@code Set.add()} does
+     * @return          a new array of distinct elements in order
+     */
+    static <T> T[] sort_distinct(
+        final T[] elements,
+        final ToIntFunction<? super T> year,
+        final Comparator<? super T> within,
+        boolean keep_last
+    ) {
+        if (elements.length == 0) return elements.clone();
+
+        // logic: the years of the elements and their range
+        final var years = new int[elements.length];
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int index = 0; index < elements.length; index++) {
+            final int value = year.applyAsInt(elements[index]);
+            years[index] = value;
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+
+        final Comparator<T> order = Comparator
+        .<T>comparingInt(year)
+        .thenComparing(within);
+
+        if ((long) max - min >= MAX_YEAR_RANGE) {
+            final var sorted = elements.clone();
+            Arrays.parallelSort(sorted, order);
+            return distinct(sorted, new int[] {0, sorted.length}, order, keep_last);
+        }
+
+        // logic: a counting pass that distributes elements into buckets
+        final var bounds = new int[max - min + 2];
+        for (final int value : years) bounds[value - min + 1]++;
+        for (int bucket = 1; bucket < bounds.length; bucket++) {
+            bounds[bucket] += bounds[bucket - 1];
+        }
+
+        final var sorted = Arrays.copyOf(elements, elements.length);
+        final var next = Arrays.copyOf(bounds, bounds.length - 1);
+        for (int index = 0; index < elements.length; index++) {
+            sorted[next[years[index] - min]++] = elements[index];
+        }
+
+        // logic: sorts each bucket; parallelSort is stable, so equal
+        // elements stay in the order they came in
+        IntStream.range(0, bounds.length - 1).parallel()
+        .filter(bucket -> bounds[bucket + 1] - bounds[bucket] > 1)
+        .forEach(bucket ->
+            Arrays.parallelSort(sorted, bounds[bucket], bounds[bucket + 1], within)
+        );
+
+        return distinct(sorted, bounds, within, keep_last);
+    }
+
+    private static <T> T[] distinct(
+        final T[] sorted,
+        final int[] bounds,
+        final Comparator<? super T> order,
+        boolean keep_last
+    ) {
+        int size = 0;
+        for (int bucket = 0; bucket < bounds.length - 1; bucket++) {
+            final int start = size;
+            for (int index = bounds[bucket]; index < bounds[bucket + 1]; index++) {
+                final var element = sorted[index];
+                if (size > start && order.compare(sorted[size - 1], element) == 0) {
+                    if (keep_last) sorted[size - 1] = element;
+                    continue;
+                }
+                sorted[size++] = element;
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+}
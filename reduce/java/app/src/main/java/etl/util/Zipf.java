@@ -0,0 +1,104 @@
+package etl.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zipf samples ranks from a Zipf distribution, in which rank {@code k}
+ * out of {@code n} is drawn with a probability proportional to
+ * {@code 1 / k^exponent}, such as the actors that a few films share
+ * with many others.
+ * <p>
+ * Sampling is by rejection-inversion (Hörmann and Derflinger, 1996),
+ * which takes a few draws per rank in constant memory, whereas a table
+ * of cumulative probabilities would take eight bytes per rank.
+ */
+public final class Zipf
+{
+    /**
+     * Instantiates a sampler.
+     * @param n        the number of ranks, which is positive
+     * @param exponent the exponent of the distribution, which is positive;
+     *                 the greater it is, the more skewed ranks are
+     * @return         a sampler
+     * @throws IllegalArgumentException if {@code n} or {@code exponent}
+     *                 is not positive
+     */
+    public static Zipf of(long n, double exponent) throws IllegalArgumentException
+    {
+        if (n < 1L || !(exponent > 0.0)) {
+            throw new IllegalArgumentException("n and exponent must be positive");
+        }
+        return new Zipf(n, exponent);
+    }
+
+    /**
+     * Draws a rank.
+     * @param random the source of randomness of the caller
+     * @return       a rank in {@code [0, n)}, 0 being the most frequent
+     */
+    public long sample(final SplittableRandom random)
+    {
+        while (true) {
+            final double u = h_integral_n + random.nextDouble() * (h_integral_x1 - h_integral_n);
+            final double x = h_integral_inverse(u);
+            final long k = Math.max(1L, Math.min(n, (long) (x + 0.5)));
+
+            if (k - x <= s || u >= h_integral(k + 0.5) - h(k)) return k - 1L;
+        }
+    }
+
+    /**
+     * Returns the number of ranks.
+     * @return the number of ranks
+     */
+    public long n() { return n; }
+
+    // H(x), the integral of h(x) = 1 / x^exponent
+    private double h_integral(double x)
+    {
+        final double log_x = Math.log(x);
+        return helper2((1.0 - exponent) * log_x) * log_x;
+    }
+
+    private double h(double x)
+    {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double h_integral_inverse(double x)
+    {
+        final double t = Math.max(-1.0, x * (1.0 - exponent));
+        return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x, accurate near 0
+    private static double helper1(double x)
+    {
+        return Math.abs(x) > 1e-8
+        ? Math.log1p(x) / x
+        : 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+    }
+
+    // (exp(x) - 1) / x, accurate near 0
+    private static double helper2(double x)
+    {
+        return Math.abs(x) > 1e-8
+        ? Math.expm1(x) / x
+        : 1.0 + x * 0.5 * (1.0 + x * (1.0 / 3.0) * (1.0 + 0.25 * x));
+    }
+
+    private Zipf(long n, double exponent)
+    {
+        this.n = n;
+        this.exponent = exponent;
+        this.h_integral_x1 = h_integral(1.5) - 1.0;
+        this.h_integral_n = h_integral(n + 0.5);
+        this.s = 2.0 - h_integral_inverse(h_integral(2.5) - h(2.0));
+    }
+
+    private final long n;
+    private final double exponent;
+    private final double h_integral_x1;
+    private final double h_integral_n;
+    private final double s;
+}
@@ -0,0 +1,85 @@
+package etl.mapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class Ex2BatchTest
+{
+    @Test
+    void job() throws Exception
+    {
+        final var input_dir = Files.createTempDirectory("ex2batch-in");
+        final var output_dir = Files.createTempDirectory("ex2batch-out");
+
+        Files.writeString(input_dir.resolve("a.csv"), Ex2MapperTest.movie_csv);
+        Files.writeString(input_dir.resolve("b.csv"), Ex2MapperTest.movie_csv);
+        // malformed UTF-8, which cannot be read, unlike an invalid film
+        Files.write(input_dir.resolve("c.csv"), new byte[] {'1', ',', (byte) 0xff, '\n'});
+        Files.writeString(input_dir.resolve("d.txt"), Ex2MapperTest.movie_csv);
+
+        final var movies = Ex2Batch.Driving.inputs(input_dir.toString());
+        assertEquals(
+            List.of(
+                input_dir.resolve("a.csv"),
+                input_dir.resolve("b.csv"),
+                input_dir.resolve("c.csv")
+            ),
+            movies
+        );
+
+        final var reports = Ex2Batch.Driving.job(movies, output_dir, 2);
+        assertEquals(3, reports.size());
+
+        for (final var name : List.of("a", "b")) {
+            final var dir = output_dir.resolve(name);
+            assertEquals(Ex2MapperTest.film_csv, Files.readString(dir.resolve("film.csv")));
+            assertEquals(Ex2MapperTest.actor_csv, Files.readString(dir.resolve("actor.csv")));
+            assertEquals(Ex2MapperTest.cast_csv, Files.readString(dir.resolve("cast.csv")));
+        }
+
+        final var report = reports.get(0);
+        assertEquals(input_dir.resolve("a.csv").toString(), report.movie());
+        assertEquals(4L, report.films());
+        assertEquals(6L, report.actors());
+        assertEquals(8L, report.casts());
+        assertEquals(0L, report.invalid_lines());
+        assertNull(report.error());
+
+        assertNotNull(reports.get(2).error());
+    }
+
+    @Test
+    void job_refuses_no_concurrency() throws Exception
+    {
+        final var output_dir = Files.createTempDirectory("ex2batch-none");
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> Ex2Batch.Driving.job(List.of(), output_dir, 0)
+        );
+    }
+
+    @Test
+    void inputs_by_glob() throws Exception
+    {
+        final var input_dir = Files.createTempDirectory("ex2batch-glob");
+        Files.writeString(input_dir.resolve("movie-1.csv"), "");
+        Files.writeString(input_dir.resolve("movie-2.csv"), "");
+        Files.writeString(input_dir.resolve("other.csv"), "");
+
+        final var movies = Ex2Batch.Driving.inputs(
+            input_dir.resolve("movie-*.csv").toString()
+        );
+        assertEquals(
+            List.of(
+                input_dir.resolve("movie-1.csv"),
+                input_dir.resolve("movie-2.csv")
+            ),
+            movies.stream().map(Path::normalize).toList()
+        );
+    }
+}
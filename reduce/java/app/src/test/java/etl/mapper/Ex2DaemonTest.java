@@ -0,0 +1,64 @@
+package etl.mapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+public class Ex2DaemonTest
+{
+    @Test
+    void serve() throws Exception
+    {
+        final var dir = Files.createTempDirectory("ex2daemon");
+        final var socket_path = dir.resolve("daemon.sock");
+        final var movie = dir.resolve("movie.csv");
+        Files.writeString(movie, Ex2MapperTest.movie_csv);
+
+        final var server = Ex2Daemon.Server.open(socket_path, 2);
+        final var executor = Executors.newSingleThreadExecutor();
+        final var serving = executor.submit(() -> { server.serve(); return null; });
+        executor.shutdown();
+
+        try (server) {
+            assertEquals(
+                PosixFilePermissions.fromString("rw-------"),
+                Files.getPosixFilePermissions(socket_path)
+            );
+            assertEquals("ok", Ex2Daemon.Client.submit(socket_path, "ping"));
+
+            final var mapped = Ex2Daemon.Client.submit(socket_path, String.join(
+                "\t",
+                "map",
+                movie.toString(),
+                dir.resolve("film.csv").toString(),
+                dir.resolve("actor.csv").toString(),
+                dir.resolve("cast.csv").toString()
+            ));
+            assertTrue(mapped.startsWith("ok\t"), mapped);
+            assertEquals(Ex2MapperTest.film_csv, Files.readString(dir.resolve("film.csv")));
+            assertEquals(Ex2MapperTest.actor_csv, Files.readString(dir.resolve("actor.csv")));
+            assertEquals(Ex2MapperTest.cast_csv, Files.readString(dir.resolve("cast.csv")));
+
+            final var batched = Ex2Daemon.Client.submit(socket_path, String.join(
+                "\t", "batch", movie.toString(), dir.resolve("out").toString()
+            ));
+            assertEquals("ok\tfiles=1\tfailed=0", batched);
+            assertTrue(Files.exists(dir.resolve("out").resolve("batch_report.csv")));
+
+            final var refused = Ex2Daemon.Client.submit(socket_path, String.join(
+                "\t", "batch", movie.toString(), dir.resolve("out").toString(), "none"
+            ));
+            assertTrue(refused.startsWith("error\t"), refused);
+
+            assertTrue(Ex2Daemon.Client.submit(socket_path, "nope").startsWith("error\t"));
+            assertEquals("ok", Ex2Daemon.Client.submit(socket_path, "shutdown"));
+            serving.get();
+        }
+
+        assertFalse(Files.exists(socket_path));
+    }
+}
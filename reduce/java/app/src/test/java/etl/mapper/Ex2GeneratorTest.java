@@ -0,0 +1,149 @@
+package etl.mapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import etl.util.Diagnostics;
+import etl.util.IntRange;
+
+public class Ex2GeneratorTest
+{
+    @Test
+    void deterministic() throws Exception
+    {
+        final var dir = Files.createTempDirectory("ex2generator");
+        final var spec = Ex2Generator.Spec.of(10_000L, 42L);
+        final var cpu = Executors.newFixedThreadPool(4);
+
+        try {
+            final long serial = Ex2Generator.Driving.job(spec, dir.resolve("a.csv"), 1, cpu);
+            final long parallel = Ex2Generator.Driving.job(spec, dir.resolve("b.csv"), 8, cpu);
+            final long other = Ex2Generator.Driving.job(
+                Ex2Generator.Spec.of(10_000L, 43L), dir.resolve("c.csv"), 8, cpu
+            );
+
+            assertTrue(serial > 10_000L);
+            assertEquals(serial, parallel);
+            assertEquals(Files.readString(dir.resolve("a.csv")), Files.readString(dir.resolve("b.csv")));
+            assertNotEquals(Files.readString(dir.resolve("a.csv")), Files.readString(dir.resolve("c.csv")));
+            assertTrue(other > 0L);
+
+            final long ex3 = Ex2Generator.Driving.job_ex3(
+                spec, dir.resolve("film.csv"), dir.resolve("actor.csv"), dir.resolve("cast.csv"), 8, cpu
+            );
+            assertTrue(ex3 > 0L);
+            assertEquals(
+                Long.valueOf(ex3),
+                Long.valueOf(
+                    Files.lines(dir.resolve("film.csv")).count()
+                    + Files.lines(dir.resolve("actor.csv")).count()
+                    + Files.lines(dir.resolve("cast.csv")).count()
+                )
+            );
+        } finally {
+            cpu.shutdown();
+        }
+    }
+
+    @Test
+    void mapping_clean() throws Exception
+    {
+        final var dir = Files.createTempDirectory("ex2generator");
+        final var spec = new Ex2Generator.Spec(
+            200L, 50L, IntRange.lower(1).upper(4), 1.1, IntRange.lower(1).upper(32), 0.5, 0.0, 7L
+        );
+        final var cpu = Executors.newFixedThreadPool(2);
+
+        try {
+            Ex2Generator.Driving.job(spec, dir.resolve("movie.csv"), 2, cpu);
+        } finally {
+            cpu.shutdown();
+        }
+
+        final var movie_csv = Files.readString(dir.resolve("movie.csv"));
+        assertTrue(movie_csv.contains("\""));
+
+        final var film_writer = new StringWriter();
+        final var actor_writer = new StringWriter();
+        final var cast_writer = new StringWriter();
+        Ex2Mapper.Driving.job(
+            () -> new StringReader(movie_csv),
+            () -> film_writer,
+            () -> actor_writer,
+            () -> cast_writer
+        );
+
+        // every film is valid and distinct, and actors are at most 50
+        assertEquals(200L, film_writer.toString().lines().count());
+        assertTrue(actor_writer.toString().lines().count() <= 50L);
+    }
+
+    @Test
+    void mapping_dirty() throws Exception
+    {
+        final var dir = Files.createTempDirectory("ex2generator");
+        final var spec = new Ex2Generator.Spec(
+            200L, 50L, IntRange.lower(1).upper(4), 1.1, IntRange.lower(1).upper(32), 0.0, 0.2, 7L
+        );
+        final var cpu = Executors.newFixedThreadPool(2);
+
+        final long rows;
+        try {
+            rows = Ex2Generator.Driving.job(spec, dir.resolve("movie.csv"), 2, cpu);
+        } finally {
+            cpu.shutdown();
+        }
+
+        // the default job skips an invalid film with its casts
+        final var movie_csv = Files.readString(dir.resolve("movie.csv"));
+        final var film_writer = new StringWriter();
+        final var actor_writer = new StringWriter();
+        final var cast_writer = new StringWriter();
+        Ex2Mapper.Driving.job(
+            () -> new StringReader(movie_csv),
+            () -> film_writer,
+            () -> actor_writer,
+            () -> cast_writer
+        );
+
+        // dirty rows are rejected one by one, and the films survive them
+        assertEquals(200L, film_writer.toString().lines().count());
+        assertTrue(rows > 200L + cast_writer.toString().lines().count());
+        assertTrue(Diagnostics.shared().counts(Diagnostics.RULE_INVALID_RECORD_KIND).seen() > 0L);
+
+        // so does a batch
+        final var reports = Ex2Batch.Driving.job(
+            List.of(dir.resolve("movie.csv")), dir.resolve("batch"), 2
+        );
+        assertNull(reports.get(0).error());
+        assertEquals(200L, reports.get(0).films());
+        assertEquals(
+            film_writer.toString(),
+            Files.readString(dir.resolve("batch/movie").resolve(Ex2Batch.FILM_FILE_NAME))
+        );
+    }
+
+    @Test
+    void unique_names()
+    {
+        final var random = new SplittableRandom(1L);
+        final var length = IntRange.lower(1).upper(32);
+        final var names = new HashSet<String>();
+
+        for (long index = 0L; index < 100_000L; index++) {
+            final var name = Ex2Generator.Generating.name(random, index, length, 0.1);
+            assertTrue(length.covers(name.length()));
+            assertEquals(name.trim(), name);
+            assertTrue(names.add(name));
+        }
+    }
+}
@@ -16,6 +16,10 @@ import etl.model.Ex2Actor;
 import etl.model.Ex2Cast;
 import etl.model.Ex2Film;
 import etl.model.Ex2Movie;
+import etl.util.JsonLinesWriter;
+import etl.util.JsonScanner;
+import etl.util.ModelReader;
+import etl.util.ModelWriter;
 
 public class Ex2MapperTest
 {
@@ -180,6 +184,402 @@ public class Ex2MapperTest
         assertEquals(cast_csv, actual_cast);
     }
 
+    @Test
+    void driving_off_heap()
+    {
+        final var film_writer = new StringWriter();
+        final var actor_writer = new StringWriter();
+        final var cast_writer = new StringWriter();
+
+        Ex2Mapper.Driving.job_off_heap(
+            () -> new java.io.StringReader(movie_csv),
+            () -> film_writer,
+            () -> actor_writer,
+            () -> cast_writer
+        );
+
+        assertEquals(film_csv, film_writer.toString());
+        assertEquals(actor_csv, actor_writer.toString());
+        assertEquals(cast_csv, cast_writer.toString());
+    }
+
+    @Test
+    void driving_off_heap_as_job()
+    {
+        // films out of order, a film read twice, and an actor of whom
+        // ages disagree, so that two actors share a name
+        final var irregular_csv
+        = "1,The Intern,2015\n"
+        + "2,Robert De Niro,Ben,72\n"
+        + "1,The Deer Hunter,1978\n"
+        + "2,Robert De Niro,Mike,36\n"
+        + "2,Meryl Streep,Linda,29\n"
+        + "1,The Intern,2015\n"
+        + "2,Anne Hathaway,Jules,33\n"
+        + "2,Robert De Niro,Ben,72\n"
+        ;
+
+        final var expected = new StringWriter[] {
+            new StringWriter(), new StringWriter(), new StringWriter()
+        };
+        Ex2Mapper.Driving.job(
+            () -> new java.io.StringReader(irregular_csv),
+            () -> expected[0], () -> expected[1], () -> expected[2]
+        );
+
+        final var actual = new StringWriter[] {
+            new StringWriter(), new StringWriter(), new StringWriter()
+        };
+        Ex2Mapper.Driving.job_off_heap(
+            () -> new java.io.StringReader(irregular_csv),
+            () -> actual[0], () -> actual[1], () -> actual[2]
+        );
+
+        for (int index = 0; index < expected.length; index++) {
+            assertEquals(expected[index].toString(), actual[index].toString());
+        }
+        assertEquals(4, expected[1].toString().lines().count());
+    }
+
+    @Test
+    void driving_json_lines() throws Exception
+    {
+        final var film_stream = new java.io.ByteArrayOutputStream();
+        final var actor_writer = new StringWriter();
+        final var cast_stream = new java.io.ByteArrayOutputStream();
+
+        // films and casts as JSON Lines, actors as CSV
+        Ex2Mapper.Driving.job(
+            () -> new java.io.StringReader(movie_csv),
+            () -> JsonLinesWriter.json_lines(film_stream),
+            () -> actor_writer,
+            () -> JsonLinesWriter.json_lines(cast_stream)
+        );
+
+        assertEquals(actor_csv, actor_writer.toString());
+        assertEquals(film_csv, as_csv(film_stream, Ex2Film.Text.class));
+        assertEquals(cast_csv, as_csv(cast_stream, Ex2Cast.Text.class));
+    }
+
+    // reads JSON Lines back, and prints them as CSV
+    private static String as_csv(
+        final java.io.ByteArrayOutputStream stream,
+        final Class<? extends Record> text_class
+    )
+        throws Exception
+    {
+        final var names = ModelReader.component_names(text_class);
+        final var csv = new StringWriter();
+        try (
+            final var scanner = JsonScanner.of(new java.io.StringReader(
+                stream.toString(java.nio.charset.StandardCharsets.UTF_8)
+            ));
+            final var printer = new ModelWriter(() -> csv)
+        ) {
+            while (scanner.next()) printer.print(scanner.strings(names));
+        }
+        return csv.toString();
+    }
+
+    @Test
+    void driving_columnar()
+    {
+        final var film_writer = new StringWriter();
+        final var actor_writer = new StringWriter();
+        final var cast_writer = new StringWriter();
+
+        Ex2Mapper.Driving.job_columnar(
+            () -> new java.io.StringReader(movie_csv),
+            () -> film_writer,
+            () -> actor_writer,
+            () -> cast_writer
+        );
+
+        assertEquals(film_csv, film_writer.toString());
+        assertEquals(actor_csv, actor_writer.toString());
+        assertEquals(cast_csv, cast_writer.toString());
+    }
+
+    @Test
+    void driving_deduped()
+    {
+        final var film_writer = new StringWriter();
+        final var actor_writer = new StringWriter();
+        final var cast_writer = new StringWriter();
+
+        final var report = Ex2Mapper.Driving.job_deduped(
+            () -> new java.io.StringReader(movie_csv),
+            () -> film_writer,
+            () -> actor_writer,
+            () -> cast_writer,
+            0.01
+        );
+
+        assertEquals(film_csv, film_writer.toString());
+        assertEquals(actor_csv, actor_writer.toString());
+        assertEquals(cast_csv, cast_writer.toString());
+
+        assertEquals(8L, report.actors());
+        assertEquals(6L, report.distinct());
+        assertEquals(2L, report.duplicates());
+        assertEquals(report.duplicates(), report.possible_hits() - report.false_positives());
+        assertEquals(7, report.hash_count());
+        assertTrue(report.filter_bytes() > 0L);
+        assertTrue(report.expected_fpp() < 0.01);
+    }
+
+    @Test
+    void driving_aggregated() throws Exception
+    {
+        final var dir = java.nio.file.Files.createTempDirectory("ex2aggregates");
+        final var film_writer = new StringWriter();
+
+        final var hooked = new java.util.concurrent.atomic.AtomicReference<Ex2Aggregates>();
+        Ex2Mapper.Driving.job(
+            () -> new java.io.StringReader(movie_csv),
+            () -> film_writer,
+            () -> new StringWriter(),
+            () -> new StringWriter(),
+            (model_map, actors) -> hooked.set(Ex2Aggregates.of(model_map, actors))
+        );
+        assertEquals(film_csv, film_writer.toString());
+
+        final var aggregates = hooked.get();
+        assertTrue(aggregates.write(dir));
+
+        assertEquals(2L, aggregates.films_of(Model_Robert_De_Niro_in_Deer_Hunter.actor()));
+        assertEquals(1L, aggregates.films_of(Model_Rene_Russo_in_Intern.actor()));
+        assertEquals(2L, aggregates.casts_of(0));
+        assertEquals(3L, aggregates.casts_of(3));
+        assertEquals(1L, aggregates.casts_at_age(35));
+        assertEquals(0L, aggregates.casts_at_age(36));
+        assertEquals(1L, aggregates.films_in(1995));
+
+        assertEquals(
+            "1978,1\n1987,1\n1995,1\n2015,1\n",
+            java.nio.file.Files.readString(dir.resolve(Ex2Aggregates.FILMS_PER_YEAR_FILE_NAME))
+        );
+        assertEquals(
+            6,
+            java.nio.file.Files.readAllLines(
+                dir.resolve(Ex2Aggregates.FILMS_PER_ACTOR_FILE_NAME)
+            ).size()
+        );
+        assertEquals(
+            8,
+            java.nio.file.Files.readAllLines(
+                dir.resolve(Ex2Aggregates.AGE_AT_RELEASE_FILE_NAME)
+            ).size()
+        );
+    }
+
+    @Test
+    void driving_sharded() throws Exception
+    {
+        final var dir = java.nio.file.Files.createTempDirectory("ex2shards");
+        // a comma in the name, which ModelWriter quotes in the manifest
+        final var film = dir.resolve("film, final.csv");
+        final var actor = dir.resolve("actor.csv");
+        final var cast = dir.resolve("cast.csv");
+
+        final var shards = Ex2Mapper.Driving.job_sharded(
+            () -> new java.io.StringReader(movie_csv), film, actor, cast, 3
+        );
+        assertEquals(9, shards.size());
+
+        for (final var entity : List.of(
+            List.of(actor, actor_csv), List.of(film, film_csv), List.of(cast, cast_csv)
+        )) {
+            final var path = (java.nio.file.Path) entity.get(0);
+            final var expected = ((String) entity.get(1)).lines().sorted().toList();
+
+            final var lines = new java.util.ArrayList<String>();
+            long rows = 0L;
+            for (int shard = 0; shard < 3; shard++) {
+                final var shard_path = Ex2Shards.shard_path(path, shard, 3);
+                final var shard_lines = java.nio.file.Files.readAllLines(shard_path);
+                for (final var line : shard_lines) {
+                    // a cast goes to the shard of its film, the first field of it
+                    final var key = line.substring(0, line.indexOf(','));
+                    assertEquals(shard, Ex2Shards.shard_of(key, 3), line);
+                }
+                lines.addAll(shard_lines);
+
+                final var manifest = Ex2Shards.manifest(shard_path);
+                assertEquals(shard_path.getFileName().toString(), manifest.file());
+                assertEquals(shard, manifest.shard());
+                assertEquals(shard_lines.size(), manifest.rows());
+                assertEquals(0L, manifest.invalid_rows());
+                rows += manifest.rows();
+            }
+
+            assertEquals(expected, lines.stream().sorted().toList());
+            assertEquals(expected.size(), rows);
+        }
+        assertEquals(
+            dir.resolve("cast-00002-of-00003.csv"), Ex2Shards.shard_path(cast, 2, 3)
+        );
+    }
+
+    @Test
+    void driving_indexed() throws Exception
+    {
+        final var dir = java.nio.file.Files.createTempDirectory("ex2index");
+        final var film = dir.resolve("film.csv");
+        final var actor = dir.resolve("actor.csv");
+        final var cast = dir.resolve("cast.csv");
+
+        assertTrue(Ex2Mapper.Driving.job_indexed(
+            () -> new java.io.StringReader(movie_csv), film, actor, cast
+        ));
+        assertEquals(film_csv, java.nio.file.Files.readString(film));
+        assertEquals(cast_csv, java.nio.file.Files.readString(cast));
+
+        try (
+            final var film_index = etl.util.OffsetIndex.open(etl.util.OffsetIndex.path_of(film));
+            final var cast_index = etl.util.OffsetIndex.open(etl.util.OffsetIndex.path_of(cast))
+        ) {
+            assertEquals(4, film_index.size());
+            assertEquals(
+                List.of(new Ex2Film.Text(
+                    "7d6fc9219cbf15473726730ee0444c4dc306e3ca", "Good Morning, Vietnam", "1987"
+                )),
+                etl.util.ModelReader.lookup(
+                    film_index, film, Ex2Film.Text.class,
+                    "7d6fc9219cbf15473726730ee0444c4dc306e3ca"
+                )
+            );
+            assertEquals(
+                List.of(),
+                etl.util.ModelReader.lookup(
+                    film_index, film, Ex2Film.Text.class,
+                    "0000000000000000000000000000000000000000"
+                )
+            );
+
+            // the casts of a film are one range
+            assertEquals(4, cast_index.size());
+            final var casts = etl.util.ModelReader.lookup(
+                cast_index, cast, Ex2Cast.Text.class,
+                "0aa964061fee6ceb2b6441636d297407891c0bd9"
+            );
+            assertEquals(2, casts.size());
+            assertEquals("Robert", casts.get(0).role_name());
+            assertEquals("Francesca", casts.get(1).role_name());
+        }
+    }
+
+    @Test
+    void driving_checkpointed_failures() throws Exception
+    {
+        final var dir = java.nio.file.Files.createTempDirectory("ex2checkpoint-failed");
+        final var movie = dir.resolve("movie.csv");
+        final var cast = dir.resolve("cast.csv");
+        final var diagnostics = etl.util.Diagnostics.shared();
+
+        // movie.csv is missing
+        final long read_failed = diagnostics.counts(etl.util.Diagnostics.RULE_READ_FAILED).seen();
+        assertNull(Ex2Mapper.Driving.job_checkpointed(
+            movie, dir.resolve("film.csv"), dir.resolve("actor.csv"), cast,
+            dir.resolve("cast.csv.checkpoint"), 1L, false
+        ));
+        assertEquals(
+            read_failed + 1L,
+            diagnostics.counts(etl.util.Diagnostics.RULE_READ_FAILED).seen()
+        );
+
+        // the directory of film.csv is missing
+        java.nio.file.Files.writeString(movie, movie_csv);
+        final long write_failed = diagnostics.counts(etl.util.Diagnostics.RULE_WRITE_FAILED).seen();
+        assertNull(Ex2Mapper.Driving.job_checkpointed(
+            movie, dir.resolve("none").resolve("film.csv"), dir.resolve("actor.csv"), cast,
+            dir.resolve("cast.csv.checkpoint"), 1L, false
+        ));
+        assertEquals(
+            write_failed + 1L,
+            diagnostics.counts(etl.util.Diagnostics.RULE_WRITE_FAILED).seen()
+        );
+    }
+
+    @Test
+    void driving_checkpointed() throws Exception
+    {
+        final var dir = java.nio.file.Files.createTempDirectory("ex2checkpoint");
+        final var movie = dir.resolve("movie.csv");
+        final var film = dir.resolve("film.csv");
+        final var actor = dir.resolve("actor.csv");
+        final var cast = dir.resolve("cast.csv");
+        final var checkpoint = dir.resolve("cast.csv.checkpoint");
+
+        // a first run that stops after the first two films
+        final int split = movie_csv.indexOf("1,The Bridges");
+        java.nio.file.Files.writeString(movie, movie_csv.substring(0, split));
+        final var first = Ex2Mapper.Driving.job_checkpointed(
+            movie, film, actor, cast, checkpoint, 1L, false
+        );
+        assertEquals(split, first.input_offset());
+        assertEquals(first.input_offset(), Ex2Checkpoint.read(checkpoint).input_offset());
+
+        // lines written after the checkpoint by a run that then crashed
+        java.nio.file.Files.writeString(
+            cast, "partial line", java.nio.file.StandardOpenOption.APPEND
+        );
+
+        java.nio.file.Files.writeString(movie, movie_csv);
+        final var last = Ex2Mapper.Driving.job_checkpointed(
+            movie, film, actor, cast, checkpoint, 1L, true
+        );
+        assertEquals(movie_csv.length(), last.input_offset());
+        assertEquals(6, last.actor_count());
+        assertEquals(movie_csv.split("\n").length, last.record_number());
+
+        assertEquals(film_csv, java.nio.file.Files.readString(film));
+        assertEquals(cast_csv, java.nio.file.Files.readString(cast));
+        assertEquals(
+            new java.util.TreeSet<>(List.of(actor_csv.split("\n"))),
+            new java.util.TreeSet<>(java.nio.file.Files.readAllLines(actor))
+        );
+        assertEquals(6, java.nio.file.Files.readAllLines(actor).size());
+    }
+
+    @Test
+    void columns()
+    {
+        final var movie_reader = new java.io.StringReader(movie_csv);
+        final var text_map = Ex2Movie.Extracting.text_map(() -> movie_reader);
+        final var columns = Ex2Columns.of(text_map);
+
+        assertEquals(4, columns.film_count());
+        assertEquals(6, columns.actor_count());
+        assertEquals(8, columns.cast_count());
+        assertEquals(8, columns.role_count());
+
+        final var expected = List.of(
+            Model_Robert_De_Niro_in_Deer_Hunter,
+            Model_Meryl_Streep_in_Deer_Hunter,
+            Model_Robin_Williams_in_Morning_Vietnum,
+            Model_Clint_Eastwood_in_Madison_County,
+            Model_Meryl_Streep_in_Madison_County,
+            Model_Robert_De_Niro_in_Intern,
+            Model_Rene_Russo_in_Intern,
+            Model_Anne_Hathaway_in_Intern
+        );
+
+        final var actual = new java.util.ArrayList<List<String>>();
+        columns.for_each_cast((film, actor, role) -> actual.add(List.of(
+            columns.film_id(film),
+            columns.actor_id(actor),
+            columns.role_name(role)
+        )));
+
+        assertEquals(
+            expected.stream()
+            .map(cast -> List.of(cast.film().id(), cast.actor().id(), cast.role_name()))
+            .toList(),
+            actual
+        );
+    }
+
     @Test
     void model_map()
     {
@@ -247,4 +647,29 @@ public class Ex2MapperTest
 
         assertEquals(expected, actual);
     }
+
+    @Test
+    void actors_skip_invalid_casts()
+    {
+        final var dirty_csv = movie_csv
+        + "2,Anne Hathaway,Jules,-\n"
+        + "2,Nobody\n"
+        ;
+        final var text_map = Ex2Movie.Extracting.text_map(() -> new java.io.StringReader(dirty_csv));
+        final var expected = Ex2Mapper.Mapping.actors(
+            Ex2Movie.Extracting.text_map(() -> new java.io.StringReader(movie_csv))
+        );
+
+        assertEquals(expected, Ex2Mapper.Mapping.actors(text_map));
+        assertEquals(
+            expected,
+            Ex2Mapper.Mapping.actors(text_map, Ex2ActorDedup.with_expected(16L, 0.01))
+        );
+
+        // the invalid casts of The Intern stay null
+        final var casts = Ex2Mapper.Mapping.model_map(text_map, expected).get(Model_Intern);
+        assertEquals(5, casts.size());
+        assertNull(casts.get(3));
+        assertNull(casts.get(4));
+    }
 }
@@ -0,0 +1,96 @@
+package etl.mapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class Ex2PlannerTest
+{
+    @Test
+    void sample() throws Exception
+    {
+        final var movie_path = Files.createTempFile("ex2planner", ".csv");
+        Files.writeString(movie_path, Ex2MapperTest.movie_csv);
+
+        final var sample = Ex2Planner.sample(movie_path);
+        assertTrue(sample.complete());
+        assertEquals(4L, sample.estimated_films());
+        assertEquals(8L, sample.estimated_casts());
+        assertEquals(6L, sample.estimated_actors());
+        assertEquals(3, sample.max_group());
+
+        final var plan = Ex2Planner.plan(List.of(movie_path));
+        assertEquals(Ex2Planner.Mode.IN_MEMORY, plan.mode());
+        assertTrue(plan.fits());
+    }
+
+    @Test
+    void sample_json() throws Exception
+    {
+        final var movie_path = Files.createTempFile("ex2planner", ".jsonl");
+        Files.writeString(
+            movie_path,
+            "{\"record_kind\": \"1\", \"name\": \"The Deer Hunter\", \"release\": 1978}\n"
+            + "{\"record_kind\": \"2\", \"actor_name\": \"Robert De Niro\", \"role_name\": \"Mike\", \"actor_age\": 35}\n"
+            + "{\"record_kind\": \"2\", \"actor_name\": \"Meryl Streep\", \"role_name\": \"Linda\", \"actor_age\": 29}\n"
+            + "{\"record_kind\": \"1\", \"name\": \"The Intern\", \"release\": 2015}\n"
+            + "{\"record_kind\": \"2\", \"actor_name\": \"Robert De Niro\", \"role_name\": \"Ben\", \"actor_age\": 72}\n"
+        );
+
+        final var sample = Ex2Planner.sample(movie_path);
+        assertTrue(sample.complete());
+        assertEquals(2L, sample.estimated_films());
+        assertEquals(3L, sample.estimated_casts());
+        assertEquals(2L, sample.estimated_actors());
+        assertEquals(2, sample.max_group());
+    }
+
+    @Test
+    void extrapolated()
+    {
+        // a tenth of the file sampled
+        final var sample = new Ex2Planner.Sample(10_000L, 1_000L, 10L, 50L, 20L, 8);
+        assertFalse(sample.complete());
+        assertEquals(100L, sample.estimated_films());
+        assertEquals(500L, sample.estimated_casts());
+        assertEquals(200L, sample.estimated_actors());
+    }
+
+    @Test
+    void modes()
+    {
+        final var sample = new Ex2Planner.Sample(
+            1L << 30, 1L << 22, 20_000L, 100_000L, 60_000L, 40
+        );
+        final var ample = Ex2Planner.plan(sample, Long.MAX_VALUE / 2, 8);
+        assertEquals(Ex2Planner.Mode.IN_MEMORY, ample.mode());
+        assertEquals(8, ample.concurrency());
+        assertTrue(ample.in_memory_bytes() > ample.off_heap_bytes());
+        assertTrue(ample.off_heap_bytes() > ample.streaming_bytes());
+
+        final var off_heap = Ex2Planner.plan(
+            sample, memory_for(ample.off_heap_bytes()), 8
+        );
+        assertEquals(Ex2Planner.Mode.OFF_HEAP, off_heap.mode());
+        assertEquals(1, off_heap.concurrency());
+        assertTrue(off_heap.fits());
+
+        final var streaming = Ex2Planner.plan(
+            sample, memory_for(ample.streaming_bytes()), 8
+        );
+        assertEquals(Ex2Planner.Mode.STREAMING, streaming.mode());
+        assertTrue(streaming.fits());
+
+        final var short_of_memory = Ex2Planner.plan(sample, 1L << 20, 8);
+        assertNull(short_of_memory.mode());
+        assertFalse(short_of_memory.fits());
+    }
+
+    private static long memory_for(long bytes)
+    {
+        return (long) Math.ceil(bytes / Ex2Planner.HEADROOM) + 1L;
+    }
+}
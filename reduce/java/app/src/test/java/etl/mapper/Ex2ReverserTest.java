@@ -0,0 +1,134 @@
+package etl.mapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import etl.util.IntRange;
+
+public class Ex2ReverserTest
+{
+    @Test
+    void reversed()
+    {
+        final var movie = new StringWriter();
+        final var report = Ex2Reverser.Driving.job(
+            () -> new StringReader(Ex2MapperTest.film_csv),
+            () -> new StringReader(Ex2MapperTest.actor_csv),
+            () -> new StringReader(Ex2MapperTest.cast_csv),
+            () -> movie
+        );
+
+        assertEquals(Ex2MapperTest.movie_csv, movie.toString());
+        assertEquals(new Ex2Reverser.Report(4L, 6L, 8L, 0L, 0L, 0L, 0L, 0L, 0L, 1), report);
+    }
+
+    @Test
+    void spilled() throws Exception
+    {
+        final var dir = Files.createTempDirectory("ex2reverser");
+        final var movie = new StringWriter();
+        final var report = Ex2Reverser.Driving.job_spilled(
+            () -> new StringReader(Ex2MapperTest.film_csv),
+            () -> new StringReader(Ex2MapperTest.actor_csv),
+            () -> new StringReader(Ex2MapperTest.cast_csv),
+            () -> movie,
+            3,
+            dir
+        );
+
+        assertEquals(Ex2MapperTest.movie_csv, movie.toString());
+        assertEquals(3, report.partitions());
+        try (final var left = Files.list(dir)) {
+            assertEquals(0L, left.count());
+        }
+    }
+
+    @Test
+    void orphans_and_corrections()
+    {
+        // Meryl Streep born 1950 rather than 1949, and two orphans
+        final var actor_csv = Ex2MapperTest.actor_csv.replace(",Meryl Streep,1949", ",Meryl Streep,1950");
+        final var actor_id = Ex2MapperTest.cast_csv.split(",")[1];
+        final var cast_csv = Ex2MapperTest.cast_csv
+        + "ffffffffffffffffffffffffffffffffffffffff," + actor_id + ",Ghost\n"
+        + "not an id,not an id,Nobody\n";
+
+        final var movie = new StringWriter();
+        final var report = Ex2Reverser.Driving.job(
+            () -> new StringReader(Ex2MapperTest.film_csv),
+            () -> new StringReader(actor_csv),
+            () -> new StringReader(cast_csv),
+            () -> movie
+        );
+
+        assertEquals(
+            Ex2MapperTest.movie_csv
+            .replace("Meryl Streep,Linda,29", "Meryl Streep,Linda,28")
+            .replace("Meryl Streep,Francesca,46", "Meryl Streep,Francesca,45"),
+            movie.toString()
+        );
+        assertEquals(1L, report.invalid_casts());
+        assertEquals(1L, report.orphan_casts());
+    }
+
+    @Test
+    void round_trip() throws Exception
+    {
+        final var dir = Files.createTempDirectory("ex2reverser");
+        final var spec = new Ex2Generator.Spec(
+            2_000L, 500L, IntRange.lower(1).upper(6), 1.1, IntRange.lower(1).upper(32), 0.3, 0.0, 11L
+        );
+        final var cpu = Executors.newFixedThreadPool(2);
+        try {
+            Ex2Generator.Driving.job(spec, dir.resolve("movie.csv"), 2, cpu);
+        } finally {
+            cpu.shutdown();
+        }
+
+        final var film = new StringWriter();
+        final var actor = new StringWriter();
+        final var cast = new StringWriter();
+        Ex2Mapper.Driving.job(
+            () -> Files.newBufferedReader(dir.resolve("movie.csv")),
+            () -> film, () -> actor, () -> cast
+        );
+
+        final var reversed = new StringWriter();
+        final var report = Ex2Reverser.Driving.job(
+            () -> new StringReader(film.toString()),
+            () -> new StringReader(actor.toString()),
+            () -> new StringReader(cast.toString()),
+            () -> reversed
+        );
+        assertEquals(0L, report.orphan_casts());
+
+        final var spilled = new StringWriter();
+        Ex2Reverser.Driving.job_spilled(
+            () -> new StringReader(film.toString()),
+            () -> new StringReader(actor.toString()),
+            () -> new StringReader(cast.toString()),
+            () -> spilled,
+            7,
+            dir
+        );
+        assertEquals(reversed.toString(), spilled.toString());
+
+        // mapping the reversed movie yields the same files
+        final var film_again = new StringWriter();
+        final var actor_again = new StringWriter();
+        final var cast_again = new StringWriter();
+        Ex2Mapper.Driving.job(
+            () -> new StringReader(reversed.toString()),
+            () -> film_again, () -> actor_again, () -> cast_again
+        );
+        assertEquals(film.toString(), film_again.toString());
+        assertEquals(actor.toString(), actor_again.toString());
+        assertEquals(cast.toString(), cast_again.toString());
+    }
+}
@@ -0,0 +1,132 @@
+package etl.mapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import etl.util.CloseableSupplier;
+
+public class Ex3JoinerTest
+{
+    static final String film_csv
+    = ""
+    + "F0000001,The Deer Hunter,1978\n"
+    + "F0000002,\"Good Morning, Vietnam\",1987\n"
+    + "F0000003,The Intern,2015\n"
+    + "F0000003,The Intern,2015\n"
+    + "F04,The Bridges of Madison County,1995\n"
+    ;
+
+    static final String actor_csv
+    = ""
+    + "A0000001,Robert De Niro,1943-08-17,\n"
+    + "A0000002,Meryl Streep,1949-06-22,\n"
+    + "A0000003,Robin Williams,1951-07-21,2014\n"
+    + "A0000002,Meryl Streep,1949-06-22,\n"
+    ;
+
+    static final String cast_csv
+    = ""
+    + "F0000001,A0000001,Mike\n"
+    + "F0000001,A0000002,Linda\n"
+    + "F0000002,A0000003,Adrian\n"
+    + "F0000003,A0000001,Ben\n"
+    + "F0000003,A0000009,Fiona\n"
+    + "F0000009,A0000009,Robert\n"
+    + "F0000003,A0000002,\n"
+    ;
+
+    static final String orphan_csv
+    = ""
+    + "F0000003,A0000009,Fiona\n"
+    + "F0000009,A0000009,Robert\n"
+    ;
+
+    static final String duplicate_csv
+    = ""
+    + "film,F0000003\n"
+    + "actor,A0000002\n"
+    ;
+
+    @Test
+    void job()
+    {
+        final var orphan_writer = new StringWriter();
+        final var duplicate_writer = new StringWriter();
+
+        final var report = Ex3Joiner.Driving.job(
+            () -> new StringReader(film_csv),
+            () -> new StringReader(actor_csv),
+            () -> new StringReader(cast_csv),
+            () -> orphan_writer,
+            () -> duplicate_writer
+        );
+
+        final var expected = new Ex3Joiner.Report(
+            5, 4, 7,
+            1, 0, 1,
+            1, 1,
+            2, 1, 2
+        );
+        assertEquals(expected, report);
+        assertEquals(orphan_csv, orphan_writer.toString());
+        assertEquals(duplicate_csv, duplicate_writer.toString());
+    }
+
+    @Test
+    void orphans_keep_the_order_of_casts_across_batches()
+    {
+        final var casts = new StringBuilder();
+        final var expected = new StringBuilder();
+        for (int index = 0; index < Ex3Joiner.Driving.BATCH_SIZE * 2 + 10; index++) {
+            final var orphan = index % 3 == 0;
+            final var line = orphan
+            ? String.format("X%07d,A0000001,Role\n", index)
+            : "F0000001,A0000001,Role\n";
+            casts.append(line);
+            if (orphan) expected.append(line);
+        }
+
+        final var orphan_writer = new StringWriter();
+        final var report = Ex3Joiner.Driving.job(
+            () -> new StringReader(film_csv),
+            () -> new StringReader(actor_csv),
+            () -> new StringReader(casts.toString()),
+            () -> orphan_writer,
+            () -> new StringWriter()
+        );
+
+        assertNotNull(report);
+        assertEquals(expected.toString(), orphan_writer.toString());
+        assertEquals(report.orphan_casts(), report.missing_films());
+        assertEquals(0L, report.missing_actors());
+    }
+
+    @Test
+    void unreadable_file()
+    {
+        final CloseableSupplier<Reader> unreadable = () -> {
+            throw new IOException("unreadable");
+        };
+
+        assertNull(Ex3Joiner.Driving.job(
+            unreadable,
+            () -> new StringReader(actor_csv),
+            () -> new StringReader(cast_csv),
+            () -> new StringWriter(),
+            () -> new StringWriter()
+        ));
+        assertNull(Ex3Joiner.Driving.job(
+            () -> new StringReader(film_csv),
+            () -> new StringReader(actor_csv),
+            unreadable,
+            () -> new StringWriter(),
+            () -> new StringWriter()
+        ));
+    }
+}
@@ -2,6 +2,8 @@ package etl.model;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.time.Year;
 import java.util.List;
 import java.util.SortedMap;
@@ -9,6 +11,12 @@ import java.util.TreeMap;
 
 import org.junit.jupiter.api.Test;
 
+import com.sun.management.ThreadMXBean;
+
+import etl.util.CloseableSupplier;
+import etl.util.Diagnostics;
+import etl.util.JsonScanner;
+
 public class Ex2MovieTest
 {
     final static String movie_csv
@@ -144,12 +152,67 @@ public class Ex2MovieTest
             );
         }
 
-        final var movie_reader = new java.io.StringReader(movie_csv);
+        final var movie_reader = new StringReader(movie_csv);
         final var actual = Ex2Movie.Extracting.text_map(() -> movie_reader);
 
         assertEquals(expected, actual);
     }
 
+    @Test
+    void text_map_skips_invalid_film()
+    {
+        final var invalid = Diagnostics.shared().counts(Diagnostics.RULE_INVALID_RECORD).seen();
+
+        // a cast before every film, and an invalid film with its casts
+        final var dirty_csv
+        = "2,Nobody,Nobody,30\n"
+        + movie_csv
+        + "1,The Intern,20x5\n"
+        + "2,Robert De Niro,Ben,72\n"
+        + "2,Rene Russo,Fiona\n"
+        ;
+        final var expected = Ex2Movie.Extracting.text_map(() -> new StringReader(movie_csv));
+        final var actual = Ex2Movie.Extracting.text_map(() -> new StringReader(dirty_csv));
+
+        assertEquals(expected, actual);
+        assertEquals(
+            invalid + 3L, Diagnostics.shared().counts(Diagnostics.RULE_INVALID_RECORD).seen()
+        );
+    }
+
+    @Test
+    void text_map_json()
+    {
+        // the objects of movie_csv, with a number for a String, and an
+        // object of an invalid record kind
+        final var movie_json
+        = "[\n"
+        + "{\"record_kind\": \"1\", \"name\": \"The Deer Hunter\", \"release\": 1978},\n"
+        + "{\"record_kind\": \"2\", \"actor_name\": \"Robert De Niro\", \"role_name\": \"Mike\", \"actor_age\": 35},\n"
+        + "{\"record_kind\": \"2\", \"actor_name\": \"Meryl Streep\", \"role_name\": \"Linda\", \"actor_age\": 29},\n"
+        + "{\"record_kind\": \"1\", \"name\": \"Good Morning, Vietnam\", \"release\": \"1987\"},\n"
+        + "{\"record_kind\": \"2\", \"actor_name\": \"Robin Williams\", \"role_name\": \"Adrian\", \"actor_age\": 44},\n"
+        + "{\"record_kind\": \"7\", \"name\": \"Dirty\"},\n"
+        + "{\"release\": 1995, \"name\": \"The Bridges of Madison County\", \"record_kind\": 1},\n"
+        + "{\"record_kind\": \"2\", \"actor_name\": \"Clint Eastwood\", \"role_name\": \"Robert\", \"actor_age\": 65},\n"
+        + "{\"record_kind\": \"2\", \"actor_name\": \"Meryl Streep\", \"role_name\": \"Francesca\", \"actor_age\": 46},\n"
+        + "{\"record_kind\": \"1\", \"name\": \"The Intern\", \"release\": 2015},\n"
+        + "{\"record_kind\": \"2\", \"actor_name\": \"Robert De Niro\", \"role_name\": \"Ben\", \"actor_age\": 72},\n"
+        + "{\"record_kind\": \"2\", \"actor_name\": \"Rene Russo\", \"role_name\": \"Fiona\", \"actor_age\": 61},\n"
+        + "{\"record_kind\": \"2\", \"actor_name\": \"Anne Hathaway\", \"role_name\": \"Jules\", \"actor_age\": 33}\n"
+        + "]\n"
+        ;
+
+        final var expected = Ex2Movie.Extracting.text_map(
+            () -> new StringReader(movie_csv)
+        );
+        final var actual = Ex2Movie.Extracting.text_map(
+            () -> JsonScanner.json(new StringReader(movie_json))
+        );
+
+        assertEquals(expected, actual);
+    }
+
     @Test
     void films_in_same_year_are_compared_by_name()
     {
@@ -418,4 +481,78 @@ public class Ex2MovieTest
             }, () -> fail()
         );
     }
+
+    @Test
+    void scan_reports_invalid_rows()
+    {
+        final var diagnostics = Diagnostics.shared();
+        final long unparsable = diagnostics.counts(Diagnostics.RULE_UNPARSABLE_VALUE).seen();
+        final long invalid = diagnostics.counts(Diagnostics.RULE_INVALID_RECORD).seen();
+
+        final var casts = new java.util.ArrayList<Ex2Movie.Text.Cast>();
+        final long count = Ex2Movie.Extracting.scan(
+            CloseableSupplier.of("movie.csv", () -> new StringReader(
+                "1,The Intern,2015\n"
+                + "2,Rene Russo,Fiona,6x\n"
+                + "2,Rene Russo,Fiona\n"
+                + "2,Anne Hathaway,Jules,33\n"
+            )),
+            new Ex2Movie.Extracting.Sink() {
+                @Override public void film(final Ex2Movie.Text.Film text_film) {}
+                @Override public void cast(final Ex2Movie.Text.Cast text_cast) { casts.add(text_cast); }
+            }
+        );
+
+        assertEquals(4L, count);
+        assertEquals(3, casts.size());
+        assertNull(casts.get(0));
+        assertNull(casts.get(1));
+        assertEquals(unparsable + 1L, diagnostics.counts(Diagnostics.RULE_UNPARSABLE_VALUE).seen());
+        assertEquals(invalid + 1L, diagnostics.counts(Diagnostics.RULE_INVALID_RECORD).seen());
+    }
+
+    @Test
+    void scan_allocates_only_retained_records()
+    {
+        if (!(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean threads)
+            || !threads.isThreadAllocatedMemorySupported()
+        ) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        final int rows = 10_000;
+        final var csv = new StringBuilder("1,The Deer Hunter,1978\n");
+        for (int index = 1; index < rows; index++) {
+            csv.append("2,Robert De Niro,Mike,35\n");
+        }
+        final var text = csv.toString();
+
+        final var sink = new Ex2Movie.Extracting.Sink() {
+            @Override public void film(final Ex2Movie.Text.Film text_film) { films++; }
+            @Override public void cast(final Ex2Movie.Text.Cast text_cast) { casts++; }
+            long films = 0L;
+            long casts = 0L;
+        };
+
+        // warms the loop up so that the JIT has compiled it
+        for (int round = 0; round < 20; round++) {
+            Ex2Movie.Extracting.scan(() -> new StringReader(text), sink);
+        }
+
+        final long thread = Thread.currentThread().getId();
+        final long before = threads.getThreadAllocatedBytes(thread);
+        final long count = Ex2Movie.Extracting.scan(() -> new StringReader(text), sink);
+        final long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(rows, count);
+        assertEquals(21L * (rows - 1), sink.casts);
+
+        // a Text.Cast and its three Strings are what a sink retains; the
+        // budget leaves room for them and nothing per row beyond
+        final long per_row = allocated / rows;
+        assertTrue(per_row <= ROW_ALLOCATION_BUDGET, per_row + " bytes per row");
+    }
+
+    static final long ROW_ALLOCATION_BUDGET = 200L;
 }
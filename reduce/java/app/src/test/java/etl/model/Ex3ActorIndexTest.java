@@ -0,0 +1,112 @@
+package etl.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class Ex3ActorIndexTest
+{
+    static final String actor_csv
+    = ""
+    + "A0000001,Robert De Niro,1943-08-17,\n"
+    + "A0000002,Meryl Streep,1949-06-22,\n"
+    + "A0000003,Robin Williams,1951-07-21,2014\n"
+    + "A0000004,Clint Eastwood,1930-05-31,\n"
+    + "A0000005,Anne Hathaway,1982-11-12,\n"
+    + "A0000006,Cary Grant,1904-01-18,1986\n"
+    + "A0000007,Unknown,,\n"
+    ;
+
+    static final Ex3Actor.Model Robert_De_Niro = new Ex3Actor.Model(
+        "A0000001", "Robert De Niro", LocalDate.of(1943, 8, 17), null);
+    static final Ex3Actor.Model Meryl_Streep = new Ex3Actor.Model(
+        "A0000002", "Meryl Streep", LocalDate.of(1949, 6, 22), null);
+    static final Ex3Actor.Model Robin_Williams = new Ex3Actor.Model(
+        "A0000003", "Robin Williams", LocalDate.of(1951, 7, 21), Year.of(2014));
+    static final Ex3Actor.Model Clint_Eastwood = new Ex3Actor.Model(
+        "A0000004", "Clint Eastwood", LocalDate.of(1930, 5, 31), null);
+    static final Ex3Actor.Model Anne_Hathaway = new Ex3Actor.Model(
+        "A0000005", "Anne Hathaway", LocalDate.of(1982, 11, 12), null);
+    static final Ex3Actor.Model Cary_Grant = new Ex3Actor.Model(
+        "A0000006", "Cary Grant", LocalDate.of(1904, 1, 18), Year.of(1986));
+
+    static final Ex3ActorIndex index
+    = Ex3ActorIndex.of(() -> new java.io.StringReader(actor_csv));
+
+    @Test
+    void invalid_actors_are_not_indexed()
+    {
+        assertEquals(6, index.size());
+    }
+
+    @Test
+    void born_between_dates()
+    {
+        assertEquals(
+            List.of(Robert_De_Niro, Meryl_Streep),
+            index.born_between(LocalDate.of(1943, 8, 17), LocalDate.of(1949, 6, 22))
+        );
+        assertEquals(
+            List.of(Meryl_Streep),
+            index.born_between(LocalDate.of(1943, 8, 18), LocalDate.of(1951, 7, 20))
+        );
+        assertEquals(
+            List.of(),
+            index.born_between(LocalDate.of(1990, 1, 1), LocalDate.of(1980, 1, 1))
+        );
+        assertEquals(
+            2,
+            index.count_born_between(LocalDate.of(1943, 1, 1), LocalDate.of(1949, 12, 31))
+        );
+    }
+
+    @Test
+    void born_between_years()
+    {
+        assertEquals(
+            List.of(Cary_Grant, Clint_Eastwood),
+            index.born_between(Year.of(1900), Year.of(1930))
+        );
+    }
+
+    @Test
+    void alive_in_year()
+    {
+        assertEquals(
+            List.of(Cary_Grant, Clint_Eastwood, Robert_De_Niro, Meryl_Streep, Robin_Williams),
+            index.alive_in(Year.of(1951))
+        );
+        assertEquals(
+            List.of(Clint_Eastwood, Robert_De_Niro, Meryl_Streep, Robin_Williams, Anne_Hathaway),
+            index.alive_in(Year.of(1990))
+        );
+        assertEquals(
+            List.of(Clint_Eastwood, Robert_De_Niro, Meryl_Streep, Anne_Hathaway),
+            index.alive_in(Year.of(2015))
+        );
+        assertEquals(List.of(), index.alive_in(Year.of(1900)));
+    }
+
+    @Test
+    void alive_on_date()
+    {
+        assertEquals(
+            List.of(Cary_Grant, Clint_Eastwood, Robert_De_Niro, Meryl_Streep),
+            index.alive_on(LocalDate.of(1951, 7, 20))
+        );
+    }
+
+    @Test
+    void empty_index()
+    {
+        final var empty = Ex3ActorIndex.of(Stream.empty());
+        assertEquals(0, empty.size());
+        assertEquals(List.of(), empty.alive_in(Year.of(2000)));
+        assertEquals(List.of(), empty.born_between(Year.of(1900), Year.of(2000)));
+    }
+}
@@ -0,0 +1,48 @@
+package etl.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class BloomFilterTest
+{
+    @Test
+    void put()
+    {
+        final var filter = BloomFilter.with_expected(1000, 0.01);
+        final long hash = BloomFilter.hash(BloomFilter.hash("Robert De Niro"), 1943);
+
+        assertTrue(filter.put(hash));
+        assertFalse(filter.put(hash));
+        assertTrue(filter.might_contain(hash));
+        assertNotEquals(hash, BloomFilter.hash(BloomFilter.hash("Robert De Niro"), 1944));
+    }
+
+    @Test
+    void false_positive_rate()
+    {
+        final int expected = 10_000;
+        final var filter = BloomFilter.with_expected(expected, 0.01);
+        for (int index = 0; index < expected; index++) {
+            filter.put(BloomFilter.hash("actor" + index));
+        }
+        for (int index = 0; index < expected; index++) {
+            assertTrue(filter.might_contain(BloomFilter.hash("actor" + index)));
+        }
+
+        int false_positives = 0;
+        for (int index = expected; index < 2 * expected; index++) {
+            if (filter.might_contain(BloomFilter.hash("actor" + index))) false_positives++;
+        }
+        assertTrue(false_positives < expected * 0.03, "false positives: " + false_positives);
+        assertEquals(7, filter.hash_count());
+        assertTrue(filter.table_bytes() < expected * 2L);
+    }
+
+    @Test
+    void invalid_fpp()
+    {
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.with_expected(1, 0.0));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.with_expected(1, 1.0));
+    }
+}
@@ -0,0 +1,64 @@
+package etl.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+public class CsvMaskerTest
+{
+    @Test
+    void apply()
+    {
+        assertEquals("RXY***", StringView.apply("Robert", IntRange.lower(1).upper(6), "XY", '*'));
+        assertEquals("RXYert", StringView.apply("Robert", IntRange.lower(1).upper(3), "XYZ", '*'));
+        assertEquals("Robert", StringView.apply("Robert", IntRange.lower(8).upper(9), "XY", '*'));
+        assertEquals("R*", StringView.apply("R🎬", IntRange.lower(1), "", '*'));
+        assertEquals(
+            "🎬🎬",
+            StringView.apply("ab", IntRange.lower(0), "", 0x1F3AC)
+        );
+
+        final var buffer = new StringBuilder("kept:");
+        StringView.apply_into(buffer, "Meryl", IntRange.lower(1), new int[] {}, '*');
+        assertEquals("kept:M****", buffer.toString());
+    }
+
+    @Test
+    void mask_file() throws Exception
+    {
+        final var dir = Files.createTempDirectory("csvmasker");
+        final var input = dir.resolve("actor.csv");
+        final var output = dir.resolve("actor.masked.csv");
+
+        final int records = CsvMasker.BATCH_RECORDS * 3 + 7;
+        final var csv = new StringBuilder();
+        final var expected = new StringBuilder();
+        for (int index = 0; index < records; index++) {
+            csv.append(String.format("%08x,Actor %d,%d\n", index, index, 1900 + index % 100));
+            expected.append(String.format(
+                "%08x,A%s,%d\n", index, "*".repeat(("ctor " + index).length()), 1900 + index % 100
+            ));
+        }
+        csv.append("0000ffff,\"Zoé, Jr\",1950\n");
+        expected.append("0000ffff,Z******,1950\n");
+        Files.writeString(input, csv.toString());
+
+        final var masker = CsvMasker.of(List.of(
+            new CsvMasker.Mask(1, IntRange.lower(1), "", '*')
+        ));
+        final var cpu = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(records + 1L, masker.mask(input, output, 3, cpu));
+        } finally {
+            cpu.shutdown();
+        }
+        assertEquals(expected.toString(), Files.readString(output));
+
+        assertEquals("x", masker.mask(0, "x", new StringBuilder()));
+        assertNull(masker.mask(1, null, new StringBuilder()));
+    }
+}
@@ -0,0 +1,88 @@
+package etl.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class DiagnosticsTest
+{
+    @Test
+    void sample_and_replay()
+    {
+        final var text = new StringWriter();
+        final var policy = new Diagnostics.Policy(
+            10L, 1_000_000L, 1_000_000.0, 1 << 10, Set.of("bad_row")
+        );
+
+        final var diagnostics = Diagnostics.to(() -> text, policy);
+        for (long record = 1L; record <= 10_000L; record++) {
+            diagnostics.reject("movie.csv", record, "bad_row", "X," + record);
+        }
+        diagnostics.close();
+
+        final var counts = diagnostics.counts("bad_row");
+        assertEquals(10_000L, counts.seen());
+        assertTrue(counts.emitted() >= 10L);
+        assertTrue(counts.emitted() < 100L);
+        assertEquals(counts.seen() - counts.emitted(), counts.dropped());
+        assertEquals(0L, diagnostics.counts("unknown").seen());
+        assertEquals("bad_row", diagnostics.rules().get(0));
+
+        final var rejects = new ArrayList<Diagnostics.Reject>();
+        final long count = Diagnostics.replay(
+            () -> new StringReader(text.toString()), rejects::add
+        );
+        assertEquals(counts.emitted(), count);
+        assertEquals(new Diagnostics.Reject("movie.csv", 1L, "bad_row", "X,1"), rejects.get(0));
+        assertEquals(10L, rejects.get(9).record_number());
+    }
+
+    @Test
+    void rate_limited()
+    {
+        final var text = new StringWriter();
+        final var policy = new Diagnostics.Policy(0L, 1L, 1.0, 1 << 10, Set.of("failed"));
+
+        final var diagnostics = Diagnostics.to(() -> text, policy);
+        for (int index = 0; index < 1000; index++) {
+            diagnostics.reject(null, -1L, "failed", null);
+        }
+        diagnostics.close();
+
+        // one event per second, with a burst of one second
+        final var counts = diagnostics.counts("failed");
+        assertEquals(1000L, counts.seen());
+        assertTrue(counts.emitted() <= 3L);
+
+        final var rejects = new ArrayList<Diagnostics.Reject>();
+        Diagnostics.replay(() -> new StringReader(text.toString()), rejects::add);
+        assertNull(rejects.get(0).file());
+        assertNull(rejects.get(0).raw_line());
+        assertEquals(-1L, rejects.get(0).record_number());
+    }
+
+    @Test
+    void failures_unsampled()
+    {
+        final var text = new StringWriter();
+        final var diagnostics = Diagnostics.to(() -> text, Diagnostics.Policy.DEFAULT);
+        for (long record = 1L; record <= 1000L; record++) {
+            diagnostics.reject("movie.csv", record, Diagnostics.RULE_INVALID_RECORD, "X");
+            diagnostics.reject("film.csv", -1L, Diagnostics.RULE_WRITE_FAILED, "Y");
+        }
+        diagnostics.close();
+
+        final var sampled = diagnostics.counts(Diagnostics.RULE_INVALID_RECORD);
+        assertEquals(1000L, sampled.seen());
+        assertTrue(sampled.emitted() < 1000L);
+
+        final var failed = diagnostics.counts(Diagnostics.RULE_WRITE_FAILED);
+        assertEquals(1000L, failed.seen());
+        assertEquals(1000L, failed.emitted());
+    }
+}
@@ -0,0 +1,59 @@
+package etl.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class IdCacheTest
+{
+    @Test
+    void get()
+    {
+        final var calls = new AtomicInteger();
+        final var cache = IdCache.of(4, key -> {
+            calls.incrementAndGet();
+            return Sha1.hex_string(key);
+        });
+
+        assertEquals(Sha1.hex_string("Robert De Niro1943"), cache.get("Robert De Niro1943"));
+        assertEquals(Sha1.hex_string("Robert De Niro1943"), cache.get("Robert De Niro1943"));
+        assertEquals(1, calls.get());
+        assertEquals(1L, cache.hits());
+        assertEquals(1L, cache.misses());
+    }
+
+    @Test
+    void bounded()
+    {
+        final var cache = IdCache.of(8, String::toUpperCase);
+        for (int index = 0; index < 1000; index++) {
+            assertEquals("KEY" + index, cache.get("key" + index));
+        }
+        assertTrue(cache.size() <= cache.capacity());
+        assertEquals(1000L, cache.misses());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.hits());
+    }
+
+    @Test
+    void cached_hex_string()
+    {
+        assertEquals(
+            Sha1.hex_string("The Deer Hunter1978"),
+            Sha1.cached_hex_string("The Deer Hunter1978")
+        );
+        final long hits = Sha1.cache().hits();
+        Sha1.cached_hex_string("The Deer Hunter1978");
+        assertTrue(Sha1.cache().hits() > hits);
+    }
+
+    @Test
+    void invalid_capacity()
+    {
+        assertThrows(IllegalArgumentException.class, () -> IdCache.of(0, key -> key));
+    }
+}
@@ -0,0 +1,57 @@
+package etl.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class IdHashTest
+{
+    @Test
+    void murmur3_vectors()
+    {
+        assertEquals("00000000000000000000000000000000", Murmur3.hex_string(""));
+        assertEquals("cbd8a7b341bd9b025b1e906a48ae1d19", Murmur3.hex_string("hello"));
+        assertEquals(
+            "e34bbc7bbc071b6c7a433ca9c49a9347",
+            Murmur3.hex_string("The quick brown fox jumps over the lazy dog")
+        );
+
+        // every tail length from 0 to 15 bytes differs
+        final var bytes = "0123456789abcdefghijklmnopqrstuv".getBytes(StandardCharsets.UTF_8);
+        final var seen = new java.util.HashSet<String>();
+        for (int length = 0; length <= bytes.length; length++) {
+            final var hash = Murmur3.hash128(java.util.Arrays.copyOf(bytes, length), 0L);
+            assertTrue(seen.add(hash[0] + ":" + hash[1]));
+        }
+    }
+
+    @Test
+    void strategies()
+    {
+        assertEquals(Sha1.hex_string("The Deer Hunter1978"), IdHash.SHA1.id("The Deer Hunter1978"));
+        assertEquals(Murmur3.hex_string("The Deer Hunter1978"), IdHash.MURMUR3_128.id("The Deer Hunter1978"));
+        assertEquals(40, IdHash.SHA1.id("x").length());
+        assertEquals(Murmur3.HEX_TEXT_LENGTH, IdHash.MURMUR3_128.id("x").length());
+        assertEquals(IdHash.SHA1, IdHash.selected());
+    }
+
+    @Test
+    void collisions()
+    {
+        final var detector = IdCollisions.with_expected(4);
+        for (int index = 0; index < 100_000; index++) {
+            final var text = "Actor " + index + "1950";
+            assertTrue(detector.record(text, IdHash.MURMUR3_128.id(text)));
+        }
+        // the same text again is not a collision
+        assertTrue(detector.record("Actor 01950", IdHash.MURMUR3_128.id("Actor 01950")));
+        assertEquals(100_000, detector.size());
+        assertEquals(0L, detector.collisions());
+
+        // an id of another text is
+        assertFalse(detector.record("Actor X", IdHash.MURMUR3_128.id("Actor 01950")));
+        assertEquals(1L, detector.collisions());
+    }
+}
@@ -0,0 +1,31 @@
+package etl.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class IntHistogramTest
+{
+    @Test
+    void add_and_merge()
+    {
+        final var left = IntHistogram.empty();
+        final var right = IntHistogram.empty();
+        for (int key = -1000; key < 1000; key++) {
+            left.add(key, 1L);
+            right.add(key * 2, 2L);
+        }
+
+        left.merge(right);
+        assertEquals(3L, left.get(0));
+        assertEquals(3L, left.get(-1000));
+        assertEquals(1L, left.get(-999));
+        assertEquals(2L, left.get(1998));
+        assertEquals(0L, left.get(5000));
+        assertEquals(3000, left.size());
+
+        final var keys = left.keys();
+        assertEquals(-2000, keys[0]);
+        assertEquals(1998, keys[keys.length - 1]);
+    }
+}
@@ -0,0 +1,117 @@
+package etl.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class JsonLinesWriterTest
+{
+    @Test
+    void escaped() throws Exception
+    {
+        final var value = " a \"quoted\\\" \t\u0001\u007f café ☃ 🎬 \ud800 ";
+        final var bytes = new ByteArrayOutputStream();
+
+        try (
+            final var writer = new JsonLinesWriter(bytes, new String[] { "id", "name", "born" })
+        ) {
+            writer.print(new Object[] { "1", value, null });
+            writer.print(null);
+            writer.print(new Object[] {});
+            writer.print(new Object[] { 2, "" });
+
+            assertEquals(new ModelWriter.Report(4L, 1L), writer.report());
+        }
+
+        final var text = bytes.toString(StandardCharsets.UTF_8);
+        assertEquals(
+            "{\"id\":\"1\",\"name\":\"a \\\"quoted\\\\\\\" \\t\\u0001\\u007f café ☃ 🎬 ?\",\"born\":null}\n"
+            + "{}\n"
+            + "{}\n"
+            + "{\"id\":\"2\",\"name\":\"\",\"born\":null}\n",
+            text
+        );
+
+        try (
+            final var scanner = JsonScanner.of(new StringReader(text))
+        ) {
+            assertTrue(scanner.next());
+            assertEquals(value.trim().replace('\ud800', '?'), scanner.string("name"));
+            assertNull(scanner.string("born"));
+        }
+    }
+
+    @Test
+    void larger_than_buffer() throws Exception
+    {
+        final var bytes = new ByteArrayOutputStream();
+        final var name = "é".repeat(100_000);
+
+        try (
+            final var writer = JsonLinesWriter.of(
+                JsonLinesWriter.json_lines(bytes), etl.model.Ex2Actor.Text.class
+            )
+        ) {
+            for (int index = 0; index < 10; index++) {
+                writer.print(new Object[] { String.valueOf(index), name, "1970" });
+            }
+        }
+
+        try (
+            final var scanner = JsonScanner.of(new StringReader(bytes.toString(StandardCharsets.UTF_8)))
+        ) {
+            for (int index = 0; index < 10; index++) {
+                assertTrue(scanner.next());
+                assertEquals(String.valueOf(index), scanner.string("id"));
+                assertEquals(name, scanner.string("name"));
+                assertEquals("1970", scanner.string("born"));
+            }
+            assertFalse(scanner.next());
+        }
+    }
+
+    @Test
+    void failed_record_dropped() throws Exception
+    {
+        // fails the first write, which the second record fills the buffer for
+        final var bytes = new ByteArrayOutputStream();
+        final var stream = new OutputStream() {
+            @Override
+            public void write(int b) { bytes.write(b); }
+
+            @Override
+            public void write(final byte[] b, int off, int len) throws IOException
+            {
+                if (!failed) {
+                    failed = true;
+                    throw new IOException("full");
+                }
+                bytes.write(b, off, len);
+            }
+
+            boolean failed = false;
+        };
+
+        try (
+            final var writer = new JsonLinesWriter(stream, new String[] { "id", "name" })
+        ) {
+            writer.print(new Object[] { "1", "first" });
+            writer.print(new Object[] { "2", "x".repeat(100_000) });
+            writer.print(new Object[] { "3", "third" });
+
+            assertEquals(new ModelWriter.Report(3L, 1L), writer.report());
+        }
+
+        assertEquals(
+            "{\"id\":\"1\",\"name\":\"first\"}\n"
+            + "{\"id\":\"3\",\"name\":\"third\"}\n",
+            bytes.toString(StandardCharsets.UTF_8)
+        );
+    }
+}
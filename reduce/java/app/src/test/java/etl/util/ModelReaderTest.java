@@ -0,0 +1,366 @@
+package etl.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import etl.model.Ex2Film;
+import etl.model.Ex3Film;
+
+public class ModelReaderTest
+{
+    static final String film_csv
+    = ""
+    + "17c988ef040c39534fb79cb0c50469f8f714d354,The Deer Hunter,1978\n"
+    + "7d6fc9219cbf15473726730ee0444c4dc306e3ca,\"Good Morning, Vietnam\",1987\n"
+    + "0aa964061fee6ceb2b6441636d297407891c0bd9,The Bridges of Madison County,1995\n"
+    + "d56c04f51408505c8edfe0ab629b481a275d284b,The Intern,2015\n"
+    ;
+
+    @Test
+    void select_by_release_range()
+    {
+        final var films = new ArrayList<Ex2Film.Text>();
+        final long count = ModelReader.select(
+            () -> new StringReader(film_csv),
+            Ex2Film.Text.class,
+            Set.of("id", "name"),
+            ModelReader.Where.int_in(
+                Ex2Film.Text.class, "release", IntRange.lower(1980).upper(1999)
+            ),
+            films::add
+        );
+
+        assertEquals(2L, count);
+        assertEquals(
+            List.of(
+                new Ex2Film.Text(
+                    "7d6fc9219cbf15473726730ee0444c4dc306e3ca",
+                    "Good Morning, Vietnam",
+                    null
+                ),
+                new Ex2Film.Text(
+                    "0aa964061fee6ceb2b6441636d297407891c0bd9",
+                    "The Bridges of Madison County",
+                    null
+                )
+            ),
+            films
+        );
+    }
+
+    @Test
+    void select_by_id_prefix()
+    {
+        final var films = new ArrayList<Ex2Film.Text>();
+        ModelReader.select(
+            () -> new StringReader(film_csv),
+            Ex2Film.Text.class,
+            Set.of("id", "name", "release"),
+            ModelReader.Where.starts_with(Ex2Film.Text.class, "id", "d56c")
+            .or(ModelReader.Where.equals_to(Ex2Film.Text.class, "name", "The Deer Hunter")),
+            films::add
+        );
+
+        assertEquals(2, films.size());
+        assertEquals("The Deer Hunter", films.get(0).name());
+        assertEquals("2015", films.get(1).release());
+    }
+
+    @Test
+    void select_unknown_component()
+    {
+        assertThrows(IllegalArgumentException.class, () -> ModelReader.select(
+            () -> new StringReader(film_csv),
+            Ex2Film.Text.class,
+            Set.of("title"),
+            ModelReader.Where.all(),
+            film -> {}
+        ));
+    }
+
+    @Test
+    void scanner() throws Exception
+    {
+        try (
+            final var scanner = CsvScanner.of(new StringReader(
+                " a , \"b \"\"quoted\"\", with comma\" ,-42\r\n\nlast,\"multi\nline\""
+            ))
+        ) {
+            assertTrue(scanner.next());
+            assertEquals(3, scanner.field_count());
+            assertEquals("a", scanner.string(0));
+            assertEquals("b \"quoted\", with comma", scanner.string(1));
+            assertEquals(-42L, scanner.long_value(2, 0L));
+            assertEquals(0L, scanner.long_value(0, 0L));
+            assertEquals("a,\"b \"\"quoted\"\", with comma\",-42", scanner.line());
+
+            assertTrue(scanner.next());
+            assertEquals(1, scanner.field_count());
+            assertEquals("", scanner.string(0));
+
+            assertTrue(scanner.next());
+            assertEquals("multi\nline", scanner.string(1));
+            assertEquals(3L, scanner.record_number());
+            assertEquals("last,\"multi\nline\"", scanner.line());
+
+            assertFalse(scanner.next());
+        }
+
+        assertEquals("\" x\",,y", CsvScanner.line(List.of(" x", "", "y")));
+    }
+
+    @Test
+    void json_scanner() throws Exception
+    {
+        try (
+            final var scanner = JsonScanner.of(new StringReader(
+                "\uFEFF[ {\"id\": \"a\\\"b\\u00e9\\n\", \"n\": -4.2e1, \"ok\": true},\n"
+                + "{\"nested\": {\"x\": [1, {}]}, \"none\": null, \"empty\": \"\"}, {} ]"
+            ))
+        ) {
+            assertTrue(scanner.next());
+            assertEquals(3, scanner.field_count());
+            assertFalse(scanner.has_nested());
+            assertEquals("id", scanner.name(0));
+            assertEquals("a\"b\u00e9\n", scanner.string("id"));
+            assertEquals("-4.2e1", scanner.string("n"));
+            assertTrue(scanner.equals_to(2, "true"));
+            assertEquals(-1, scanner.index_of("missing"));
+            assertNull(scanner.string("missing"));
+            assertEquals(
+                "{\"id\":\"a\\\"b\u00e9\\u000a\",\"n\":\"-4.2e1\",\"ok\":\"true\"}",
+                scanner.line()
+            );
+
+            assertTrue(scanner.next());
+            assertEquals(3, scanner.field_count());
+            assertNull(scanner.string("nested"));
+            assertTrue(scanner.has_nested());
+            assertNull(scanner.string("none"));
+            assertNull(scanner.string("empty"));
+
+            assertTrue(scanner.next());
+            assertEquals(0, scanner.field_count());
+            assertFalse(scanner.has_nested());
+            assertEquals(3L, scanner.record_number());
+
+            assertFalse(scanner.next());
+        }
+
+        try (
+            final var scanner = JsonScanner.of(new StringReader(
+                "{\"id\": \"1\"}\n{\"id\": 2}\n\n"
+            ))
+        ) {
+            assertTrue(scanner.next());
+            assertTrue(scanner.next());
+            assertEquals("2", scanner.string("id"));
+            assertFalse(scanner.next());
+        }
+
+        try (
+            final var scanner = JsonScanner.of(new StringReader("[{\"id\" 1}]"))
+        ) {
+            assertThrows(IOException.class, scanner::next);
+        }
+    }
+
+    @Test
+    void json_lines() throws Exception
+    {
+        final var path = Files.createTempFile("modelreader", ".jsonl");
+        final var expected = new ArrayList<String>();
+        try (
+            final var writer = Files.newBufferedWriter(path)
+        ) {
+            for (int index = 0; index < 10_000; index++) {
+                final var name = "Film \u00e9 " + index;
+                writer.write(String.format(
+                    "{\"id\": \"%08x\", \"name\": \"%s\", \"release\": %d}\n",
+                    index, name, 1900 + index % 100
+                ));
+                expected.add(name);
+            }
+        }
+
+        assertEquals(7, JsonScanner.lines(path, 7).size());
+        assertEquals(
+            expected,
+            Ex3Film.Extracting.json_lines(path, 7)
+            .map(Ex3Film.Model::name)
+            .collect(Collectors.toList())
+        );
+
+        final var serial = Ex3Film.Extracting.json_models(
+            () -> JsonScanner.json(Files.newBufferedReader(path))
+        );
+        try (serial) {
+            assertEquals(Year.of(1999), serial.skip(99L).findFirst().get().release());
+        }
+
+        // a nested value is dropped and reported, and the rest is read
+        final long seen = Diagnostics.shared().counts(Diagnostics.RULE_UNPARSABLE_VALUE).seen();
+        final var nested = Ex3Film.Extracting.json_models(() -> JsonScanner.json(new StringReader(
+            "{\"id\": \"00000001\", \"name\": \"Alpha\", \"release\": 1999, \"tags\": [\"a\"]}"
+        )));
+        try (nested) {
+            assertEquals(List.of("Alpha"), nested.map(Ex3Film.Model::name).toList());
+        }
+        assertEquals(
+            seen + 1L, Diagnostics.shared().counts(Diagnostics.RULE_UNPARSABLE_VALUE).seen()
+        );
+    }
+
+    @Test
+    void publish_on_demand()
+    {
+        final var csv = new StringBuilder();
+        for (int index = 0; index < 100_000; index++) {
+            csv.append(String.format("%08x,Film %d,%d\n", index, index, 1900 + index % 100));
+        }
+        final var reader = new CountingReader(csv.toString());
+
+        final var names = new ArrayList<String>();
+        final var signals = new ArrayList<String>();
+        final var subscriber = new Flow.Subscriber<Ex3Film.Model>() {
+            @Override
+            public void onSubscribe(final Flow.Subscription subscription)
+            {
+                this.subscription = subscription;
+            }
+
+            @Override
+            public void onNext(final Ex3Film.Model model)
+            {
+                names.add(model.name());
+                if (names.size() == 3) subscription.request(2);
+            }
+
+            @Override
+            public void onError(final Throwable error) { signals.add("error"); }
+
+            @Override
+            public void onComplete() { signals.add("complete"); }
+
+            Flow.Subscription subscription;
+        };
+
+        Ex3Film.Extracting.publisher(() -> reader, Runnable::run).subscribe(subscriber);
+        assertEquals(0L, reader.read);
+
+        subscriber.subscription.request(3);
+        assertEquals(List.of("Film 0", "Film 1", "Film 2", "Film 3", "Film 4"), names);
+        assertTrue(reader.read < csv.length() / 10);
+        assertFalse(reader.closed);
+
+        subscriber.subscription.cancel();
+        assertTrue(reader.closed);
+        subscriber.subscription.request(10);
+        assertEquals(5, names.size());
+        assertEquals(List.of(), signals);
+    }
+
+    @Test
+    void publish_to_completion()
+    {
+        final var films = new ArrayList<Ex3Film.Model>();
+        final var signals = new ArrayList<Object>();
+        final var reader = new CountingReader(
+            "0000000a,Alpha,1999\nbad,Beta,2000\n0000000c,Gamma,2001\n"
+        );
+
+        ModelReader.publisher(
+            () -> reader,
+            Ex3Film.Text.class,
+            Ex3Film.Extracting::text,
+            Ex3Film.Extracting::model,
+            Runnable::run
+        ).subscribe(new Flow.Subscriber<Ex3Film.Model>() {
+            @Override
+            public void onSubscribe(final Flow.Subscription subscription)
+            {
+                subscription.request(Long.MAX_VALUE);
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(final Ex3Film.Model model) { films.add(model); }
+
+            @Override
+            public void onError(final Throwable error) { signals.add(error); }
+
+            @Override
+            public void onComplete() { signals.add("complete"); }
+        });
+
+        // the invalid id is skipped
+        assertEquals(2, films.size());
+        assertEquals("Gamma", films.get(1).name());
+        assertEquals(List.of("complete"), signals);
+        assertTrue(reader.closed);
+
+        final var errors = new ArrayList<Throwable>();
+        Ex3Film.Extracting.publisher(() -> new StringReader(""), Runnable::run)
+        .subscribe(new Flow.Subscriber<Ex3Film.Model>() {
+            @Override
+            public void onSubscribe(final Flow.Subscription subscription) { subscription.request(0L); }
+
+            @Override
+            public void onNext(final Ex3Film.Model model) {}
+
+            @Override
+            public void onError(final Throwable error) { errors.add(error); }
+
+            @Override
+            public void onComplete() {}
+        });
+        assertTrue(errors.get(0) instanceof IllegalArgumentException);
+    }
+
+    // counts the chars read, and tells if closed
+    static final class CountingReader extends FilterReader
+    {
+        CountingReader(final String text)
+        {
+            super(new StringReader(text));
+        }
+
+        @Override
+        public int read(final char[] buffer, int offset, int length) throws IOException
+        {
+            final int count = super.read(buffer, offset, length);
+            if (count > 0) read += count;
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            final int c = super.read();
+            if (c >= 0) read++;
+            return c;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            closed = true;
+            super.close();
+        }
+
+        long read = 0L;
+        boolean closed = false;
+    }
+}
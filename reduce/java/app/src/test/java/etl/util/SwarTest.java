@@ -0,0 +1,130 @@
+package etl.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+
+public class SwarTest
+{
+    @Test
+    void masks()
+    {
+        final var bytes = "ab,cd\"ef\r\n0123456789".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(2, Swar.index_of_structural(bytes, 0, bytes.length));
+        assertEquals(5, Swar.index_of_structural(bytes, 3, bytes.length));
+        assertEquals(8, Swar.index_of_structural(bytes, 6, bytes.length));
+        assertEquals(10, Swar.index_of_structural(bytes, 10, 10));
+        assertEquals(bytes.length, Swar.index_of_structural(bytes, 10, bytes.length));
+        assertEquals(5, Swar.index_of(bytes, 0, bytes.length, (byte) '"'));
+        assertEquals(bytes.length, Swar.index_of(bytes, 6, bytes.length, (byte) '"'));
+        assertEquals(8, Swar.index_of_terminator(bytes, 3, bytes.length));
+        assertEquals(0x0000_0000_0080_0000L, Swar.terminators(Swar.word(bytes, 0)));
+
+        // the delimiter at 2 and the quote at 5 of the first word
+        final long mask = Swar.structurals(Swar.word(bytes, 0));
+        assertEquals(0x0000_8000_0080_0000L, mask);
+        assertEquals(2, Swar.first(mask));
+
+        assertTrue(Swar.is_digits(bytes, 10, bytes.length));
+        assertTrue(Swar.is_digits(bytes, 11, 12));
+        assertFalse(Swar.is_digits(bytes, 9, bytes.length));
+        assertFalse(Swar.is_digits(bytes, 10, 10));
+        for (int b = 0; b < 256; b++) {
+            final boolean digit = '0' <= b && b <= '9';
+            assertEquals(digit ? 0x80L : 0L, Swar.digits(b) & 0xffL, Integer.toString(b));
+        }
+
+        assertTrue(Swar.is_ascii(bytes, 0, bytes.length));
+        assertFalse(Swar.is_ascii("0123456789é".getBytes(StandardCharsets.UTF_8), 0, 12));
+    }
+
+    @Test
+    void blocks_scan_as_chars()
+    {
+        final var text = new StringBuilder()
+        .append("FILM,Alpha,1999\n")
+        .append("  CAST , \"Ann \"\"A\"\", Jr\" , Zoé,42 \r\n")
+        .append("\n")
+        .append("FILM,\"Beta\r\nline\",20x1\r")
+        .append("CAST,").append("b".repeat(200_000)).append(",é,7\n")
+        .append("2,Dwayne \"The Rock\" Johnson,Hobbs,41\n")
+        .append("FILM,\"unterminated")
+        .toString();
+
+        final var chars = records(CsvScanner.of(new StringReader(text)));
+        final var blocks = records(CsvScanner.of(
+            CsvScanner.blocks(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)))
+        ));
+
+        assertEquals(7, blocks.size());
+        assertEquals(chars, blocks);
+        assertEquals(List.of("CAST", "Ann \"A\", Jr", "Zoé", "42", "false"), blocks.get(1).subList(0, 5));
+        assertEquals(List.of("FILM", "Beta\r\nline", "20x1"), blocks.get(3).subList(0, 3));
+        // a quote within an unquoted field is an ordinary char
+        assertEquals(
+            List.of("2", "Dwayne \"The Rock\" Johnson", "Hobbs", "41"),
+            blocks.get(5).subList(0, 4)
+        );
+        assertEquals(List.of("FILM", "unterminated"), blocks.get(6).subList(0, 2));
+    }
+
+    @Test
+    void blocks_agree_with_commons_csv() throws IOException
+    {
+        final var text = new StringBuilder();
+        for (int row = 0; row < 50_000; row++) {
+            text.append(row).append(",Actor ").append(row)
+            .append(row % 7 == 0 ? ",\"Role, \"\"the\"\" one\"" : ",Role \"" + row + "\"")
+            .append(',').append(18 + row % 60).append('\n');
+        }
+        final var bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        final var expected = new ArrayList<List<String>>();
+        try (var parser = CSVParser.parse(new StringReader(text.toString()), CSVFormat.DEFAULT)) {
+            for (CSVRecord record : parser) expected.add(record.toList());
+        }
+        final var scanned = new ArrayList<List<String>>();
+        try (var scanner = CsvScanner.of(CsvScanner.blocks(new ByteArrayInputStream(bytes)))) {
+            while (scanner.next()) {
+                final var fields = new ArrayList<String>();
+                for (int field = 0; field < scanner.field_count(); field++) {
+                    fields.add(scanner.string(field));
+                }
+                scanned.add(fields);
+            }
+        }
+        assertEquals(expected, scanned);
+    }
+
+    // the fields of each record, followed by whether each field is digits
+    private static List<List<String>> records(final CsvScanner scanner)
+    {
+        final var records = new ArrayList<List<String>>();
+        try (scanner) {
+            while (scanner.next()) {
+                final var fields = new ArrayList<String>();
+                for (int field = 0; field < scanner.field_count(); field++) {
+                    fields.add(scanner.string(field));
+                }
+                for (int field = 0; field < scanner.field_count(); field++) {
+                    fields.add(Boolean.toString(scanner.is_digits(field)));
+                }
+                records.add(fields);
+            }
+        } catch (Exception ex) {
+            fail(ex.toString());
+        }
+        return records;
+    }
+}
@@ -0,0 +1,115 @@
+package etl.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+public class YearBucketsTest
+{
+    record Film(int year, String name, int order) implements Comparable<Film>
+    {
+        @Override
+        public int compareTo(final Film that)
+        {
+            return year != that.year
+            ? Integer.compare(year, that.year)
+            : name.compareTo(that.name);
+        }
+    }
+
+    static Film[] sort_distinct(final Film[] films, boolean keep_last)
+    {
+        return YearBuckets.sort_distinct(
+            films, Film::year, Comparator.comparing(Film::name), keep_last
+        );
+    }
+
+    @Test
+    void same_order_as_tree_set()
+    {
+        final var random = new Random(42L);
+        final var films = new Film[10_000];
+        for (int index = 0; index < films.length; index++) {
+            films[index] = new Film(
+                1900 + random.nextInt(120), "film" + random.nextInt(2_000), index
+            );
+        }
+
+        final var expected = new ArrayList<>(new TreeSet<>(List.of(films)));
+        assertEquals(expected, List.of(sort_distinct(films, false)));
+    }
+
+    @Test
+    void keep_first_or_last()
+    {
+        final var films = new Film[] {
+            new Film(1995, "Heat", 0),
+            new Film(1978, "The Deer Hunter", 1),
+            new Film(1995, "Heat", 2),
+        };
+
+        final var first = sort_distinct(films, false);
+        assertEquals(2, first.length);
+        assertEquals(1, first[0].order());
+        assertEquals(0, first[1].order());
+
+        final var last = sort_distinct(films, true);
+        assertEquals(2, last[1].order());
+    }
+
+    @Test
+    void wide_range_of_years()
+    {
+        final var films = new Film[] {
+            new Film(Integer.MAX_VALUE, "b", 0),
+            new Film(Integer.MIN_VALUE, "a", 1),
+            new Film(Integer.MAX_VALUE, "a", 2),
+            new Film(Integer.MAX_VALUE, "a", 3),
+        };
+
+        final var sorted = sort_distinct(films, false);
+        assertEquals(List.of(films[1], films[2], films[0]), List.of(sorted));
+    }
+
+    @Test
+    void sorted_array_map()
+    {
+        final var map = SortedArrayMap.of_sorted(
+            new String[] {"a", "c", "e"},
+            new Integer[] {1, 3, 5}
+        );
+
+        assertEquals(Integer.valueOf(3), map.get("c"));
+        assertNull(map.get("b"));
+        assertEquals("a", map.firstKey());
+        assertEquals("e", map.lastKey());
+        assertEquals(List.of("c", "e"), List.copyOf(map.tailMap("b").keySet()));
+        assertEquals(List.of("a"), List.copyOf(map.headMap("c").keySet()));
+        assertEquals(List.of(3), List.copyOf(map.subMap("c", "e").values()));
+        assertEquals(java.util.Map.of("a", 1, "c", 3, "e", 5), map);
+
+        map.put("c", 4);
+        assertEquals(Integer.valueOf(4), map.get("c"));
+        assertThrows(UnsupportedOperationException.class, () -> map.put("b", 2));
+    }
+
+    @Test
+    void sorted_array_set()
+    {
+        final var set = SortedArraySet.of_sorted(new String[] {"a", "c", "e"});
+
+        assertTrue(set.contains("e"));
+        assertFalse(set.contains("d"));
+        assertEquals(1, set.index_of("c"));
+        assertEquals("c", set.get(1));
+        assertEquals(new TreeSet<>(List.of("a", "c", "e")), set);
+        assertEquals(List.of("c"), List.copyOf(set.subSet("b", "d")));
+        assertThrows(UnsupportedOperationException.class, () -> set.add("b"));
+    }
+}
@@ -0,0 +1,37 @@
+package etl.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+public class ZipfTest
+{
+    @Test
+    void sample()
+    {
+        final var zipf = Zipf.of(1000L, 1.0);
+        final var random = new SplittableRandom(7L);
+        final var counts = new int[1000];
+
+        for (int draw = 0; draw < 100_000; draw++) {
+            final long rank = zipf.sample(random);
+            assertTrue(0L <= rank && rank < 1000L);
+            counts[(int) rank]++;
+        }
+
+        // p(k) ∝ 1/k: rank 0 is drawn about twice as often as rank 1,
+        // and about 1/H(1000) ≈ 13% of the time
+        assertTrue(counts[0] > counts[1] && counts[1] > counts[9]);
+        assertTrue(Math.abs(counts[0] / (double) counts[1] - 2.0) < 0.2);
+        assertTrue(Math.abs(counts[0] / 100_000.0 - 0.1336) < 0.01);
+    }
+
+    @Test
+    void invalid()
+    {
+        assertThrows(IllegalArgumentException.class, () -> Zipf.of(0L, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> Zipf.of(10L, 0.0));
+    }
+}